@@ -0,0 +1,19 @@
+-- 告警规则表：spring.mqtt.rules.source 为 database 时由 AlertRuleEngine 定时读取，内容变化后重新编译并整体替换
+create table if not exists alert_rule
+(
+    id         bigint auto_increment comment '自增主键' primary key,
+    name       varchar(64)          not null comment '规则名，同名规则按 塔吊 > 类别 > 全部 的优先级覆盖',
+    expression varchar(512)         not null comment '条件表达式，如 gas > 50',
+    message    varchar(256)         null comment '告警内容',
+    cranes     varchar(1024)        null comment '生效的塔吊ID，逗号分隔，为空时按类别或对全部塔吊生效',
+    craneClass varchar(64)          null comment '生效的塔吊类别（spring.mqtt.rules.crane-classes）',
+    enabled    tinyint(1) default 1 not null comment '是否启用（0-停用，1-启用）'
+) comment '告警规则' collate = utf8mb4_unicode_ci;
+
+-- 与默认配置相同的规则：
+-- insert into alert_rule (name, expression, message)
+-- values ('gas', 'gas > 50', '气体浓度超标'),
+--        ('rain', 'rainrate == 1', '检测到下雨'),
+--        ('wind', 'wind > 10', '风速过大'),
+--        ('angle-range', 'angle < -45 || angle > 45', '角度超出安全范围'),
+--        ('angle-change', 'angleChange > 10', '角度变化过快');
@@ -0,0 +1,10 @@
+-- 传感器读数表：每个指标一行，由 SensorReadingWriter 按批量多行INSERT写入
+create table if not exists sensor_reading
+(
+    id          bigint auto_increment comment '自增主键' primary key,
+    craneId     varchar(64) not null comment '塔吊ID',
+    metric      varchar(32) not null comment '指标名',
+    ts          bigint      not null comment '设备时间戳（毫秒）',
+    metricValue double      not null comment '指标值',
+    index idx_crane_metric_ts (craneId, metric, ts)
+) comment '传感器读数' collate = utf8mb4_unicode_ci;
@@ -0,0 +1,27 @@
+-- 按天分区的传感器读数表：由 SensorReadingBulkLoader 把本地CSV段文件用 LOAD DATA LOCAL INFILE 装载
+-- 分区名为 pYYYYMMDD（UTC），上界为次日0点的毫秒时间戳；装载线程自动创建未来分区、删除超过保留天数的分区，
+-- 建表时的初始分区只用于满足分区表至少一个分区的要求，会按保留天数被删除
+-- 需要MySQL服务端开启 local_infile（SET GLOBAL local_infile = 1）
+-- 同一塔吊同一指标可能有相同时间戳的多条读数（消息不带时间戳时按到达时间、设备时钟精度为秒），不设唯一键；
+-- 已按 (craneId, metric, ts) 唯一键建表的需要改回普通索引：
+--   alter table sensor_reading_daily drop index uk_crane_metric_ts, add index idx_crane_metric_ts (craneId, metric, ts);
+create table if not exists sensor_reading_daily
+(
+    craneId     varchar(64) not null comment '塔吊ID',
+    metric      varchar(32) not null comment '指标名',
+    ts          bigint      not null comment '设备时间戳（毫秒）',
+    metricValue double      not null comment '指标值',
+    index idx_crane_metric_ts (craneId, metric, ts)
+) comment '传感器读数（按天分区）' collate = utf8mb4_unicode_ci
+    partition by range (ts) (
+        partition p19700101 values less than (86400000)
+    );
+
+-- 已装载的段文件登记，与装载在同一事务中写入：装载提交后、删除段文件前崩溃时，重启后据此跳过该段文件；
+-- 表名为目标表名加 _segment，登记保留一天后由装载线程删除
+create table if not exists sensor_reading_daily_segment
+(
+    segment  varchar(128) not null comment '段文件名' primary key,
+    rowCount bigint       not null comment '装载行数',
+    loadedAt bigint       not null comment '装载时间（毫秒）'
+) comment '已装载的读数段文件' collate = utf8mb4_unicode_ci;
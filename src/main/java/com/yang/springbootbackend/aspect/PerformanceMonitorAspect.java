@@ -6,9 +6,12 @@ import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * 性能监控切面
  * 监控方法执行时间和性能指标
+ * MQTT入站链路（service.mqtt包）按消息高频调用，不经过切面，其延迟由入站工作通道的延迟直方图统计
  */
 @Aspect
 @Component
@@ -18,7 +21,8 @@ public class PerformanceMonitorAspect {
     /**
      * 监控Service层方法执行时间
      */
-    @Around("execution(* com.yang.springbootbackend.service..*(..))")
+    @Around("execution(* com.yang.springbootbackend.service..*(..)) "
+            + "&& !within(com.yang.springbootbackend.service.mqtt..*)")
     public Object monitorServicePerformance(ProceedingJoinPoint joinPoint) throws Throwable {
         return monitorMethodPerformance(joinPoint, "SERVICE");
     }
@@ -31,45 +35,36 @@ public class PerformanceMonitorAspect {
         return monitorMethodPerformance(joinPoint, "CONTROLLER");
     }
 
-    /**
-     * 监控MQTT消息处理器性能
-     */
-    @Around("execution(* com.yang.springbootbackend.service.mqtt..*(..))")
-    public Object monitorMqttPerformance(ProceedingJoinPoint joinPoint) throws Throwable {
-        return monitorMethodPerformance(joinPoint, "MQTT");
-    }
-
     /**
      * 通用性能监控方法
+     * 只在需要输出日志时才拼接方法名
      */
     private Object monitorMethodPerformance(ProceedingJoinPoint joinPoint, String layer) throws Throwable {
-        String className = joinPoint.getTarget().getClass().getSimpleName();
-        String methodName = joinPoint.getSignature().getName();
-        String fullMethodName = className + "." + methodName;
+        long startTime = System.nanoTime();
 
-        long startTime = System.currentTimeMillis();
-        
         try {
             Object result = joinPoint.proceed();
-            long endTime = System.currentTimeMillis();
-            long executionTime = endTime - startTime;
+            long executionTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
 
             // 记录性能日志
             if (executionTime > 1000) {
-                log.warn("[{}] 方法执行时间较长: {} - {}ms", layer, fullMethodName, executionTime);
+                log.warn("[{}] 方法执行时间较长: {} - {}ms", layer, methodName(joinPoint), executionTime);
             } else if (executionTime > 500) {
-                log.info("[{}] 方法执行时间: {} - {}ms", layer, fullMethodName, executionTime);
-            } else {
-                log.debug("[{}] 方法执行时间: {} - {}ms", layer, fullMethodName, executionTime);
+                log.info("[{}] 方法执行时间: {} - {}ms", layer, methodName(joinPoint), executionTime);
+            } else if (log.isDebugEnabled()) {
+                log.debug("[{}] 方法执行时间: {} - {}ms", layer, methodName(joinPoint), executionTime);
             }
 
             return result;
         } catch (Exception e) {
-            long endTime = System.currentTimeMillis();
-            long executionTime = endTime - startTime;
-            log.error("[{}] 方法执行异常: {} - {}ms, 异常: {}", 
-                    layer, fullMethodName, executionTime, e.getMessage());
+            long executionTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            log.error("[{}] 方法执行异常: {} - {}ms, 异常: {}",
+                    layer, methodName(joinPoint), executionTime, e.getMessage());
             throw e;
         }
     }
+
+    private static String methodName(ProceedingJoinPoint joinPoint) {
+        return joinPoint.getTarget().getClass().getSimpleName() + "." + joinPoint.getSignature().getName();
+    }
 }
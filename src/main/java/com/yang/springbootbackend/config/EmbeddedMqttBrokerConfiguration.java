@@ -0,0 +1,52 @@
+package com.yang.springbootbackend.config;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import io.moquette.BrokerConstants;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * 内嵌MQTT Broker配置
+ * 开启 spring.mqtt.embedded-broker.enabled（或激活 embedded-broker 配置）后在进程内启动Moquette，
+ * 供本机压测和开发调试使用。Broker在单例初始化阶段启动，早于入站适配器的连接
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "spring.mqtt.embedded-broker", name = "enabled", havingValue = "true")
+public class EmbeddedMqttBrokerConfiguration {
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Bean(destroyMethod = "stopServer")
+    public Server embeddedMqttBroker() throws IOException {
+        MqttProperties.EmbeddedBroker config = mqttProperties.getEmbeddedBroker();
+
+        Properties properties = new Properties();
+        properties.setProperty(BrokerConstants.HOST_PROPERTY_NAME, config.getHost());
+        properties.setProperty(BrokerConstants.PORT_PROPERTY_NAME, String.valueOf(config.getPort()));
+        properties.setProperty(BrokerConstants.WEB_SOCKET_PORT_PROPERTY_NAME, BrokerConstants.DISABLED_PORT_BIND);
+        properties.setProperty(BrokerConstants.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        properties.setProperty(BrokerConstants.NETTY_MAX_BYTES_PROPERTY_NAME, String.valueOf(config.getMaxMessageBytes()));
+        // 纯内存运行，压测结果不受磁盘影响
+        properties.setProperty(BrokerConstants.PERSISTENT_STORE_PROPERTY_NAME, "");
+        // 立即刷出，避免Broker侧缓冲放大延迟
+        properties.setProperty(BrokerConstants.IMMEDIATE_BUFFER_FLUSH_PROPERTY_NAME, "true");
+        properties.setProperty(BrokerConstants.ENABLE_TELEMETRY_NAME, "false");
+        // 会话命令队列满时Moquette直接丢弃消息，指令广播等突发流量需要更大的队列
+        properties.setProperty(BrokerConstants.SESSION_QUEUE_SIZE, String.valueOf(config.getSessionQueueSize()));
+
+        Server server = new Server();
+        server.startServer(new MemoryConfig(properties));
+        log.info("内嵌MQTT Broker启动完成，监听: {}:{}", config.getHost(), config.getPort());
+        return server;
+    }
+}
@@ -6,6 +6,7 @@ import com.alibaba.fastjson.serializer.SimpleDateFormatSerializer;
 import com.alibaba.fastjson.support.spring.FastJsonHttpMessageConverter;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -21,6 +22,17 @@ import java.util.List;
 @Configuration
 public class FastJsonConfiguration implements WebMvcConfigurer {
 
+    /**
+     * 序列化特性，预先序列化的响应（如最新值快照）使用同一组特性，保证与接口直接返回的JSON一致
+     */
+    public static final SerializerFeature[] SERIALIZER_FEATURES = {
+            SerializerFeature.WriteMapNullValue,        // 输出null值字段
+            SerializerFeature.WriteNullStringAsEmpty,   // 将null值字段输出为空字符串
+            SerializerFeature.WriteNullNumberAsZero,    // 将数值类型null输出为0
+            SerializerFeature.WriteNullBooleanAsFalse,  // 将Boolean类型null输出为false
+            SerializerFeature.DisableCircularReferenceDetect  // 禁用循环引用检测
+    };
+
     /**
      * 配置FastJSON作为HTTP消息转换器
      */
@@ -37,13 +49,7 @@ public class FastJsonConfiguration implements WebMvcConfigurer {
         config.setSerializeConfig(serializeConfig);
         
         // 设置序列化特性
-        config.setSerializerFeatures(
-                SerializerFeature.WriteMapNullValue,        // 输出null值字段
-                SerializerFeature.WriteNullStringAsEmpty,   // 将null值字段输出为空字符串
-                SerializerFeature.WriteNullNumberAsZero,    // 将数值类型null输出为0
-                SerializerFeature.WriteNullBooleanAsFalse,  // 将Boolean类型null输出为false
-                SerializerFeature.DisableCircularReferenceDetect  // 禁用循环引用检测
-        );
+        config.setSerializerFeatures(SERIALIZER_FEATURES);
         
         // 设置编码格式
         config.setCharset(StandardCharsets.UTF_8);
@@ -58,5 +64,8 @@ public class FastJsonConfiguration implements WebMvcConfigurer {
         
         // 添加到转换器列表的最前面，优先使用
         converters.add(0, converter);
+
+        // byte[]响应体是已经序列化好的内容，原样写出，不能再被FastJSON编码为Base64字符串
+        converters.add(0, new ByteArrayHttpMessageConverter());
     }
 } 
\ No newline at end of file
@@ -45,16 +45,18 @@ public class MqttInboundConfigruation {
         MqttPahoMessageDrivenChannelAdapter adapter =
                 new MqttPahoMessageDrivenChannelAdapter(
                         mqttProperties.getUrl(),
-                        mqttProperties.getSubClientId(),
+                        mqttProperties.getEffectiveSubClientId(),
                         mqttClientFactory,
-                        mqttProperties.getSubTopic().split(",")
+                        mqttProperties.getSubscriptionTopics()
                 );
 
         // 消息质量
         adapter.setQos(1);
 
-        // 转换器
-        adapter.setConverter(new DefaultPahoMessageConverter());
+        // 转换器：直接传递原始字节，由处理器按UTF-8字节解析，避免先解码为String
+        DefaultPahoMessageConverter converter = new DefaultPahoMessageConverter();
+        converter.setPayloadAsBytes(true);
+        adapter.setConverter(converter);
 
         // 通道
         adapter.setOutputChannel(mqttInboundChannel());
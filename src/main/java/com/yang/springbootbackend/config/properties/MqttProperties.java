@@ -1,9 +1,16 @@
 package com.yang.springbootbackend.config.properties;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * MQTT配置属性
  * 统一管理MQTT相关配置
@@ -68,6 +75,111 @@ public class MqttProperties {
      */
     private boolean automaticReconnect = true;
 
+    /**
+     * 主题中塔吊/设备ID所在的层级（从0开始，例如 testtopic/1/gas 中为1）
+     */
+    private int craneIdSegment = 1;
+
+    /**
+     * 入站消息分区处理配置
+     */
+    private Ingest ingest = new Ingest();
+
+    /**
+     * 共享订阅配置（多节点水平扩展）
+     */
+    private Shared shared = new Shared();
+
+    /**
+     * QoS1重复消息去重配置
+     */
+    private Dedup dedup = new Dedup();
+
+    /**
+     * 塔吊状态存储配置
+     */
+    private State state = new State();
+
+    /**
+     * 最新值快照配置
+     */
+    private Latest latest = new Latest();
+
+    /**
+     * 告警规则配置
+     */
+    private Rules rules = new Rules();
+
+    /**
+     * 按设备时间戳重排配置
+     */
+    private Reorder reorder = new Reorder();
+
+    /**
+     * 死信日志配置（处理失败的消息）
+     */
+    private DeadLetter deadLetter = new DeadLetter();
+
+    /**
+     * 入站预写日志配置
+     */
+    private Journal journal = new Journal();
+
+    /**
+     * 下行指令配置
+     */
+    private Command command = new Command();
+
+    /**
+     * 主题监听配置
+     */
+    private Tap tap = new Tap();
+
+    /**
+     * 遥测时序存储配置
+     */
+    private Tsdb tsdb = new Tsdb();
+
+    /**
+     * 遥测多粒度汇总配置
+     */
+    private Rollup rollup = new Rollup();
+
+    /**
+     * 落盘数据保留与压缩配置
+     */
+    private Compaction compaction = new Compaction();
+
+    /**
+     * 遥测数据批量导出配置
+     */
+    private Export export = new Export();
+
+    /**
+     * 读数写入MySQL配置
+     */
+    private Jdbc jdbc = new Jdbc();
+
+    /**
+     * 读数经本地CSV段文件批量装载到MySQL按天分区表的配置
+     */
+    private JdbcLoad jdbcLoad = new JdbcLoad();
+
+    /**
+     * 最近读数Redis Stream热缓冲配置
+     */
+    private RedisStream redisStream = new RedisStream();
+
+    /**
+     * 内嵌Broker配置（本机压测用）
+     */
+    private EmbeddedBroker embeddedBroker = new EmbeddedBroker();
+
+    /**
+     * 塔吊遥测模拟器配置
+     */
+    private Simulator simulator = new Simulator();
+
     /**
      * 获取订阅主题数组
      */
@@ -77,4 +189,759 @@ public class MqttProperties {
         }
         return subTopic.split(",");
     }
+
+    /**
+     * 获取实际订阅的主题
+     * 开启共享订阅时加上 $share/{group}/ 前缀，由Broker在同组节点间负载均衡
+     */
+    public String[] getSubscriptionTopics() {
+        String[] topics = getSubTopicArray();
+        String[] result = new String[topics.length];
+        for (int i = 0; i < topics.length; i++) {
+            String topic = topics[i].trim();
+            result[i] = shared.isEnabled() ? "$share/" + shared.getGroup() + "/" + topic : topic;
+        }
+        return result;
+    }
+
+    /**
+     * 获取实际使用的订阅客户端ID
+     * 开启共享订阅时追加节点标识，保证各节点客户端ID唯一，避免互相踢下线
+     */
+    public String getEffectiveSubClientId() {
+        return shared.isEnabled() ? subClientId + "-" + shared.resolveNodeId() : subClientId;
+    }
+
+    @Data
+    public static class Ingest {
+        /**
+         * 普通层级工作通道数量，小于等于0时使用CPU核数
+         */
+        private int laneCount = 0;
+
+        /**
+         * 安全关键层级的独占工作通道数量
+         */
+        private int criticalLaneCount = 2;
+
+        /**
+         * 批量层级的工作通道数量，同时执行其他层级处理器的遥测监听器（存储、统计）
+         */
+        private int bulkLaneCount = 2;
+
+        /**
+         * 处理器优先级小于该值时归入安全关键层级
+         */
+        private int criticalPriority = 50;
+
+        /**
+         * 处理器优先级大于等于该值时归入批量层级
+         */
+        private int bulkPriority = 200;
+
+        /**
+         * 安全关键层级的延迟预算（毫秒），从入队到处理完成，超出时计入超预算次数
+         */
+        private long criticalBudgetMs = 20;
+
+        /**
+         * 普通层级的延迟预算（毫秒）
+         */
+        private long standardBudgetMs = 200;
+
+        /**
+         * 批量层级的延迟预算（毫秒），排队已超过预算的消息直接丢弃
+         */
+        private long bulkBudgetMs = 1000;
+
+        /**
+         * 每个工作通道的队列容量
+         */
+        private int queueCapacity = 1024;
+
+        /**
+         * 队列已满时的最大等待时间（毫秒），超时后丢弃消息
+         */
+        private long offerTimeoutMs = 50;
+    }
+
+    /**
+     * 获取实际使用的发布客户端ID
+     * 与订阅客户端ID相同时追加后缀，开启共享订阅时再追加节点标识，避免两条连接互相踢下线
+     */
+    public String getEffectivePubClientId() {
+        String clientId = pubClientId == null || pubClientId.equals(subClientId) ? subClientId + "-pub" : pubClientId;
+        return shared.isEnabled() ? clientId + "-" + shared.resolveNodeId() : clientId;
+    }
+
+    @Data
+    public static class Shared {
+        /**
+         * 是否启用共享订阅
+         */
+        private boolean enabled = false;
+
+        /**
+         * 共享订阅组名，同组节点分摊消息
+         */
+        private String group = "crane-backend";
+
+        /**
+         * 节点标识，为空时使用 主机名-进程号
+         */
+        private String nodeId;
+
+        /**
+         * 获取节点标识
+         */
+        public String resolveNodeId() {
+            if (nodeId == null || nodeId.trim().isEmpty()) {
+                // RuntimeMXBean名称格式为 pid@hostname
+                String[] parts = ManagementFactory.getRuntimeMXBean().getName().split("@");
+                nodeId = parts.length == 2 ? parts[1] + "-" + parts[0] : parts[0];
+            }
+            return nodeId;
+        }
+    }
+
+    @Data
+    public static class Dedup {
+        /**
+         * 是否按设备序号丢弃重复读数
+         */
+        private boolean enabled = true;
+
+        /**
+         * 每个设备记录的最近序号个数，按64向上取整
+         */
+        private int windowSize = 256;
+
+        /**
+         * 最多跟踪的设备数（数据流 × 塔吊），达到上限时淘汰最近未访问的设备
+         */
+        private int maxDevices = 65536;
+
+        /**
+         * 设备空闲多久后淘汰其去重窗口（秒），0表示不按时间淘汰
+         */
+        private long idleTtlSeconds = 600;
+    }
+
+    @Data
+    public static class State {
+        /**
+         * 塔吊空闲多久后淘汰其处理器状态（秒），0表示不按时间淘汰
+         */
+        private long idleTtlSeconds = 600;
+
+        /**
+         * 最多保存的塔吊数量，达到上限时按二次机会算法淘汰最近未访问的塔吊，0表示不限制
+         */
+        private int maxCranes = 20000;
+    }
+
+    @Data
+    public static class Latest {
+        /**
+         * 长轮询（sinceVersion）最长等待时间（毫秒），超时返回304
+         */
+        private long longPollTimeoutMs = 30000;
+
+        /**
+         * 每类数据最多保存快照的塔吊数量，超出后新塔吊只更新全局最新值
+         */
+        private int maxCranes = 20000;
+    }
+
+    @Data
+    public static class Rules {
+        /**
+         * 规则来源：config 使用下面的 definitions；file 读取规则文件；database 读取 alert_rule 表
+         */
+        private String source = "config";
+
+        /**
+         * 规则文件（JSON），source 为 file 时使用，格式为 {"craneClasses": {...}, "rules": [...]}
+         */
+        private String file = "config/alert-rules.json";
+
+        /**
+         * 检查规则文件或规则表是否变化的间隔（毫秒），变化时重新编译并整体替换，小于等于0表示只在调用重载接口时加载
+         */
+        private long reloadIntervalMs = 5000;
+
+        /**
+         * 塔吊类别：类别名 -> 塔吊ID列表，规则可以按类别生效
+         */
+        private Map<String, List<String>> craneClasses = new LinkedHashMap<>();
+
+        /**
+         * 规则定义，source 为 config 时使用；source 为 file 或 database 但加载失败时作为启动时的兜底规则
+         */
+        private List<RuleDefinition> definitions = defaultDefinitions();
+
+        private static List<RuleDefinition> defaultDefinitions() {
+            List<RuleDefinition> definitions = new ArrayList<>();
+            definitions.add(new RuleDefinition("gas", "gas > 50", "气体浓度超标"));
+            definitions.add(new RuleDefinition("rain", "rainrate == 1", "检测到下雨"));
+            definitions.add(new RuleDefinition("wind", "wind > 10", "风速过大"));
+            definitions.add(new RuleDefinition("angle-range", "angle < -45 || angle > 45", "角度超出安全范围"));
+            definitions.add(new RuleDefinition("angle-change", "angleChange > 10", "角度变化过快"));
+            return definitions;
+        }
+    }
+
+    /**
+     * 告警规则定义
+     * 同名规则按 塔吊 > 类别 > 全部 的优先级覆盖，可以为个别塔吊或类别单独设置阈值或停用
+     */
+    @Data
+    @NoArgsConstructor
+    public static class RuleDefinition {
+        /**
+         * 规则名，同名规则互相覆盖
+         */
+        private String name;
+
+        /**
+         * 条件表达式，如 "gas > 50"、"angle < -45 || angle > 45"、"abs(rotationSpeed) > 3"，语法见 RuleCompiler
+         */
+        private String expression;
+
+        /**
+         * 告警内容
+         */
+        private String message;
+
+        /**
+         * 生效的塔吊ID，为空时按 craneClass 或对全部塔吊生效
+         */
+        private List<String> cranes = new ArrayList<>();
+
+        /**
+         * 生效的塔吊类别，与 cranes 二选一
+         */
+        private String craneClass;
+
+        /**
+         * 是否启用，停用的规则可以覆盖同名的低优先级规则，使其对指定塔吊不生效
+         */
+        private boolean enabled = true;
+
+        public RuleDefinition(String name, String expression, String message) {
+            this.name = name;
+            this.expression = expression;
+            this.message = message;
+        }
+    }
+
+    @Data
+    public static class Reorder {
+        /**
+         * 允许读数迟到的时长（毫秒），0表示不缓冲、按到达顺序处理
+         */
+        private long latenessMs = 100;
+
+        /**
+         * 每台塔吊的重排缓冲容量
+         */
+        private int capacity = 64;
+    }
+
+    @Data
+    public static class DeadLetter {
+        /**
+         * 是否将处理失败的消息写入本地死信日志
+         */
+        private boolean enabled = true;
+
+        /**
+         * 死信日志目录
+         */
+        private String directory = "data/dead-letter";
+
+        /**
+         * 单个日志分段的大小上限（字节），超过后滚动到新分段
+         */
+        private long segmentBytes = 16L * 1024 * 1024;
+
+        /**
+         * 死信日志占用磁盘的上限（字节），超过后删除最旧的分段
+         */
+        private long maxTotalBytes = 256L * 1024 * 1024;
+
+        /**
+         * 异步写入队列容量，队列已满时只计数不落盘
+         */
+        private int queueCapacity = 4096;
+
+        /**
+         * 默认重放速率（条/秒）
+         */
+        private int replayRate = 50;
+    }
+
+    @Data
+    public static class Journal {
+        /**
+         * 是否在投递到工作通道前把消息写入本地预写日志，重启时重放未处理完的消息
+         */
+        private boolean enabled = true;
+
+        /**
+         * 预写日志目录
+         */
+        private String directory = "data/journal";
+
+        /**
+         * 单个分段的大小（字节），创建时即映射为该大小
+         */
+        private long segmentBytes = 64L * 1024 * 1024;
+
+        /**
+         * 组提交的最长间隔（毫秒），即掉电时最多丢失的时间窗口
+         */
+        private long syncIntervalMs = 20;
+
+        /**
+         * 未刷盘字节达到该值时不等间隔立即刷盘
+         */
+        private long syncBytes = 1024 * 1024;
+
+        /**
+         * 检查点写入间隔（毫秒），重启时最多重复处理该时长内已处理过的消息
+         */
+        private long checkpointIntervalMs = 1000;
+    }
+
+    @Data
+    public static class Command {
+        /**
+         * 是否启用下行指令通道
+         */
+        private boolean enabled = true;
+
+        /**
+         * 指令主题模板，{craneId} 替换为塔吊ID
+         */
+        private String topicTemplate = "testtopic/{craneId}/cmd";
+
+        /**
+         * 指令消息质量等级
+         */
+        private int qos = 1;
+
+        /**
+         * 等待设备回执的超时时间（毫秒）
+         */
+        private long ackTimeoutMs = 5000;
+
+        /**
+         * 待发送队列容量（按塔吊和指令分组合并后的数量）
+         */
+        private int queueCapacity = 20000;
+
+        /**
+         * 发送线程每轮最多取出的指令数
+         */
+        private int batchSize = 256;
+
+        /**
+         * 发布客户端最大在途消息数
+         */
+        private int maxInflight = 10000;
+    }
+
+    @Data
+    public static class Tap {
+        /**
+         * 同时存在的监听会话上限
+         */
+        private int maxTaps = 8;
+
+        /**
+         * 单个监听会话的最长时长（秒）
+         */
+        private long maxDurationSeconds = 600;
+
+        /**
+         * 每个监听会话待推送消息的缓冲容量，客户端消费不及时超出部分丢弃
+         */
+        private int queueCapacity = 1024;
+
+        /**
+         * 推送线程的刷新间隔（毫秒）
+         */
+        private long flushIntervalMs = 200;
+    }
+
+    @Data
+    public static class Tsdb {
+        /**
+         * 是否把读数写入本地时序存储
+         */
+        private boolean enabled = true;
+
+        /**
+         * 段文件目录
+         */
+        private String directory = "data/tsdb";
+
+        /**
+         * 单个段文件大小（字节），写满后切换到新段
+         */
+        private long segmentBytes = 64L * 1024 * 1024;
+
+        /**
+         * 压缩块大小（字节），每条序列在内存中保留一个写入中的块
+         */
+        private int blockBytes = 16 * 1024;
+
+        /**
+         * 写入中的块最长保留时间（秒），超过后即使未写满也落盘，限制进程崩溃时丢失的数据量
+         */
+        private long maxHeadAgeSeconds = 600;
+
+        /**
+         * 段文件刷盘间隔（毫秒）
+         */
+        private long flushIntervalMs = 1000;
+
+        /**
+         * 已封存、等待落盘线程写入段文件的块数上限，队列满时丢弃新的点
+         */
+        private int sealQueueCapacity = 1024;
+    }
+
+    @Data
+    public static class Rollup {
+        /**
+         * 是否按1秒/1分钟/1小时汇总读数，段文件位于时序存储目录下的 rollup-{粒度}
+         */
+        private boolean enabled = true;
+
+        /**
+         * 单个汇总段文件大小（字节）
+         */
+        private long segmentBytes = 16L * 1024 * 1024;
+
+        /**
+         * 每条序列每个粒度攒够多少个关闭的桶后落盘
+         */
+        private int batchBuckets = 256;
+
+        /**
+         * 关闭的桶最长等待落盘时间（秒）
+         */
+        private long maxPendingSeconds = 300;
+
+        /**
+         * 序列无新读数超过该时长（毫秒）后按墙钟推进水位线，关闭不会再收到读数的桶
+         */
+        private long idleCloseMs = 5000;
+
+        /**
+         * 刷盘线程执行间隔（毫秒）
+         */
+        private long flushIntervalMs = 1000;
+    }
+
+    @Data
+    public static class Compaction {
+        /**
+         * 是否在后台删除过期数据并压缩段文件
+         */
+        private boolean enabled = true;
+
+        /**
+         * 压缩执行间隔（秒）
+         */
+        private long intervalSeconds = 600;
+
+        /**
+         * 压缩的读写速率上限（字节/秒），避免影响入站写入
+         */
+        private long ioBytesPerSecond = 8L * 1024 * 1024;
+
+        /**
+         * 段内过期或无效数据占比达到该值时改写该段
+         */
+        private double minGarbageRatio = 0.5;
+
+        /**
+         * 被替换的段保留多久（秒）后删除，等待进行中的查询读完
+         */
+        private long graceSeconds = 60;
+
+        /**
+         * 原始数据保留时长（小时），0表示永久保留
+         */
+        private long rawRetentionHours = 168;
+
+        /**
+         * 1秒汇总保留时长（小时）
+         */
+        private long secondRetentionHours = 24;
+
+        /**
+         * 1分钟汇总保留时长（小时）
+         */
+        private long minuteRetentionHours = 2160;
+
+        /**
+         * 1小时汇总保留时长（小时）
+         */
+        private long hourRetentionHours = 0;
+    }
+
+    @Data
+    public static class Export {
+        /**
+         * 同时进行的导出数量上限，超出时拒绝新的导出请求
+         */
+        private int maxConcurrent = 2;
+
+        /**
+         * 单个导出的默认写出速率上限（字节/秒），0表示不限速
+         */
+        private long bytesPerSecond = 16L * 1024 * 1024;
+
+        /**
+         * 写出块大小（字节），每写满一块检查一次限速和取消
+         */
+        private int chunkBytes = 65536;
+    }
+
+    /**
+     * 异步批量写入的公共配置，见 AbstractBatchSink
+     */
+    public interface BatchSinkConfig {
+
+        int getBufferCapacity();
+
+        int getBatchSize();
+
+        long getFlushIntervalMs();
+
+        int getMaxAttempts();
+
+        long getRetryBackoffMs();
+
+        long getMaxRetryBackoffMs();
+    }
+
+    @Data
+    public static class Jdbc implements BatchSinkConfig {
+        /**
+         * 是否把读数写入数据源的 sensor_reading 表
+         */
+        private boolean enabled = false;
+
+        /**
+         * 待写入读数的缓冲容量（行），写满后新读数被丢弃并计数，入站线程不等待数据库
+         */
+        private int bufferCapacity = 200000;
+
+        /**
+         * 每次刷写的最大行数，缓冲中积累到该行数时立即刷写
+         */
+        private int batchSize = 5000;
+
+        /**
+         * 单条多行INSERT语句的行数
+         */
+        private int insertRows = 1000;
+
+        /**
+         * 未积累满一批时的最长等待时间（毫秒）
+         */
+        private long flushIntervalMs = 500;
+
+        /**
+         * 单条语句的最多尝试次数，用尽后写入死信日志
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * 首次重试前的等待时间（毫秒），之后每次翻倍
+         */
+        private long retryBackoffMs = 200;
+
+        /**
+         * 重试等待时间上限（毫秒）
+         */
+        private long maxRetryBackoffMs = 5000;
+    }
+
+    @Data
+    public static class JdbcLoad {
+        /**
+         * 是否把读数写入本地CSV段文件并用 LOAD DATA LOCAL INFILE 装载到按天分区表，与jdbc二选一
+         */
+        private boolean enabled = false;
+
+        /**
+         * 目标表，建表语句见 sql/sensor_reading_daily.sql
+         */
+        private String table = "sensor_reading_daily";
+
+        /**
+         * 段文件目录，装载连接只允许读取该目录下的文件
+         */
+        private String spoolDirectory = "data/jdbc-spool";
+
+        /**
+         * 待写入段文件的缓冲容量（行），写满后新读数被丢弃并计数
+         */
+        private int bufferCapacity = 200000;
+
+        /**
+         * 段文件行数达到该值时封存并交给装载线程
+         */
+        private int segmentRows = 500000;
+
+        /**
+         * 段文件自第一行起最长等待时间（毫秒），到期即使行数不足也封存
+         */
+        private long segmentMaxAgeMs = 5000;
+
+        /**
+         * 未装载段文件的总大小上限（字节），数据库不可用时超出后丢弃新读数
+         */
+        private long maxSpoolBytes = 1024L * 1024 * 1024;
+
+        /**
+         * 分区保留天数，更早的分区被删除，早于该范围的读数不写入，0表示永久保留
+         */
+        private int retentionDays = 30;
+
+        /**
+         * 提前创建的未来分区天数，晚于该范围的读数（设备时钟错误）不写入
+         */
+        private int aheadDays = 2;
+
+        /**
+         * 分区维护（创建未来分区、删除过期分区）间隔（秒）
+         */
+        private long maintenanceIntervalSeconds = 3600;
+
+        /**
+         * 单个段文件装载失败（连接错误除外）的最多尝试次数，用尽后移入段文件目录下的 quarantine 子目录
+         */
+        private int maxLoadAttempts = 5;
+    }
+
+    @Data
+    public static class RedisStream implements BatchSinkConfig {
+        /**
+         * 是否把读数追加到每台塔吊的Redis Stream
+         */
+        private boolean enabled = false;
+
+        /**
+         * 每台塔吊Stream保留的大致条数（XADD MAXLEN ~），应覆盖查询窗口内的上报量
+         */
+        private long maxLen = 10000;
+
+        /**
+         * 最近读数查询的最长窗口（分钟），塔吊停止上报后Stream在两个窗口后过期
+         */
+        private int windowMinutes = 5;
+
+        /**
+         * 待追加读数的缓冲容量（条），写满后新读数被丢弃并计数
+         */
+        private int bufferCapacity = 100000;
+
+        /**
+         * 每个管道批次的最大条数，一个批次只占一次网络往返
+         */
+        private int batchSize = 2000;
+
+        /**
+         * 未积累满一批时的最长等待时间（毫秒）
+         */
+        private long flushIntervalMs = 50;
+
+        /**
+         * 单个管道批次的最多尝试次数，用尽后丢弃并计数
+         */
+        private int maxAttempts = 3;
+
+        /**
+         * 首次重试前的等待时间（毫秒），之后每次翻倍
+         */
+        private long retryBackoffMs = 100;
+
+        /**
+         * 重试等待时间上限（毫秒）
+         */
+        private long maxRetryBackoffMs = 2000;
+    }
+
+    @Data
+    public static class EmbeddedBroker {
+        /**
+         * 是否在进程内启动MQTT Broker
+         */
+        private boolean enabled = false;
+
+        /**
+         * 监听地址
+         */
+        private String host = "127.0.0.1";
+
+        /**
+         * 监听端口
+         */
+        private int port = 1883;
+
+        /**
+         * 单条消息的最大字节数（批量上报需要调大）
+         */
+        private int maxMessageBytes = 1024 * 1024;
+
+        /**
+         * 每个会话事件循环的命令队列长度，队列满时Broker丢弃消息
+         */
+        private int sessionQueueSize = 65536;
+    }
+
+    @Data
+    public static class Simulator {
+        /**
+         * 应用启动后是否自动开始模拟
+         */
+        private boolean autoStart = false;
+
+        /**
+         * 模拟的塔吊数量
+         */
+        private int craneCount = 20;
+
+        /**
+         * 每台塔吊每类传感器的上报频率（条/秒）
+         */
+        private int messagesPerSecond = 10;
+
+        /**
+         * 模拟时长（秒），小于等于0表示一直运行直到手动停止
+         */
+        private int durationSeconds = 60;
+
+        /**
+         * 塔吊ID前缀，模拟塔吊ID为 前缀+序号
+         */
+        private String craneIdPrefix = "sim-";
+
+        /**
+         * 发布消息质量
+         */
+        private int qos = 0;
+
+        /**
+         * 是否使用二进制帧上报
+         */
+        private boolean binary = false;
+    }
 }
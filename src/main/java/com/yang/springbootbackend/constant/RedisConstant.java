@@ -58,4 +58,9 @@ public interface RedisConstant {
     String IMAGE_CODE_ATTEMPTS_PREFIX = "image:code:attempts:";
     String IMAGE_CODE_COOLDOWN_PREFIX = "image:code:cooldown:";
 
+    /**
+     * 每台塔吊最近读数的Redis Stream前缀
+     */
+    String CRANE_STREAM_PREFIX = "crane:stream:";
+
 }
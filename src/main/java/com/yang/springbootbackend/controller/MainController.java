@@ -2,11 +2,34 @@ package com.yang.springbootbackend.controller;
 
 import com.yang.springbootbackend.common.BaseResponse;
 import com.yang.springbootbackend.common.ResultUtils;
-import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
-import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.RecentReadingVO;
+import com.yang.springbootbackend.exception.ErrorCode;
+import com.yang.springbootbackend.exception.ThrowUtils;
+import com.yang.springbootbackend.service.mqtt.persist.RedisStreamBuffer;
+import com.yang.springbootbackend.service.mqtt.state.LatestSnapshot;
+import com.yang.springbootbackend.service.mqtt.state.LatestValueStore;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupTier;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryHistoryService;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * 主控制器
@@ -16,39 +39,169 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/sensor")
 public class MainController {
 
-    // 存储最新的传感器数据和角度数据
-    private static SensorDataDTO latestSensorData = new SensorDataDTO();
-    private static AngleDataDTO latestAngleData = new AngleDataDTO();
-    
+    private static final int MAX_HISTORY_POINTS = 100000;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    private TelemetryHistoryService telemetryHistoryService;
+
+    @Autowired
+    private RedisStreamBuffer redisStreamBuffer;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private LatestValueStore latestValueStore;
+
     /**
      * 获取最新的气体传感器数据
+     * 响应带ETag（版本号），If-None-Match命中时返回304；带 sinceVersion 时等待到有更新的版本或超时（304）
+     *
+     * @param crane        塔吊ID，为空时返回所有塔吊中最近更新的一条
+     * @param sinceVersion 客户端已有的版本号（响应头X-Version）
      */
     @GetMapping("/gas")
-    public BaseResponse<SensorDataDTO> getLatestGasData() {
-        return ResultUtils.success(latestSensorData);
+    public Object getLatestGasData(@RequestParam(required = false) String crane,
+                                   @RequestParam(required = false) Long sinceVersion,
+                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return latest(LatestValueStore.Channel.GAS, crane, sinceVersion, ifNoneMatch);
     }
-    
+
     /**
-     * 获取最新的角度数据
+     * 获取最新的角度数据，ETag和长轮询同 /gas
+     *
+     * @param crane        塔吊ID，为空时返回所有塔吊中最近更新的一条
+     * @param sinceVersion 客户端已有的版本号（响应头X-Version）
      */
     @GetMapping("/angle")
-    public BaseResponse<AngleDataDTO> getLatestAngleData() {
-        return ResultUtils.success(latestAngleData);
+    public Object getLatestAngleData(@RequestParam(required = false) String crane,
+                                     @RequestParam(required = false) Long sinceVersion,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return latest(LatestValueStore.Channel.ANGLE, crane, sinceVersion, ifNoneMatch);
     }
-    
+
     /**
-     * 内部方法：更新最新的气体传感器数据
-     * 用于MQTT消息处理器更新数据
+     * 从Redis Stream读取塔吊最近若干分钟的读数，不经过时序存储
+     *
+     * @param crane   塔吊ID
+     * @param minutes 分钟数，不超过配置的窗口
+     * @param limit   最多返回条数
      */
-    public static void updateSensorData(SensorDataDTO sensorData) {
-        latestSensorData = sensorData;
+    @GetMapping("/recent")
+    public BaseResponse<List<RecentReadingVO>> getRecent(@RequestParam String crane,
+                                                        @RequestParam(defaultValue = "5") int minutes,
+                                                        @RequestParam(defaultValue = "1000") int limit) {
+        MqttProperties.RedisStream config = mqttProperties.getRedisStream();
+        ThrowUtils.throwIf(!redisStreamBuffer.isEnabled(), ErrorCode.OPERATION_ERROR, "最近读数缓冲未启用");
+        ThrowUtils.throwIf(minutes <= 0 || minutes > config.getWindowMinutes(), ErrorCode.PARAMS_ERROR,
+                "分钟数需在1到" + config.getWindowMinutes() + "之间");
+        ThrowUtils.throwIf(limit <= 0 || limit > config.getMaxLen(), ErrorCode.PARAMS_ERROR,
+                "条数需在1到" + config.getMaxLen() + "之间");
+        return ResultUtils.success(redisStreamBuffer.recent(crane, minutes, limit));
     }
-    
+
+    /**
+     * 查询历史遥测数据
+     * 原始点数不超过 maxPoints 时返回原始数据，否则自动选择1秒/1分钟/1小时汇总，桶数仍超过上限时合并相邻的桶；
+     * 结果在请求线程上边扫描边同步写出，不受异步请求超时限制
+     *
+     * @param crane     塔吊ID
+     * @param metric    指标名（gas、rain、height、lux、wind、temperature、angle）
+     * @param from      起始时间（含，毫秒）
+     * @param to        结束时间（不含，毫秒），默认当前时间
+     * @param maxPoints 最多返回的点数或桶数
+     * @param format    ndjson 或 binary
+     */
+    @GetMapping("/history")
+    public void getHistory(@RequestParam String crane,
+                           @RequestParam String metric,
+                           @RequestParam long from,
+                           @RequestParam(required = false) Long to,
+                           @RequestParam(defaultValue = "1000") int maxPoints,
+                           @RequestParam(defaultValue = "ndjson") String format,
+                           HttpServletResponse response) throws IOException {
+        TelemetryMetric telemetryMetric = TelemetryMetric.fromKey(metric);
+        ThrowUtils.throwIf(telemetryMetric == null, ErrorCode.PARAMS_ERROR, "不支持的指标: " + metric);
+        ThrowUtils.throwIf(maxPoints <= 0 || maxPoints > MAX_HISTORY_POINTS, ErrorCode.PARAMS_ERROR,
+                "返回点数需在1到" + MAX_HISTORY_POINTS + "之间");
+        long toTs = to != null ? to : System.currentTimeMillis();
+        ThrowUtils.throwIf(from >= toTs, ErrorCode.PARAMS_ERROR, "起始时间需早于结束时间");
+        boolean binary = "binary".equalsIgnoreCase(format);
+        ThrowUtils.throwIf(!binary && !"ndjson".equalsIgnoreCase(format), ErrorCode.PARAMS_ERROR,
+                "不支持的格式: " + format);
+
+        RollupTier tier = telemetryHistoryService.chooseTier(crane, telemetryMetric, from, toTs, maxPoints);
+        TelemetryHistoryService.Format outputFormat = binary
+                ? TelemetryHistoryService.Format.BINARY : TelemetryHistoryService.Format.NDJSON;
+        response.setContentType(binary ? MediaType.APPLICATION_OCTET_STREAM_VALUE : NDJSON.toString());
+        response.setHeader("X-Resolution", tier == null ? "raw" : tier.getKey());
+        if (tier != null) {
+            response.setHeader("X-Bucket-Ms",
+                    String.valueOf(telemetryHistoryService.bucketMs(tier, from, toTs, maxPoints)));
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        OutputStream out = new BufferedOutputStream(response.getOutputStream(), 8192);
+        telemetryHistoryService.write(crane, telemetryMetric, from, toTs, maxPoints, tier, outputFormat, out);
+        out.flush();
+    }
+
+    /**
+     * 返回最新值快照：有新版本时直接写出预先序列化的字节，否则返回304或挂起等待
+     * 立即返回时不启动异步处理，只有需要等待的长轮询才返回DeferredResult
+     */
+    private Object latest(LatestValueStore.Channel channel, String crane, Long sinceVersion, String ifNoneMatch) {
+        String craneId = crane == null || crane.isEmpty() ? null : crane;
+        LatestSnapshot snapshot = latestValueStore.get(channel, craneId);
+        if (sinceVersion != null ? snapshot.getVersion() > sinceVersion : !etagMatches(ifNoneMatch, snapshot.getEtag())) {
+            return snapshotResponse(snapshot);
+        }
+        if (sinceVersion == null) {
+            return notModified(snapshot);
+        }
+        DeferredResult<ResponseEntity<byte[]>> result =
+                new DeferredResult<>(mqttProperties.getLatest().getLongPollTimeoutMs());
+        Consumer<LatestSnapshot> waiter = updated -> result.setResult(snapshotResponse(updated));
+        result.onTimeout(() -> result.setResult(notModified(latestValueStore.get(channel, craneId))));
+        result.onCompletion(() -> latestValueStore.cancel(channel, craneId, waiter));
+        latestValueStore.await(channel, craneId, sinceVersion, waiter);
+        return result;
+    }
+
+    private static ResponseEntity<byte[]> snapshotResponse(LatestSnapshot snapshot) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(snapshot.getEtag())
+                .header("X-Version", String.valueOf(snapshot.getVersion()))
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .body(snapshot.getJson());
+    }
+
+    private static ResponseEntity<byte[]> notModified(LatestSnapshot snapshot) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(snapshot.getEtag())
+                .header("X-Version", String.valueOf(snapshot.getVersion()))
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .build();
+    }
+
     /**
-     * 内部方法：更新最新的角度数据
-     * 用于MQTT消息处理器更新数据
+     * If-None-Match 可能是 * 或逗号分隔的多个ETag，弱比较（忽略W/前缀）
      */
-    public static void updateAngleData(AngleDataDTO angleData) {
-        latestAngleData = angleData;
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || etag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,542 @@
+package com.yang.springbootbackend.controller;
+
+import com.yang.springbootbackend.common.BaseResponse;
+import com.yang.springbootbackend.common.ResultUtils;
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.CraneCommandRequest;
+import com.yang.springbootbackend.domain.mqtt.vo.AlertRuleSetVO;
+import com.yang.springbootbackend.domain.mqtt.vo.CommandStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.DeadLetterEntryVO;
+import com.yang.springbootbackend.domain.mqtt.vo.DeadLetterStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.CompactionStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.DedupStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.ExportTaskVO;
+import com.yang.springbootbackend.domain.mqtt.vo.IngestJournalStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.IngestLaneStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.RedisStreamStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.SensorLoaderStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.SensorWriterStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.RollupBucketVO;
+import com.yang.springbootbackend.domain.mqtt.vo.RollupStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.SimulatorReportVO;
+import com.yang.springbootbackend.domain.mqtt.vo.TelemetryPointVO;
+import com.yang.springbootbackend.domain.mqtt.vo.TimeSeriesStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.TopicTapVO;
+import com.yang.springbootbackend.exception.BusinessException;
+import com.yang.springbootbackend.exception.ErrorCode;
+import com.yang.springbootbackend.exception.ThrowUtils;
+import com.yang.springbootbackend.service.mqtt.command.CraneCommandPublisher;
+import com.yang.springbootbackend.service.mqtt.command.CraneCommandType;
+import com.yang.springbootbackend.service.mqtt.deadletter.DeadLetterService;
+import com.yang.springbootbackend.service.mqtt.ingest.IngestJournal;
+import com.yang.springbootbackend.service.mqtt.ingest.MqttIngestDispatcher;
+import com.yang.springbootbackend.service.mqtt.ingest.SequenceDeduplicator;
+import com.yang.springbootbackend.service.mqtt.persist.RedisStreamBuffer;
+import com.yang.springbootbackend.service.mqtt.persist.SensorReadingBulkLoader;
+import com.yang.springbootbackend.service.mqtt.persist.SensorReadingWriter;
+import com.yang.springbootbackend.service.mqtt.rule.AlertRuleEngine;
+import com.yang.springbootbackend.service.mqtt.simulator.CraneTelemetrySimulator;
+import com.yang.springbootbackend.service.mqtt.tap.TopicTapService;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupBucket;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupStore;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupTier;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryCompactor;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryExportService;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import com.yang.springbootbackend.service.mqtt.tsdb.TimeSeriesStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * MQTT管理控制器
+ * 提供入站处理的运行指标、下行指令、主题监听、时序存储与汇总、告警规则重载、死信查询与重放、遥测模拟压测等管理接口（需要登录）
+ */
+@RestController
+@RequestMapping("/mqtt")
+public class MqttController {
+
+    private static final int MAX_DEAD_LETTER_LIMIT = 1000;
+
+    private static final int MAX_TSDB_QUERY_LIMIT = 10000;
+
+    @Autowired
+    private MqttIngestDispatcher ingestDispatcher;
+
+    @Autowired
+    private SequenceDeduplicator sequenceDeduplicator;
+
+    @Autowired
+    private IngestJournal ingestJournal;
+
+    @Autowired
+    private DeadLetterService deadLetterService;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private CraneTelemetrySimulator telemetrySimulator;
+
+    @Autowired
+    private CraneCommandPublisher commandPublisher;
+
+    @Autowired
+    private TopicTapService topicTapService;
+
+    @Autowired
+    private TimeSeriesStore timeSeriesStore;
+
+    @Autowired
+    private RollupStore rollupStore;
+
+    @Autowired
+    private TelemetryCompactor telemetryCompactor;
+
+    @Autowired
+    private SensorReadingWriter sensorReadingWriter;
+
+    @Autowired
+    private SensorReadingBulkLoader sensorReadingBulkLoader;
+
+    @Autowired
+    private RedisStreamBuffer redisStreamBuffer;
+
+    @Autowired
+    private TelemetryExportService telemetryExportService;
+
+    @Autowired
+    private AlertRuleEngine alertRuleEngine;
+
+    /**
+     * 获取入站工作通道的队列深度、丢弃数量和延迟分位数等指标
+     */
+    @GetMapping("/ingest/stats")
+    public BaseResponse<List<IngestLaneStatsVO>> getIngestStats() {
+        return ResultUtils.success(ingestDispatcher.getLaneStats());
+    }
+
+    /**
+     * 清空各工作通道的延迟统计
+     */
+    @PostMapping("/ingest/stats/reset")
+    public BaseResponse<Boolean> resetIngestStats() {
+        ingestDispatcher.resetLatency();
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 获取入站预写日志的追加速率、刷盘耗时分位数、检查点和重放数量
+     */
+    @GetMapping("/journal/stats")
+    public BaseResponse<IngestJournalStatsVO> getJournalStats() {
+        return ResultUtils.success(ingestJournal.getStats());
+    }
+
+    /**
+     * 获取序号去重的丢弃数量等指标
+     */
+    @GetMapping("/dedup/stats")
+    public BaseResponse<DedupStatsVO> getDedupStats() {
+        return ResultUtils.success(sequenceDeduplicator.getStats());
+    }
+
+    /**
+     * 下发指令，未指定塔吊时广播到所有在线塔吊
+     *
+     * @param request 指令请求
+     * @return 成功提交的指令数
+     */
+    @PostMapping("/command")
+    public BaseResponse<Integer> sendCommand(@RequestBody CraneCommandRequest request) {
+        ThrowUtils.throwIf(request == null || request.getType() == null, ErrorCode.PARAMS_ERROR, "指令类型不能为空");
+        CraneCommandType type;
+        try {
+            type = CraneCommandType.valueOf(request.getType());
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的指令类型: " + request.getType());
+        }
+        if (type == CraneCommandType.SET_SAMPLING_RATE) {
+            Object rate = request.getParams() == null ? null : request.getParams().get("rate");
+            ThrowUtils.throwIf(!(rate instanceof Number) || ((Number) rate).doubleValue() <= 0,
+                    ErrorCode.PARAMS_ERROR, "采样频率必须为正数");
+        }
+        ThrowUtils.throwIf(!mqttProperties.getCommand().isEnabled(), ErrorCode.OPERATION_ERROR, "下行指令通道未启用");
+        int accepted = commandPublisher.broadcast(request.getCraneIds(), type, request.getParams());
+        return ResultUtils.success(accepted);
+    }
+
+    /**
+     * 获取下行指令的发送、回执、超时数量和往返延迟
+     */
+    @GetMapping("/command/stats")
+    public BaseResponse<CommandStatsVO> getCommandStats() {
+        return ResultUtils.success(commandPublisher.getStats());
+    }
+
+    /**
+     * 开启主题监听，命中的原始消息通过SSE推送（事件 tap 为会话信息，messages 为一批消息）
+     *
+     * @param pattern         主题过滤器，支持 + 和 # 通配符
+     * @param sampleRate      采样比例，(0, 1]
+     * @param durationSeconds 监听时长（秒）
+     */
+    @GetMapping("/tap")
+    public SseEmitter openTap(@RequestParam String pattern,
+                              @RequestParam(defaultValue = "1") double sampleRate,
+                              @RequestParam(defaultValue = "60") long durationSeconds) {
+        ThrowUtils.throwIf(!(sampleRate > 0 && sampleRate <= 1), ErrorCode.PARAMS_ERROR, "采样比例需在0到1之间");
+        long maxDuration = mqttProperties.getTap().getMaxDurationSeconds();
+        ThrowUtils.throwIf(durationSeconds <= 0 || durationSeconds > maxDuration, ErrorCode.PARAMS_ERROR,
+                "监听时长需在1到" + maxDuration + "秒之间");
+        try {
+            return topicTapService.open(pattern, sampleRate, durationSeconds);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * 列出当前的主题监听会话
+     */
+    @GetMapping("/tap/list")
+    public BaseResponse<List<TopicTapVO>> listTaps() {
+        return ResultUtils.success(topicTapService.listTaps());
+    }
+
+    /**
+     * 提前关闭主题监听会话
+     *
+     * @param id 会话编号
+     */
+    @PostMapping("/tap/close")
+    public BaseResponse<Boolean> closeTap(@RequestParam long id) {
+        return ResultUtils.success(topicTapService.close(id));
+    }
+
+    /**
+     * 获取时序存储的序列数、段文件、压缩率等指标
+     */
+    @GetMapping("/tsdb/stats")
+    public BaseResponse<TimeSeriesStatsVO> getTimeSeriesStats() {
+        return ResultUtils.success(timeSeriesStore.getStats());
+    }
+
+    /**
+     * 查询单个塔吊单个指标的原始数据点
+     *
+     * @param craneId 塔吊ID
+     * @param metric  指标名（gas、rain、height、lux、wind、temperature、angle）
+     * @param from    起始时间（含，毫秒）
+     * @param to      结束时间（不含，毫秒），默认当前时间
+     * @param limit   最多返回点数
+     */
+    @GetMapping("/tsdb/query")
+    public BaseResponse<List<TelemetryPointVO>> queryTimeSeries(@RequestParam String craneId,
+                                                                @RequestParam String metric,
+                                                                @RequestParam long from,
+                                                                @RequestParam(required = false) Long to,
+                                                                @RequestParam(defaultValue = "1000") int limit) {
+        TelemetryMetric telemetryMetric = TelemetryMetric.fromKey(metric);
+        ThrowUtils.throwIf(telemetryMetric == null, ErrorCode.PARAMS_ERROR, "不支持的指标: " + metric);
+        ThrowUtils.throwIf(limit <= 0 || limit > MAX_TSDB_QUERY_LIMIT, ErrorCode.PARAMS_ERROR,
+                "返回点数需在1到" + MAX_TSDB_QUERY_LIMIT + "之间");
+        long toTs = to != null ? to : System.currentTimeMillis();
+        ThrowUtils.throwIf(from >= toTs, ErrorCode.PARAMS_ERROR, "起始时间需早于结束时间");
+        List<TelemetryPointVO> points = new ArrayList<>();
+        timeSeriesStore.scan(craneId, telemetryMetric, from, toTs, (ts, value) -> {
+            points.add(new TelemetryPointVO(ts, value));
+            return points.size() < limit;
+        });
+        return ResultUtils.success(points);
+    }
+
+    /**
+     * 获取多粒度汇总的迟到读数、待落盘和已落盘桶数
+     */
+    @GetMapping("/rollup/stats")
+    public BaseResponse<RollupStatsVO> getRollupStats() {
+        return ResultUtils.success(rollupStore.getStats());
+    }
+
+    /**
+     * 查询单个塔吊单个指标的汇总桶
+     *
+     * @param craneId 塔吊ID
+     * @param metric  指标名
+     * @param tier    粒度（1s、1m、1h）
+     * @param from    起始时间（含，毫秒）
+     * @param to      结束时间（不含，毫秒），默认当前时间
+     */
+    @GetMapping("/rollup/query")
+    public BaseResponse<List<RollupBucketVO>> queryRollup(@RequestParam String craneId,
+                                                          @RequestParam String metric,
+                                                          @RequestParam(defaultValue = "1m") String tier,
+                                                          @RequestParam long from,
+                                                          @RequestParam(required = false) Long to) {
+        TelemetryMetric telemetryMetric = TelemetryMetric.fromKey(metric);
+        ThrowUtils.throwIf(telemetryMetric == null, ErrorCode.PARAMS_ERROR, "不支持的指标: " + metric);
+        RollupTier rollupTier = RollupTier.fromKey(tier);
+        ThrowUtils.throwIf(rollupTier == null, ErrorCode.PARAMS_ERROR, "不支持的粒度: " + tier);
+        long toTs = to != null ? to : System.currentTimeMillis();
+        ThrowUtils.throwIf(from >= toTs, ErrorCode.PARAMS_ERROR, "起始时间需早于结束时间");
+        ThrowUtils.throwIf((toTs - from) / rollupTier.getWidthMs() > MAX_TSDB_QUERY_LIMIT, ErrorCode.PARAMS_ERROR,
+                "时间范围过大，最多返回" + MAX_TSDB_QUERY_LIMIT + "个桶");
+        List<RollupBucketVO> result = new ArrayList<>();
+        for (RollupBucket bucket : rollupStore.query(craneId, telemetryMetric, rollupTier, from, toTs)) {
+            RollupBucketVO vo = new RollupBucketVO();
+            vo.setStart(bucket.getStart());
+            vo.setCount(bucket.getCount());
+            vo.setMin(bucket.getMin());
+            vo.setMax(bucket.getMax());
+            vo.setMean(bucket.getMean());
+            vo.setLast(bucket.getLast());
+            vo.setP50(bucket.quantile(0.5));
+            vo.setP90(bucket.quantile(0.9));
+            vo.setP99(bucket.quantile(0.99));
+            result.add(vo);
+        }
+        return ResultUtils.success(result);
+    }
+
+    /**
+     * 获取落盘数据压缩的进度、耗时和释放的字节数
+     */
+    @GetMapping("/compaction/stats")
+    public BaseResponse<CompactionStatsVO> getCompactionStats() {
+        return ResultUtils.success(telemetryCompactor.getStats());
+    }
+
+    /**
+     * 立即在后台执行一轮压缩
+     */
+    @PostMapping("/compaction/run")
+    public BaseResponse<Boolean> runCompaction() {
+        ThrowUtils.throwIf(!telemetryCompactor.trigger(), ErrorCode.OPERATION_ERROR, "压缩未启用或正在执行");
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 把原始数据导出为CSV（crane_id,metric,ts,value），边扫描边分块写出，不在内存中汇总结果
+     * 导出在请求线程上同步写出，不受异步请求超时限制；客户端断开或被取消后停止扫描
+     *
+     * @param crane  塔吊ID，多个用逗号分隔，为空时导出全部塔吊
+     * @param metric 指标，多个用逗号分隔，为空时导出全部指标
+     * @param from   起始时间（含，毫秒）
+     * @param to     结束时间（不含，毫秒），默认当前时间
+     * @param gzip   是否gzip压缩
+     * @param rate   写出速率上限（字节/秒），默认取配置，0表示不限速
+     */
+    @GetMapping("/export")
+    public void export(@RequestParam(required = false) String crane,
+                       @RequestParam(required = false) String metric,
+                       @RequestParam long from,
+                       @RequestParam(required = false) Long to,
+                       @RequestParam(defaultValue = "false") boolean gzip,
+                       @RequestParam(required = false) Long rate,
+                       HttpServletResponse response) throws IOException {
+        List<TelemetryMetric> metrics = new ArrayList<>();
+        if (metric == null || metric.trim().isEmpty()) {
+            metrics.addAll(Arrays.asList(TelemetryMetric.values()));
+        } else {
+            for (String key : metric.split(",")) {
+                TelemetryMetric telemetryMetric = TelemetryMetric.fromKey(key.trim());
+                ThrowUtils.throwIf(telemetryMetric == null, ErrorCode.PARAMS_ERROR, "不支持的指标: " + key);
+                metrics.add(telemetryMetric);
+            }
+        }
+        List<String> craneIds = new ArrayList<>();
+        if (crane != null) {
+            for (String craneId : crane.split(",")) {
+                if (!craneId.trim().isEmpty()) {
+                    craneIds.add(craneId.trim());
+                }
+            }
+        }
+        long toTs = to != null ? to : System.currentTimeMillis();
+        ThrowUtils.throwIf(from >= toTs, ErrorCode.PARAMS_ERROR, "起始时间需早于结束时间");
+        long bytesPerSecond = rate != null ? rate : mqttProperties.getExport().getBytesPerSecond();
+        ThrowUtils.throwIf(bytesPerSecond < 0, ErrorCode.PARAMS_ERROR, "写出速率不能为负数");
+
+        TelemetryExportService.Task task = telemetryExportService.open(craneIds, metrics, from, toTs, bytesPerSecond);
+        ThrowUtils.throwIf(task == null, ErrorCode.OPERATION_ERROR, "同时进行的导出数量已达上限");
+        String fileName = "telemetry-" + from + "-" + toTs + (gzip ? ".csv.gz" : ".csv");
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        response.setHeader("X-Export-Id", String.valueOf(task.getId()));
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192);
+            telemetryExportService.write(task, gzipOut);
+            gzipOut.finish();
+        } else {
+            telemetryExportService.write(task, out);
+        }
+    }
+
+    /**
+     * 获取进行中的导出任务及其进度和限速等待时长
+     */
+    @GetMapping("/export/list")
+    public BaseResponse<List<ExportTaskVO>> listExports() {
+        return ResultUtils.success(telemetryExportService.listTasks());
+    }
+
+    /**
+     * 取消进行中的导出，已写出的数据保留，响应在下一块数据前结束
+     */
+    @PostMapping("/export/cancel")
+    public BaseResponse<Boolean> cancelExport(@RequestParam long id) {
+        return ResultUtils.success(telemetryExportService.cancel(id));
+    }
+
+    /**
+     * 获取读数批量写库的缓冲深度、写入/丢弃行数、批大小和刷写耗时
+     */
+    @GetMapping("/jdbc/stats")
+    public BaseResponse<SensorWriterStatsVO> getSensorWriterStats() {
+        return ResultUtils.success(sensorReadingWriter.getStats());
+    }
+
+    /**
+     * 获取读数批量装载的缓冲深度、段文件积压、装载行数和耗时、分区数
+     */
+    @GetMapping("/jdbc-load/stats")
+    public BaseResponse<SensorLoaderStatsVO> getSensorLoaderStats() {
+        return ResultUtils.success(sensorReadingBulkLoader.getStats());
+    }
+
+    /**
+     * 获取最近读数Redis Stream的缓冲深度、追加/丢弃条数、管道批大小和往返耗时
+     */
+    @GetMapping("/redis-stream/stats")
+    public BaseResponse<RedisStreamStatsVO> getRedisStreamStats() {
+        return ResultUtils.success(redisStreamBuffer.getStats());
+    }
+
+    /**
+     * 获取当前告警规则集的版本、来源、最近一次重载错误和各规则的触发次数
+     *
+     * @param craneId 塔吊ID，指定时只返回该塔吊生效的规则
+     */
+    @GetMapping("/rules")
+    public BaseResponse<AlertRuleSetVO> getAlertRules(@RequestParam(required = false) String craneId) {
+        return ResultUtils.success(alertRuleEngine.getStats(craneId));
+    }
+
+    /**
+     * 立即重新加载告警规则，编译成功后整体替换当前规则集，失败时保留原规则
+     */
+    @PostMapping("/rules/reload")
+    public BaseResponse<AlertRuleSetVO> reloadAlertRules() {
+        try {
+            alertRuleEngine.reload();
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, e.getMessage());
+        }
+        return ResultUtils.success(alertRuleEngine.getStats(null));
+    }
+
+    /**
+     * 查询死信条目
+     *
+     * @param fromId 起始编号（含）
+     * @param limit  最多返回条数
+     */
+    @GetMapping("/dead-letter")
+    public BaseResponse<List<DeadLetterEntryVO>> listDeadLetters(@RequestParam(defaultValue = "0") long fromId,
+                                                                 @RequestParam(defaultValue = "50") int limit) {
+        ThrowUtils.throwIf(fromId < 0, ErrorCode.PARAMS_ERROR, "起始编号不能为负数");
+        ThrowUtils.throwIf(limit <= 0 || limit > MAX_DEAD_LETTER_LIMIT, ErrorCode.PARAMS_ERROR,
+                "条数需在1到" + MAX_DEAD_LETTER_LIMIT + "之间");
+        return ResultUtils.success(deadLetterService.listEntries(fromId, limit));
+    }
+
+    /**
+     * 获取死信日志的失败类别计数、磁盘占用和重放进度
+     */
+    @GetMapping("/dead-letter/stats")
+    public BaseResponse<DeadLetterStatsVO> getDeadLetterStats() {
+        return ResultUtils.success(deadLetterService.getStats());
+    }
+
+    /**
+     * 按指定速率重放死信消息
+     *
+     * @param fromId 起始编号（含）
+     * @param limit  最多重放条数
+     * @param rate   重放速率（条/秒），为空时使用配置的默认速率
+     */
+    @PostMapping("/dead-letter/replay")
+    public BaseResponse<Boolean> replayDeadLetters(@RequestParam(defaultValue = "0") long fromId,
+                                                   @RequestParam(defaultValue = "1000") int limit,
+                                                   @RequestParam(required = false) Integer rate) {
+        int ratePerSecond = rate != null ? rate : mqttProperties.getDeadLetter().getReplayRate();
+        ThrowUtils.throwIf(fromId < 0 || limit <= 0, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(ratePerSecond <= 0 || ratePerSecond > 10000, ErrorCode.PARAMS_ERROR,
+                "重放速率需在1到10000之间");
+        boolean started = deadLetterService.startReplay(fromId, limit, ratePerSecond);
+        ThrowUtils.throwIf(!started, ErrorCode.OPERATION_ERROR, "已有重放任务正在运行");
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 启动遥测模拟压测，参数为空时使用配置值
+     *
+     * @param cranes   塔吊数量
+     * @param rate     每台塔吊每类传感器的上报频率（条/秒）
+     * @param duration 模拟时长（秒），0表示一直运行直到手动停止
+     */
+    @PostMapping("/simulator/start")
+    public BaseResponse<Boolean> startSimulator(@RequestParam(required = false) Integer cranes,
+                                                @RequestParam(required = false) Integer rate,
+                                                @RequestParam(required = false) Integer duration) {
+        MqttProperties.Simulator config = mqttProperties.getSimulator();
+        int craneCount = cranes != null ? cranes : config.getCraneCount();
+        int messagesPerSecond = rate != null ? rate : config.getMessagesPerSecond();
+        int durationSeconds = duration != null ? duration : config.getDurationSeconds();
+        ThrowUtils.throwIf(craneCount <= 0 || craneCount > 10000, ErrorCode.PARAMS_ERROR, "塔吊数量需在1到10000之间");
+        ThrowUtils.throwIf(messagesPerSecond <= 0 || messagesPerSecond > 1000, ErrorCode.PARAMS_ERROR,
+                "上报频率需在1到1000之间");
+        ThrowUtils.throwIf(durationSeconds < 0, ErrorCode.PARAMS_ERROR, "模拟时长不能为负数");
+        boolean started = telemetrySimulator.start(craneCount, messagesPerSecond, durationSeconds);
+        ThrowUtils.throwIf(!started, ErrorCode.OPERATION_ERROR, "已有模拟正在运行");
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 停止遥测模拟
+     */
+    @PostMapping("/simulator/stop")
+    public BaseResponse<Boolean> stopSimulator() {
+        telemetrySimulator.stop();
+        return ResultUtils.success(true);
+    }
+
+    /**
+     * 获取遥测模拟的吞吐和端到端延迟报告
+     */
+    @GetMapping("/simulator/report")
+    public BaseResponse<SimulatorReportVO> getSimulatorReport() {
+        return ResultUtils.success(telemetrySimulator.getReport());
+    }
+}
@@ -6,9 +6,34 @@ import lombok.Data;
  * 角度传感器数据DTO
  */
 @Data
-public class AngleDataDTO {
+public class AngleDataDTO implements TelemetryReading {
     /**
      * 旋转角度
      */
     private Double angle;
+
+    /**
+     * 塔吊ID，单条消息取主题中的塔吊ID，网关批量上报时可按条指定
+     */
+    private String craneId;
+
+    /**
+     * 设备采集时间戳（毫秒），旧固件不上报时为空
+     */
+    private Long ts;
+
+    /**
+     * 设备消息序号，旧固件不上报时为空
+     */
+    private Long seq;
+
+    /**
+     * 回转速度（度/秒），由后端按时间间隔计算，正值为角度增大方向
+     */
+    private Double rotationSpeed;
+
+    /**
+     * 回转角加速度（度/秒²），由后端按时间间隔计算
+     */
+    private Double angularAcceleration;
 } 
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.yang.springbootbackend.domain.mqtt.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 下行指令请求
+ */
+@Data
+public class CraneCommandRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 目标塔吊ID，为空时广播到所有在线塔吊
+     */
+    private List<String> craneIds;
+
+    /**
+     * 指令类型：SLOW_DOWN / STOP / RESUME / SET_SAMPLING_RATE
+     */
+    private String type;
+
+    /**
+     * 指令参数
+     */
+    private Map<String, Object> params;
+}
@@ -7,7 +7,7 @@ import lombok.Data;
  * 气体传感器数据DTO
  */
 @Data
-public class SensorDataDTO {
+public class SensorDataDTO implements TelemetryReading {
     /**
      * 气体浓度百分比
      */
@@ -51,4 +51,19 @@ public class SensorDataDTO {
      * 温度
      */
     private Double temperature;
+
+    /**
+     * 塔吊ID，单条消息取主题中的塔吊ID，网关批量上报时可按条指定
+     */
+    private String craneId;
+
+    /**
+     * 设备采集时间戳（毫秒），旧固件不上报时为空
+     */
+    private Long ts;
+
+    /**
+     * 设备消息序号，旧固件不上报时为空
+     */
+    private Long seq;
 } 
\ No newline at end of file
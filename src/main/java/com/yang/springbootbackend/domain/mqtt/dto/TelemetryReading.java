@@ -0,0 +1,43 @@
+package com.yang.springbootbackend.domain.mqtt.dto;
+
+/**
+ * 遥测读数公共接口
+ * 批量消息中每条读数都需要归属到具体塔吊，并可携带设备时间戳和序号
+ */
+public interface TelemetryReading {
+
+    /**
+     * 获取塔吊ID
+     *
+     * @return 塔吊ID，批量消息未指定时由主题中的塔吊ID补全
+     */
+    String getCraneId();
+
+    /**
+     * 设置塔吊ID
+     *
+     * @param craneId 塔吊ID
+     */
+    void setCraneId(String craneId);
+
+    /**
+     * 获取设备采集时间戳（毫秒）
+     *
+     * @return 时间戳，旧固件不上报时为空，经处理器基类补全后不再为空
+     */
+    Long getTs();
+
+    /**
+     * 设置设备采集时间戳（毫秒）
+     *
+     * @param ts 时间戳
+     */
+    void setTs(Long ts);
+
+    /**
+     * 获取设备消息序号
+     *
+     * @return 序号，旧固件不上报时为空
+     */
+    Long getSeq();
+}
@@ -0,0 +1,50 @@
+package com.yang.springbootbackend.domain.mqtt.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+/**
+ * 告警规则
+ * @TableName alert_rule
+ */
+@TableName(value = "alert_rule")
+@Data
+public class AlertRule {
+    /**
+     * 自增主键
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 规则名，同名规则按 塔吊 > 类别 > 全部 的优先级覆盖
+     */
+    private String name;
+
+    /**
+     * 条件表达式
+     */
+    private String expression;
+
+    /**
+     * 告警内容
+     */
+    private String message;
+
+    /**
+     * 生效的塔吊ID，逗号分隔，为空时按类别或对全部塔吊生效
+     */
+    private String cranes;
+
+    /**
+     * 生效的塔吊类别
+     */
+    private String craneClass;
+
+    /**
+     * 是否启用（0-停用，1-启用）
+     */
+    private Integer enabled;
+}
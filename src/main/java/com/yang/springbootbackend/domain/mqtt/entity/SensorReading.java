@@ -0,0 +1,44 @@
+package com.yang.springbootbackend.domain.mqtt.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 传感器读数，每个指标一行
+ * @TableName sensor_reading
+ */
+@TableName(value = "sensor_reading")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorReading {
+    /**
+     * 自增主键
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 塔吊ID
+     */
+    private String craneId;
+
+    /**
+     * 指标名（gas、rain、height、lux、wind、temperature、angle）
+     */
+    private String metric;
+
+    /**
+     * 设备时间戳（毫秒）
+     */
+    private Long ts;
+
+    /**
+     * 指标值
+     */
+    private Double metricValue;
+}
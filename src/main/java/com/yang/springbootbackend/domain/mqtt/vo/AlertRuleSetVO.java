@@ -0,0 +1,52 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 告警规则集状态
+ */
+@Data
+public class AlertRuleSetVO {
+
+    /**
+     * 当前规则的来源（config、file、database）
+     */
+    private String source;
+
+    /**
+     * 规则集版本，每次重载递增
+     */
+    private long version;
+
+    /**
+     * 当前规则集的编译时间（毫秒）
+     */
+    private long loadedAt;
+
+    /**
+     * 规则数（含仅对部分塔吊生效的规则）
+     */
+    private int ruleCount;
+
+    /**
+     * 单独设置了生效规则的塔吊数
+     */
+    private int overriddenCraneCount;
+
+    /**
+     * 最近一次重载失败的原因，重载成功后清空
+     */
+    private String lastError;
+
+    /**
+     * 最近一次重载失败的时间（毫秒）
+     */
+    private long lastErrorAt;
+
+    /**
+     * 规则列表
+     */
+    private List<AlertRuleVO> rules;
+}
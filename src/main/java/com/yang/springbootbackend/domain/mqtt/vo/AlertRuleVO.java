@@ -0,0 +1,45 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 告警规则
+ */
+@Data
+public class AlertRuleVO {
+
+    /**
+     * 规则名
+     */
+    private String name;
+
+    /**
+     * 条件表达式
+     */
+    private String expression;
+
+    /**
+     * 告警内容
+     */
+    private String message;
+
+    /**
+     * 生效范围：all、class:类别名 或 crane:塔吊ID列表
+     */
+    private String scope;
+
+    /**
+     * 求值时机（SENSOR、ANGLE、MOTION）
+     */
+    private String channel;
+
+    /**
+     * 是否能拆成字段阈值，按阈值索引批量判断
+     */
+    private boolean indexed;
+
+    /**
+     * 自加载以来条件成立的次数
+     */
+    private long firedCount;
+}
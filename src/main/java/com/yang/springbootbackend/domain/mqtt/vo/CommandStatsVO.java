@@ -0,0 +1,75 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 下行指令运行指标
+ */
+@Data
+public class CommandStatsVO {
+
+    /**
+     * 发布客户端是否已连接
+     */
+    private boolean connected;
+
+    /**
+     * 待发送指令数
+     */
+    private int queuedCount;
+
+    /**
+     * 已发出、等待回执的指令数
+     */
+    private int awaitingAckCount;
+
+    /**
+     * 已提交指令数
+     */
+    private long submittedCount;
+
+    /**
+     * 发出前被同组新指令取代的指令数
+     */
+    private long supersededCount;
+
+    /**
+     * 队列已满被拒绝的指令数
+     */
+    private long rejectedCount;
+
+    /**
+     * 已发出指令数
+     */
+    private long publishedCount;
+
+    /**
+     * 发布失败指令数
+     */
+    private long failedCount;
+
+    /**
+     * 收到回执的指令数
+     */
+    private long ackedCount;
+
+    /**
+     * 回执超时的指令数
+     */
+    private long timeoutCount;
+
+    /**
+     * 发布到收到回执的往返延迟P50（微秒）
+     */
+    private long rttP50Micros;
+
+    /**
+     * 往返延迟P99（微秒）
+     */
+    private long rttP99Micros;
+
+    /**
+     * 最大往返延迟（微秒）
+     */
+    private long rttMaxMicros;
+}
@@ -0,0 +1,90 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 落盘数据保留与压缩运行指标
+ */
+@Data
+public class CompactionStatsVO {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled;
+
+    /**
+     * 是否正在压缩
+     */
+    private boolean running;
+
+    /**
+     * 当前（或上一次）压缩的进度百分比
+     */
+    private double progressPercent;
+
+    /**
+     * 已完成的压缩轮数
+     */
+    private long runCount;
+
+    /**
+     * 失败的压缩轮数
+     */
+    private long failureCount;
+
+    /**
+     * 上一次压缩开始时间（毫秒）
+     */
+    private long lastRunStartMillis;
+
+    /**
+     * 上一次压缩耗时（毫秒）
+     */
+    private long lastRunDurationMs;
+
+    /**
+     * 最长一次压缩耗时（毫秒）
+     */
+    private long maxRunDurationMs;
+
+    /**
+     * 改写合并的段数
+     */
+    private long segmentsCompacted;
+
+    /**
+     * 整段过期删除的段数
+     */
+    private long segmentsDropped;
+
+    /**
+     * 改写后写出的记录数
+     */
+    private long recordsWritten;
+
+    /**
+     * 累计读取字节数
+     */
+    private long bytesRead;
+
+    /**
+     * 累计写入字节数
+     */
+    private long bytesWritten;
+
+    /**
+     * 删除段文件释放的字节数
+     */
+    private long bytesReclaimed;
+
+    /**
+     * 因读写速率上限等待的累计时间（毫秒）
+     */
+    private long throttledMs;
+
+    /**
+     * 等待宽限期结束后删除的段数
+     */
+    private int retiredSegments;
+}
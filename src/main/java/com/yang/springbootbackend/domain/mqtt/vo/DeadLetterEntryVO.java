@@ -0,0 +1,50 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 死信日志条目视图
+ */
+@Data
+public class DeadLetterEntryVO {
+
+    /**
+     * 条目编号
+     */
+    private long id;
+
+    /**
+     * 失败时间（毫秒）
+     */
+    private long timestamp;
+
+    /**
+     * 消息主题
+     */
+    private String topic;
+
+    /**
+     * 失败类别
+     */
+    private String failureClass;
+
+    /**
+     * 错误信息
+     */
+    private String errorMessage;
+
+    /**
+     * 载荷字节数
+     */
+    private int payloadSize;
+
+    /**
+     * 载荷文本（二进制帧为空）
+     */
+    private String payloadText;
+
+    /**
+     * 载荷Base64编码
+     */
+    private String payloadBase64;
+}
@@ -0,0 +1,57 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 死信日志运行指标
+ */
+@Data
+public class DeadLetterStatsVO {
+
+    /**
+     * 各失败类别的累计次数（包括未能落盘的）
+     */
+    private Map<String, Long> failureCounts;
+
+    /**
+     * 已写入日志的条目数
+     */
+    private long writtenCount;
+
+    /**
+     * 因写入队列已满或磁盘错误未能落盘的条目数
+     */
+    private long droppedCount;
+
+    /**
+     * 下一个条目编号
+     */
+    private long nextId;
+
+    /**
+     * 日志分段数量
+     */
+    private int segmentCount;
+
+    /**
+     * 日志占用磁盘字节数
+     */
+    private long diskBytes;
+
+    /**
+     * 是否正在重放
+     */
+    private boolean replayRunning;
+
+    /**
+     * 最近一次重放已重放的条目数
+     */
+    private long replayedCount;
+
+    /**
+     * 最近一次重放的最后一个条目编号
+     */
+    private long lastReplayedId;
+}
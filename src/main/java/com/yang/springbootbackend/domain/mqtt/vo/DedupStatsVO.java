@@ -0,0 +1,40 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 序号去重运行指标
+ */
+@Data
+public class DedupStatsVO {
+
+    /**
+     * 是否开启去重
+     */
+    private boolean enabled;
+
+    /**
+     * 每个设备的去重窗口大小（序号个数）
+     */
+    private int windowSize;
+
+    /**
+     * 当前跟踪的设备数
+     */
+    private int trackedDevices;
+
+    /**
+     * 被丢弃的重复读数数量
+     */
+    private long duplicateCount;
+
+    /**
+     * 因序号回退（设备重启或回绕）重置窗口的次数
+     */
+    private long resetCount;
+
+    /**
+     * 因空闲超时或设备数达到上限被淘汰的设备数
+     */
+    private long evictedCount;
+}
@@ -0,0 +1,72 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 进行中的遥测数据导出任务
+ */
+@Data
+public class ExportTaskVO {
+
+    /**
+     * 任务ID，用于取消导出
+     */
+    private long id;
+
+    /**
+     * 导出的塔吊数量
+     */
+    private int craneCount;
+
+    /**
+     * 导出的指标
+     */
+    private List<String> metrics;
+
+    /**
+     * 起始时间（含，毫秒）
+     */
+    private long fromTs;
+
+    /**
+     * 结束时间（不含，毫秒）
+     */
+    private long toTs;
+
+    /**
+     * 开始时间（毫秒）
+     */
+    private long startMillis;
+
+    /**
+     * 已耗时（毫秒）
+     */
+    private long elapsedMs;
+
+    /**
+     * 已编码行数
+     */
+    private long rows;
+
+    /**
+     * 已写出字节数（压缩前）
+     */
+    private long bytes;
+
+    /**
+     * 写出速率上限（字节/秒），0表示不限速
+     */
+    private long bytesPerSecondLimit;
+
+    /**
+     * 因限速累计等待的时长（毫秒）
+     */
+    private long throttledMs;
+
+    /**
+     * 是否已请求取消
+     */
+    private boolean cancelled;
+}
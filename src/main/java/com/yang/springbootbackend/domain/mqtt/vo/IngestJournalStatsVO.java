@@ -0,0 +1,100 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 入站预写日志运行指标
+ */
+@Data
+public class IngestJournalStatsVO {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled;
+
+    /**
+     * 分段数量
+     */
+    private int segmentCount;
+
+    /**
+     * 分段中已写入的字节数
+     */
+    private long usedBytes;
+
+    /**
+     * 下一条消息的编号
+     */
+    private long nextSeq;
+
+    /**
+     * 已刷盘的编号上界（不含）
+     */
+    private long syncedSeq;
+
+    /**
+     * 已写入的检查点，重启时从该编号开始重放
+     */
+    private long checkpointSeq;
+
+    /**
+     * 第一条未处理完的消息编号，数据在下游持久化后才推进到检查点
+     */
+    private long completedSeq;
+
+    /**
+     * 启动时重放的消息数
+     */
+    private long replayedRecords;
+
+    /**
+     * 已追加的消息数
+     */
+    private long appendedRecords;
+
+    /**
+     * 已追加的字节数
+     */
+    private long appendedBytes;
+
+    /**
+     * 未能写入日志的消息数（分段创建失败或未处理完的消息过多）
+     */
+    private long appendFailures;
+
+    /**
+     * 最近一秒的追加速率（条/秒）
+     */
+    private double appendRecordsPerSecond;
+
+    /**
+     * 最近一秒的追加速率（字节/秒）
+     */
+    private double appendBytesPerSecond;
+
+    /**
+     * 刷盘次数
+     */
+    private long syncCount;
+
+    /**
+     * 平均每次刷盘提交的消息数
+     */
+    private double avgSyncRecords;
+
+    /**
+     * 刷盘耗时P50（微秒）
+     */
+    private long syncP50Micros;
+
+    /**
+     * 刷盘耗时P99（微秒）
+     */
+    private long syncP99Micros;
+
+    /**
+     * 刷盘最大耗时（微秒）
+     */
+    private long syncMaxMicros;
+}
@@ -0,0 +1,70 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 入站工作通道运行指标
+ */
+@Data
+public class IngestLaneStatsVO {
+
+    /**
+     * 调度层级（CRITICAL / STANDARD / BULK）
+     */
+    private String tier;
+
+    /**
+     * 通道编号（层级内）
+     */
+    private int laneIndex;
+
+    /**
+     * 当前队列深度
+     */
+    private int queueDepth;
+
+    /**
+     * 队列容量
+     */
+    private int queueCapacity;
+
+    /**
+     * 已处理消息数
+     */
+    private long processedCount;
+
+    /**
+     * 因队列已满转入死信日志的消息数
+     */
+    private long rejectedCount;
+
+    /**
+     * 过载时丢弃的消息数（仅批量层级）
+     */
+    private long shedCount;
+
+    /**
+     * 入队到处理完成超出延迟预算的消息数
+     */
+    private long overBudgetCount;
+
+    /**
+     * 延迟预算（微秒）
+     */
+    private long budgetMicros;
+
+    /**
+     * 入队到处理完成的延迟P50（微秒）
+     */
+    private long latencyP50Micros;
+
+    /**
+     * 入队到处理完成的延迟P99（微秒）
+     */
+    private long latencyP99Micros;
+
+    /**
+     * 最大延迟（微秒）
+     */
+    private long latencyMaxMicros;
+}
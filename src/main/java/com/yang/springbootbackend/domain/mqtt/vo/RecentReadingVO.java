@@ -0,0 +1,27 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Redis Stream中的一条最近读数
+ */
+@Data
+public class RecentReadingVO {
+
+    /**
+     * Stream条目ID（写入Redis时的毫秒时间-序号）
+     */
+    private String id;
+
+    /**
+     * 设备时间戳（毫秒）
+     */
+    private long ts;
+
+    /**
+     * 指标名到数值，指标为gas/rain/height/lux/wind/temperature/angle
+     */
+    private Map<String, Double> values;
+}
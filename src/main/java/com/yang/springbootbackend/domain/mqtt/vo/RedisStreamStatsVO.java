@@ -0,0 +1,75 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 最近读数Redis Stream热缓冲运行指标
+ */
+@Data
+public class RedisStreamStatsVO {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled;
+
+    /**
+     * 缓冲中待追加的条数
+     */
+    private int bufferedEntries;
+
+    /**
+     * 缓冲容量（条）
+     */
+    private int bufferCapacity;
+
+    /**
+     * 已追加条数
+     */
+    private long writtenEntries;
+
+    /**
+     * 缓冲已满被丢弃的条数
+     */
+    private long droppedEntries;
+
+    /**
+     * 追加失败的条数
+     */
+    private long failedEntries;
+
+    /**
+     * 管道失败后的重试次数
+     */
+    private long retryCount;
+
+    /**
+     * 管道批次数（即写入的网络往返次数）
+     */
+    private long pipelineCount;
+
+    /**
+     * 平均每个管道批次的条数
+     */
+    private double avgBatchEntries;
+
+    /**
+     * 单个管道批次最大条数
+     */
+    private long maxBatchEntries;
+
+    /**
+     * 管道批次耗时P50（微秒）
+     */
+    private long flushP50Micros;
+
+    /**
+     * 管道批次耗时P99（微秒）
+     */
+    private long flushP99Micros;
+
+    /**
+     * 管道批次最大耗时（微秒）
+     */
+    private long flushMaxMicros;
+}
@@ -0,0 +1,37 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 汇总桶
+ */
+@Data
+public class RollupBucketVO {
+
+    /**
+     * 桶起始时间（毫秒）
+     */
+    private long start;
+
+    /**
+     * 读数数量
+     */
+    private long count;
+
+    private double min;
+
+    private double max;
+
+    private double mean;
+
+    /**
+     * 桶内最后一个读数
+     */
+    private double last;
+
+    private double p50;
+
+    private double p90;
+
+    private double p99;
+}
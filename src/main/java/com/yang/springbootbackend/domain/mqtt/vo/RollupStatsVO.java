@@ -0,0 +1,37 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 遥测汇总运行指标
+ */
+@Data
+public class RollupStatsVO {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled;
+
+    /**
+     * 允许迟到时长（毫秒），与入站重排缓冲一致
+     */
+    private long latenessMs;
+
+    /**
+     * 汇总序列数（塔吊 × 指标）
+     */
+    private int seriesCount;
+
+    /**
+     * 已汇总的读数数
+     */
+    private long readingCount;
+
+    /**
+     * 各粒度指标
+     */
+    private List<RollupTierStatsVO> tiers;
+}
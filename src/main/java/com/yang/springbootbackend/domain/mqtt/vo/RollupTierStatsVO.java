@@ -0,0 +1,40 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 单个汇总粒度的运行指标
+ */
+@Data
+public class RollupTierStatsVO {
+
+    /**
+     * 粒度（1s、1m、1h）
+     */
+    private String tier;
+
+    /**
+     * 超出允许迟到时长、未能计入的读数数
+     */
+    private long lateCount;
+
+    /**
+     * 已关闭、尚未落盘的桶数
+     */
+    private long pendingBuckets;
+
+    /**
+     * 已落盘的桶数
+     */
+    private long persistedBuckets;
+
+    /**
+     * 段文件数
+     */
+    private int segmentCount;
+
+    /**
+     * 段文件已写入字节数
+     */
+    private long storedBytes;
+}
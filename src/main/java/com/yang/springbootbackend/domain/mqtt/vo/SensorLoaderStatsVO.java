@@ -0,0 +1,105 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 读数批量装载（CSV段文件 + LOAD DATA）运行指标
+ */
+@Data
+public class SensorLoaderStatsVO {
+
+    /**
+     * 是否已启用
+     */
+    private boolean enabled;
+
+    /**
+     * 缓冲中待写入段文件的行数
+     */
+    private int bufferedRows;
+
+    /**
+     * 缓冲容量（行）
+     */
+    private int bufferCapacity;
+
+    /**
+     * 已写入段文件的行数
+     */
+    private long spooledRows;
+
+    /**
+     * 缓冲已满或段文件超出磁盘上限而丢弃的行数
+     */
+    private long droppedRows;
+
+    /**
+     * 时间戳超出分区范围（早于保留期或晚于未来分区）而未写入的行数
+     */
+    private long outOfRangeRows;
+
+    /**
+     * 已封存待装载的段文件数
+     */
+    private int pendingSegments;
+
+    /**
+     * 未装载段文件的总字节数（含正在写入的段）
+     */
+    private long spoolBytes;
+
+    /**
+     * 已装载到数据库的行数
+     */
+    private long loadedRows;
+
+    /**
+     * 装载次数（每个段文件一次）
+     */
+    private long loadCount;
+
+    /**
+     * 装载失败次数，失败的段文件保留并重试
+     */
+    private long failedLoads;
+
+    /**
+     * 多次装载失败而移入隔离目录的段文件数
+     */
+    private long quarantinedSegments;
+
+    /**
+     * 单个段文件装载耗时P50（毫秒）
+     */
+    private long loadP50Millis;
+
+    /**
+     * 单个段文件装载耗时P99（毫秒）
+     */
+    private long loadP99Millis;
+
+    /**
+     * 单个段文件装载最大耗时（毫秒）
+     */
+    private long loadMaxMillis;
+
+    /**
+     * 最近一次装载的速率（行/秒）
+     */
+    private double lastRowsPerSecond;
+
+    /**
+     * 目标表当前分区数
+     */
+    private int partitionCount;
+
+    /**
+     * 已创建的分区数
+     */
+    private long addedPartitions;
+
+    /**
+     * 已删除的过期分区数
+     */
+    private long droppedPartitions;
+}
@@ -0,0 +1,80 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 读数批量写库运行指标
+ */
+@Data
+public class SensorWriterStatsVO {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled;
+
+    /**
+     * 缓冲中待写入的行数
+     */
+    private int bufferedRows;
+
+    /**
+     * 缓冲容量（行）
+     */
+    private int bufferCapacity;
+
+    /**
+     * 已写入行数
+     */
+    private long writtenRows;
+
+    /**
+     * 缓冲已满被丢弃的行数
+     */
+    private long droppedRows;
+
+    /**
+     * 重试用尽、转入死信日志的行数
+     */
+    private long failedRows;
+
+    /**
+     * 语句失败后的重试次数
+     */
+    private long retryCount;
+
+    /**
+     * 刷写次数
+     */
+    private long flushCount;
+
+    /**
+     * 平均每次刷写行数
+     */
+    private double avgBatchRows;
+
+    /**
+     * 单次刷写最大行数
+     */
+    private long maxBatchRows;
+
+    /**
+     * 刷写耗时P50（微秒）
+     */
+    private long flushP50Micros;
+
+    /**
+     * 刷写耗时P99（微秒）
+     */
+    private long flushP99Micros;
+
+    /**
+     * 刷写最大耗时（微秒）
+     */
+    private long flushMaxMicros;
+
+    /**
+     * 最近一次刷写的写入速率（行/秒）
+     */
+    private double lastRowsPerSecond;
+}
@@ -0,0 +1,90 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 遥测模拟器运行报告
+ */
+@Data
+public class SimulatorReportVO {
+
+    /**
+     * 是否正在运行
+     */
+    private boolean running;
+
+    /**
+     * 模拟的塔吊数量
+     */
+    private int craneCount;
+
+    /**
+     * 每台塔吊每类传感器的上报频率（条/秒）
+     */
+    private int messagesPerSecond;
+
+    /**
+     * 目标总发布速率（条/秒）
+     */
+    private double targetRate;
+
+    /**
+     * 运行时长（秒）
+     */
+    private double elapsedSeconds;
+
+    /**
+     * 已发布消息数
+     */
+    private long publishedCount;
+
+    /**
+     * 发布失败消息数
+     */
+    private long publishFailedCount;
+
+    /**
+     * 处理器已处理的模拟读数数
+     */
+    private long processedCount;
+
+    /**
+     * 实际发布速率（条/秒）
+     */
+    private double publishRate;
+
+    /**
+     * 端到端处理速率（条/秒）
+     */
+    private double processRate;
+
+    /**
+     * 发布到处理器完成的平均延迟（微秒）
+     */
+    private double latencyMeanMicros;
+
+    /**
+     * 延迟P50（微秒）
+     */
+    private long latencyP50Micros;
+
+    /**
+     * 延迟P90（微秒）
+     */
+    private long latencyP90Micros;
+
+    /**
+     * 延迟P99（微秒）
+     */
+    private long latencyP99Micros;
+
+    /**
+     * 延迟P99.9（微秒）
+     */
+    private long latencyP999Micros;
+
+    /**
+     * 最大延迟（微秒）
+     */
+    private long latencyMaxMicros;
+}
@@ -0,0 +1,35 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 主题监听推送的原始消息
+ */
+@Data
+public class TapEventVO {
+
+    /**
+     * 消息主题
+     */
+    private String topic;
+
+    /**
+     * 接收时间（毫秒）
+     */
+    private long timestamp;
+
+    /**
+     * 载荷字节数
+     */
+    private int payloadSize;
+
+    /**
+     * 载荷文本（二进制帧为空）
+     */
+    private String payloadText;
+
+    /**
+     * 载荷Base64编码（仅二进制帧）
+     */
+    private String payloadBase64;
+}
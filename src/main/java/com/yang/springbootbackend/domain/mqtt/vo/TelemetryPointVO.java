@@ -0,0 +1,24 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 遥测数据点
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelemetryPointVO {
+
+    /**
+     * 时间戳（毫秒）
+     */
+    private long ts;
+
+    /**
+     * 数值
+     */
+    private double value;
+}
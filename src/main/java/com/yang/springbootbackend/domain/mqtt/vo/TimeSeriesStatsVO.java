@@ -0,0 +1,65 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 时序存储运行指标
+ */
+@Data
+public class TimeSeriesStatsVO {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled;
+
+    /**
+     * 序列数（塔吊 × 指标）
+     */
+    private int seriesCount;
+
+    /**
+     * 段文件数
+     */
+    private int segmentCount;
+
+    /**
+     * 段文件已写入字节数
+     */
+    private long storedBytes;
+
+    /**
+     * 已封存的块数
+     */
+    private long sealedBlocks;
+
+    /**
+     * 已封存块中的点数
+     */
+    private long sealedPoints;
+
+    /**
+     * 内存中尚未写入段文件的点数（写入中的块和待落盘的块）
+     */
+    private long headPoints;
+
+    /**
+     * 已封存数据的平均每点字节数（含记录头）
+     */
+    private double bytesPerPoint;
+
+    /**
+     * 启动以来写入的点数
+     */
+    private long appendedCount;
+
+    /**
+     * 待落盘的块数
+     */
+    private int pendingBlocks;
+
+    /**
+     * 落盘队列已满时丢弃的点数
+     */
+    private long droppedCount;
+}
@@ -0,0 +1,45 @@
+package com.yang.springbootbackend.domain.mqtt.vo;
+
+import lombok.Data;
+
+/**
+ * 主题监听会话视图
+ */
+@Data
+public class TopicTapVO {
+
+    /**
+     * 会话编号
+     */
+    private long id;
+
+    /**
+     * 主题过滤器
+     */
+    private String pattern;
+
+    /**
+     * 采样比例（0到1）
+     */
+    private double sampleRate;
+
+    /**
+     * 到期时间（毫秒）
+     */
+    private long expiresAt;
+
+    /**
+     * 命中过滤器的消息数
+     */
+    private long matchedCount;
+
+    /**
+     * 已推送的消息数
+     */
+    private long sentCount;
+
+    /**
+     * 缓冲区满被丢弃的消息数
+     */
+    private long droppedCount;
+}
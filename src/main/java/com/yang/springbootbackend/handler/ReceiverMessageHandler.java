@@ -1,6 +1,7 @@
 package com.yang.springbootbackend.handler;
 
-import com.yang.springbootbackend.service.mqtt.MqttMessageRouter;
+import com.yang.springbootbackend.service.mqtt.ingest.MqttIngestDispatcher;
+import com.yang.springbootbackend.service.mqtt.tap.TopicTapService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.Message;
@@ -9,18 +10,23 @@ import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.MessagingException;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /**
  * MQTT消息接收处理器
- * 重构后使用消息路由器进行处理
+ * 只负责提取主题并投递到分区调度器，具体处理在工作通道线程中完成。
+ * 不逐条打印消息，需要查看原始消息时通过 {@link TopicTapService} 开启主题监听
  */
 @Slf4j
 @Component
 public class ReceiverMessageHandler implements MessageHandler {
 
     @Autowired
-    private MqttMessageRouter messageRouter;
+    private MqttIngestDispatcher ingestDispatcher;
+
+    @Autowired
+    private TopicTapService topicTapService;
 
     @Override
     public void handleMessage(Message<?> message) throws MessagingException {
@@ -30,11 +36,16 @@ public class ReceiverMessageHandler implements MessageHandler {
             MessageHeaders headers = message.getHeaders();
             String topicName = Objects.requireNonNull(headers.get("mqtt_receivedTopic")).toString();
 
-            log.info("接收到MQTT消息，主题: {}", topicName);
-            log.debug("消息内容: {}", payload);
+            // 转换器配置为字节载荷，其他来源的消息按UTF-8编码
+            byte[] bytes = payload instanceof byte[]
+                    ? (byte[]) payload
+                    : payload.toString().getBytes(StandardCharsets.UTF_8);
+
+            // 抄送给主题监听，没有监听会话时立即返回
+            topicTapService.capture(topicName, bytes);
 
-            // 使用消息路由器处理消息
-            messageRouter.routeMessage(topicName, payload.toString());
+            // 按塔吊分区投递到工作通道，避免阻塞Paho回调线程
+            ingestDispatcher.dispatch(topicName, bytes);
 
         } catch (Exception e) {
             log.error("处理MQTT消息时发生错误", e);
@@ -0,0 +1,12 @@
+package com.yang.springbootbackend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.yang.springbootbackend.domain.mqtt.entity.AlertRule;
+
+/**
+ * 针对表【alert_rule】的数据库操作Mapper
+ * @Entity com.yang.springbootbackend.domain.mqtt.entity.AlertRule
+ */
+public interface AlertRuleMapper extends BaseMapper<AlertRule> {
+
+}
@@ -0,0 +1,22 @@
+package com.yang.springbootbackend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.yang.springbootbackend.domain.mqtt.entity.SensorReading;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 针对表【sensor_reading】的数据库操作Mapper
+ * @Entity com.yang.springbootbackend.domain.mqtt.entity.SensorReading
+ */
+public interface SensorReadingMapper extends BaseMapper<SensorReading> {
+
+    /**
+     * 多行INSERT批量写入
+     *
+     * @param readings 读数，不能为空
+     * @return 写入行数
+     */
+    int insertBatch(@Param("readings") List<SensorReading> readings);
+}
@@ -26,7 +26,7 @@ public class WebSocketService {
      * 推送气体传感器数据
      */
     public void sendSensorData(SensorDataDTO sensorData) {
-        log.info("WebSocket推送气体传感器数据: {}", sensorData);
+        log.debug("WebSocket推送气体传感器数据: {}", sensorData);
         messagingTemplate.convertAndSend("/topic/gas", sensorData);
     }
 
@@ -34,7 +34,7 @@ public class WebSocketService {
      * 推送角度传感器数据
      */
     public void sendAngleData(AngleDataDTO angleData) {
-        log.info("WebSocket推送角度传感器数据: {}", angleData);
+        log.debug("WebSocket推送角度传感器数据: {}", angleData);
         messagingTemplate.convertAndSend("/topic/angle", angleData);
     }
 }
\ No newline at end of file
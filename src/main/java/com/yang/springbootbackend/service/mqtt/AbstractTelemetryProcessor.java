@@ -0,0 +1,164 @@
+package com.yang.springbootbackend.service.mqtt;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.service.mqtt.ingest.SequenceDeduplicator;
+import com.yang.springbootbackend.service.mqtt.state.CraneStateStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量遥测消息处理器基类
+ * 一条MQTT消息可以携带单条读数、同一塔吊的多条读数，或网关汇总的多台塔吊读数。
+ * 基类负责解码、补全塔吊ID和时间戳、按序号丢弃QoS1重复投递的读数，子类在 {@link #processBatch} 中逐条做告警检查，
+ * 并对最新值更新、WebSocket推送等只关心最新状态的步骤按批执行一次。
+ * 解码或处理过程中的异常不在这里吞掉，交给路由器写入死信日志。
+ * 处理完成后通知所有 {@link TelemetryListener}：在入站工作通道中处理时转交给批量层级执行，
+ * 存储、统计等旁路工作不占用安全关键和普通层级的通道，过载时可以丢弃
+ *
+ * @param <T> 读数类型
+ */
+@Slf4j
+public abstract class AbstractTelemetryProcessor<T extends TelemetryReading> implements MqttMessageProcessor {
+
+    @Autowired(required = false)
+    private List<TelemetryListener> telemetryListeners = Collections.emptyList();
+
+    @Autowired(required = false)
+    private SequenceDeduplicator sequenceDeduplicator;
+
+    @Autowired(required = false)
+    private CraneStateStore craneStateStore;
+
+    @Override
+    public void processMessage(MqttRoutingContext context, String payload) {
+        processMessage(context, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void processMessage(MqttRoutingContext context, byte[] payload) {
+        String topic = context.getTopic();
+        if (context.getStateStore() == null) {
+            // 不经过路由器直接调用时补上状态存储
+            context.setStateStore(craneStateStore);
+        }
+        List<T> readings = decodeBatch(payload);
+        if (readings == null || readings.isEmpty()) {
+            log.warn("遥测数据解析失败或数据为空，主题: {}", topic);
+            return;
+        }
+
+        // 未单独指定塔吊ID的读数归属于主题中的塔吊；旧固件不上报时间戳时以到达时间代替，
+        // 整条消息只取一次，告警、去重和各监听器看到的是同一个时间戳
+        String topicCraneId = context.getCraneId();
+        long arrivedAt = System.currentTimeMillis();
+        for (T reading : readings) {
+            if (reading.getCraneId() == null) {
+                reading.setCraneId(topicCraneId);
+            }
+            if (reading.getTs() == null) {
+                reading.setTs(arrivedAt);
+            }
+        }
+
+        if (sequenceDeduplicator != null) {
+            readings = sequenceDeduplicator.filter(getSupportedTopic(), readings);
+            if (readings.isEmpty()) {
+                log.debug("遥测数据均为重复投递，已丢弃，主题: {}", topic);
+                return;
+            }
+        }
+
+        try {
+            processBatch(context, readings);
+        } catch (RuntimeException e) {
+            // 处理失败的消息进入死信日志，撤销去重标记以便重放
+            if (sequenceDeduplicator != null) {
+                sequenceDeduplicator.release(getSupportedTopic(), readings);
+            }
+            throw e;
+        }
+        List<T> processed = readings;
+        if (!context.offload(copy -> notifyListeners(copy, processed))) {
+            notifyListeners(context, readings);
+        }
+        log.debug("遥测数据处理完成，主题: {}, 读数条数: {}", topic, readings.size());
+    }
+
+    /**
+     * 通知监听器，监听器的异常只记录日志，不影响消息本身的处理结果
+     */
+    private void notifyListeners(MqttRoutingContext context, List<T> readings) {
+        for (TelemetryListener listener : telemetryListeners) {
+            try {
+                listener.onReadings(context, readings);
+            } catch (Exception e) {
+                log.error("遥测监听器执行失败: {}", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * 解码消息载荷
+     *
+     * @param payload 消息载荷
+     * @return 读数列表，按上报顺序排列
+     */
+    protected abstract List<T> decodeBatch(byte[] payload);
+
+    /**
+     * 处理一批读数
+     *
+     * @param context  路由上下文
+     * @param readings 读数列表，塔吊ID和时间戳均已补全
+     */
+    protected abstract void processBatch(MqttRoutingContext context, List<T> readings);
+
+    /**
+     * 使用fastjson解析单个对象或对象数组，用于快速解析器不支持的载荷
+     *
+     * @param payload 消息载荷
+     * @param clazz   读数类型
+     * @return 读数列表
+     */
+    protected static <R> List<R> parseJsonList(byte[] payload, Class<R> clazz) {
+        Object json = JSON.parse(new String(payload, StandardCharsets.UTF_8));
+        if (json instanceof JSONArray) {
+            return ((JSONArray) json).toJavaList(clazz);
+        }
+        if (json instanceof JSONObject) {
+            return Collections.singletonList(((JSONObject) json).toJavaObject(clazz));
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * 取每台塔吊在本批中的最新读数
+     * 取时间戳最大的一条，时间戳相同时取最后一条
+     *
+     * @param readings 读数列表
+     * @return 塔吊ID -> 最新读数，按塔吊首次出现顺序排列
+     */
+    protected Map<String, T> latestByCrane(List<T> readings) {
+        Map<String, T> latest = new LinkedHashMap<>();
+        for (T reading : readings) {
+            T current = latest.get(reading.getCraneId());
+            if (current == null || !isOlder(reading, current)) {
+                latest.put(reading.getCraneId(), reading);
+            }
+        }
+        return latest;
+    }
+
+    private static boolean isOlder(TelemetryReading reading, TelemetryReading current) {
+        return reading.getTs() < current.getTs();
+    }
+}
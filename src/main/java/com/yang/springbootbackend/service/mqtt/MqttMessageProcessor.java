@@ -1,5 +1,7 @@
 package com.yang.springbootbackend.service.mqtt;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * MQTT消息处理器接口
  * 使用策略模式处理不同类型的MQTT消息
@@ -8,22 +10,46 @@ public interface MqttMessageProcessor {
 
     /**
      * 获取支持的主题
+     * 支持MQTT通配符，如 testtopic/+/gas
      *
-     * @return 主题名称
+     * @return 主题过滤器
      */
     String getSupportedTopic();
 
     /**
      * 处理消息
      *
+     * @param context 路由上下文，包含实际主题和通配符绑定的塔吊ID等信息
+     * @param payload 消息内容
+     */
+    void processMessage(MqttRoutingContext context, String payload);
+
+    /**
+     * 处理原始字节消息
+     * 路由器默认调用此方法；处理器可覆盖以直接从UTF-8字节解析，省去解码为String的开销
+     *
+     * @param context 路由上下文
+     * @param payload 消息内容（UTF-8字节）
+     */
+    default void processMessage(MqttRoutingContext context, byte[] payload) {
+        processMessage(context, new String(payload, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 处理消息（不经过路由器直接调用时使用）
+     *
      * @param topic   主题
      * @param payload 消息内容
      */
-    void processMessage(String topic, String payload);
+    default void processMessage(String topic, String payload) {
+        processMessage(MqttRoutingContext.of(topic), payload);
+    }
 
     /**
      * 获取处理器优先级
-     * 数值越小优先级越高
+     * 数值越小优先级越高。同一主题过滤器保留优先级最高的处理器；
+     * 入站调度按优先级划分层级：低于 spring.mqtt.ingest.critical-priority 为安全关键层级（独占通道），
+     * 不低于 bulk-priority 为批量层级（过载时丢弃），其余为普通层级
      *
      * @return 优先级
      */
@@ -1,10 +1,14 @@
 package com.yang.springbootbackend.service.mqtt;
 
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.service.mqtt.deadletter.DeadLetterJournal;
+import com.yang.springbootbackend.service.mqtt.state.CraneStateStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -13,7 +17,9 @@ import java.util.stream.Collectors;
 
 /**
  * MQTT消息路由器
- * 负责将不同主题的消息路由到对应的处理器
+ * 负责将不同主题的消息路由到对应的处理器。
+ * 处理器声明的主题支持 + / # 通配符，注册后编译为主题前缀树，
+ * 匹配结果和通配符绑定（如塔吊ID）通过 {@link MqttRoutingContext} 传给处理器
  */
 @Component
 @Slf4j
@@ -22,8 +28,30 @@ public class MqttMessageRouter {
     @Autowired
     private List<MqttMessageProcessor> messageProcessors;
 
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private DeadLetterJournal deadLetterJournal;
+
+    @Autowired
+    private CraneStateStore craneStateStore;
+
+    /**
+     * 主题过滤器 -> 处理器，作为注册信息的来源
+     */
     private final Map<String, MqttMessageProcessor> processorMap = new ConcurrentHashMap<>();
 
+    /**
+     * 由processorMap编译出的前缀树，注册变化时整体重建替换
+     */
+    private volatile MqttTopicTrie<MqttMessageProcessor> topicTrie = new MqttTopicTrie<>();
+
+    /**
+     * 按线程复用的路由上下文，避免每条消息创建对象
+     */
+    private final ThreadLocal<MqttRoutingContext> contextHolder = ThreadLocal.withInitial(MqttRoutingContext::new);
+
     @PostConstruct
     public void initializeProcessors() {
         if (messageProcessors == null || messageProcessors.isEmpty()) {
@@ -36,25 +64,53 @@ public class MqttMessageRouter {
                 .sorted(Comparator.comparingInt(MqttMessageProcessor::getPriority))
                 .collect(Collectors.toList());
 
-        // 注册处理器
+        // 注册处理器，同一主题过滤器保留优先级最高的处理器
         for (MqttMessageProcessor processor : sortedProcessors) {
             String topic = processor.getSupportedTopic();
             if (topic != null && !topic.trim().isEmpty()) {
-                processorMap.put(topic, processor);
+                MqttMessageProcessor existing = processorMap.putIfAbsent(topic, processor);
+                if (existing != null) {
+                    log.warn("主题 {} 已由 {} 处理，忽略优先级更低的 {}", topic,
+                            existing.getClass().getSimpleName(), processor.getClass().getSimpleName());
+                    continue;
+                }
                 log.info("注册MQTT消息处理器: {} -> {}", topic, processor.getClass().getSimpleName());
             }
         }
+        rebuildTrie();
 
         log.info("MQTT消息路由器初始化完成，共注册 {} 个处理器", processorMap.size());
     }
 
     /**
-     * 路由消息到对应的处理器
+     * 路由字符串消息到对应的处理器
      *
      * @param topic   主题
      * @param payload 消息内容
      */
     public void routeMessage(String topic, String payload) {
+        routeMessage(topic, payload == null ? null : payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 路由消息到对应的处理器
+     *
+     * @param topic   主题
+     * @param payload 消息内容（UTF-8字节）
+     */
+    public void routeMessage(String topic, byte[] payload) {
+        routeMessage(topic, payload, -1, null);
+    }
+
+    /**
+     * 在入站工作通道中路由消息
+     *
+     * @param topic      主题
+     * @param payload    消息内容（UTF-8字节）
+     * @param journalSeq 预写日志编号，未写日志时为-1
+     * @param offloader  旁路工作的转交目标，为null时处理器直接执行
+     */
+    public void routeMessage(String topic, byte[] payload, long journalSeq, MqttRoutingContext.Offloader offloader) {
         if (topic == null || topic.trim().isEmpty()) {
             log.warn("消息主题为空，无法路由");
             return;
@@ -65,7 +121,12 @@ public class MqttMessageRouter {
             return;
         }
 
-        MqttMessageProcessor processor = processorMap.get(topic);
+        MqttRoutingContext context = contextHolder.get();
+        context.reset(topic, mqttProperties.getCraneIdSegment());
+        context.setStateStore(craneStateStore);
+        context.setJournalSeq(journalSeq);
+        context.setOffloader(offloader);
+        MqttMessageProcessor processor = topicTrie.match(topic, context);
         if (processor == null) {
             log.warn("未找到主题 {} 对应的消息处理器", topic);
             handleUnknownTopic(topic, payload);
@@ -74,7 +135,7 @@ public class MqttMessageRouter {
 
         try {
             log.debug("路由消息到处理器: {} -> {}", topic, processor.getClass().getSimpleName());
-            processor.processMessage(topic, payload);
+            processor.processMessage(context, payload);
         } catch (Exception e) {
             log.error("处理消息时发生异常，主题: {}, 处理器: {}", 
                     topic, processor.getClass().getSimpleName(), e);
@@ -88,13 +149,11 @@ public class MqttMessageRouter {
      * @param topic   主题
      * @param payload 消息内容
      */
-    private void handleUnknownTopic(String topic, String payload) {
-        log.info("收到未知主题的消息，主题: {}, 内容: {}", topic, payload);
-        
-        // TODO: 可以实现通用的处理逻辑
-        // 1. 记录到数据库
-        // 2. 发送到默认处理器
-        // 3. 转发到其他系统
+    private void handleUnknownTopic(String topic, byte[] payload) {
+        log.debug("收到未知主题的消息，主题: {}, 载荷字节数: {}", topic, payload.length);
+
+        // 写入死信日志，注册处理器后可以重放
+        deadLetterJournal.record(topic, payload, DeadLetterJournal.FAILURE_UNKNOWN_TOPIC, null);
     }
 
     /**
@@ -104,13 +163,9 @@ public class MqttMessageRouter {
      * @param payload 消息内容
      * @param error   异常信息
      */
-    private void handleProcessingError(String topic, String payload, Exception error) {
-        // TODO: 实现错误处理逻辑
-        // 1. 记录错误日志
-        // 2. 发送告警通知
-        // 3. 将消息放入死信队列
-        
-        log.error("消息处理失败，主题: {}, 错误: {}", topic, error.getMessage());
+    private void handleProcessingError(String topic, byte[] payload, Exception error) {
+        // 写入死信日志（异步），按异常类别计数，修复后可以重放
+        deadLetterJournal.record(topic, payload, error);
     }
 
     /**
@@ -126,6 +181,16 @@ public class MqttMessageRouter {
                 ));
     }
 
+    /**
+     * 查找主题对应的处理器
+     *
+     * @param topic 主题
+     * @return 处理器，没有匹配时返回null
+     */
+    public MqttMessageProcessor findProcessor(String topic) {
+        return topicTrie.match(topic, null);
+    }
+
     /**
      * 检查是否支持指定主题
      *
@@ -133,7 +198,7 @@ public class MqttMessageRouter {
      * @return 是否支持
      */
     public boolean isTopicSupported(String topic) {
-        return processorMap.containsKey(topic);
+        return findProcessor(topic) != null;
     }
 
     /**
@@ -141,10 +206,11 @@ public class MqttMessageRouter {
      *
      * @param processor 处理器
      */
-    public void registerProcessor(MqttMessageProcessor processor) {
+    public synchronized void registerProcessor(MqttMessageProcessor processor) {
         String topic = processor.getSupportedTopic();
         if (topic != null && !topic.trim().isEmpty()) {
             processorMap.put(topic, processor);
+            rebuildTrie();
             log.info("动态注册MQTT消息处理器: {} -> {}", topic, processor.getClass().getSimpleName());
         }
     }
@@ -154,10 +220,23 @@ public class MqttMessageRouter {
      *
      * @param topic 主题
      */
-    public void unregisterProcessor(String topic) {
+    public synchronized void unregisterProcessor(String topic) {
         MqttMessageProcessor removed = processorMap.remove(topic);
         if (removed != null) {
+            rebuildTrie();
             log.info("注销MQTT消息处理器: {} -> {}", topic, removed.getClass().getSimpleName());
         }
     }
+
+    /**
+     * 根据当前注册信息重建主题前缀树
+     * 构建完成后整体替换引用，匹配线程无需加锁
+     */
+    private synchronized void rebuildTrie() {
+        MqttTopicTrie<MqttMessageProcessor> trie = new MqttTopicTrie<>();
+        for (Map.Entry<String, MqttMessageProcessor> entry : processorMap.entrySet()) {
+            trie.put(entry.getKey(), entry.getValue());
+        }
+        topicTrie = trie;
+    }
 }
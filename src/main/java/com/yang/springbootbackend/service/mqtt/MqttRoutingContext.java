@@ -0,0 +1,252 @@
+package com.yang.springbootbackend.service.mqtt;
+
+import com.yang.springbootbackend.service.mqtt.state.CraneState;
+import com.yang.springbootbackend.service.mqtt.state.CraneStateStore;
+
+import java.util.function.Consumer;
+
+/**
+ * MQTT消息路由上下文
+ * 记录主题匹配时通配符（+ / #）绑定的层级位置，按需截取塔吊ID等路径参数，
+ * 并提供塔吊状态存储的入口。
+ * 上下文对象按线程复用，处理器不应在处理方法之外持有它的引用；需要在其他线程使用时通过 {@link #copy()} 复制
+ */
+public class MqttRoutingContext {
+
+    /**
+     * 旁路工作的转交目标，由入站调度器提供
+     */
+    @FunctionalInterface
+    public interface Offloader {
+
+        /**
+         * 转交旁路工作，过载时可以丢弃
+         *
+         * @param context 上下文副本
+         * @param action  旁路工作
+         */
+        void offload(MqttRoutingContext context, Runnable action);
+    }
+
+    /**
+     * 默认塔吊ID所在层级（testtopic/{craneId}/gas）
+     */
+    public static final int DEFAULT_CRANE_ID_SEGMENT = 1;
+
+    /**
+     * 单个主题过滤器最多支持的通配符数量
+     */
+    static final int MAX_WILDCARDS = 16;
+
+    private final int[] wildcardStarts = new int[MAX_WILDCARDS];
+
+    private final int[] wildcardEnds = new int[MAX_WILDCARDS];
+
+    private int wildcardCount;
+
+    private String topic;
+
+    private String filter;
+
+    private int craneIdSegment = DEFAULT_CRANE_ID_SEGMENT;
+
+    private String craneId;
+
+    private CraneStateStore stateStore;
+
+    private long journalSeq = -1;
+
+    private Offloader offloader;
+
+    /**
+     * 为单个主题创建独立的上下文（不经过路由匹配时使用）
+     *
+     * @param topic 主题
+     * @return 路由上下文
+     */
+    public static MqttRoutingContext of(String topic) {
+        MqttRoutingContext context = new MqttRoutingContext();
+        context.reset(topic, DEFAULT_CRANE_ID_SEGMENT);
+        return context;
+    }
+
+    /**
+     * 重置上下文以复用
+     *
+     * @param topic          主题
+     * @param craneIdSegment 塔吊ID所在层级
+     */
+    public void reset(String topic, int craneIdSegment) {
+        this.topic = topic;
+        this.craneIdSegment = craneIdSegment;
+        this.filter = null;
+        this.craneId = null;
+        this.wildcardCount = 0;
+        this.journalSeq = -1;
+        this.offloader = null;
+    }
+
+    /**
+     * 复制上下文，副本可以在其他线程中使用
+     *
+     * @return 上下文副本
+     */
+    public MqttRoutingContext copy() {
+        MqttRoutingContext copy = new MqttRoutingContext();
+        copy.reset(topic, craneIdSegment);
+        copy.filter = filter;
+        copy.craneId = craneId;
+        copy.stateStore = stateStore;
+        copy.journalSeq = journalSeq;
+        copy.wildcardCount = wildcardCount;
+        System.arraycopy(wildcardStarts, 0, copy.wildcardStarts, 0, wildcardCount);
+        System.arraycopy(wildcardEnds, 0, copy.wildcardEnds, 0, wildcardCount);
+        return copy;
+    }
+
+    /**
+     * 把旁路工作（如遥测监听器）转交给入站调度器的批量层级，不占用当前工作通道
+     *
+     * @param action 旁路工作，参数为上下文副本
+     * @return 是否已转交（可能随后因过载被丢弃），没有转交目标时返回false，调用方应直接执行
+     */
+    public boolean offload(Consumer<MqttRoutingContext> action) {
+        if (offloader == null) {
+            return false;
+        }
+        MqttRoutingContext copy = copy();
+        offloader.offload(copy, () -> action.accept(copy));
+        return true;
+    }
+
+    void setJournalSeq(long journalSeq) {
+        this.journalSeq = journalSeq;
+    }
+
+    void setOffloader(Offloader offloader) {
+        this.offloader = offloader;
+    }
+
+    /**
+     * 获取消息的预写日志编号
+     *
+     * @return 编号，未写日志时为-1
+     */
+    public long getJournalSeq() {
+        return journalSeq;
+    }
+
+    /**
+     * 记录一个通配符绑定的区间
+     */
+    boolean bind(int start, int end) {
+        if (wildcardCount >= MAX_WILDCARDS) {
+            return false;
+        }
+        wildcardStarts[wildcardCount] = start;
+        wildcardEnds[wildcardCount] = end;
+        wildcardCount++;
+        return true;
+    }
+
+    /**
+     * 回溯时撤销最近一次绑定
+     */
+    void unbind() {
+        wildcardCount--;
+    }
+
+    void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    void setStateStore(CraneStateStore stateStore) {
+        this.stateStore = stateStore;
+    }
+
+    /**
+     * 获取塔吊状态存储
+     * 网关批量上报时读数可能属于其他塔吊，处理器按读数的塔吊ID从存储中获取状态
+     *
+     * @return 状态存储，不经过路由器和处理器基类创建的上下文为null
+     */
+    public CraneStateStore getStateStore() {
+        return stateStore;
+    }
+
+    /**
+     * 获取主题中塔吊的状态，不存在时创建
+     *
+     * @return 塔吊状态，没有状态存储或主题中没有塔吊ID时返回null
+     */
+    public CraneState getCraneState() {
+        String id = getCraneId();
+        return stateStore == null || id == null ? null : stateStore.getOrCreate(id);
+    }
+
+    /**
+     * 获取原始主题
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * 获取命中的主题过滤器
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * 获取通配符绑定数量
+     */
+    public int getWildcardCount() {
+        return wildcardCount;
+    }
+
+    /**
+     * 获取第index个通配符绑定的路径（# 绑定剩余的全部层级）
+     *
+     * @param index 通配符序号，从0开始
+     * @return 路径内容
+     */
+    public String getWildcard(int index) {
+        if (index < 0 || index >= wildcardCount) {
+            throw new IndexOutOfBoundsException("通配符序号越界: " + index);
+        }
+        return topic.substring(wildcardStarts[index], wildcardEnds[index]);
+    }
+
+    /**
+     * 获取主题中的塔吊ID，首次调用时截取并缓存
+     *
+     * @return 塔吊ID，主题层级不足时返回null
+     */
+    public String getCraneId() {
+        if (craneId == null) {
+            craneId = segment(topic, craneIdSegment);
+        }
+        return craneId;
+    }
+
+    /**
+     * 截取主题中指定层级的内容
+     *
+     * @param topic 主题
+     * @param level 层级，从0开始
+     * @return 层级内容，层级不足时返回null
+     */
+    public static String segment(String topic, int level) {
+        int start = 0;
+        for (int i = 0; i < level; i++) {
+            int slash = topic.indexOf('/', start);
+            if (slash < 0) {
+                return null;
+            }
+            start = slash + 1;
+        }
+        int end = topic.indexOf('/', start);
+        return topic.substring(start, end < 0 ? topic.length() : end);
+    }
+}
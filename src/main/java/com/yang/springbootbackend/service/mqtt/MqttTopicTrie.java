@@ -0,0 +1,278 @@
+package com.yang.springbootbackend.service.mqtt;
+
+/**
+ * MQTT主题过滤器前缀树
+ * 支持 + （单层）和 # （多层）通配符，匹配时间与主题层级数成正比，与注册的过滤器数量无关。
+ * 匹配过程直接在原主题字符串上按区间比较，不做split和子串截取，不产生临时对象。
+ * 同一主题命中多个过滤器时，按 精确层级 > + > # 的顺序逐层优先匹配。
+ * 构建完成后只读，可被多个线程并发匹配；修改时应重新构建后整体替换
+ *
+ * @param <T> 绑定的处理对象类型
+ */
+public class MqttTopicTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    private int size;
+
+    /**
+     * 注册主题过滤器
+     *
+     * @param filter 主题过滤器，如 site/+/crane/+/gas
+     * @param value  绑定对象
+     * @return 该过滤器之前绑定的对象，没有则返回null
+     */
+    public T put(String filter, T value) {
+        validateFilter(filter);
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int end = filter.indexOf('/', start);
+            if (end < 0) {
+                end = filter.length();
+            }
+            node = node.getOrCreateChild(filter, start, end);
+            if (end == filter.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        T previous = node.value;
+        node.value = value;
+        node.filter = filter;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    /**
+     * 匹配主题
+     *
+     * @param topic   实际主题（不含通配符）
+     * @param context 路由上下文，用于记录通配符绑定，可为null
+     * @return 命中的绑定对象，未命中返回null
+     */
+    public T match(String topic, MqttRoutingContext context) {
+        if (topic == null || topic.isEmpty()) {
+            return null;
+        }
+        // 以$开头的系统主题不参与首层通配符匹配（MQTT规范4.7.2）
+        boolean systemTopic = topic.charAt(0) == '$';
+        Node<T> node = match(root, topic, 0, systemTopic, context);
+        if (node == null) {
+            return null;
+        }
+        if (context != null) {
+            context.setFilter(node.filter);
+        }
+        return node.value;
+    }
+
+    /**
+     * 获取已注册的过滤器数量
+     */
+    public int size() {
+        return size;
+    }
+
+    private Node<T> match(Node<T> node, String topic, int start, boolean noWildcard, MqttRoutingContext context) {
+        // 一次遍历同时确定层级结束位置并计算哈希
+        int length = topic.length();
+        int end = start;
+        int h = 0;
+        for (char c; end < length && (c = topic.charAt(end)) != '/'; end++) {
+            h = 31 * h + c;
+        }
+        boolean last = end == length;
+
+        // 1. 精确层级
+        Node<T> child = node.findChild(topic, start, end, h);
+        if (child != null) {
+            Node<T> found = last ? terminal(child) : match(child, topic, end + 1, false, context);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        if (noWildcard) {
+            return null;
+        }
+
+        // 2. 单层通配符 +
+        if (node.plus != null && (context == null || context.bind(start, end))) {
+            Node<T> found = last ? terminal(node.plus) : match(node.plus, topic, end + 1, false, context);
+            if (found != null) {
+                return found;
+            }
+            if (context != null) {
+                context.unbind();
+            }
+        }
+
+        // 3. 多层通配符 #，匹配剩余全部层级
+        if (node.hash != null && node.hash.value != null
+                && (context == null || context.bind(start, topic.length()))) {
+            return node.hash;
+        }
+        return null;
+    }
+
+    /**
+     * 主题层级已耗尽时的匹配：节点自身，或者其下的 #（sport/# 同时匹配 sport）
+     */
+    private Node<T> terminal(Node<T> node) {
+        if (node.value != null) {
+            return node;
+        }
+        if (node.hash != null && node.hash.value != null) {
+            return node.hash;
+        }
+        return null;
+    }
+
+    private static void validateFilter(String filter) {
+        if (filter == null || filter.isEmpty()) {
+            throw new IllegalArgumentException("主题过滤器不能为空");
+        }
+        int wildcards = 0;
+        int start = 0;
+        while (start <= filter.length()) {
+            int end = filter.indexOf('/', start);
+            if (end < 0) {
+                end = filter.length();
+            }
+            for (int i = start; i < end; i++) {
+                char c = filter.charAt(i);
+                if (c != '+' && c != '#') {
+                    continue;
+                }
+                if (end - start != 1) {
+                    throw new IllegalArgumentException("通配符必须独占一个层级: " + filter);
+                }
+                if (c == '#' && end != filter.length()) {
+                    throw new IllegalArgumentException("# 只能出现在最后一个层级: " + filter);
+                }
+                wildcards++;
+            }
+            start = end + 1;
+        }
+        if (wildcards > MqttRoutingContext.MAX_WILDCARDS) {
+            throw new IllegalArgumentException("通配符数量超过上限 " + MqttRoutingContext.MAX_WILDCARDS + ": " + filter);
+        }
+    }
+
+    /**
+     * 前缀树节点
+     * 子节点使用开放寻址哈希表存储，键的哈希与String.hashCode一致，可直接对主题区间计算
+     */
+    private static final class Node<T> {
+
+        private String[] keys;
+
+        private int[] hashes;
+
+        private Node<T>[] children;
+
+        private int childCount;
+
+        private Node<T> plus;
+
+        private Node<T> hash;
+
+        private T value;
+
+        private String filter;
+
+        Node<T> findChild(String topic, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + topic.charAt(i);
+            }
+            return findChild(topic, start, end, h);
+        }
+
+        Node<T> findChild(String topic, int start, int end, int h) {
+            if (keys == null) {
+                return null;
+            }
+            int len = end - start;
+            int mask = keys.length - 1;
+            for (int i = spread(h) & mask; keys[i] != null; i = (i + 1) & mask) {
+                String key = keys[i];
+                if (hashes[i] == h && key.length() == len && topic.regionMatches(start, key, 0, len)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node<T> getOrCreateChild(String filter, int start, int end) {
+            if (end - start == 1) {
+                char c = filter.charAt(start);
+                if (c == '+') {
+                    if (plus == null) {
+                        plus = new Node<>();
+                    }
+                    return plus;
+                }
+                if (c == '#') {
+                    if (hash == null) {
+                        hash = new Node<>();
+                    }
+                    return hash;
+                }
+            }
+            Node<T> existing = findChild(filter, start, end);
+            if (existing != null) {
+                return existing;
+            }
+            return addChild(filter.substring(start, end), new Node<>());
+        }
+
+        private Node<T> addChild(String key, Node<T> child) {
+            if (keys == null) {
+                keys = new String[4];
+                hashes = new int[4];
+                children = newChildren(4);
+            } else if ((childCount + 1) * 2 > keys.length) {
+                // 负载因子保持在0.5以下，保证探测链足够短
+                String[] oldKeys = keys;
+                Node<T>[] oldChildren = children;
+                keys = new String[oldKeys.length * 2];
+                hashes = new int[oldKeys.length * 2];
+                children = newChildren(oldKeys.length * 2);
+                childCount = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        insert(oldKeys[i], oldChildren[i]);
+                    }
+                }
+            }
+            insert(key, child);
+            return child;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newChildren(int length) {
+            return (Node<T>[]) new Node<?>[length];
+        }
+
+        private void insert(String key, Node<T> child) {
+            int h = key.hashCode();
+            int mask = keys.length - 1;
+            int i = spread(h) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            hashes[i] = h;
+            children[i] = child;
+            childCount++;
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+}
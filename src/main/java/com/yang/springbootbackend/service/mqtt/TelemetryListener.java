@@ -0,0 +1,22 @@
+package com.yang.springbootbackend.service.mqtt;
+
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+
+import java.util.List;
+
+/**
+ * 遥测读数监听器
+ * 处理器完成一批读数的业务处理后依次通知所有监听器，用于存储、统计等旁路功能。
+ * 回调在批量层级的工作通道线程中执行（同一塔吊固定在同一通道，按处理顺序回调），过载时整批回调可能被丢弃；
+ * 实现应尽快返回，耗时操作需自行异步
+ */
+public interface TelemetryListener {
+
+    /**
+     * 一批读数处理完成
+     *
+     * @param context  路由上下文
+     * @param readings 读数列表（同一类型），塔吊ID均已补全
+     */
+    void onReadings(MqttRoutingContext context, List<? extends TelemetryReading> readings);
+}
@@ -0,0 +1,457 @@
+package com.yang.springbootbackend.service.mqtt.codec;
+
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 遥测二进制帧编解码器
+ * 用定长小端二进制代替长字段名的JSON，节省蜂窝流量和解析CPU。帧格式（v1）：
+ * <pre>
+ * 偏移  长度  内容
+ * 0     1     魔数 0xA7（UTF-8文本不可能以该字节开头，可与JSON自动区分）
+ * 1     1     版本号，当前为1
+ * 2     1     帧类型：1-气体传感器，2-角度传感器
+ * 3     1     标志位：bit0-携带设备时间戳，bit1-携带消息序号
+ * 4     2     字段存在位图（uint16），第i位为1表示第i个字段存在
+ * 6     8     设备时间戳，毫秒（int64，仅当bit0=1）
+ * -     4     消息序号（uint32，仅当bit1=1）
+ * -     -     按位图顺序排列的字段值
+ * </pre>
+ * 数值字段编码为int32定点数（实际值 = 原始值 / 比例），解码结果与十进制读数一致；
+ * 报警标志字段编码为int8。气体帧字段顺序及比例：
+ * gas_value(1e3)、gasrate(int8)、rain_value(1e3)、rainrate(int8)、height(1e3)、
+ * lux_value(1e3)、wind_value(1e3)、temperature(1e3)；角度帧：angle(1e4)
+ * <p>
+ * 批量帧（类型3）在同一个消息中携带多条同类型读数：帧头的位图位置改为uint16读数条数，
+ * 其后依次为 uint16长度 + 单条帧。批量帧不携带塔吊ID，读数归属于主题中的塔吊
+ */
+public final class TelemetryFrameCodec {
+
+    /**
+     * 帧魔数
+     */
+    public static final byte MAGIC = (byte) 0xA7;
+
+    /**
+     * 当前帧格式版本
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * 帧类型：气体传感器
+     */
+    public static final byte TYPE_SENSOR = 1;
+
+    /**
+     * 帧类型：角度传感器
+     */
+    public static final byte TYPE_ANGLE = 2;
+
+    /**
+     * 帧类型：批量帧
+     */
+    public static final byte TYPE_BATCH = 3;
+
+    static final int FLAG_TIMESTAMP = 1;
+    static final int FLAG_SEQUENCE = 1 << 1;
+
+    static final int HEADER_LENGTH = 6;
+
+    /**
+     * 帧内序号字段为uint32
+     */
+    static final long MAX_SEQUENCE = 0xFFFFFFFFL;
+
+    private static final double SCALE_VALUE = 1e3;
+    private static final double SCALE_ANGLE = 1e4;
+
+    private TelemetryFrameCodec() {
+    }
+
+    /**
+     * 判断载荷是否为二进制帧
+     *
+     * @param payload 消息载荷
+     * @return 是否为二进制帧
+     */
+    public static boolean isFrame(byte[] payload) {
+        return payload != null && payload.length >= HEADER_LENGTH && payload[0] == MAGIC;
+    }
+
+    /**
+     * 编码气体传感器数据
+     *
+     * @param data 气体传感器数据
+     * @return 二进制帧
+     * @throws IllegalArgumentException 序号或数值超出帧字段范围时
+     */
+    public static byte[] encodeSensorData(SensorDataDTO data) {
+        int mask = 0;
+        int size = 0;
+        Double[] values = {data.getGasValue(), null, data.getRainValue(), null,
+                data.getHeight(), data.getLuxValue(), data.getWindValue(), data.getTemperature()};
+        Integer[] flags = {null, data.getGasrate(), null, data.getRainrate()};
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                mask |= 1 << i;
+                size += 4;
+            } else if (i < flags.length && flags[i] != null) {
+                mask |= 1 << i;
+                size += 1;
+            }
+        }
+
+        FrameWriter writer = new FrameWriter(TYPE_SENSOR, mask, data.getTs(), data.getSeq(), size);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                writer.putFixed(values[i], SCALE_VALUE);
+            } else if (i < flags.length && flags[i] != null) {
+                writer.putByte(flags[i]);
+            }
+        }
+        return writer.toBytes();
+    }
+
+    /**
+     * 解码气体传感器数据
+     *
+     * @param frame 二进制帧
+     * @return 气体传感器数据
+     * @throws IllegalArgumentException 帧格式错误时
+     */
+    public static SensorDataDTO decodeSensorData(byte[] frame) {
+        return frame == null ? decodeSensorData(null, 0, 0) : decodeSensorData(frame, 0, frame.length);
+    }
+
+    /**
+     * 解码气体传感器数据，载荷可以是单条帧或批量帧
+     *
+     * @param payload 二进制帧
+     * @return 读数列表
+     * @throws IllegalArgumentException 帧格式错误时
+     */
+    public static List<SensorDataDTO> decodeSensorDataList(byte[] payload) {
+        if (!isBatch(payload)) {
+            return Collections.singletonList(decodeSensorData(payload));
+        }
+        BatchReader batch = new BatchReader(payload);
+        List<SensorDataDTO> readings = new ArrayList<>(batch.count);
+        for (int i = 0; i < batch.count; i++) {
+            int length = batch.next();
+            readings.add(decodeSensorData(payload, batch.pos - length, batch.pos));
+        }
+        batch.finish();
+        return readings;
+    }
+
+    private static SensorDataDTO decodeSensorData(byte[] frame, int offset, int end) {
+        FrameReader reader = new FrameReader(frame, offset, end, TYPE_SENSOR);
+        SensorDataDTO data = new SensorDataDTO();
+        data.setTs(reader.ts);
+        data.setSeq(reader.seq);
+        int mask = reader.mask;
+        if ((mask & 1) != 0) {
+            data.setGasValue(reader.getFixed(SCALE_VALUE));
+        }
+        if ((mask & 1 << 1) != 0) {
+            data.setGasrate(reader.getByte());
+        }
+        if ((mask & 1 << 2) != 0) {
+            data.setRainValue(reader.getFixed(SCALE_VALUE));
+        }
+        if ((mask & 1 << 3) != 0) {
+            data.setRainrate(reader.getByte());
+        }
+        if ((mask & 1 << 4) != 0) {
+            data.setHeight(reader.getFixed(SCALE_VALUE));
+        }
+        if ((mask & 1 << 5) != 0) {
+            data.setLuxValue(reader.getFixed(SCALE_VALUE));
+        }
+        if ((mask & 1 << 6) != 0) {
+            data.setWindValue(reader.getFixed(SCALE_VALUE));
+        }
+        if ((mask & 1 << 7) != 0) {
+            data.setTemperature(reader.getFixed(SCALE_VALUE));
+        }
+        reader.finish();
+        return data;
+    }
+
+    /**
+     * 编码角度传感器数据
+     *
+     * @param data 角度数据
+     * @return 二进制帧
+     * @throws IllegalArgumentException 序号或数值超出帧字段范围时
+     */
+    public static byte[] encodeAngleData(AngleDataDTO data) {
+        int mask = data.getAngle() != null ? 1 : 0;
+        FrameWriter writer = new FrameWriter(TYPE_ANGLE, mask, data.getTs(), data.getSeq(), mask != 0 ? 4 : 0);
+        if (data.getAngle() != null) {
+            writer.putFixed(data.getAngle(), SCALE_ANGLE);
+        }
+        return writer.toBytes();
+    }
+
+    /**
+     * 解码角度传感器数据
+     *
+     * @param frame 二进制帧
+     * @return 角度数据
+     * @throws IllegalArgumentException 帧格式错误时
+     */
+    public static AngleDataDTO decodeAngleData(byte[] frame) {
+        return frame == null ? decodeAngleData(null, 0, 0) : decodeAngleData(frame, 0, frame.length);
+    }
+
+    /**
+     * 解码角度传感器数据，载荷可以是单条帧或批量帧
+     *
+     * @param payload 二进制帧
+     * @return 读数列表
+     * @throws IllegalArgumentException 帧格式错误时
+     */
+    public static List<AngleDataDTO> decodeAngleDataList(byte[] payload) {
+        if (!isBatch(payload)) {
+            return Collections.singletonList(decodeAngleData(payload));
+        }
+        BatchReader batch = new BatchReader(payload);
+        List<AngleDataDTO> readings = new ArrayList<>(batch.count);
+        for (int i = 0; i < batch.count; i++) {
+            int length = batch.next();
+            readings.add(decodeAngleData(payload, batch.pos - length, batch.pos));
+        }
+        batch.finish();
+        return readings;
+    }
+
+    private static AngleDataDTO decodeAngleData(byte[] frame, int offset, int end) {
+        FrameReader reader = new FrameReader(frame, offset, end, TYPE_ANGLE);
+        AngleDataDTO data = new AngleDataDTO();
+        data.setTs(reader.ts);
+        data.setSeq(reader.seq);
+        if ((reader.mask & 1) != 0) {
+            data.setAngle(reader.getFixed(SCALE_ANGLE));
+        }
+        reader.finish();
+        return data;
+    }
+
+    /**
+     * 将多条单条帧打包为批量帧
+     *
+     * @param frames 单条帧列表，类型需一致
+     * @return 批量帧
+     */
+    public static byte[] encodeBatch(List<byte[]> frames) {
+        if (frames.size() > 0xFFFF) {
+            throw new IllegalArgumentException("批量帧读数条数超出上限: " + frames.size());
+        }
+        int size = HEADER_LENGTH;
+        for (byte[] frame : frames) {
+            if (frame.length > 0xFFFF) {
+                throw new IllegalArgumentException("单条帧长度超出上限: " + frame.length);
+            }
+            size += 2 + frame.length;
+        }
+        byte[] buf = new byte[size];
+        buf[0] = MAGIC;
+        buf[1] = VERSION;
+        buf[2] = TYPE_BATCH;
+        buf[4] = (byte) frames.size();
+        buf[5] = (byte) (frames.size() >>> 8);
+        int pos = HEADER_LENGTH;
+        for (byte[] frame : frames) {
+            buf[pos++] = (byte) frame.length;
+            buf[pos++] = (byte) (frame.length >>> 8);
+            System.arraycopy(frame, 0, buf, pos, frame.length);
+            pos += frame.length;
+        }
+        return buf;
+    }
+
+    private static boolean isBatch(byte[] payload) {
+        return isFrame(payload) && payload[2] == TYPE_BATCH;
+    }
+
+    /**
+     * 批量帧读取器，逐条定位其中的单条帧
+     */
+    private static final class BatchReader {
+
+        private final byte[] buf;
+
+        final int count;
+
+        int pos = HEADER_LENGTH;
+
+        BatchReader(byte[] payload) {
+            if (payload[1] != VERSION) {
+                throw new IllegalArgumentException("不支持的帧版本: " + payload[1]);
+            }
+            this.buf = payload;
+            this.count = (payload[4] & 0xFF) | (payload[5] & 0xFF) << 8;
+        }
+
+        /**
+         * 跳过下一条帧
+         *
+         * @return 该帧长度，读取后pos指向帧末尾
+         */
+        int next() {
+            if (pos + 2 > buf.length) {
+                throw new IllegalArgumentException("帧数据不完整");
+            }
+            int length = (buf[pos] & 0xFF) | (buf[pos + 1] & 0xFF) << 8;
+            pos += 2 + length;
+            if (pos > buf.length) {
+                throw new IllegalArgumentException("帧数据不完整");
+            }
+            return length;
+        }
+
+        void finish() {
+            if (pos != buf.length) {
+                throw new IllegalArgumentException("批量帧长度与读数条数不一致");
+            }
+        }
+    }
+
+    /**
+     * 帧写入器，按小端顺序写入
+     */
+    private static final class FrameWriter {
+
+        private final byte[] buf;
+
+        private int pos;
+
+        FrameWriter(byte type, int mask, Long ts, Long seq, int bodySize) {
+            if (seq != null && (seq < 0 || seq > MAX_SEQUENCE)) {
+                throw new IllegalArgumentException("序号超出帧字段范围(uint32): " + seq);
+            }
+            int flags = (ts != null ? FLAG_TIMESTAMP : 0) | (seq != null ? FLAG_SEQUENCE : 0);
+            int size = HEADER_LENGTH + (ts != null ? 8 : 0) + (seq != null ? 4 : 0) + bodySize;
+            buf = new byte[size];
+            buf[pos++] = MAGIC;
+            buf[pos++] = VERSION;
+            buf[pos++] = type;
+            buf[pos++] = (byte) flags;
+            buf[pos++] = (byte) mask;
+            buf[pos++] = (byte) (mask >>> 8);
+            if (ts != null) {
+                putLong(ts);
+            }
+            if (seq != null) {
+                putInt(seq.intValue());
+            }
+        }
+
+        void putByte(int value) {
+            buf[pos++] = (byte) value;
+        }
+
+        void putInt(int value) {
+            buf[pos++] = (byte) value;
+            buf[pos++] = (byte) (value >>> 8);
+            buf[pos++] = (byte) (value >>> 16);
+            buf[pos++] = (byte) (value >>> 24);
+        }
+
+        void putLong(long value) {
+            putInt((int) value);
+            putInt((int) (value >>> 32));
+        }
+
+        void putFixed(double value, double scale) {
+            double scaled = Math.rint(value * scale);
+            if (scaled > Integer.MAX_VALUE || scaled < Integer.MIN_VALUE) {
+                throw new IllegalArgumentException("数值超出帧字段范围: " + value);
+            }
+            putInt((int) scaled);
+        }
+
+        byte[] toBytes() {
+            return buf;
+        }
+    }
+
+    /**
+     * 帧读取器，校验帧头并按小端顺序读取
+     */
+    private static final class FrameReader {
+
+        private final byte[] buf;
+
+        private final int end;
+
+        private int pos;
+
+        final int mask;
+
+        final Long ts;
+
+        final Long seq;
+
+        FrameReader(byte[] frame, int offset, int end, byte expectedType) {
+            if (frame == null || end - offset < HEADER_LENGTH || frame[offset] != MAGIC) {
+                throw new IllegalArgumentException("不是有效的遥测二进制帧");
+            }
+            if (frame[offset + 1] != VERSION) {
+                throw new IllegalArgumentException("不支持的帧版本: " + frame[offset + 1]);
+            }
+            if (frame[offset + 2] != expectedType) {
+                throw new IllegalArgumentException("帧类型不匹配，期望: " + expectedType + "，实际: " + frame[offset + 2]);
+            }
+            this.buf = frame;
+            this.end = end;
+            int flags = frame[offset + 3];
+            this.mask = (frame[offset + 4] & 0xFF) | (frame[offset + 5] & 0xFF) << 8;
+            this.pos = offset + HEADER_LENGTH;
+            this.ts = (flags & FLAG_TIMESTAMP) != 0 ? getLong() : null;
+            this.seq = (flags & FLAG_SEQUENCE) != 0 ? getInt() & 0xFFFFFFFFL : null;
+        }
+
+        int getByte() {
+            require(1);
+            return buf[pos++];
+        }
+
+        int getInt() {
+            require(4);
+            int value = (buf[pos] & 0xFF)
+                    | (buf[pos + 1] & 0xFF) << 8
+                    | (buf[pos + 2] & 0xFF) << 16
+                    | (buf[pos + 3] & 0xFF) << 24;
+            pos += 4;
+            return value;
+        }
+
+        long getLong() {
+            long low = getInt() & 0xFFFFFFFFL;
+            long high = getInt() & 0xFFFFFFFFL;
+            return low | high << 32;
+        }
+
+        double getFixed(double scale) {
+            return getInt() / scale;
+        }
+
+        void finish() {
+            if (pos != end) {
+                throw new IllegalArgumentException("帧长度与字段位图不一致");
+            }
+        }
+
+        private void require(int bytes) {
+            if (pos + bytes > end) {
+                throw new IllegalArgumentException("帧数据不完整");
+            }
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.yang.springbootbackend.service.mqtt.codec;
+
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 遥测JSON字节解析器
+ * 设备上报的是只含数字字段（以及塔吊ID字符串）的扁平JSON对象，网关批量上报时为这类对象组成的数组。
+ * 这里直接在UTF-8字节上扫描并写入DTO，不经过 byte[] -> String -> char[] 的解码，也不创建解析器对象。
+ * 遇到嵌套对象、转义字符等不支持的结构时返回null，由调用方回退到fastjson
+ */
+public final class TelemetryJsonParser {
+
+    private static final byte[] GAS_VALUE = ascii("gas_value");
+    private static final byte[] GAS_RATE = ascii("gasrate");
+    private static final byte[] RAIN_VALUE = ascii("rain_value");
+    private static final byte[] RAIN_RATE = ascii("rainrate");
+    private static final byte[] HEIGHT = ascii("height");
+    private static final byte[] LUX_VALUE = ascii("lux_value");
+    private static final byte[] WIND_VALUE = ascii("wind_value");
+    private static final byte[] TEMPERATURE = ascii("temperature");
+    private static final byte[] ANGLE = ascii("angle");
+    private static final byte[] TS = ascii("ts");
+    private static final byte[] SEQ = ascii("seq");
+    private static final byte[] CRANE_ID = ascii("craneId");
+
+    /**
+     * 可精确表示的10的整数次幂（double在10^22以内是精确的）
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private TelemetryJsonParser() {
+    }
+
+    /**
+     * 字段绑定回调
+     *
+     * @param <T> 目标对象类型
+     */
+    @FunctionalInterface
+    interface FieldBinder<T> {
+        /**
+         * 绑定数值字段
+         *
+         * @param target    目标对象
+         * @param buf       原始字节
+         * @param nameStart 字段名起始位置
+         * @param nameEnd   字段名结束位置（不含）
+         * @param value     字段值
+         */
+        void bind(T target, byte[] buf, int nameStart, int nameEnd, double value);
+    }
+
+    /**
+     * 字符串字段绑定回调
+     *
+     * @param <T> 目标对象类型
+     */
+    @FunctionalInterface
+    interface TextBinder<T> {
+        /**
+         * 绑定字符串字段
+         *
+         * @param target     目标对象
+         * @param buf        原始字节
+         * @param nameStart  字段名起始位置
+         * @param nameEnd    字段名结束位置（不含）
+         * @param valueStart 字段值起始位置（不含引号）
+         * @param valueEnd   字段值结束位置（不含引号）
+         * @return 是否识别该字段，未识别时整体回退到fastjson
+         */
+        boolean bind(T target, byte[] buf, int nameStart, int nameEnd, int valueStart, int valueEnd);
+    }
+
+    /**
+     * 解析气体传感器数据
+     *
+     * @param payload UTF-8字节
+     * @return 解析结果，结构不支持时返回null
+     */
+    public static SensorDataDTO parseSensorData(byte[] payload) {
+        SensorDataDTO data = new SensorDataDTO();
+        return parseObject(payload, data, TelemetryJsonParser::bindSensorField, TelemetryJsonParser::bindCraneId)
+                ? data : null;
+    }
+
+    /**
+     * 解析气体传感器数据，载荷可以是单个对象或对象数组
+     *
+     * @param payload UTF-8字节
+     * @return 读数列表，结构不支持时返回null
+     */
+    public static List<SensorDataDTO> parseSensorDataList(byte[] payload) {
+        return parseList(payload, SensorDataDTO::new, TelemetryJsonParser::bindSensorField);
+    }
+
+    /**
+     * 解析角度传感器数据
+     *
+     * @param payload UTF-8字节
+     * @return 解析结果，结构不支持时返回null
+     */
+    public static AngleDataDTO parseAngleData(byte[] payload) {
+        AngleDataDTO data = new AngleDataDTO();
+        return parseObject(payload, data, TelemetryJsonParser::bindAngleField, TelemetryJsonParser::bindCraneId)
+                ? data : null;
+    }
+
+    /**
+     * 解析角度传感器数据，载荷可以是单个对象或对象数组
+     *
+     * @param payload UTF-8字节
+     * @return 读数列表，结构不支持时返回null
+     */
+    public static List<AngleDataDTO> parseAngleDataList(byte[] payload) {
+        return parseList(payload, AngleDataDTO::new, TelemetryJsonParser::bindAngleField);
+    }
+
+    private static void bindSensorField(SensorDataDTO data, byte[] buf, int start, int end, double value) {
+        if (nameEquals(buf, start, end, GAS_VALUE)) {
+            data.setGasValue(value);
+        } else if (nameEquals(buf, start, end, GAS_RATE)) {
+            data.setGasrate((int) value);
+        } else if (nameEquals(buf, start, end, RAIN_VALUE)) {
+            data.setRainValue(value);
+        } else if (nameEquals(buf, start, end, RAIN_RATE)) {
+            data.setRainrate((int) value);
+        } else if (nameEquals(buf, start, end, HEIGHT)) {
+            data.setHeight(value);
+        } else if (nameEquals(buf, start, end, LUX_VALUE)) {
+            data.setLuxValue(value);
+        } else if (nameEquals(buf, start, end, WIND_VALUE)) {
+            data.setWindValue(value);
+        } else if (nameEquals(buf, start, end, TEMPERATURE)) {
+            data.setTemperature(value);
+        } else if (nameEquals(buf, start, end, TS)) {
+            data.setTs((long) value);
+        } else if (nameEquals(buf, start, end, SEQ)) {
+            data.setSeq((long) value);
+        }
+    }
+
+    private static void bindAngleField(AngleDataDTO data, byte[] buf, int start, int end, double value) {
+        if (nameEquals(buf, start, end, ANGLE)) {
+            data.setAngle(value);
+        } else if (nameEquals(buf, start, end, TS)) {
+            data.setTs((long) value);
+        } else if (nameEquals(buf, start, end, SEQ)) {
+            data.setSeq((long) value);
+        }
+    }
+
+    private static boolean bindCraneId(TelemetryReading reading, byte[] buf, int start, int end,
+                                       int valueStart, int valueEnd) {
+        if (!nameEquals(buf, start, end, CRANE_ID)) {
+            return false;
+        }
+        reading.setCraneId(new String(buf, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * 解析单个对象或对象数组
+     *
+     * @return 读数列表，结构不支持时返回null
+     */
+    private static <T extends TelemetryReading> List<T> parseList(byte[] buf, Supplier<T> factory,
+                                                                  FieldBinder<T> binder) {
+        int length = buf.length;
+        int pos = skipWhitespace(buf, 0, length);
+        if (pos >= length) {
+            return null;
+        }
+        if (buf[pos] != '[') {
+            T target = factory.get();
+            return parseObject(buf, target, binder, TelemetryJsonParser::bindCraneId)
+                    ? Collections.singletonList(target) : null;
+        }
+
+        List<T> readings = new ArrayList<>();
+        pos = skipWhitespace(buf, pos + 1, length);
+        if (pos < length && buf[pos] == ']') {
+            return skipWhitespace(buf, pos + 1, length) == length ? readings : null;
+        }
+        while (pos < length) {
+            T target = factory.get();
+            pos = parseObjectAt(buf, pos, target, binder, TelemetryJsonParser::bindCraneId);
+            if (pos < 0) {
+                return null;
+            }
+            readings.add(target);
+            pos = skipWhitespace(buf, pos, length);
+            if (pos >= length) {
+                return null;
+            }
+            if (buf[pos] == ']') {
+                return skipWhitespace(buf, pos + 1, length) == length ? readings : null;
+            }
+            if (buf[pos] != ',') {
+                return null;
+            }
+            pos = skipWhitespace(buf, pos + 1, length);
+        }
+        return null;
+    }
+
+    /**
+     * 扫描扁平JSON对象，对每个数值字段调用绑定回调，null值字段跳过
+     *
+     * @return 是否解析成功
+     */
+    static <T> boolean parseObject(byte[] buf, T target, FieldBinder<T> binder, TextBinder<? super T> textBinder) {
+        int length = buf.length;
+        int end = parseObjectAt(buf, skipWhitespace(buf, 0, length), target, binder, textBinder);
+        return end >= 0 && skipWhitespace(buf, end, length) == length;
+    }
+
+    /**
+     * 从指定位置扫描一个扁平JSON对象
+     *
+     * @return 对象结束后的位置，解析失败时返回-1
+     */
+    private static <T> int parseObjectAt(byte[] buf, int pos, T target, FieldBinder<T> binder,
+                                         TextBinder<? super T> textBinder) {
+        int length = buf.length;
+        if (pos >= length || buf[pos] != '{') {
+            return -1;
+        }
+        pos = skipWhitespace(buf, pos + 1, length);
+        if (pos < length && buf[pos] == '}') {
+            return pos + 1;
+        }
+
+        while (pos < length) {
+            // 字段名
+            if (buf[pos] != '"') {
+                return -1;
+            }
+            int nameStart = pos + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < length && buf[nameEnd] != '"') {
+                if (buf[nameEnd] == '\\') {
+                    return -1;
+                }
+                nameEnd++;
+            }
+            if (nameEnd >= length) {
+                return -1;
+            }
+            pos = skipWhitespace(buf, nameEnd + 1, length);
+            if (pos >= length || buf[pos] != ':') {
+                return -1;
+            }
+            pos = skipWhitespace(buf, pos + 1, length);
+            if (pos >= length) {
+                return -1;
+            }
+
+            // 字段值：数字、null或不含转义的字符串
+            byte c = buf[pos];
+            if (c == 'n') {
+                if (pos + 4 > length || buf[pos + 1] != 'u' || buf[pos + 2] != 'l' || buf[pos + 3] != 'l') {
+                    return -1;
+                }
+                pos += 4;
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                int numberEnd = pos;
+                while (numberEnd < length && isNumberChar(buf[numberEnd])) {
+                    numberEnd++;
+                }
+                double value = parseNumber(buf, pos, numberEnd);
+                if (Double.isNaN(value)) {
+                    return -1;
+                }
+                binder.bind(target, buf, nameStart, nameEnd, value);
+                pos = numberEnd;
+            } else if (c == '"') {
+                int valueStart = pos + 1;
+                int valueEnd = valueStart;
+                while (valueEnd < length && buf[valueEnd] != '"') {
+                    if (buf[valueEnd] == '\\') {
+                        return -1;
+                    }
+                    valueEnd++;
+                }
+                if (valueEnd >= length || !textBinder.bind(target, buf, nameStart, nameEnd, valueStart, valueEnd)) {
+                    return -1;
+                }
+                pos = valueEnd + 1;
+            } else {
+                return -1;
+            }
+
+            pos = skipWhitespace(buf, pos, length);
+            if (pos >= length) {
+                return -1;
+            }
+            if (buf[pos] == '}') {
+                return pos + 1;
+            }
+            if (buf[pos] != ',') {
+                return -1;
+            }
+            pos = skipWhitespace(buf, pos + 1, length);
+        }
+        return -1;
+    }
+
+    /**
+     * 解析数字
+     * 有效数字不超过15位且十进制指数在22以内时直接用一次乘除得到正确舍入的结果，
+     * 其余情况回退到 Double.parseDouble
+     *
+     * @return 解析结果，格式错误时返回NaN
+     */
+    static double parseNumber(byte[] buf, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (buf[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for (; pos < end; pos++) {
+            byte c = buf[pos];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    if (seenDot) {
+                        scale++;
+                    }
+                    continue;
+                }
+                if (digits >= 15) {
+                    return slowParse(buf, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (seenDot) {
+                    scale++;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else if (c == 'e' || c == 'E') {
+                break;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+
+        int exponent = -scale;
+        if (pos < end) {
+            // 指数部分
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (buf[pos] == '-' || buf[pos] == '+')) {
+                negativeExponent = buf[pos] == '-';
+                pos++;
+            }
+            if (pos >= end) {
+                return Double.NaN;
+            }
+            int e = 0;
+            for (; pos < end; pos++) {
+                byte c = buf[pos];
+                if (c < '0' || c > '9' || e > 1000) {
+                    return c < '0' || c > '9' ? Double.NaN : slowParse(buf, start, end);
+                }
+                e = e * 10 + (c - '0');
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return slowParse(buf, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(byte[] buf, int start, int end) {
+        try {
+            return Double.parseDouble(new String(buf, start, end - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isNumberChar(byte c) {
+        return (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E';
+    }
+
+    private static int skipWhitespace(byte[] buf, int pos, int length) {
+        while (pos < length) {
+            byte c = buf[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean nameEquals(byte[] buf, int start, int end, byte[] name) {
+        int len = end - start;
+        if (len != name.length) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (buf[start + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String name) {
+        return name.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,46 @@
+package com.yang.springbootbackend.service.mqtt.command;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * 一条下行指令
+ */
+@Getter
+class CraneCommand {
+
+    private final String id;
+
+    private final String craneId;
+
+    private final CraneCommandType type;
+
+    private final Map<String, Object> params;
+
+    private final long createdMillis;
+
+    /**
+     * 发出时间（纳秒），用于计算回执往返延迟和超时
+     */
+    private volatile long publishNanos;
+
+    CraneCommand(String id, String craneId, CraneCommandType type, Map<String, Object> params) {
+        this.id = id;
+        this.craneId = craneId;
+        this.type = type;
+        this.params = params;
+        this.createdMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * 合并键：同一塔吊同一分组的指令只保留最新一条待发送
+     */
+    String coalesceKey() {
+        return craneId + "|" + type.getGroup();
+    }
+
+    void markPublished(long nanos) {
+        this.publishNanos = nanos;
+    }
+}
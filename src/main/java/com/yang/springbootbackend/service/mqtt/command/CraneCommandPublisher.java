@@ -0,0 +1,366 @@
+package com.yang.springbootbackend.service.mqtt.command;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.CommandStatsVO;
+import com.yang.springbootbackend.service.mqtt.state.CraneStateStore;
+import com.yang.springbootbackend.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 塔吊下行指令发布器
+ * 提交的指令先按 (塔吊, 指令分组) 合并：尚未发出的旧指令直接被新指令取代，
+ * 合并键进入有界队列，由独立发送线程批量取出并通过异步客户端发布，提交方和入站适配器都不会被阻塞。
+ * 设备处理后向回执主题回复指令ID，{@link CommandAckProcessor} 据此计算往返延迟；超时未回执的指令计入超时
+ */
+@Service
+@Slf4j
+public class CraneCommandPublisher {
+
+    private static final long CONNECT_TIMEOUT_MS = 10000;
+
+    private static final long RECONNECT_INTERVAL_MS = 5000;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private CraneStateStore craneStateStore;
+
+    /**
+     * 合并键 -> 待发送指令
+     */
+    private final Map<String, CraneCommand> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 指令ID -> 已发出、等待回执的指令
+     */
+    private final Map<String, CraneCommand> awaitingAck = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram rtt = new LatencyHistogram();
+
+    private final AtomicLong idSequence = new AtomicLong();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong supersededCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong ackedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private final IMqttActionListener deliveryListener = new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            CraneCommand command = (CraneCommand) asyncActionToken.getUserContext();
+            if (command != null && awaitingAck.remove(command.getId()) != null) {
+                failedCount.incrementAndGet();
+                log.warn("指令发布失败，塔吊: {}, 指令: {}", command.getCraneId(), command.getType(), exception);
+            }
+        }
+    };
+
+    private BlockingQueue<String> readyKeys;
+    private String idPrefix;
+    private volatile MqttAsyncClient client;
+    private volatile boolean running;
+    private Thread sender;
+    private ScheduledExecutorService timeoutExecutor;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.Command config = mqttProperties.getCommand();
+        if (!config.isEnabled()) {
+            log.info("下行指令通道未启用");
+            return;
+        }
+        readyKeys = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        idPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+        running = true;
+
+        sender = new Thread(this::sendLoop, "mqtt-command-sender");
+        sender.setDaemon(true);
+        sender.start();
+
+        long sweepMs = Math.max(100, Math.min(1000, config.getAckTimeoutMs() / 4));
+        timeoutExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mqtt-command-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timeoutExecutor.scheduleWithFixedDelay(this::expireAcks, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+        log.info("下行指令通道启动完成，主题: {}, 回执超时: {}ms", config.getTopicTemplate(), config.getAckTimeoutMs());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (timeoutExecutor != null) {
+            timeoutExecutor.shutdownNow();
+        }
+        if (sender != null) {
+            sender.interrupt();
+            try {
+                sender.join(CONNECT_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        MqttAsyncClient current = client;
+        if (current != null) {
+            try {
+                if (current.isConnected()) {
+                    current.disconnect().waitForCompletion(CONNECT_TIMEOUT_MS);
+                }
+                current.close();
+            } catch (MqttException e) {
+                log.warn("关闭下行指令客户端失败", e);
+            }
+        }
+    }
+
+    /**
+     * 提交一条指令
+     *
+     * @param craneId 塔吊ID
+     * @param type    指令类型
+     * @param params  指令参数
+     * @return 指令ID，通道未启用或队列已满时返回null
+     */
+    public String submit(String craneId, CraneCommandType type, Map<String, Object> params) {
+        if (!running) {
+            return null;
+        }
+        CraneCommand command = new CraneCommand(idPrefix + idSequence.incrementAndGet(), craneId, type, params);
+        // 合并键入队与写入待发送指令在同一个按键的原子操作中完成，
+        // 避免入队失败回滚时并发提交的新指令留在 pending 中却没有合并键在队列里
+        CraneCommand accepted = pending.compute(command.coalesceKey(), (key, previous) -> {
+            if (previous != null) {
+                // 旧指令尚未发出，合并键已在队列中，新指令随其发出
+                supersededCount.incrementAndGet();
+                return command;
+            }
+            return readyKeys.offer(key) ? command : null;
+        });
+        if (accepted == null) {
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+        submittedCount.incrementAndGet();
+        return command.getId();
+    }
+
+    /**
+     * 向多台塔吊广播同一指令
+     *
+     * @param craneIds 目标塔吊，为空时发送给状态存储中所有在线塔吊
+     * @param type     指令类型
+     * @param params   指令参数
+     * @return 成功提交的指令数
+     */
+    public int broadcast(Collection<String> craneIds, CraneCommandType type, Map<String, Object> params) {
+        Collection<String> targets = craneIds;
+        if (targets == null || targets.isEmpty()) {
+            List<String> online = new ArrayList<>(craneStateStore.size());
+            craneStateStore.forEach(state -> online.add(state.getCraneId()));
+            targets = online;
+        }
+        int accepted = 0;
+        for (String craneId : targets) {
+            if (submit(craneId, type, params) != null) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * 处理设备回执
+     *
+     * @param craneId   回执来源塔吊
+     * @param commandId 指令ID
+     * @param status    设备返回的处理状态
+     */
+    public void onAck(String craneId, String commandId, String status) {
+        CraneCommand command = awaitingAck.remove(commandId);
+        if (command == null) {
+            log.debug("收到未知或已超时指令的回执，塔吊: {}, 指令ID: {}", craneId, commandId);
+            return;
+        }
+        rtt.record(System.nanoTime() - command.getPublishNanos());
+        ackedCount.incrementAndGet();
+        if (status != null && !"ok".equalsIgnoreCase(status)) {
+            log.warn("塔吊未执行指令，塔吊: {}, 指令: {}, 状态: {}", command.getCraneId(), command.getType(), status);
+        }
+    }
+
+    /**
+     * 获取指令通道运行指标
+     *
+     * @return 指标
+     */
+    public CommandStatsVO getStats() {
+        MqttAsyncClient current = client;
+        CommandStatsVO stats = new CommandStatsVO();
+        stats.setConnected(current != null && current.isConnected());
+        stats.setQueuedCount(pending.size());
+        stats.setAwaitingAckCount(awaitingAck.size());
+        stats.setSubmittedCount(submittedCount.get());
+        stats.setSupersededCount(supersededCount.get());
+        stats.setRejectedCount(rejectedCount.get());
+        stats.setPublishedCount(publishedCount.get());
+        stats.setFailedCount(failedCount.get());
+        stats.setAckedCount(ackedCount.get());
+        stats.setTimeoutCount(timeoutCount.get());
+        stats.setRttP50Micros(rtt.getValueAtPercentile(50) / 1000);
+        stats.setRttP99Micros(rtt.getValueAtPercentile(99) / 1000);
+        stats.setRttMaxMicros(rtt.getMax() / 1000);
+        return stats;
+    }
+
+    private void sendLoop() {
+        int batchSize = Math.max(1, mqttProperties.getCommand().getBatchSize());
+        List<String> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                if (!ensureConnected()) {
+                    Thread.sleep(RECONNECT_INTERVAL_MS);
+                    continue;
+                }
+                String first = readyKeys.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                readyKeys.drainTo(batch, batchSize - 1);
+                for (String key : batch) {
+                    CraneCommand command = pending.remove(key);
+                    if (command != null) {
+                        publish(command);
+                    }
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("下行指令发送失败", e);
+                batch.clear();
+            }
+        }
+    }
+
+    private void publish(CraneCommand command) {
+        MqttProperties.Command config = mqttProperties.getCommand();
+        String topic = config.getTopicTemplate().replace("{craneId}", command.getCraneId());
+        JSONObject body = new JSONObject();
+        body.put("id", command.getId());
+        body.put("type", command.getType().name());
+        if (command.getParams() != null && !command.getParams().isEmpty()) {
+            body.put("params", command.getParams());
+        }
+        body.put("ts", command.getCreatedMillis());
+        byte[] payload = JSON.toJSONBytes(body);
+
+        command.markPublished(System.nanoTime());
+        awaitingAck.put(command.getId(), command);
+        while (running) {
+            try {
+                client.publish(topic, payload, config.getQos(), false, command, deliveryListener);
+                publishedCount.incrementAndGet();
+                return;
+            } catch (MqttException e) {
+                if (e.getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT) {
+                    // 在途窗口已满，等待Broker确认后再发
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    continue;
+                }
+                awaitingAck.remove(command.getId());
+                failedCount.incrementAndGet();
+                log.warn("指令发布失败，塔吊: {}, 指令: {}, 原因: {}", command.getCraneId(), command.getType(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private boolean ensureConnected() {
+        MqttAsyncClient current = client;
+        if (current != null && current.isConnected()) {
+            return true;
+        }
+        try {
+            if (current == null) {
+                current = new MqttAsyncClient(mqttProperties.getUrl(), mqttProperties.getEffectivePubClientId(),
+                        new MemoryPersistence());
+                client = current;
+            }
+            MqttConnectOptions options = new MqttConnectOptions();
+            options.setCleanSession(true);
+            options.setUserName(mqttProperties.getUsername());
+            if (mqttProperties.getPassword() != null) {
+                options.setPassword(mqttProperties.getPassword().toCharArray());
+            }
+            options.setConnectionTimeout(mqttProperties.getConnectionTimeout());
+            options.setKeepAliveInterval(mqttProperties.getKeepAliveInterval());
+            options.setMaxInflight(mqttProperties.getCommand().getMaxInflight());
+            current.connect(options).waitForCompletion(CONNECT_TIMEOUT_MS);
+            log.info("下行指令客户端已连接: {}", mqttProperties.getUrl());
+            return true;
+        } catch (MqttException e) {
+            log.warn("下行指令客户端连接失败，{}ms后重试: {}", RECONNECT_INTERVAL_MS, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 清理超时未回执的指令
+     */
+    private void expireAcks() {
+        try {
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(mqttProperties.getCommand().getAckTimeoutMs());
+            long now = System.nanoTime();
+            int expired = 0;
+            Iterator<CraneCommand> iterator = awaitingAck.values().iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next().getPublishNanos() > timeoutNanos) {
+                    iterator.remove();
+                    expired++;
+                }
+            }
+            if (expired > 0) {
+                timeoutCount.addAndGet(expired);
+                log.warn("{} 条下行指令超时未收到回执", expired);
+            }
+        } catch (Exception e) {
+            log.error("清理超时指令失败", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.yang.springbootbackend.service.mqtt.command;
+
+/**
+ * 塔吊下行指令类型
+ * 同一塔吊同一分组的指令，后下发的会替换尚未发出的旧指令（例如减速建议被随后的停机建议取代）
+ */
+public enum CraneCommandType {
+
+    /**
+     * 减速建议
+     */
+    SLOW_DOWN("motion"),
+
+    /**
+     * 停机建议
+     */
+    STOP("motion"),
+
+    /**
+     * 解除减速/停机建议
+     */
+    RESUME("motion"),
+
+    /**
+     * 修改传感器采样频率，参数 rate（次/秒）
+     */
+    SET_SAMPLING_RATE("sampling");
+
+    private final String group;
+
+    CraneCommandType(String group) {
+        this.group = group;
+    }
+
+    /**
+     * 合并分组
+     */
+    public String getGroup() {
+        return group;
+    }
+}
@@ -0,0 +1,40 @@
+package com.yang.springbootbackend.service.mqtt.deadletter;
+
+import lombok.Data;
+
+/**
+ * 死信日志条目
+ */
+@Data
+public class DeadLetterEntry {
+
+    /**
+     * 条目编号，写入时按顺序分配
+     */
+    private long id;
+
+    /**
+     * 失败时间（毫秒）
+     */
+    private long timestamp;
+
+    /**
+     * 消息主题
+     */
+    private String topic;
+
+    /**
+     * 失败类别：异常类名，或 {@link DeadLetterJournal} 中定义的非异常类别
+     */
+    private String failureClass;
+
+    /**
+     * 错误信息
+     */
+    private String errorMessage;
+
+    /**
+     * 原始消息载荷
+     */
+    private byte[] payload;
+}
@@ -0,0 +1,466 @@
+package com.yang.springbootbackend.service.mqtt.deadletter;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.util.DirectoryLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * MQTT死信日志
+ * 处理失败、找不到处理器或入站队列已满的消息追加写入本地分段文件，供排查和重放。
+ * 调用方只把条目放入有界队列，由单独的写线程批量落盘，不阻塞入站线程；
+ * 与 IngestJournal 一样按组提交，每批写入后做一次 force，写线程返回前本批条目已持久化；
+ * 分段写满后滚动，总大小超过上限时删除最旧的分段。运行期间持有目录锁，两个进程不能写同一个目录。
+ * <p>
+ * 分段文件名为 dead-letter-{首条编号}.log，每条记录格式为：
+ * 魔数(int) + 记录体长度(int) + 记录体 + CRC32(int)，
+ * 记录体依次为 编号(long)、时间戳(long)、主题、失败类别、错误信息（均为UTF）、载荷长度(int)、载荷。
+ * 读取时遇到不完整或校验失败的记录即停止读取该分段
+ */
+@Component
+@Slf4j
+public class DeadLetterJournal {
+
+    /**
+     * 失败类别：没有匹配的处理器
+     */
+    public static final String FAILURE_UNKNOWN_TOPIC = "UnknownTopic";
+
+    /**
+     * 失败类别：入站工作通道队列已满
+     */
+    public static final String FAILURE_INGEST_REJECTED = "IngestRejected";
+
+    static final String SEGMENT_PREFIX = "dead-letter-";
+
+    static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int RECORD_MAGIC = 0x444C4A31;
+
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 512;
+
+    private static final int MAX_BATCH = 256;
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    private final Map<String, LongAdder> failureCounts = new ConcurrentHashMap<>();
+
+    private final AtomicLong writtenCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private ArrayBlockingQueue<DeadLetterEntry> queue;
+
+    private File directory;
+
+    /**
+     * 以下字段只由写线程访问
+     */
+    private final Deque<File> segments = new ArrayDeque<>();
+
+    private DataOutputStream out;
+
+    private FileOutputStream fileOut;
+
+    private long currentSegmentBytes;
+
+    private DirectoryLock lock;
+
+    private volatile long nextId;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.DeadLetter config = mqttProperties.getDeadLetter();
+        if (!config.isEnabled()) {
+            log.info("MQTT死信日志未启用，失败消息只计数");
+            return;
+        }
+        directory = new File(config.getDirectory());
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.error("无法创建死信日志目录: {}，失败消息只计数", directory.getAbsolutePath());
+            return;
+        }
+        try {
+            lock = DirectoryLock.acquire(directory.toPath());
+        } catch (IOException e) {
+            log.error("无法锁定死信日志目录: {}，失败消息只计数", directory.getAbsolutePath(), e);
+            return;
+        }
+
+        File[] existing = listSegments();
+        segments.addAll(Arrays.asList(existing));
+        nextId = existing.length == 0 ? 0 : recoverNextId(existing[existing.length - 1]);
+
+        queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        running = true;
+        writer = new Thread(this::writeLoop, "mqtt-dead-letter");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("MQTT死信日志启动完成，目录: {}, 已有分段: {}, 下一条编号: {}",
+                directory.getAbsolutePath(), existing.length, nextId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("死信日志写线程未能在 {}ms 内写完剩余条目，剩余: {}", SHUTDOWN_TIMEOUT_MS, queue.size());
+            writer.interrupt();
+        }
+    }
+
+    /**
+     * 记录处理失败的消息
+     * 只入队不落盘，队列已满时丢弃并计数
+     *
+     * @param topic        主题
+     * @param payload      消息载荷
+     * @param failureClass 失败类别
+     * @param errorMessage 错误信息，可为空
+     */
+    public void record(String topic, byte[] payload, String failureClass, String errorMessage) {
+        failureCounts.computeIfAbsent(failureClass, key -> new LongAdder()).increment();
+        if (queue == null) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+
+        DeadLetterEntry entry = new DeadLetterEntry();
+        entry.setTimestamp(System.currentTimeMillis());
+        entry.setTopic(topic);
+        entry.setFailureClass(failureClass);
+        entry.setErrorMessage(errorMessage);
+        entry.setPayload(payload);
+        if (!queue.offer(entry)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 记录处理异常的消息，失败类别为异常类名
+     *
+     * @param topic   主题
+     * @param payload 消息载荷
+     * @param error   异常
+     */
+    public void record(String topic, byte[] payload, Throwable error) {
+        record(topic, payload, error.getClass().getName(), error.getMessage());
+    }
+
+    /**
+     * 从指定编号开始读取条目
+     *
+     * @param fromId 起始编号（含）
+     * @param limit  最多读取条数
+     * @return 条目列表，按编号升序
+     */
+    public List<DeadLetterEntry> read(long fromId, int limit) {
+        List<DeadLetterEntry> entries = new ArrayList<>();
+        if (directory == null || limit <= 0) {
+            return entries;
+        }
+
+        File[] files = listSegments();
+        // 从首条编号不大于fromId的最后一个分段开始
+        int start = 0;
+        for (int i = 0; i < files.length; i++) {
+            if (segmentBaseId(files[i]) <= fromId) {
+                start = i;
+            }
+        }
+        for (int i = start; i < files.length && entries.size() < limit; i++) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(files[i])))) {
+                DeadLetterEntry entry;
+                while (entries.size() < limit && (entry = readRecord(in)) != null) {
+                    if (entry.getId() >= fromId) {
+                        entries.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                // 分段可能恰好被删除，跳过即可
+                log.warn("读取死信日志分段失败: {}", files[i].getName(), e);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 获取各失败类别的累计次数
+     */
+    public Map<String, Long> getFailureCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        failureCounts.forEach((key, value) -> counts.put(key, value.sum()));
+        return counts;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getNextId() {
+        return nextId;
+    }
+
+    /**
+     * 获取当前分段数量
+     */
+    public int getSegmentCount() {
+        return directory == null ? 0 : listSegments().length;
+    }
+
+    /**
+     * 获取日志占用的磁盘字节数
+     */
+    public long getDiskBytes() {
+        long total = 0;
+        if (directory != null) {
+            for (File file : listSegments()) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+    private void writeLoop() {
+        try {
+            while (running || !queue.isEmpty()) {
+                DeadLetterEntry entry;
+                try {
+                    entry = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (entry == null) {
+                    continue;
+                }
+
+                // 组提交：批量写入后统一刷盘并force
+                int pending = 0;
+                try {
+                    do {
+                        append(entry);
+                        pending++;
+                    } while (pending < MAX_BATCH && (entry = queue.poll()) != null);
+                    out.flush();
+                    fileOut.getChannel().force(false);
+                    writtenCount.addAndGet(pending);
+                } catch (IOException e) {
+                    log.error("写入死信日志失败", e);
+                    droppedCount.addAndGet(pending);
+                    closeSegment();
+                }
+            }
+        } finally {
+            closeSegment();
+            try {
+                lock.close();
+            } catch (IOException e) {
+                log.warn("释放死信日志目录锁失败", e);
+            }
+        }
+    }
+
+    private void append(DeadLetterEntry entry) throws IOException {
+        MqttProperties.DeadLetter config = mqttProperties.getDeadLetter();
+        if (out == null || currentSegmentBytes >= config.getSegmentBytes()) {
+            rollSegment(config);
+        }
+
+        entry.setId(nextId);
+        byte[] body = encodeBody(entry);
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        out.writeInt(RECORD_MAGIC);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeInt((int) crc.getValue());
+        currentSegmentBytes += body.length + 12;
+        nextId++;
+    }
+
+    /**
+     * 滚动到新分段，并删除超出磁盘上限的最旧分段
+     */
+    private void rollSegment(MqttProperties.DeadLetter config) throws IOException {
+        closeSegment();
+        File segment = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, nextId, SEGMENT_SUFFIX));
+        fileOut = new FileOutputStream(segment, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        currentSegmentBytes = segment.length();
+        // 启动时最后一个分段可能为空，文件名与新分段相同
+        if (!segment.equals(segments.peekLast())) {
+            segments.addLast(segment);
+        }
+
+        long total = 0;
+        for (File file : segments) {
+            total += file.length();
+        }
+        while (total > config.getMaxTotalBytes() && segments.size() > 1) {
+            File oldest = segments.pollFirst();
+            long length = oldest.length();
+            if (oldest.delete()) {
+                total -= length;
+                log.warn("死信日志超出磁盘上限，删除最旧分段: {}", oldest.getName());
+            }
+        }
+    }
+
+    private void closeSegment() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("关闭死信日志分段失败", e);
+        }
+        out = null;
+        fileOut = null;
+    }
+
+    private static byte[] encodeBody(DeadLetterEntry entry) throws IOException {
+        byte[] payload = entry.getPayload() == null ? new byte[0] : entry.getPayload();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(payload.length + 128);
+        DataOutputStream body = new DataOutputStream(buffer);
+        body.writeLong(entry.getId());
+        body.writeLong(entry.getTimestamp());
+        body.writeUTF(nullToEmpty(entry.getTopic()));
+        body.writeUTF(nullToEmpty(entry.getFailureClass()));
+        body.writeUTF(truncate(nullToEmpty(entry.getErrorMessage())));
+        body.writeInt(payload.length);
+        body.write(payload);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 读取一条记录
+     *
+     * @return 记录，到达分段末尾或记录损坏时返回null
+     */
+    static DeadLetterEntry readRecord(DataInputStream in) throws IOException {
+        try {
+            if (in.readInt() != RECORD_MAGIC) {
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            int expectedCrc = in.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+            if ((int) crc.getValue() != expectedCrc) {
+                return null;
+            }
+
+            DataInputStream bodyIn = new DataInputStream(new ByteArrayInputStream(body));
+            DeadLetterEntry entry = new DeadLetterEntry();
+            entry.setId(bodyIn.readLong());
+            entry.setTimestamp(bodyIn.readLong());
+            entry.setTopic(bodyIn.readUTF());
+            entry.setFailureClass(bodyIn.readUTF());
+            String errorMessage = bodyIn.readUTF();
+            entry.setErrorMessage(errorMessage.isEmpty() ? null : errorMessage);
+            byte[] payload = new byte[bodyIn.readInt()];
+            bodyIn.readFully(payload);
+            entry.setPayload(payload);
+            return entry;
+        } catch (EOFException e) {
+            // 分段末尾或写入中断留下的不完整记录
+            return null;
+        }
+    }
+
+    /**
+     * 扫描最后一个分段，得到下一条编号
+     */
+    private long recoverNextId(File lastSegment) {
+        long next = segmentBaseId(lastSegment);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(lastSegment)))) {
+            DeadLetterEntry entry;
+            while ((entry = readRecord(in)) != null) {
+                next = entry.getId() + 1;
+            }
+        } catch (IOException e) {
+            log.warn("扫描死信日志分段失败: {}", lastSegment.getName(), e);
+        }
+        return next;
+    }
+
+    private File[] listSegments() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(segmentBaseId(a), segmentBaseId(b)));
+        return files;
+    }
+
+    private static long segmentBaseId(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String truncate(String value) {
+        return value.length() > MAX_ERROR_MESSAGE_LENGTH ? value.substring(0, MAX_ERROR_MESSAGE_LENGTH) : value;
+    }
+}
@@ -0,0 +1,177 @@
+package com.yang.springbootbackend.service.mqtt.deadletter;
+
+import com.yang.springbootbackend.domain.mqtt.vo.DeadLetterEntryVO;
+import com.yang.springbootbackend.domain.mqtt.vo.DeadLetterStatsVO;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryFrameCodec;
+import com.yang.springbootbackend.service.mqtt.ingest.MqttIngestDispatcher;
+import com.yang.springbootbackend.service.mqtt.persist.AbstractBatchSink;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 死信管理服务
+ * 提供死信条目查询、运行指标，以及按指定速率把死信日志中的消息重新交给 {@link MqttIngestDispatcher#redispatch(String, byte[])}，
+ * 重放消息与实时消息一样进入对应塔吊的工作通道，不会与该塔吊的实时处理并发执行；
+ * 同一时间只允许一个重放任务；重放仍失败的消息会再次写入死信日志（获得新的编号），
+ * 重放范围限定在启动时已有的条目内，不会重放本次重放产生的新条目。
+ * 批量写入重试用尽的条目（主题为 {@link AbstractBatchSink#getDeadLetterTopic()}）直接交回对应的写入缓冲，不再经过处理器
+ */
+@Service
+@Slf4j
+public class DeadLetterService {
+
+    private static final int READ_BATCH = 100;
+
+    @Autowired
+    private DeadLetterJournal deadLetterJournal;
+
+    @Autowired
+    private MqttIngestDispatcher ingestDispatcher;
+
+    @Autowired(required = false)
+    private List<AbstractBatchSink<?>> batchSinks = Collections.emptyList();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong replayedCount = new AtomicLong();
+
+    private final AtomicLong lastReplayedId = new AtomicLong(-1);
+
+    /**
+     * 查询死信条目
+     *
+     * @param fromId 起始编号（含）
+     * @param limit  最多返回条数
+     * @return 条目列表
+     */
+    public List<DeadLetterEntryVO> listEntries(long fromId, int limit) {
+        List<DeadLetterEntry> entries = deadLetterJournal.read(fromId, limit);
+        List<DeadLetterEntryVO> result = new ArrayList<>(entries.size());
+        for (DeadLetterEntry entry : entries) {
+            DeadLetterEntryVO vo = new DeadLetterEntryVO();
+            vo.setId(entry.getId());
+            vo.setTimestamp(entry.getTimestamp());
+            vo.setTopic(entry.getTopic());
+            vo.setFailureClass(entry.getFailureClass());
+            vo.setErrorMessage(entry.getErrorMessage());
+            byte[] payload = entry.getPayload();
+            vo.setPayloadSize(payload.length);
+            if (!TelemetryFrameCodec.isFrame(payload)) {
+                vo.setPayloadText(new String(payload, StandardCharsets.UTF_8));
+            }
+            vo.setPayloadBase64(Base64.getEncoder().encodeToString(payload));
+            result.add(vo);
+        }
+        return result;
+    }
+
+    /**
+     * 获取死信日志和重放的运行指标
+     *
+     * @return 运行指标
+     */
+    public DeadLetterStatsVO getStats() {
+        DeadLetterStatsVO stats = new DeadLetterStatsVO();
+        stats.setFailureCounts(deadLetterJournal.getFailureCounts());
+        stats.setWrittenCount(deadLetterJournal.getWrittenCount());
+        stats.setDroppedCount(deadLetterJournal.getDroppedCount());
+        stats.setNextId(deadLetterJournal.getNextId());
+        stats.setSegmentCount(deadLetterJournal.getSegmentCount());
+        stats.setDiskBytes(deadLetterJournal.getDiskBytes());
+        stats.setReplayRunning(running.get());
+        stats.setReplayedCount(replayedCount.get());
+        stats.setLastReplayedId(lastReplayedId.get());
+        return stats;
+    }
+
+    /**
+     * 启动重放任务
+     *
+     * @param fromId        起始编号（含）
+     * @param limit         最多重放条数
+     * @param ratePerSecond 重放速率（条/秒）
+     * @return 是否启动成功，已有重放任务在运行时返回false
+     */
+    public boolean startReplay(long fromId, int limit, int ratePerSecond) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        replayedCount.set(0);
+        Thread thread = new Thread(() -> replay(fromId, limit, ratePerSecond), "mqtt-dead-letter-replay");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void replay(long fromId, int limit, int ratePerSecond) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long nextSlot = System.nanoTime();
+        long endId = deadLetterJournal.getNextId();
+        long cursor = fromId;
+        int remaining = limit;
+        log.info("开始重放死信消息，起始编号: {}, 条数上限: {}, 速率: {}/s", fromId, limit, ratePerSecond);
+        try {
+            while (remaining > 0) {
+                List<DeadLetterEntry> entries = deadLetterJournal.read(cursor, Math.min(remaining, READ_BATCH));
+                if (entries.isEmpty()) {
+                    break;
+                }
+                for (DeadLetterEntry entry : entries) {
+                    if (entry.getId() >= endId) {
+                        remaining = 0;
+                        break;
+                    }
+                    // 按固定间隔放行，避免重放流量冲击处理器
+                    long wait;
+                    while ((wait = nextSlot - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    nextSlot = Math.max(nextSlot, System.nanoTime() - intervalNanos) + intervalNanos;
+
+                    AbstractBatchSink<?> sink = sinkFor(entry.getTopic());
+                    if (sink != null) {
+                        sink.replay(entry.getPayload());
+                    } else {
+                        ingestDispatcher.redispatch(entry.getTopic(), entry.getPayload());
+                    }
+                    replayedCount.incrementAndGet();
+                    lastReplayedId.set(entry.getId());
+                    cursor = entry.getId() + 1;
+                    remaining--;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("死信消息重放被中断，当前编号: {}", cursor);
+        } catch (Exception e) {
+            log.error("重放死信消息失败，当前编号: {}", cursor, e);
+        } finally {
+            running.set(false);
+            log.info("死信消息重放结束，已重放: {}, 最后编号: {}", replayedCount.get(), lastReplayedId.get());
+        }
+    }
+
+    /**
+     * 死信主题对应的批量写入，普通MQTT主题返回null
+     */
+    private AbstractBatchSink<?> sinkFor(String topic) {
+        for (AbstractBatchSink<?> sink : batchSinks) {
+            if (topic.equals(sink.getDeadLetterTopic())) {
+                return sink;
+            }
+        }
+        return null;
+    }
+
+}
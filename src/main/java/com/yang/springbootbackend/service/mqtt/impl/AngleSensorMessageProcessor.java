@@ -1,123 +1,314 @@
 package com.yang.springbootbackend.service.mqtt.impl;
 
-import com.alibaba.fastjson.JSON;
-import com.yang.springbootbackend.controller.MainController;
+import com.yang.springbootbackend.config.properties.MqttProperties;
 import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
 import com.yang.springbootbackend.service.WebSocketService;
-import com.yang.springbootbackend.service.mqtt.MqttMessageProcessor;
+import com.yang.springbootbackend.service.mqtt.AbstractTelemetryProcessor;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryFrameCodec;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryJsonParser;
+import com.yang.springbootbackend.service.mqtt.ingest.EventTimeReorderBuffer;
+import com.yang.springbootbackend.service.mqtt.rule.AlertRuleEngine;
+import com.yang.springbootbackend.service.mqtt.rule.AlertRuleSet;
+import com.yang.springbootbackend.service.mqtt.rule.CompiledRule;
+import com.yang.springbootbackend.service.mqtt.rule.RuleChannel;
+import com.yang.springbootbackend.service.mqtt.rule.RuleField;
+import com.yang.springbootbackend.service.mqtt.state.CraneState;
+import com.yang.springbootbackend.service.mqtt.state.CraneStateStore;
+import com.yang.springbootbackend.service.mqtt.state.LatestValueStore;
+import com.yang.springbootbackend.service.mqtt.state.StateKey;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 角度传感器消息处理器
- * 专门处理角度传感器数据
+ * 专门处理角度传感器数据，支持单条或批量上报。
+ * 只引用角度的告警规则逐条立即求值；角度变化、回转速度和角加速度依赖前后读数，
+ * 先经每台塔吊的重排缓冲按设备时间戳排序，再按真实时间间隔计算，引用这些字段的规则随后求值
  */
 @Component
 @Slf4j
-public class AngleSensorMessageProcessor implements MqttMessageProcessor {
-
-    private static final String ANGLE_TOPIC = "testtopic/1/angle";
-    
-    // 安全角度范围
-    private static final double MIN_SAFE_ANGLE = -45.0;
-    private static final double MAX_SAFE_ANGLE = 45.0;
-    
-    // 角度变化阈值（用于检测快速旋转）
-    private static final double ANGLE_CHANGE_THRESHOLD = 10.0;
-    
-    private Double lastAngle = null;
+public class AngleSensorMessageProcessor extends AbstractTelemetryProcessor<AngleDataDTO> {
+
+    private static final String ANGLE_TOPIC = "testtopic/+/angle";
+
+    // 前后读数间隔超过该值时不再计算速度，避免跨越断线时段
+    private static final long MAX_MOTION_GAP_MS = 5000;
+
+    /**
+     * 各塔吊的重排缓冲和运动状态，保存在塔吊状态存储中
+     */
+    private static final StateKey<CraneMotion> MOTION = StateKey.create("angleMotion");
 
     @Autowired
     private WebSocketService webSocketService;
 
+    @Autowired
+    private LatestValueStore latestValueStore;
+
+    @Autowired
+    private AlertRuleEngine alertRuleEngine;
+
+    @Autowired
+    private CraneStateStore craneStateStore;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    private ScheduledExecutorService flushExecutor;
+
+    @PostConstruct
+    public void start() {
+        long latenessMs = mqttProperties.getReorder().getLatenessMs();
+        if (latenessMs <= 0) {
+            return;
+        }
+        // 塔吊停止上报时，缓冲中的读数在迟到时长后释放
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "angle-reorder-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushIdleMotions, latenessMs, latenessMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+    }
+
     @Override
     public String getSupportedTopic() {
         return ANGLE_TOPIC;
     }
 
     @Override
-    public void processMessage(String topic, String payload) {
-        try {
-            log.info("处理角度传感器数据，主题: {}, 数据: {}", topic, payload);
-            
-            // 解析数据
-            AngleDataDTO angleData = JSON.parseObject(payload, AngleDataDTO.class);
-            
+    protected void processBatch(MqttRoutingContext context, List<AngleDataDTO> readings) {
+        log.debug("处理角度传感器数据，主题: {}, 读数条数: {}", context.getTopic(), readings.size());
+
+        // 业务处理：角度变化检查依赖前后两条读数，必须逐条按顺序处理；整批使用同一个规则集，
+        // 同一塔吊的同一规则每批只触发一次
+        AlertRuleSet rules = alertRuleEngine.current();
+        double[] values = new double[RuleField.COUNT];
+        List<CompiledRule> fired = new ArrayList<>();
+        Set<String> raisedAlerts = new HashSet<>();
+        int valid = 0;
+        for (AngleDataDTO angleData : readings) {
             // 数据验证
-            if (angleData == null || angleData.getAngle() == null) {
-                log.warn("角度传感器数据解析失败或数据为空");
-                return;
+            if (angleData.getAngle() == null) {
+                log.warn("角度传感器数据为空，塔吊: {}", angleData.getCraneId());
+                continue;
+            }
+            processAngleData(context, angleData, rules, values, fired, raisedAlerts);
+            valid++;
+        }
+        if (valid == 0) {
+            return;
+        }
+
+        // 最新值更新和推送只关心每台塔吊的最新读数，每批执行一次
+        Map<String, AngleDataDTO> latest = latestByCrane(readings);
+        for (AngleDataDTO angleData : latest.values()) {
+            if (angleData.getAngle() == null) {
+                continue;
+            }
+            CraneState state = context.getStateStore().get(String.valueOf(angleData.getCraneId()));
+            CraneMotion motion = state != null ? state.get(MOTION) : null;
+            if (motion != null) {
+                synchronized (motion) {
+                    angleData.setRotationSpeed(motion.rotationSpeed);
+                    angleData.setAngularAcceleration(motion.angularAcceleration);
+                }
             }
-            
-            // 业务处理
-            processAngleData(angleData);
-            
-            // 保存最新数据到内存
-            MainController.updateAngleData(angleData);
-            
+
+            // 保存最新数据快照，唤醒等待该塔吊的长轮询
+            latestValueStore.update(LatestValueStore.Channel.ANGLE, angleData);
+
             // WebSocket推送数据到前端
             webSocketService.sendAngleData(angleData);
-            
-            // 更新上次角度
-            lastAngle = angleData.getAngle();
-            
-            log.info("角度传感器数据处理完成: {}", angleData);
-            
-        } catch (Exception e) {
-            log.error("处理角度传感器数据失败，主题: {}, 数据: {}", topic, payload, e);
         }
+
+        log.debug("角度传感器数据处理完成，塔吊数: {}, 读数条数: {}", latest.size(), valid);
+    }
+
+    /**
+     * 解码消息载荷
+     * 以魔数开头的按二进制帧解码，否则直接从UTF-8字节解析JSON，结构不支持时回退到fastjson
+     *
+     * @param payload 消息载荷
+     * @return 角度传感器数据列表
+     */
+    @Override
+    protected List<AngleDataDTO> decodeBatch(byte[] payload) {
+        if (TelemetryFrameCodec.isFrame(payload)) {
+            return TelemetryFrameCodec.decodeAngleDataList(payload);
+        }
+        List<AngleDataDTO> readings = TelemetryJsonParser.parseAngleDataList(payload);
+        return readings != null ? readings : parseJsonList(payload, AngleDataDTO.class);
     }
 
     @Override
     public int getPriority() {
-        return 20; // 中等优先级
+        return 10; // 安全关键层级：角度限位告警使用独占工作通道
     }
 
     /**
      * 处理角度数据的业务逻辑
      *
-     * @param angleData 角度数据
+     * @param context      路由上下文
+     * @param angleData    角度数据
+     * @param rules        本批使用的告警规则
+     * @param values       求值数组，逐条复用
+     * @param fired        条件成立的规则，逐条复用
+     * @param raisedAlerts 本批已触发的告警（塔吊ID:规则名）
      */
-    private void processAngleData(AngleDataDTO angleData) {
-        Double currentAngle = angleData.getAngle();
-        
-        // 检查角度是否在安全范围内
-        if (currentAngle < MIN_SAFE_ANGLE || currentAngle > MAX_SAFE_ANGLE) {
-            log.warn("角度超出安全范围！当前角度: {}°, 安全范围: {}° ~ {}°", 
-                    currentAngle, MIN_SAFE_ANGLE, MAX_SAFE_ANGLE);
-            handleAngleAlert(angleData, "角度超出安全范围");
+    private void processAngleData(MqttRoutingContext context, AngleDataDTO angleData, AlertRuleSet rules,
+                                  double[] values, List<CompiledRule> fired, Set<String> raisedAlerts) {
+        // 检查只引用角度的规则（如安全范围）
+        RuleField.load(angleData, values);
+        fired.clear();
+        if (rules.evaluate(RuleChannel.ANGLE, angleData.getCraneId(), values, fired) > 0) {
+            raiseAngleAlerts(angleData, fired, raisedAlerts);
         }
-        
-        // 检查角度变化是否过快
-        if (lastAngle != null) {
-            double angleChange = Math.abs(currentAngle - lastAngle);
-            if (angleChange > ANGLE_CHANGE_THRESHOLD) {
-                log.warn("角度变化过快！变化量: {}°, 阈值: {}°", angleChange, ANGLE_CHANGE_THRESHOLD);
-                handleAngleAlert(angleData, "角度变化过快");
+
+        // 旧固件不上报时间戳时以到达时间代替
+        long ts = angleData.getTs();
+        CraneMotion motion = context.getStateStore()
+                .getOrCreate(String.valueOf(angleData.getCraneId()))
+                .computeIfAbsent(MOTION, CraneMotion::new);
+        synchronized (motion) {
+            // 本条读数释放出的有序读数与本批共用告警去重
+            motion.raisedAlerts = raisedAlerts;
+            try {
+                if (!motion.buffer.offer(ts, angleData, motion)) {
+                    log.debug("角度读数超出迟到上限，不参与速度计算，塔吊: {}, 时间戳: {}", angleData.getCraneId(), ts);
+                }
+            } finally {
+                motion.raisedAlerts = null;
             }
-            
-            // 计算旋转速度（简单估算）
-            double rotationSpeed = calculateRotationSpeed(currentAngle, lastAngle);
-            log.debug("旋转速度: {}°/s", rotationSpeed);
         }
-        
-        // TODO: 数据持久化到数据库
-        // saveAngleDataToDatabase(angleData);
+
+        // 历史数据由 TimeSeriesStore 作为遥测监听器在批处理完成后写入
+    }
+
+    /**
+     * 按事件时间顺序处理读数：检查角度变化，计算回转速度和角加速度
+     *
+     * @param motion    塔吊运动状态
+     * @param ts        事件时间（毫秒）
+     * @param angleData 角度数据
+     */
+    private void onOrderedAngle(CraneMotion motion, long ts, AngleDataDTO angleData) {
+        double currentAngle = angleData.getAngle();
+        if (motion.lastTs != Long.MIN_VALUE) {
+            long dtMs = ts - motion.lastTs;
+            if (dtMs > MAX_MOTION_GAP_MS) {
+                // 跨越断线时段：前一条读数不再作为参照，不计算运动量也不求值运动规则
+                motion.rotationSpeed = null;
+                motion.angularAcceleration = null;
+                motion.lastTs = ts;
+                motion.lastAngle = currentAngle;
+                return;
+            }
+            double angleChange = angleDelta(currentAngle, motion.lastAngle);
+            if (dtMs > 0) {
+                double rotationSpeed = angleChange * 1000.0 / dtMs;
+                motion.angularAcceleration = motion.rotationSpeed != null
+                        ? (rotationSpeed - motion.rotationSpeed) * 1000.0 / dtMs
+                        : null;
+                motion.rotationSpeed = rotationSpeed;
+                log.debug("旋转速度: {}°/s, 角加速度: {}°/s²", rotationSpeed, motion.angularAcceleration);
+            }
+
+            // 检查引用角度变化、回转速度、角加速度的规则（如角度变化过快）
+            double[] values = motion.ruleValues;
+            RuleField.load(angleData, values);
+            values[RuleField.ANGLE_CHANGE.index()] = Math.abs(angleChange);
+            values[RuleField.ROTATION_SPEED.index()] = RuleField.value(motion.rotationSpeed);
+            values[RuleField.ANGULAR_ACCELERATION.index()] = RuleField.value(motion.angularAcceleration);
+            motion.firedRules.clear();
+            if (alertRuleEngine.current().evaluate(RuleChannel.MOTION, angleData.getCraneId(), values,
+                    motion.firedRules) > 0) {
+                raiseAngleAlerts(angleData, motion.firedRules, motion.raisedAlerts);
+            }
+        }
+        motion.lastTs = ts;
+        motion.lastAngle = currentAngle;
     }
 
     /**
-     * 计算旋转速度
-     * 注意：这是一个简化的计算，实际应用中需要考虑时间间隔
+     * 计算两次读数间的角度变化，结果折算到 [-180, 180)
+     * 回转越过0°/360°时按最短方向计算，例如从359°到1°为+2°
      *
      * @param currentAngle 当前角度
      * @param lastAngle    上次角度
-     * @return 旋转速度（度/秒）
+     * @return 角度变化（度），正值为角度增大方向
+     */
+    static double angleDelta(double currentAngle, double lastAngle) {
+        double delta = (currentAngle - lastAngle) % 360.0;
+        if (delta >= 180.0) {
+            delta -= 360.0;
+        } else if (delta < -180.0) {
+            delta += 360.0;
+        }
+        return delta;
+    }
+
+    /**
+     * 释放停止上报的塔吊缓冲中的读数
+     */
+    private void flushIdleMotions() {
+        try {
+            long now = System.nanoTime();
+            craneStateStore.forEach(state -> {
+                CraneMotion motion = state.get(MOTION);
+                if (motion != null) {
+                    synchronized (motion) {
+                        // 一次释放的读数视为一批
+                        motion.raisedAlerts = new HashSet<>();
+                        try {
+                            motion.buffer.flushIdle(now, motion);
+                        } finally {
+                            motion.raisedAlerts = null;
+                        }
+                    }
+                }
+            });
+        } catch (Exception e) {
+            log.error("角度重排缓冲释放失败", e);
+        }
+    }
+
+    /**
+     * 记录并处理条件成立的角度规则，同一塔吊的同一规则每批只触发一次
+     *
+     * @param angleData    角度数据
+     * @param fired        条件成立的规则
+     * @param raisedAlerts 本批已触发的告警（塔吊ID:规则名）
      */
-    private double calculateRotationSpeed(double currentAngle, double lastAngle) {
-        // 简化计算，假设数据间隔为1秒
-        // 实际应用中应该记录时间戳并计算真实的时间间隔
-        return Math.abs(currentAngle - lastAngle);
+    private void raiseAngleAlerts(AngleDataDTO angleData, List<CompiledRule> fired, Set<String> raisedAlerts) {
+        for (CompiledRule rule : fired) {
+            if (!raisedAlerts.add(angleData.getCraneId() + ":" + rule.getName())) {
+                continue;
+            }
+            log.warn("{}！塔吊: {}, 当前角度: {}°, 规则: {}（{}）", rule.getMessage(), angleData.getCraneId(),
+                    angleData.getAngle(), rule.getName(), rule.getExpression().getSource());
+            handleAngleAlert(angleData, rule.getMessage());
+        }
     }
 
     /**
@@ -141,4 +332,26 @@ public class AngleSensorMessageProcessor implements MqttMessageProcessor {
         // TODO: 发送告警到监控系统
         // alertService.sendAlert(alertMessage);
     }
+
+    /**
+     * 单台塔吊的重排缓冲和运动状态，访问时以自身加锁
+     */
+    private final class CraneMotion implements EventTimeReorderBuffer.Sink<AngleDataDTO> {
+
+        private final EventTimeReorderBuffer<AngleDataDTO> buffer = new EventTimeReorderBuffer<>(
+                mqttProperties.getReorder().getLatenessMs(), mqttProperties.getReorder().getCapacity());
+
+        private long lastTs = Long.MIN_VALUE;
+        private double lastAngle;
+        private Double rotationSpeed;
+        private Double angularAcceleration;
+        private final double[] ruleValues = new double[RuleField.COUNT];
+        private final List<CompiledRule> firedRules = new ArrayList<>();
+        private Set<String> raisedAlerts;
+
+        @Override
+        public void accept(long ts, AngleDataDTO angleData) {
+            onOrderedAngle(this, ts, angleData);
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package com.yang.springbootbackend.service.mqtt.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.yang.springbootbackend.service.mqtt.MqttMessageProcessor;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.command.CraneCommandPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 下行指令回执处理器
+ * 设备执行指令后向 testtopic/{craneId}/ack 回复 {"id": "指令ID", "status": "ok"}
+ */
+@Component
+@Slf4j
+public class CommandAckProcessor implements MqttMessageProcessor {
+
+    private static final String ACK_TOPIC = "testtopic/+/ack";
+
+    @Autowired
+    private CraneCommandPublisher commandPublisher;
+
+    @Override
+    public String getSupportedTopic() {
+        return ACK_TOPIC;
+    }
+
+    @Override
+    public void processMessage(MqttRoutingContext context, String payload) {
+        JSONObject ack = JSON.parseObject(payload);
+        String commandId = ack == null ? null : ack.getString("id");
+        if (commandId == null) {
+            log.warn("指令回执缺少指令ID，主题: {}", context.getTopic());
+            return;
+        }
+        commandPublisher.onAck(context.getCraneId(), commandId, ack.getString("status"));
+    }
+
+    @Override
+    public int getPriority() {
+        return 70; // 普通层级：回执只更新指令状态，不占用安全关键层级的通道
+    }
+}
@@ -1,119 +1,137 @@
 package com.yang.springbootbackend.service.mqtt.impl;
 
-import com.alibaba.fastjson.JSON;
-import com.yang.springbootbackend.controller.MainController;
 import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
 import com.yang.springbootbackend.service.WebSocketService;
-import com.yang.springbootbackend.service.mqtt.MqttMessageProcessor;
+import com.yang.springbootbackend.service.mqtt.AbstractTelemetryProcessor;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryFrameCodec;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryJsonParser;
+import com.yang.springbootbackend.service.mqtt.rule.AlertRuleEngine;
+import com.yang.springbootbackend.service.mqtt.rule.AlertRuleSet;
+import com.yang.springbootbackend.service.mqtt.rule.CompiledRule;
+import com.yang.springbootbackend.service.mqtt.rule.RuleChannel;
+import com.yang.springbootbackend.service.mqtt.rule.RuleField;
+import com.yang.springbootbackend.service.mqtt.state.LatestValueStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * 气体传感器消息处理器
- * 专门处理气体传感器数据
+ * 专门处理气体传感器数据，支持单条或批量上报。
+ * 告警阈值由 {@link AlertRuleEngine} 的规则决定，修改规则无需重新部署
  */
 @Component
 @Slf4j
-public class GasSensorMessageProcessor implements MqttMessageProcessor {
+public class GasSensorMessageProcessor extends AbstractTelemetryProcessor<SensorDataDTO> {
 
-    private static final String GAS_TOPIC = "testtopic/1/gas";
+    private static final String GAS_TOPIC = "testtopic/+/gas";
 
     @Autowired
     private WebSocketService webSocketService;
 
+    @Autowired
+    private LatestValueStore latestValueStore;
+
+    @Autowired
+    private AlertRuleEngine alertRuleEngine;
+
     @Override
     public String getSupportedTopic() {
         return GAS_TOPIC;
     }
 
     @Override
-    public void processMessage(String topic, String payload) {
-        try {
-            log.info("处理气体传感器数据，主题: {}, 数据: {}", topic, payload);
-            
-            // 解析数据
-            SensorDataDTO sensorData = JSON.parseObject(payload, SensorDataDTO.class);
-            
-            // 数据验证
-            if (sensorData == null) {
-                log.warn("气体传感器数据解析失败，数据为空");
-                return;
-            }
-            
-            // 业务处理
-            processSensorData(sensorData);
-            
-            // 保存最新数据到内存
-            MainController.updateSensorData(sensorData);
-            
+    protected void processBatch(MqttRoutingContext context, List<SensorDataDTO> readings) {
+        log.debug("处理气体传感器数据，主题: {}, 读数条数: {}", context.getTopic(), readings.size());
+
+        // 业务处理：逐条按告警规则检查，同一塔吊的同一规则每批只触发一次；整批使用同一个规则集
+        AlertRuleSet rules = alertRuleEngine.current();
+        double[] values = new double[RuleField.COUNT];
+        List<CompiledRule> fired = new ArrayList<>();
+        Set<String> raisedAlerts = new HashSet<>();
+        for (SensorDataDTO sensorData : readings) {
+            processSensorData(sensorData, rules, values, fired, raisedAlerts);
+        }
+
+        // 最新值更新和推送只关心每台塔吊的最新读数，每批执行一次
+        Map<String, SensorDataDTO> latest = latestByCrane(readings);
+        for (SensorDataDTO sensorData : latest.values()) {
+            // 保存最新数据快照，唤醒等待该塔吊的长轮询
+            latestValueStore.update(LatestValueStore.Channel.GAS, sensorData);
+
             // WebSocket推送数据到前端
             webSocketService.sendSensorData(sensorData);
-            
-            log.info("气体传感器数据处理完成: {}", sensorData);
-            
-        } catch (Exception e) {
-            log.error("处理气体传感器数据失败，主题: {}, 数据: {}", topic, payload, e);
         }
-    }
 
-    @Override
-    public int getPriority() {
-        return 10; // 高优先级
+        log.debug("气体传感器数据处理完成，塔吊数: {}, 读数条数: {}", latest.size(), readings.size());
     }
 
     /**
-     * 处理传感器数据的业务逻辑
+     * 解码消息载荷
+     * 以魔数开头的按二进制帧解码，否则直接从UTF-8字节解析JSON，结构不支持时回退到fastjson
      *
-     * @param sensorData 传感器数据
+     * @param payload 消息载荷
+     * @return 气体传感器数据列表
      */
-    private void processSensorData(SensorDataDTO sensorData) {
-        // 检查气体浓度是否超标
-        if (sensorData.getGasValue() != null && sensorData.getGasValue() > 50.0) {
-            log.warn("气体浓度超标！当前浓度: {}%", sensorData.getGasValue());
-            // TODO: 发送告警通知
-            handleGasAlert(sensorData);
-        }
-        
-        // 检查是否下雨
-        if (sensorData.getRainrate() != null && sensorData.getRainrate() == 1) {
-            log.warn("检测到下雨，雨量: {}%", sensorData.getRainValue());
-            // TODO: 发送下雨告警
-            handleRainAlert(sensorData);
+    @Override
+    protected List<SensorDataDTO> decodeBatch(byte[] payload) {
+        if (TelemetryFrameCodec.isFrame(payload)) {
+            return TelemetryFrameCodec.decodeSensorDataList(payload);
         }
-        
-        // 检查风速
-        if (sensorData.getWindValue() != null && sensorData.getWindValue() > 10.0) {
-            log.warn("风速过大！当前风速: {} km/h", sensorData.getWindValue());
-            // TODO: 发送风速告警
-            handleWindAlert(sensorData);
+        List<SensorDataDTO> readings = TelemetryJsonParser.parseSensorDataList(payload);
+        if (readings != null) {
+            return readings;
         }
-        
-        // TODO: 数据持久化到数据库
-        // saveSensorDataToDatabase(sensorData);
+        return parseJsonList(payload, SensorDataDTO.class);
     }
 
-    /**
-     * 处理气体告警
-     */
-    private void handleGasAlert(SensorDataDTO sensorData) {
-        // TODO: 实现气体告警逻辑
-        log.info("触发气体告警处理逻辑");
+    @Override
+    public int getPriority() {
+        return 20; // 安全关键层级：风速随气体数据上报，风速和气体告警不能排在普通消息之后
     }
 
     /**
-     * 处理下雨告警
+     * 处理传感器数据的业务逻辑
+     *
+     * @param sensorData   传感器数据
+     * @param rules        本批使用的告警规则
+     * @param values       求值数组，逐条复用
+     * @param fired        条件成立的规则，逐条复用
+     * @param raisedAlerts 本批已触发的告警（塔吊ID:规则名）
      */
-    private void handleRainAlert(SensorDataDTO sensorData) {
-        // TODO: 实现下雨告警逻辑
-        log.info("触发下雨告警处理逻辑");
+    private void processSensorData(SensorDataDTO sensorData, AlertRuleSet rules, double[] values,
+                                   List<CompiledRule> fired, Set<String> raisedAlerts) {
+        String craneId = sensorData.getCraneId();
+        RuleField.load(sensorData, values);
+        fired.clear();
+        if (rules.evaluate(RuleChannel.SENSOR, craneId, values, fired) > 0) {
+            for (CompiledRule rule : fired) {
+                if (raisedAlerts.add(craneId + ":" + rule.getName())) {
+                    log.warn("{}！塔吊: {}, 规则: {}（{}）", rule.getMessage(), craneId, rule.getName(),
+                            rule.getExpression().getSource());
+                    handleSensorAlert(sensorData, rule);
+                }
+            }
+        }
+
+        // 历史数据由 TimeSeriesStore 作为遥测监听器在批处理完成后写入
     }
 
     /**
-     * 处理风速告警
+     * 处理传感器告警
+     *
+     * @param sensorData 传感器数据
+     * @param rule       触发的规则
      */
-    private void handleWindAlert(SensorDataDTO sensorData) {
-        // TODO: 实现风速告警逻辑
-        log.info("触发风速告警处理逻辑");
+    private void handleSensorAlert(SensorDataDTO sensorData, CompiledRule rule) {
+        // TODO: 实现告警逻辑（发送告警通知、记录告警日志）
+        log.info("触发传感器告警处理逻辑，规则: {}", rule.getName());
     }
 }
@@ -0,0 +1,55 @@
+package com.yang.springbootbackend.service.mqtt.ingest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预写日志检查点的持久化屏障
+ * 接收处理结果后先在内存中缓冲、再异步持久化的组件实现该接口。{@link IngestJournal} 推进检查点前先记下各组件的标记，
+ * 等所有组件都确认标记之前接收的数据已持久化后才写入检查点，否则进程崩溃时这些数据既不在组件中、也不会从日志重放
+ */
+public interface DurableSink {
+
+    /**
+     * 当前已接收数据的标记，单调不减
+     */
+    long mark();
+
+    /**
+     * 标记之前接收的数据是否都已持久化（或已确定丢弃并计数）
+     *
+     * @param mark {@link #mark()} 返回的标记
+     */
+    boolean isDurable(long mark);
+
+    /**
+     * 立即持久化已接收的全部数据，不等待定期落盘，最多等待 timeoutMs
+     * 预写日志正常关闭时在最终检查点之前调用（此时入站工作通道已停止），重启后不再重放已持久化的数据
+     *
+     * @param timeoutMs 最大等待时间（毫秒）
+     */
+    void persist(long timeoutMs);
+
+    /**
+     * 等待标记之前接收的数据持久化
+     *
+     * @param sink      组件
+     * @param mark      {@link #mark()} 返回的标记
+     * @param timeoutMs 最大等待时间（毫秒）
+     * @return 是否已持久化
+     */
+    static boolean awaitDurable(DurableSink sink, long mark, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (!sink.isDurable(mark)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
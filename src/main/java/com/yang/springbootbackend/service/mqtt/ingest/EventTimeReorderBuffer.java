@@ -0,0 +1,131 @@
+package com.yang.springbootbackend.service.mqtt.ingest;
+
+/**
+ * 按设备时间戳重排的单设备缓冲区
+ * 读数按事件时间插入预分配的环形数组（时间戳单独存放在long数组中），
+ * 水位线 = 已见最大时间戳 - 允许迟到时长，时间戳不超过水位线的读数按时间顺序释放。
+ * 比已释放读数还早的读数视为超出迟到上限，拒绝入队由调用方决定如何处理。
+ * 设备停止上报时由 {@link #flushIdle} 按到达时间释放剩余读数。
+ * 非线程安全，由调用方按设备加锁
+ *
+ * @param <T> 读数类型
+ */
+public class EventTimeReorderBuffer<T> {
+
+    /**
+     * 按事件时间顺序接收释放的读数
+     */
+    public interface Sink<T> {
+
+        /**
+         * 接收一条读数
+         *
+         * @param ts   事件时间（毫秒）
+         * @param item 读数
+         */
+        void accept(long ts, T item);
+    }
+
+    private final long latenessMs;
+    private final long[] times;
+    private final Object[] items;
+    private final int mask;
+
+    private int head;
+    private int size;
+    private long maxTs = Long.MIN_VALUE;
+    private long releasedTs = Long.MIN_VALUE;
+    private long lastOfferNanos;
+
+    /**
+     * @param latenessMs 允许迟到时长（毫秒），0表示不缓冲
+     * @param capacity   缓冲容量，向上取整为2的幂，缓冲满时提前释放最早的读数
+     */
+    public EventTimeReorderBuffer(long latenessMs, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.latenessMs = latenessMs;
+        this.times = new long[size];
+        this.items = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * 放入一条读数并释放所有已越过水位线的读数
+     *
+     * @param ts   事件时间（毫秒）
+     * @param item 读数
+     * @param sink 释放的读数接收方
+     * @return 是否入队，超出迟到上限时返回false
+     */
+    public boolean offer(long ts, T item, Sink<T> sink) {
+        if (ts < releasedTs) {
+            return false;
+        }
+        if (size == times.length) {
+            if (ts <= times[head]) {
+                // 缓冲已满且新读数最早，直接释放
+                releasedTs = ts;
+                sink.accept(ts, item);
+                return true;
+            }
+            releaseFirst(sink);
+        }
+
+        // 从尾部向前插入，按序到达时不移动任何元素
+        int pos = size;
+        while (pos > 0 && times[(head + pos - 1) & mask] > ts) {
+            int from = (head + pos - 1) & mask;
+            int to = (head + pos) & mask;
+            times[to] = times[from];
+            items[to] = items[from];
+            pos--;
+        }
+        int slot = (head + pos) & mask;
+        times[slot] = ts;
+        items[slot] = item;
+        size++;
+
+        if (ts > maxTs) {
+            maxTs = ts;
+        }
+        lastOfferNanos = System.nanoTime();
+
+        long watermark = maxTs - latenessMs;
+        while (size > 0 && times[head] <= watermark) {
+            releaseFirst(sink);
+        }
+        return true;
+    }
+
+    /**
+     * 距上次放入已超过允许迟到时长时释放全部缓冲读数
+     *
+     * @param nowNanos 当前时间（System.nanoTime）
+     * @param sink     释放的读数接收方
+     */
+    public void flushIdle(long nowNanos, Sink<T> sink) {
+        if (size > 0 && nowNanos - lastOfferNanos >= latenessMs * 1_000_000L) {
+            while (size > 0) {
+                releaseFirst(sink);
+            }
+        }
+    }
+
+    /**
+     * 当前缓冲的读数数量
+     */
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void releaseFirst(Sink<T> sink) {
+        long ts = times[head];
+        T item = (T) items[head];
+        items[head] = null;
+        head = (head + 1) & mask;
+        size--;
+        releasedTs = ts;
+        sink.accept(ts, item);
+    }
+}
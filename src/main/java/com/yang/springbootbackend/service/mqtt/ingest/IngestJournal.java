@@ -0,0 +1,717 @@
+package com.yang.springbootbackend.service.mqtt.ingest;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.IngestJournalStatsVO;
+import com.yang.springbootbackend.util.DirectoryLock;
+import com.yang.springbootbackend.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * 入站消息预写日志
+ * 调度器把每条消息投递到工作通道之前先追加到内存映射的分段文件（只是内存拷贝，进程崩溃后数据仍在页缓存中），
+ * 同步线程按组提交：未刷盘字节达到 syncBytes 或距上次刷盘超过 syncIntervalMs 时对整组记录做一次 force，
+ * 刷盘间隔即掉电时可能丢失的时间窗口。
+ * 工作通道处理完消息后标记完成，连续完成的编号推进处理水位；消息的处理结果可能还在下游组件的内存缓冲中，
+ * 同步线程定期记下水位和各 {@link DurableSink} 的标记，等所有组件确认标记之前的数据已持久化后，
+ * 才把该水位写入 checkpoint 文件并删除检查点之前的分段；
+ * 启动时从检查点开始把未处理完的消息重新交给调度器（至少一次，可能重复处理）。运行期间持有目录锁，两个进程不能写同一个目录。
+ * <p>
+ * 分段文件名为 journal-{首条编号}.log，每条记录格式为：
+ * 魔数(4) | 记录长度(4) | CRC32(4) | 编号(8) | 时间戳(8) | 主题长度(2) | 主题 | 载荷长度(4) | 载荷，
+ * 扫描时遇到魔数或校验失败的位置即视为分段末尾
+ */
+@Component
+@Slf4j
+public class IngestJournal {
+
+    /**
+     * 恢复时接收未处理完的消息
+     */
+    public interface ReplayConsumer {
+
+        /**
+         * 接收一条消息
+         *
+         * @param seq     日志编号
+         * @param topic   主题
+         * @param payload 消息内容
+         */
+        void accept(long seq, String topic, byte[] payload);
+    }
+
+    static final String SEGMENT_PREFIX = "journal-";
+
+    static final String SEGMENT_SUFFIX = ".log";
+
+    static final String CHECKPOINT_FILE = "checkpoint";
+
+    /**
+     * 完成标记环的大小，即检查点之后最多允许跟踪的消息数；
+     * 某条消息长时间未处理完、后面的消息超出该数量时，新消息不再写日志，避免环中标记互相覆盖
+     */
+    static final int MAX_TRACKED = 1 << 18;
+
+    private static final int RECORD_MAGIC = 0x574A4C31;
+
+    private static final int HEADER_BYTES = 30;
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired(required = false)
+    private List<DurableSink> durableSinks = Collections.emptyList();
+
+    private final LatencyHistogram syncLatency = new LatencyHistogram();
+    private final AtomicLong appendedRecords = new AtomicLong();
+    private final AtomicLong appendedBytes = new AtomicLong();
+    private final AtomicLong appendFailures = new AtomicLong();
+    private final AtomicLong syncedRecords = new AtomicLong();
+    private final AtomicLong replayedRecords = new AtomicLong();
+
+    /**
+     * 完成标记环：编号 seq 处理完成后写入下标 seq & (MAX_TRACKED - 1)，值为 seq 本身
+     */
+    private final AtomicLongArray completed = new AtomicLongArray(MAX_TRACKED);
+
+    /**
+     * 额外持有计数环：编号 seq 的旁路工作（如转到批量层级的遥测监听器）尚未完成的数量，
+     * 计数归零前 {@link #complete} 只扣减计数，不写完成标记
+     */
+    private final AtomicIntegerArray holds = new AtomicIntegerArray(MAX_TRACKED);
+
+    /**
+     * 第一条未处理完的消息编号，由完成标记的线程推进
+     */
+    private final AtomicLong watermark = new AtomicLong();
+
+    /**
+     * 等待下游持久化的检查点候选及当时各组件的标记，仅同步线程访问，未在等待时标记为null
+     */
+    private long pendingCheckpoint;
+    private long[] pendingMarks;
+
+    /**
+     * 以下字段由追加方持有本对象锁访问
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private Segment active;
+    private long nextSeq;
+    private long unsyncedBytes;
+
+    private Path directory;
+    private DirectoryLock lock;
+    private long replayFrom;
+    private long replayTo;
+    private volatile long syncedSeq;
+    private volatile long checkpointSeq;
+    private volatile double appendRecordsPerSecond;
+    private volatile double appendBytesPerSecond;
+    private volatile boolean running;
+    private Thread syncer;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.Journal config = mqttProperties.getJournal();
+        if (!config.isEnabled()) {
+            return;
+        }
+        directory = Paths.get(config.getDirectory());
+        try {
+            lock = DirectoryLock.acquire(directory);
+        } catch (IOException e) {
+            log.error("无法锁定入站预写日志目录: {}，消息不写日志", directory.toAbsolutePath(), e);
+            return;
+        }
+        try {
+            checkpointSeq = readCheckpoint();
+            nextSeq = checkpointSeq;
+            for (Path file : listSegments()) {
+                Segment segment = Segment.open(file, config.getSegmentBytes());
+                segments.add(segment);
+                long last = segment.recover();
+                if (last >= 0) {
+                    nextSeq = Math.max(nextSeq, last + 1);
+                }
+            }
+        } catch (IOException e) {
+            log.error("无法打开入站预写日志: {}，消息不写日志", directory.toAbsolutePath(), e);
+            closeSegments();
+            releaseLock();
+            return;
+        }
+        active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        for (int i = 0; i < MAX_TRACKED; i++) {
+            // 环中初始值0会被误认为编号0已完成
+            completed.set(i, -1);
+        }
+        watermark.set(checkpointSeq);
+        syncedSeq = nextSeq;
+        replayFrom = checkpointSeq;
+        replayTo = nextSeq;
+
+        running = true;
+        syncer = new Thread(this::syncLoop, "ingest-journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+        log.info("入站预写日志启动完成，目录: {}, 分段: {}, 检查点: {}, 待重放: {}条",
+                directory.toAbsolutePath(), segments.size(), checkpointSeq, replayTo - replayFrom);
+    }
+
+    /**
+     * 把检查点之后未处理完的消息按编号顺序交给接收方
+     * 由调度器在工作通道启动后、开始接收新消息前调用
+     *
+     * @param consumer 消息接收方，需保证每条消息最终都调用 {@link #complete}
+     * @return 重放的消息数
+     */
+    public long replay(ReplayConsumer consumer) {
+        if (!running || replayTo <= replayFrom) {
+            return 0;
+        }
+        List<Segment> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments);
+        }
+        for (Segment segment : snapshot) {
+            segment.replay(replayFrom, replayTo, (seq, topic, payload) -> {
+                // 等检查点追上，保证跟踪中的消息不超过完成标记环的大小
+                while (seq - watermark.get() >= MAX_TRACKED && running) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+                consumer.accept(seq, topic, payload);
+                replayedRecords.incrementAndGet();
+            });
+        }
+        log.info("入站预写日志已重放 {} 条未处理完的消息，编号: {} - {}", replayedRecords.get(), replayFrom, replayTo - 1);
+        return replayedRecords.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        // 调度器依赖日志，此时工作通道已停止：先让下游持久化已接收的数据，最终检查点才能推进到水位，正常重启不重放
+        for (DurableSink sink : durableSinks) {
+            try {
+                sink.persist(SHUTDOWN_TIMEOUT_MS);
+            } catch (RuntimeException e) {
+                log.warn("关闭前持久化下游数据失败: {}", sink.getClass().getSimpleName(), e);
+            }
+        }
+        running = false;
+        LockSupport.unpark(syncer);
+        try {
+            syncer.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeSegments();
+        }
+        releaseLock();
+    }
+
+    /**
+     * 是否在写日志
+     */
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * 追加一条消息，只写入内存映射，不等待刷盘
+     *
+     * @param topic   主题
+     * @param payload 消息内容
+     * @return 日志编号，未启用或未写入时返回-1
+     */
+    public long append(String topic, byte[] payload) {
+        if (!running) {
+            return -1;
+        }
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + topicBytes.length + 4 + payload.length;
+        long seq;
+        synchronized (this) {
+            if (nextSeq - watermark.get() >= MAX_TRACKED) {
+                appendFailures.incrementAndGet();
+                return -1;
+            }
+            try {
+                if (active == null || active.remaining() < length) {
+                    roll(length);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                appendFailures.incrementAndGet();
+                log.error("入站预写日志分段滚动失败，本条消息不写日志，主题: {}", topic, e);
+                return -1;
+            }
+            seq = nextSeq++;
+            active.write(crc, seq, System.currentTimeMillis(), topicBytes, payload, length);
+            unsyncedBytes += length;
+            if (unsyncedBytes >= mqttProperties.getJournal().getSyncBytes()) {
+                // 积累到一组的大小，不等间隔立即刷盘
+                unsyncedBytes = 0;
+                LockSupport.unpark(syncer);
+            }
+        }
+        appendedRecords.incrementAndGet();
+        appendedBytes.addAndGet(length);
+        return seq;
+    }
+
+    /**
+     * 为消息增加一次持有：消息的部分工作转到其他通道执行时调用，
+     * 该工作完成（或被丢弃）时同样调用 {@link #complete}，所有持有都完成后消息才算处理完
+     * 必须在消息本身调用 {@link #complete} 之前调用
+     *
+     * @param seq 日志编号，负数忽略
+     */
+    public void retain(long seq) {
+        if (seq < 0 || !running) {
+            return;
+        }
+        holds.incrementAndGet((int) seq & (MAX_TRACKED - 1));
+    }
+
+    /**
+     * 标记消息已处理完成（包括已转入死信日志或被丢弃），并推进检查点
+     * 消息还有其他持有时只扣减一次持有
+     *
+     * @param seq 日志编号，负数忽略
+     */
+    public void complete(long seq) {
+        if (seq < 0 || !running) {
+            return;
+        }
+        int index = (int) seq & (MAX_TRACKED - 1);
+        int held;
+        while ((held = holds.get(index)) > 0) {
+            if (holds.compareAndSet(index, held, held - 1)) {
+                return;
+            }
+        }
+        completed.set((int) seq & (MAX_TRACKED - 1), seq);
+        // 先写标记再读水位：推进方读不到本条标记时，本线程一定能读到推进后的水位并接着推进
+        long w = watermark.get();
+        while (completed.get((int) w & (MAX_TRACKED - 1)) == w && watermark.compareAndSet(w, w + 1)) {
+            w++;
+        }
+    }
+
+    /**
+     * 获取预写日志运行指标
+     */
+    public IngestJournalStatsVO getStats() {
+        IngestJournalStatsVO stats = new IngestJournalStatsVO();
+        stats.setEnabled(running);
+        synchronized (this) {
+            stats.setSegmentCount(segments.size());
+            long used = 0;
+            for (Segment segment : segments) {
+                used += segment.position;
+            }
+            stats.setUsedBytes(used);
+            stats.setNextSeq(nextSeq);
+        }
+        stats.setSyncedSeq(syncedSeq);
+        stats.setCheckpointSeq(checkpointSeq);
+        stats.setCompletedSeq(watermark.get());
+        stats.setReplayedRecords(replayedRecords.get());
+        stats.setAppendedRecords(appendedRecords.get());
+        stats.setAppendedBytes(appendedBytes.get());
+        stats.setAppendFailures(appendFailures.get());
+        stats.setAppendRecordsPerSecond(appendRecordsPerSecond);
+        stats.setAppendBytesPerSecond(appendBytesPerSecond);
+        long syncs = syncLatency.getCount();
+        stats.setSyncCount(syncs);
+        stats.setAvgSyncRecords(syncs > 0 ? (double) syncedRecords.get() / syncs : 0);
+        stats.setSyncP50Micros(syncLatency.getValueAtPercentile(50) / 1000);
+        stats.setSyncP99Micros(syncLatency.getValueAtPercentile(99) / 1000);
+        stats.setSyncMaxMicros(syncLatency.getMax() / 1000);
+        return stats;
+    }
+
+    /**
+     * 当前分段写满时切换到以下一条编号命名的新分段
+     */
+    private void roll(int length) throws IOException {
+        long segmentBytes = mqttProperties.getJournal().getSegmentBytes();
+        if (length > segmentBytes) {
+            throw new IllegalArgumentException("消息长度 " + length + " 超过分段大小 " + segmentBytes);
+        }
+        Segment segment = Segment.open(directory.resolve(fileName(nextSeq)), segmentBytes);
+        segments.add(segment);
+        active = segment;
+    }
+
+    private void syncLoop() {
+        MqttProperties.Journal config = mqttProperties.getJournal();
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getSyncIntervalMs()));
+        long checkpointNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getCheckpointIntervalMs()));
+        long lastCheckpoint = System.nanoTime();
+        long rateStart = lastCheckpoint;
+        long rateRecords = 0;
+        long rateBytes = 0;
+        boolean stopping = false;
+        while (!stopping) {
+            stopping = !running;
+            if (!stopping) {
+                LockSupport.parkNanos(intervalNanos);
+            }
+            sync();
+
+            long now = System.nanoTime();
+            if (stopping || now - lastCheckpoint >= checkpointNanos) {
+                advanceCheckpoint();
+                lastCheckpoint = now;
+            }
+            if (now - rateStart >= RATE_WINDOW_NANOS) {
+                long records = appendedRecords.get();
+                long bytes = appendedBytes.get();
+                appendRecordsPerSecond = (records - rateRecords) * 1e9 / (now - rateStart);
+                appendBytesPerSecond = (bytes - rateBytes) * 1e9 / (now - rateStart);
+                rateRecords = records;
+                rateBytes = bytes;
+                rateStart = now;
+            }
+        }
+    }
+
+    /**
+     * 组提交：把上次刷盘以来写入的所有记录一次刷到磁盘
+     */
+    private void sync() {
+        List<Segment> dirty = new ArrayList<>(2);
+        long upTo;
+        synchronized (this) {
+            upTo = nextSeq;
+            if (upTo == syncedSeq) {
+                return;
+            }
+            for (Segment segment : segments) {
+                if (segment.position > segment.syncedPosition) {
+                    dirty.add(segment);
+                }
+            }
+            unsyncedBytes = 0;
+        }
+        long start = System.nanoTime();
+        for (Segment segment : dirty) {
+            segment.force();
+        }
+        syncLatency.record(System.nanoTime() - start);
+        syncedRecords.addAndGet(upTo - syncedSeq);
+        syncedSeq = upTo;
+    }
+
+    /**
+     * 上一个候选的数据已在下游持久化时写入检查点，再以当前水位开始新的候选
+     */
+    private void advanceCheckpoint() {
+        if (pendingMarks != null) {
+            if (!durable(pendingMarks)) {
+                return;
+            }
+            checkpoint(pendingCheckpoint);
+            pendingMarks = null;
+        }
+        // 先读水位再取标记：水位之前的消息已处理完，其数据都在标记之前进入下游
+        long seq = watermark.get();
+        if (seq <= checkpointSeq) {
+            return;
+        }
+        long[] marks = new long[durableSinks.size()];
+        for (int i = 0; i < marks.length; i++) {
+            marks[i] = durableSinks.get(i).mark();
+        }
+        if (durable(marks)) {
+            checkpoint(seq);
+        } else {
+            pendingCheckpoint = seq;
+            pendingMarks = marks;
+        }
+    }
+
+    private boolean durable(long[] marks) {
+        for (int i = 0; i < marks.length; i++) {
+            if (!durableSinks.get(i).isDurable(marks[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 写入检查点并删除全部记录都在检查点之前的分段
+     */
+    private void checkpoint(long seq) {
+        if (seq <= checkpointSeq) {
+            return;
+        }
+        Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try {
+            // 临时文件刷盘并关闭后再原子替换检查点
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(16);
+                buffer.putLong(seq);
+                CRC32 checksum = new CRC32();
+                checksum.update(buffer.array(), 0, 8);
+                buffer.putLong(checksum.getValue());
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入入站预写日志检查点失败", e);
+            return;
+        }
+        checkpointSeq = seq;
+
+        // 下一分段的首条编号不超过检查点时，本分段的记录都已处理完
+        List<Segment> removed = new ArrayList<>();
+        synchronized (this) {
+            while (segments.size() > 1 && segments.get(1).baseSeq <= seq) {
+                removed.add(segments.remove(0));
+            }
+        }
+        for (Segment segment : removed) {
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("删除入站预写日志分段失败: {}", segment.path.getFileName(), e);
+            }
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 16) {
+            return 0;
+        }
+        long seq = buffer.getLong();
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), 0, 8);
+        if (checksum.getValue() != buffer.getLong()) {
+            log.warn("入站预写日志检查点校验失败，从最早的分段开始重放");
+            return 0;
+        }
+        return seq;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                if (parseBaseSeq(file) >= 0) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort((a, b) -> Long.compare(parseBaseSeq(a), parseBaseSeq(b)));
+        return files;
+    }
+
+    private void releaseLock() {
+        if (lock == null) {
+            return;
+        }
+        try {
+            lock.close();
+        } catch (IOException e) {
+            log.warn("释放入站预写日志目录锁失败", e);
+        }
+        lock = null;
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        active = null;
+    }
+
+    static String fileName(long baseSeq) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, baseSeq, SEGMENT_SUFFIX);
+    }
+
+    static long parseBaseSeq(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 日志分段：创建时映射为固定大小，追加只是内存拷贝
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final long baseSeq;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private volatile int position;
+        private volatile int syncedPosition;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.baseSeq = parseBaseSeq(path);
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, long size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                long mapSize = Math.min(Integer.MAX_VALUE, channel.size() > 0 ? channel.size() : size);
+                return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mapSize));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        int remaining() {
+            return buffer.capacity() - position;
+        }
+
+        void write(CRC32 crc, long seq, long timestamp, byte[] topic, byte[] payload, int length) {
+            int start = position;
+            ByteBuffer out = buffer.duplicate();
+            out.position(start + 12);
+            out.putLong(seq);
+            out.putLong(timestamp);
+            out.putShort((short) topic.length);
+            out.put(topic);
+            out.putInt(payload.length);
+            out.put(payload);
+            buffer.putInt(start + 4, length);
+            buffer.putInt(start + 8, checksum(crc, start, length));
+            // 魔数最后写入，写到一半崩溃的记录不会被当作有效记录
+            buffer.putInt(start, RECORD_MAGIC);
+            position = start + length;
+        }
+
+        /**
+         * 顺序扫描有效记录，并把写入位置设为最后一条有效记录之后
+         *
+         * @return 最后一条有效记录的编号，没有记录时返回-1
+         */
+        long recover() {
+            CRC32 crc = new CRC32();
+            int pos = 0;
+            long last = -1;
+            while (valid(crc, pos)) {
+                last = buffer.getLong(pos + 12);
+                pos += buffer.getInt(pos + 4);
+            }
+            position = pos;
+            syncedPosition = pos;
+            return last;
+        }
+
+        /**
+         * 把编号在 [from, to) 内的记录按顺序交给接收方
+         */
+        void replay(long from, long to, ReplayConsumer consumer) {
+            CRC32 crc = new CRC32();
+            int pos = 0;
+            while (pos < position && valid(crc, pos)) {
+                long seq = buffer.getLong(pos + 12);
+                if (seq >= to) {
+                    return;
+                }
+                if (seq >= from) {
+                    ByteBuffer in = buffer.duplicate();
+                    in.position(pos + 28);
+                    byte[] topic = new byte[in.getShort() & 0xFFFF];
+                    in.get(topic);
+                    byte[] payload = new byte[in.getInt()];
+                    in.get(payload);
+                    consumer.accept(seq, new String(topic, StandardCharsets.UTF_8), payload);
+                }
+                pos += buffer.getInt(pos + 4);
+            }
+        }
+
+        private boolean valid(CRC32 crc, int pos) {
+            int capacity = buffer.capacity();
+            if (pos + HEADER_BYTES > capacity || buffer.getInt(pos) != RECORD_MAGIC) {
+                return false;
+            }
+            int length = buffer.getInt(pos + 4);
+            return length >= HEADER_BYTES + 4 && length <= capacity - pos
+                    && checksum(crc, pos, length) == buffer.getInt(pos + 8);
+        }
+
+        void force() {
+            int end = position;
+            buffer.force();
+            syncedPosition = end;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭入站预写日志分段失败: {}", path.getFileName(), e);
+            }
+        }
+
+        private int checksum(CRC32 crc, int start, int length) {
+            crc.reset();
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(start + 12);
+            slice.limit(start + length);
+            crc.update(slice);
+            return (int) crc.getValue();
+        }
+    }
+}
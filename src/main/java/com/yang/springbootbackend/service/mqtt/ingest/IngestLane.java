@@ -0,0 +1,208 @@
+package com.yang.springbootbackend.service.mqtt.ingest;
+
+import com.yang.springbootbackend.service.mqtt.MqttMessageRouter;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 入站消息工作通道
+ * 单线程消费有界队列，保证同一塔吊的消息按到达顺序处理。
+ * 记录每条消息从入队到处理完成的延迟，超出所在层级的延迟预算时计数；
+ * 批量层级的通道在排队已超过预算时直接丢弃消息（重放预写日志和重新投递的消息除外）。
+ * 处理器的旁路工作交给 offloader（批量层级的通道），携带 action 的任务直接执行。
+ * 消息处理完成或被丢弃后通知预写日志推进检查点
+ */
+@Slf4j
+public class IngestLane implements Runnable {
+
+    private final IngestTier tier;
+
+    private final int index;
+
+    private final ArrayBlockingQueue<IngestTask> queue;
+
+    private final MqttMessageRouter messageRouter;
+
+    private final IngestJournal journal;
+
+    private final MqttRoutingContext.Offloader offloader;
+
+    private final long budgetNanos;
+
+    private final AtomicLong processedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong shedCount = new AtomicLong();
+
+    private final AtomicLong overBudgetCount = new AtomicLong();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private volatile boolean running = true;
+
+    private Thread worker;
+
+    public IngestLane(IngestTier tier, int index, int capacity, long budgetMs, MqttMessageRouter messageRouter,
+                      IngestJournal journal, MqttRoutingContext.Offloader offloader) {
+        this.tier = tier;
+        this.index = index;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        this.messageRouter = messageRouter;
+        this.journal = journal;
+        this.offloader = offloader;
+    }
+
+    /**
+     * 启动工作线程
+     */
+    public void start() {
+        worker = new Thread(this, "mqtt-ingest-" + tier.name().toLowerCase() + "-" + index);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 投递消息，队列已满时最多等待指定时间
+     *
+     * @param task      消息任务
+     * @param timeoutMs 最大等待时间（毫秒）
+     * @return 是否投递成功
+     */
+    public boolean offer(IngestTask task, long timeoutMs) {
+        boolean accepted;
+        try {
+            accepted = timeoutMs > 0
+                    ? queue.offer(task, timeoutMs, TimeUnit.MILLISECONDS)
+                    : queue.offer(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            if (tier == IngestTier.BULK) {
+                shedCount.incrementAndGet();
+            } else {
+                rejectedCount.incrementAndGet();
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * 投递消息，队列已满时一直等待，用于重放预写日志和重新投递，任务应标记为不可丢弃
+     *
+     * @param task 消息任务
+     */
+    public void put(IngestTask task) throws InterruptedException {
+        queue.put(task);
+    }
+
+    @Override
+    public void run() {
+        while (running || !queue.isEmpty()) {
+            IngestTask task;
+            try {
+                task = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (task == null) {
+                continue;
+            }
+            if (tier == IngestTier.BULK && task.isSheddable() && System.nanoTime() - task.getEnqueueNanos() > budgetNanos) {
+                // 过载时批量数据已经过时，直接丢弃，让通道尽快追上
+                shedCount.incrementAndGet();
+                journal.complete(task.getJournalSeq());
+                continue;
+            }
+            try {
+                if (task.getAction() != null) {
+                    task.getAction().run();
+                } else {
+                    messageRouter.routeMessage(task.getTopic(), task.getPayload(), task.getJournalSeq(), offloader);
+                }
+            } catch (Exception e) {
+                log.error("{} 工作通道 {} 处理消息失败，主题: {}", tier, index, task.getTopic(), e);
+            }
+            journal.complete(task.getJournalSeq());
+            long elapsed = System.nanoTime() - task.getEnqueueNanos();
+            latency.record(elapsed);
+            if (elapsed > budgetNanos) {
+                overBudgetCount.incrementAndGet();
+            }
+            processedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 停止接收并等待队列中剩余消息处理完毕
+     *
+     * @param timeoutMs 最大等待时间（毫秒）
+     */
+    public void shutdown(long timeoutMs) {
+        running = false;
+        if (worker == null) {
+            return;
+        }
+        try {
+            worker.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            log.warn("{} 工作通道 {} 未能在 {}ms 内处理完剩余消息，剩余: {}", tier, index, timeoutMs, queue.size());
+            worker.interrupt();
+        }
+    }
+
+    public IngestTier getTier() {
+        return tier;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    public long getOverBudgetCount() {
+        return overBudgetCount.get();
+    }
+
+    /**
+     * 入队到处理完成的延迟分布（纳秒）
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,51 @@
+package com.yang.springbootbackend.service.mqtt.ingest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 入站消息任务
+ * 普通任务由工作通道交给路由器处理；携带 action 的任务是从其他层级转来的旁路工作（如遥测监听器），直接执行
+ */
+@Getter
+@AllArgsConstructor
+public class IngestTask {
+
+    /**
+     * 消息主题
+     */
+    private final String topic;
+
+    /**
+     * 消息内容
+     */
+    private final byte[] payload;
+
+    /**
+     * 入队时间（纳秒）
+     */
+    private final long enqueueNanos;
+
+    /**
+     * 预写日志编号，未写日志时为-1
+     */
+    private final long journalSeq;
+
+    /**
+     * 旁路工作，为null时按主题路由消息
+     */
+    private final Runnable action;
+
+    /**
+     * 批量层级排队超过预算时能否丢弃；重放预写日志和重新投递的消息不能丢弃
+     */
+    private final boolean sheddable;
+
+    public IngestTask(String topic, byte[] payload, long enqueueNanos, long journalSeq) {
+        this(topic, payload, enqueueNanos, journalSeq, null, true);
+    }
+
+    public IngestTask(String topic, byte[] payload, long enqueueNanos, long journalSeq, Runnable action) {
+        this(topic, payload, enqueueNanos, journalSeq, action, true);
+    }
+}
@@ -0,0 +1,25 @@
+package com.yang.springbootbackend.service.mqtt.ingest;
+
+/**
+ * 入站消息调度层级
+ * 由处理器的 {@link com.yang.springbootbackend.service.mqtt.MqttMessageProcessor#getPriority()} 决定，
+ * 每个层级使用独立的工作通道和线程，低层级的积压不会延迟高层级的消息
+ */
+public enum IngestTier {
+
+    /**
+     * 安全关键：独占工作线程，从不丢弃
+     */
+    CRITICAL,
+
+    /**
+     * 普通：从不丢弃，队列已满时转入死信日志
+     */
+    STANDARD,
+
+    /**
+     * 批量：过载时直接丢弃（队列已满或排队超过延迟预算）。
+     * 除优先级不低于 bulkPriority 的处理器外，其他层级处理器的遥测监听器（存储、统计）也转到这里执行
+     */
+    BULK
+}
@@ -0,0 +1,259 @@
+package com.yang.springbootbackend.service.mqtt.ingest;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.IngestLaneStatsVO;
+import com.yang.springbootbackend.service.mqtt.MqttMessageProcessor;
+import com.yang.springbootbackend.service.mqtt.MqttMessageRouter;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.deadletter.DeadLetterJournal;
+import com.yang.springbootbackend.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MQTT入站消息分区调度器
+ * 先按主题对应处理器的优先级选择调度层级（安全关键 / 普通 / 批量），每个层级有独立的工作通道和线程；
+ * 层级内再按主题中的塔吊ID哈希到固定工作通道，同一塔吊同一类消息在同一通道内顺序处理，
+ * 不同塔吊的消息并行处理，避免单个慢处理阻塞Paho回调线程。
+ * 大量气体消息积压只占用普通层级的通道，不会延迟角度告警。
+ * 处理器的遥测监听器（时序存储、汇总、数据库和Redis写入）从安全关键和普通层级的通道转到同一塔吊的批量层级通道执行，
+ * 过载时与批量消息一样丢弃；转交时为消息增加一次预写日志持有，监听器完成或被丢弃后才推进检查点。
+ * 消息投递前先写入 {@link IngestJournal}，启动时把上次未处理完的消息重新投递到对应通道
+ */
+@Component
+@Slf4j
+public class MqttIngestDispatcher {
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private MqttMessageRouter messageRouter;
+
+    @Autowired
+    private DeadLetterJournal deadLetterJournal;
+
+    @Autowired
+    private IngestJournal ingestJournal;
+
+    /**
+     * 按层级下标存放的工作通道
+     */
+    private final IngestLane[][] tierLanes = new IngestLane[IngestTier.values().length][];
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.Ingest ingest = mqttProperties.getIngest();
+        int laneCount = ingest.getLaneCount() > 0
+                ? ingest.getLaneCount()
+                : Runtime.getRuntime().availableProcessors();
+
+        // 批量层级先创建，其他层级的旁路工作转交给它；批量层级自身的旁路工作直接执行
+        createLanes(IngestTier.BULK, Math.max(1, ingest.getBulkLaneCount()), ingest.getBulkBudgetMs(), null);
+        createLanes(IngestTier.CRITICAL, Math.max(1, ingest.getCriticalLaneCount()), ingest.getCriticalBudgetMs(),
+                this::offloadToBulk);
+        createLanes(IngestTier.STANDARD, laneCount, ingest.getStandardBudgetMs(), this::offloadToBulk);
+        ingestJournal.replay(this::redeliver);
+        log.info("MQTT入站调度器启动完成，工作通道 关键/普通/批量: {}/{}/{}, 单通道队列容量: {}",
+                tierLanes[IngestTier.CRITICAL.ordinal()].length, laneCount,
+                tierLanes[IngestTier.BULK.ordinal()].length, ingest.getQueueCapacity());
+    }
+
+    private void createLanes(IngestTier tier, int count, long budgetMs, MqttRoutingContext.Offloader offloader) {
+        IngestLane[] lanes = new IngestLane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new IngestLane(tier, i, mqttProperties.getIngest().getQueueCapacity(), budgetMs, messageRouter,
+                    ingestJournal, offloader);
+            lanes[i].start();
+        }
+        tierLanes[tier.ordinal()] = lanes;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 批量层级最后关闭，接住其他层级排空时转来的旁路工作
+        for (IngestTier tier : new IngestTier[]{IngestTier.CRITICAL, IngestTier.STANDARD, IngestTier.BULK}) {
+            for (IngestLane lane : tierLanes[tier.ordinal()]) {
+                lane.shutdown(SHUTDOWN_TIMEOUT_MS);
+            }
+        }
+        log.info("MQTT入站调度器已关闭");
+    }
+
+    /**
+     * 将消息投递到对应塔吊的工作通道
+     *
+     * @param topic   主题
+     * @param payload 消息内容（UTF-8字节）
+     * @return 是否投递成功
+     */
+    public boolean dispatch(String topic, byte[] payload) {
+        IngestTier tier = resolveTier(topic);
+        IngestLane lane = selectLane(tier, topic);
+        long seq = ingestJournal.append(topic, payload);
+        // 批量层级不等待，队列已满立即丢弃，不占用Paho回调线程
+        long timeoutMs = tier == IngestTier.BULK ? 0 : mqttProperties.getIngest().getOfferTimeoutMs();
+        boolean accepted = lane.offer(new IngestTask(topic, payload, System.nanoTime(), seq), timeoutMs);
+        if (!accepted) {
+            ingestJournal.complete(seq);
+            if (tier != IngestTier.BULK) {
+                log.warn("{} 工作通道 {} 队列已满，消息转入死信日志，主题: {}", tier, lane.getIndex(), topic);
+                deadLetterJournal.record(topic, payload, DeadLetterJournal.FAILURE_INGEST_REJECTED,
+                        tier + " 工作通道 " + lane.getIndex() + " 队列已满");
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * 重新投递消息（如死信重放）：与实时消息一样写预写日志并进入对应塔吊的工作通道，
+     * 保证与该塔吊的实时消息在同一线程按顺序处理；队列已满时等待，不丢弃
+     *
+     * @param topic   主题
+     * @param payload 消息内容（UTF-8字节）
+     * @throws InterruptedException 等待队列空间时被中断
+     */
+    public void redispatch(String topic, byte[] payload) throws InterruptedException {
+        IngestLane lane = selectLane(resolveTier(topic), topic);
+        long seq = ingestJournal.append(topic, payload);
+        try {
+            lane.put(new IngestTask(topic, payload, System.nanoTime(), seq, null, false));
+        } catch (InterruptedException e) {
+            ingestJournal.complete(seq);
+            throw e;
+        }
+    }
+
+    /**
+     * 把旁路工作转交给同一塔吊的批量层级通道，队列已满时丢弃
+     * 转交前为消息增加一次预写日志持有，批量通道执行完或丢弃任务时释放
+     */
+    private void offloadToBulk(MqttRoutingContext context, Runnable action) {
+        long seq = context.getJournalSeq();
+        ingestJournal.retain(seq);
+        IngestLane lane = selectLane(IngestTier.BULK, context.getTopic());
+        if (!lane.offer(new IngestTask(context.getTopic(), null, System.nanoTime(), seq, action), 0)) {
+            ingestJournal.complete(seq);
+            log.debug("批量工作通道 {} 队列已满，丢弃旁路工作，主题: {}", lane.getIndex(), context.getTopic());
+        }
+    }
+
+    /**
+     * 重放预写日志中的消息：投递到原通道，队列已满时等待，不丢弃也不再写日志
+     */
+    private void redeliver(long seq, String topic, byte[] payload) {
+        IngestLane lane = selectLane(resolveTier(topic), topic);
+        try {
+            lane.put(new IngestTask(topic, payload, System.nanoTime(), seq, null, false));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ingestJournal.complete(seq);
+        }
+    }
+
+    private IngestLane selectLane(IngestTier tier, String topic) {
+        IngestLane[] lanes = tierLanes[tier.ordinal()];
+        return lanes[laneIndex(topic, mqttProperties.getCraneIdSegment(), lanes.length)];
+    }
+
+    /**
+     * 根据主题对应处理器的优先级确定调度层级，未知主题按普通层级处理（随后写入死信日志）
+     *
+     * @param topic 主题
+     * @return 调度层级
+     */
+    IngestTier resolveTier(String topic) {
+        MqttMessageProcessor processor = messageRouter.findProcessor(topic);
+        if (processor == null) {
+            return IngestTier.STANDARD;
+        }
+        MqttProperties.Ingest ingest = mqttProperties.getIngest();
+        int priority = processor.getPriority();
+        if (priority < ingest.getCriticalPriority()) {
+            return IngestTier.CRITICAL;
+        }
+        return priority >= ingest.getBulkPriority() ? IngestTier.BULK : IngestTier.STANDARD;
+    }
+
+    /**
+     * 获取各工作通道的运行指标
+     *
+     * @return 通道指标列表
+     */
+    public List<IngestLaneStatsVO> getLaneStats() {
+        List<IngestLaneStatsVO> stats = new ArrayList<>();
+        for (IngestLane[] lanes : tierLanes) {
+            for (IngestLane lane : lanes) {
+                LatencyHistogram latency = lane.getLatency();
+                IngestLaneStatsVO vo = new IngestLaneStatsVO();
+                vo.setTier(lane.getTier().name());
+                vo.setLaneIndex(lane.getIndex());
+                vo.setQueueDepth(lane.getQueueDepth());
+                vo.setQueueCapacity(lane.getQueueCapacity());
+                vo.setProcessedCount(lane.getProcessedCount());
+                vo.setRejectedCount(lane.getRejectedCount());
+                vo.setShedCount(lane.getShedCount());
+                vo.setOverBudgetCount(lane.getOverBudgetCount());
+                vo.setBudgetMicros(lane.getBudgetNanos() / 1000);
+                vo.setLatencyP50Micros(latency.getValueAtPercentile(50) / 1000);
+                vo.setLatencyP99Micros(latency.getValueAtPercentile(99) / 1000);
+                vo.setLatencyMaxMicros(latency.getMax() / 1000);
+                stats.add(vo);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 清空各工作通道的延迟统计，便于观察某段时间内的分位数
+     */
+    public void resetLatency() {
+        for (IngestLane[] lanes : tierLanes) {
+            for (IngestLane lane : lanes) {
+                lane.getLatency().reset();
+            }
+        }
+    }
+
+    /**
+     * 根据主题中指定层级的塔吊ID计算工作通道下标
+     * 直接在原字符串上计算哈希，不产生子串
+     *
+     * @param topic     主题
+     * @param segment   塔吊ID所在层级
+     * @param laneCount 通道数量
+     * @return 通道下标
+     */
+    static int laneIndex(String topic, int segment, int laneCount) {
+        int start = 0;
+        for (int level = 0; level < segment && start >= 0; level++) {
+            int slash = topic.indexOf('/', start);
+            start = slash < 0 ? -1 : slash + 1;
+        }
+
+        int hash = 0;
+        if (start < 0) {
+            // 主题层级不足时退化为整个主题的哈希
+            hash = topic.hashCode();
+        } else {
+            for (int i = start; i < topic.length(); i++) {
+                char c = topic.charAt(i);
+                if (c == '/') {
+                    break;
+                }
+                hash = 31 * hash + c;
+            }
+        }
+        // 扰动高位，避免连续编号的塔吊集中在少数通道
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % laneCount;
+    }
+}
@@ -0,0 +1,405 @@
+package com.yang.springbootbackend.service.mqtt.ingest;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.vo.DedupStatsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于设备序号的QoS1重复消息过滤器
+ * 每个设备（数据流 + 塔吊ID）维护一个滑动窗口：记录已见过的最大序号，
+ * 并用位图标记最近 windowSize 个序号是否已处理，窗口内重复的序号直接丢弃。
+ * 序号比窗口下沿还小时视为设备重启或序号回绕，重置窗口后照常处理。
+ * 设备按64位哈希存放在分段的开放寻址表中，不为每个设备创建对象，内存随设备数线性增长并受 maxDevices 限制。
+ * 每个分段用时钟（二次机会）算法近似LRU淘汰：新设备插入时时钟指针顺带前进几格，淘汰空闲超过 idleTtlSeconds 的设备；
+ * 分段已满时指针继续前进，跳过并清除最近访问过的设备，淘汰第一个未访问的设备，新设备总能参与去重。
+ * 未携带序号的读数不参与去重
+ */
+@Component
+@Slf4j
+public class SequenceDeduplicator {
+
+    private static final int SEGMENT_COUNT = 16;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    /**
+     * 每插入一个新设备，时钟指针检查空闲设备的格数
+     */
+    private static final int IDLE_SWEEP_STEPS = 2;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    private boolean enabled;
+    private int windowSize;
+    private Segment[] segments;
+
+    private final LongAdder duplicateCount = new LongAdder();
+    private final LongAdder resetCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.Dedup dedup = mqttProperties.getDedup();
+        enabled = dedup.isEnabled();
+        // 窗口按64位对齐，每个设备占用 windowSize / 64 个long
+        windowSize = Math.max(64, (dedup.getWindowSize() + 63) & ~63);
+        int maxPerSegment = Math.max(1, (dedup.getMaxDevices() + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        long idleTtlMillis = TimeUnit.SECONDS.toMillis(dedup.getIdleTtlSeconds());
+        segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(windowSize >>> 6, maxPerSegment, idleTtlMillis, evictedCount);
+        }
+        log.info("MQTT序号去重{}，窗口大小: {}, 最大设备数: {}, 空闲淘汰: {}s", enabled ? "已开启" : "已关闭", windowSize,
+                dedup.getMaxDevices(), dedup.getIdleTtlSeconds());
+    }
+
+    /**
+     * 过滤重复读数，并把保留下来的序号标记为已处理
+     *
+     * @param stream   数据流标识（同一设备的不同传感器序号相互独立）
+     * @param readings 塔吊ID已补全的读数列表
+     * @return 去重后的读数列表，没有重复时返回原列表
+     */
+    public <T extends TelemetryReading> List<T> filter(String stream, List<T> readings) {
+        if (!enabled) {
+            return readings;
+        }
+        List<T> result = null;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < readings.size(); i++) {
+            T reading = readings.get(i);
+            Long seq = reading.getSeq();
+            boolean fresh = seq == null || reading.getCraneId() == null
+                    || markSeen(deviceKey(stream, reading.getCraneId()), seq, now);
+            if (!fresh && result == null) {
+                // 出现第一条重复时才复制前面的读数，没有重复时不分配新列表
+                result = new ArrayList<>(readings.subList(0, i));
+            } else if (fresh && result != null) {
+                result.add(reading);
+            }
+        }
+        return result != null ? result : readings;
+    }
+
+    /**
+     * 撤销读数的已处理标记
+     * 处理失败的消息会进入死信日志，撤销后重放时不会被当作重复丢弃
+     *
+     * @param stream   数据流标识
+     * @param readings 之前 {@link #filter} 返回的读数
+     */
+    public void release(String stream, List<? extends TelemetryReading> readings) {
+        if (!enabled) {
+            return;
+        }
+        for (TelemetryReading reading : readings) {
+            if (reading.getSeq() != null && reading.getCraneId() != null) {
+                long key = deviceKey(stream, reading.getCraneId());
+                segmentFor(key).release(key, reading.getSeq());
+            }
+        }
+    }
+
+    /**
+     * 判断序号是否首次出现，首次出现时标记为已处理
+     *
+     * @param key 设备键
+     * @param seq 序号
+     * @param now 当前时间（毫秒），记为设备的最近访问时间
+     * @return 首次出现返回true，重复返回false
+     */
+    boolean markSeen(long key, long seq, long now) {
+        int result = segmentFor(key).mark(key, seq, now);
+        if (result == Segment.DUPLICATE) {
+            duplicateCount.increment();
+            return false;
+        }
+        if (result == Segment.RESET) {
+            resetCount.increment();
+        }
+        return true;
+    }
+
+    /**
+     * 获取去重运行指标
+     *
+     * @return 指标
+     */
+    public DedupStatsVO getStats() {
+        DedupStatsVO stats = new DedupStatsVO();
+        stats.setEnabled(enabled);
+        stats.setWindowSize(windowSize);
+        int tracked = 0;
+        for (Segment segment : segments) {
+            tracked += segment.size();
+        }
+        stats.setTrackedDevices(tracked);
+        stats.setDuplicateCount(duplicateCount.sum());
+        stats.setResetCount(resetCount.sum());
+        stats.setEvictedCount(evictedCount.sum());
+        return stats;
+    }
+
+    private Segment segmentFor(long key) {
+        return segments[(int) (key >>> 60) & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * 计算设备键：对数据流和塔吊ID做FNV-1a哈希再混合高低位
+     * 直接遍历字符，不拼接字符串；0保留为空槽标记
+     */
+    static long deviceKey(String stream, String craneId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < stream.length(); i++) {
+            hash = (hash ^ stream.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ '|') * 0x100000001b3L;
+        for (int i = 0; i < craneId.length(); i++) {
+            hash = (hash ^ craneId.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * 去重表分段：线性探测的开放寻址表，键、最大序号、最近访问时间、访问标记和窗口位图分别存放在平行的基本类型数组中
+     */
+    private static final class Segment {
+
+        static final int FRESH = 0;
+        static final int DUPLICATE = 1;
+        static final int RESET = 2;
+
+        private final int words;
+        private final int windowSize;
+        private final int maxSize;
+        private final long idleTtlMillis;
+        private final LongAdder evictedCount;
+
+        private long[] keys;
+        private long[] highest;
+        private long[] lastSeen;
+        private boolean[] referenced;
+        private long[] bits;
+        private int size;
+
+        /**
+         * 时钟指针，指向上次检查的槽位
+         */
+        private int hand;
+
+        Segment(int words, int maxSize, long idleTtlMillis, LongAdder evictedCount) {
+            this.words = words;
+            this.windowSize = words << 6;
+            this.maxSize = maxSize;
+            this.idleTtlMillis = idleTtlMillis;
+            this.evictedCount = evictedCount;
+            allocate(INITIAL_SEGMENT_CAPACITY);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int mark(long key, long seq, long now) {
+            int slot = find(key);
+            if (slot < 0) {
+                sweepIdle(now);
+                if (size >= maxSize) {
+                    evictOne();
+                }
+                if ((size + 1) * 2 > keys.length) {
+                    rehash(keys.length * 2);
+                }
+                slot = insert(key);
+                highest[slot] = seq;
+                lastSeen[slot] = now;
+                setBit(slot, seq);
+                return FRESH;
+            }
+            lastSeen[slot] = now;
+            referenced[slot] = true;
+
+            long high = highest[slot];
+            if (seq > high) {
+                advance(slot, high, seq);
+                setBit(slot, seq);
+                return FRESH;
+            }
+            if (high - seq >= windowSize) {
+                // 落在窗口下沿之外：设备重启或序号回绕，从该序号重新开始
+                clearWindow(slot);
+                highest[slot] = seq;
+                setBit(slot, seq);
+                return RESET;
+            }
+            if (testBit(slot, seq)) {
+                return DUPLICATE;
+            }
+            setBit(slot, seq);
+            return FRESH;
+        }
+
+        synchronized void release(long key, long seq) {
+            int slot = find(key);
+            if (slot >= 0 && seq <= highest[slot] && highest[slot] - seq < windowSize) {
+                int bit = (int) Math.floorMod(seq, (long) windowSize);
+                bits[slot * words + (bit >>> 6)] &= ~(1L << bit);
+            }
+        }
+
+        /**
+         * 窗口上沿从 high 推进到 seq，清除移出窗口的旧位
+         */
+        private void advance(int slot, long high, long seq) {
+            if (seq - high >= windowSize) {
+                clearWindow(slot);
+            } else {
+                for (long s = high + 1; s < seq; s++) {
+                    int bit = (int) Math.floorMod(s, (long) windowSize);
+                    bits[slot * words + (bit >>> 6)] &= ~(1L << bit);
+                }
+            }
+            highest[slot] = seq;
+        }
+
+        /**
+         * 时钟指针前进几格，淘汰空闲超时的设备
+         */
+        private void sweepIdle(long now) {
+            if (idleTtlMillis <= 0 || size == 0) {
+                return;
+            }
+            int mask = keys.length - 1;
+            for (int step = 0; step < IDLE_SWEEP_STEPS; step++) {
+                hand = (hand + 1) & mask;
+                if (keys[hand] != 0 && now - lastSeen[hand] > idleTtlMillis) {
+                    remove(hand);
+                }
+            }
+        }
+
+        /**
+         * 二次机会淘汰：跳过并清除最近访问过的设备，淘汰第一个未访问的设备
+         * 最多转两圈（第一圈清除全部访问标记）
+         */
+        private void evictOne() {
+            int mask = keys.length - 1;
+            while (true) {
+                hand = (hand + 1) & mask;
+                if (keys[hand] == 0) {
+                    continue;
+                }
+                if (referenced[hand]) {
+                    referenced[hand] = false;
+                    continue;
+                }
+                remove(hand);
+                return;
+            }
+        }
+
+        /**
+         * 删除槽位上的设备，并把同一探测链上后续的设备向前移动填补空位（反向移位删除），不留墓碑
+         */
+        private void remove(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int i = (hole + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                int home = (int) keys[i] & mask;
+                // 起始槽位不在 (hole, i] 区间内的设备可以前移到空位
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    highest[hole] = highest[i];
+                    lastSeen[hole] = lastSeen[i];
+                    referenced[hole] = referenced[i];
+                    System.arraycopy(bits, i * words, bits, hole * words, words);
+                    hole = i;
+                }
+            }
+            keys[hole] = 0;
+            referenced[hole] = false;
+            clearWindow(hole);
+            size--;
+            evictedCount.increment();
+        }
+
+        private void clearWindow(int slot) {
+            int base = slot * words;
+            for (int i = 0; i < words; i++) {
+                bits[base + i] = 0;
+            }
+        }
+
+        private boolean testBit(int slot, long seq) {
+            int bit = (int) Math.floorMod(seq, (long) windowSize);
+            return (bits[slot * words + (bit >>> 6)] & (1L << bit)) != 0;
+        }
+
+        private void setBit(int slot, long seq) {
+            int bit = (int) Math.floorMod(seq, (long) windowSize);
+            bits[slot * words + (bit >>> 6)] |= 1L << bit;
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) key & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                if (keys[i] == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        private int insert(long key) {
+            int mask = keys.length - 1;
+            int i = (int) key & mask;
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            size++;
+            return i;
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            highest = new long[capacity];
+            lastSeen = new long[capacity];
+            referenced = new boolean[capacity];
+            bits = new long[capacity * words];
+            size = 0;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldHighest = highest;
+            long[] oldLastSeen = lastSeen;
+            boolean[] oldReferenced = referenced;
+            long[] oldBits = bits;
+            allocate(capacity);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = insert(oldKeys[i]);
+                    highest[slot] = oldHighest[i];
+                    lastSeen[slot] = oldLastSeen[i];
+                    referenced[slot] = oldReferenced[i];
+                    System.arraycopy(oldBits, i * words, bits, slot * words, words);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.yang.springbootbackend.service.mqtt.persist;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.service.mqtt.deadletter.DeadLetterJournal;
+import com.yang.springbootbackend.service.mqtt.ingest.DurableSink;
+import com.yang.springbootbackend.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步批量写入基类
+ * 入站线程只把条目非阻塞地放入有界缓冲，缓冲已满时丢弃并计数；写入线程在缓冲积累到 batchSize 条
+ * 或自第一条起等待超过 flushIntervalMs 时取出一批，按 {@link #getChunkSize()} 拆分后逐块写入，下游变慢时每批自然变大。
+ * 写入失败的块按指数退避重试 maxAttempts 次（间隔不超过 maxRetryBackoffMs），重试期间不再取新条目，缓冲满后由入站侧丢弃；
+ * 重试用尽的块在子类提供死信主题时写入死信日志，重放时经 {@link #replay(byte[])} 回到缓冲，否则只计数。
+ * 关闭时写完缓冲中剩余的条目，关闭阶段失败的块不再等待重试。
+ * 作为 {@link DurableSink}，缓冲中和写入中的条目阻止入站预写日志推进检查点
+ *
+ * @param <T> 条目类型
+ */
+@Slf4j
+public abstract class AbstractBatchSink<T> implements DurableSink {
+
+    @Autowired(required = false)
+    private DeadLetterJournal deadLetterJournal;
+
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+    private final LongAdder droppedCount = new LongAdder();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    /**
+     * 放入缓冲的条目数，入队前计数、入队失败时撤销，保证先入队的条目一定先被计数
+     */
+    private final AtomicLong acceptedCount = new AtomicLong();
+
+    /**
+     * 写入线程按入队顺序处理完（写入、转入死信或丢弃）的条目数
+     */
+    private final AtomicLong settledCount = new AtomicLong();
+
+    private volatile double lastItemsPerSecond;
+    private volatile boolean running;
+    private BlockingQueue<T> buffer;
+    private Thread writer;
+
+    /**
+     * 创建缓冲并启动写入线程，由子类在启用时调用
+     *
+     * @param threadName 写入线程名
+     */
+    protected void startSink(String threadName) {
+        buffer = new ArrayBlockingQueue<>(Math.max(1, getConfig().getBufferCapacity()));
+        running = true;
+        writer = new Thread(this::writeLoop, threadName);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        try {
+            // 等待写入线程写完缓冲中剩余的条目
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!buffer.isEmpty()) {
+            log.warn("关闭时仍有 {} 条未完成{}", buffer.size(), getName());
+        }
+    }
+
+    /**
+     * 重放死信日志中重试用尽的条目：按原样重新放入缓冲，缓冲已满时等待
+     *
+     * @param payload 死信条目载荷
+     */
+    public void replay(byte[] payload) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException(getName() + "未启用");
+        }
+        for (T item : decodeDeadLetter(payload)) {
+            acceptedCount.incrementAndGet();
+            try {
+                buffer.put(item);
+            } catch (InterruptedException e) {
+                acceptedCount.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public long mark() {
+        return acceptedCount.get();
+    }
+
+    /**
+     * 写入线程按入队顺序处理，处理完的条目数达到标记（或当前已接收的条目数）时，标记之前入队的条目都已处理完
+     */
+    @Override
+    public boolean isDurable(long mark) {
+        long accepted = acceptedCount.get();
+        return settledCount.get() >= Math.min(mark, accepted);
+    }
+
+    /**
+     * 写入线程最多等待 flushIntervalMs 就会取出缓冲中的条目，这里只等待它写完当前已接收的条目
+     */
+    @Override
+    public void persist(long timeoutMs) {
+        if (running && !DurableSink.awaitDurable(this, mark(), timeoutMs)) {
+            log.warn("{}未能在 {}ms 内写完已接收的条目，剩余: {}", getName(), timeoutMs, buffer.size());
+        }
+    }
+
+    /**
+     * 重试用尽的条目在死信日志中的主题
+     *
+     * @return 不写入死信日志时返回null
+     */
+    public String getDeadLetterTopic() {
+        return null;
+    }
+
+    /**
+     * 写入配置
+     */
+    protected abstract MqttProperties.BatchSinkConfig getConfig();
+
+    /**
+     * 用于日志的名称
+     */
+    protected abstract String getName();
+
+    /**
+     * 写入一块条目，抛出异常时按退避策略重试整块
+     *
+     * @param items 条目，不超过 {@link #getChunkSize()} 条
+     */
+    protected abstract void write(List<T> items) throws Exception;
+
+    /**
+     * 一次写入的最大条数，默认整批一次写入
+     */
+    protected int getChunkSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 把重试用尽的条目编码为死信载荷，提供死信主题的子类需要实现
+     */
+    protected byte[] encodeDeadLetter(List<T> items) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 解码死信载荷，提供死信主题的子类需要实现
+     */
+    protected List<T> decodeDeadLetter(byte[] payload) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 放入缓冲，不等待
+     *
+     * @return 缓冲已满被丢弃时返回false
+     */
+    protected boolean offer(T item) {
+        acceptedCount.incrementAndGet();
+        if (buffer.offer(item)) {
+            return true;
+        }
+        acceptedCount.decrementAndGet();
+        droppedCount.increment();
+        return false;
+    }
+
+    protected boolean isRunning() {
+        return running;
+    }
+
+    protected int getBufferedCount() {
+        return buffer != null ? buffer.size() : 0;
+    }
+
+    protected long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    protected long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    protected long getFailedCount() {
+        return failedCount.get();
+    }
+
+    protected long getRetryCount() {
+        return retryCount.get();
+    }
+
+    protected long getFlushCount() {
+        return flushCount.get();
+    }
+
+    protected long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    /**
+     * 平均每次刷写条数（含失败的条目）
+     */
+    protected double getAvgBatchSize() {
+        long flushes = flushCount.get();
+        return flushes > 0 ? (double) (writtenCount.get() + failedCount.get()) / flushes : 0;
+    }
+
+    protected LatencyHistogram getFlushLatency() {
+        return flushLatency;
+    }
+
+    /**
+     * 最近一次刷写的写入速率（条/秒）
+     */
+    protected double getLastItemsPerSecond() {
+        return lastItemsPerSecond;
+    }
+
+    private void writeLoop() {
+        MqttProperties.BatchSinkConfig config = getConfig();
+        int batchSize = Math.max(1, config.getBatchSize());
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getFlushIntervalMs()));
+        List<T> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                if (running) {
+                    collect(batch, batchSize, lingerNanos);
+                } else {
+                    // 关闭阶段不再等待，直接取出剩余条目
+                    buffer.drainTo(batch, batchSize);
+                }
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                // 关闭信号，循环条件会写完剩余条目后退出
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 取出一批条目：积累到 batchSize 条或自第一条起等待超过 lingerNanos 即返回
+     */
+    private void collect(List<T> batch, int batchSize, long lingerNanos) throws InterruptedException {
+        T first = buffer.poll(lingerNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+            if (buffer.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            T next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * 按块写入一批条目，每块独立重试
+     */
+    private void flush(List<T> batch) {
+        int chunkSize = Math.max(1, getChunkSize());
+        long start = System.nanoTime();
+        int written = 0;
+        for (int from = 0; from < batch.size(); from += chunkSize) {
+            List<T> chunk = batch.subList(from, Math.min(batch.size(), from + chunkSize));
+            if (writeWithRetry(chunk)) {
+                written += chunk.size();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        flushLatency.record(elapsed);
+        flushCount.incrementAndGet();
+        writtenCount.addAndGet(written);
+        settledCount.addAndGet(batch.size());
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+        lastItemsPerSecond = written * 1e9 / Math.max(1, elapsed);
+    }
+
+    /**
+     * 写入一块，失败时按指数退避重试，重试用尽后写入死信日志
+     *
+     * @return 是否写入成功
+     */
+    private boolean writeWithRetry(List<T> chunk) {
+        MqttProperties.BatchSinkConfig config = getConfig();
+        int maxAttempts = Math.max(1, config.getMaxAttempts());
+        long backoffMs = Math.max(1, config.getRetryBackoffMs());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(chunk);
+                return true;
+            } catch (Exception e) {
+                // 关闭阶段不再等待
+                if (attempt >= maxAttempts || !running) {
+                    failedCount.addAndGet(chunk.size());
+                    deadLetter(chunk, attempt, e);
+                    return false;
+                }
+                retryCount.incrementAndGet();
+                log.warn("{}失败，{}ms后重试（第{}次），条数: {}, 原因: {}", getName(), backoffMs, attempt, chunk.size(),
+                        e.getMessage());
+                backoff(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, Math.max(1, config.getMaxRetryBackoffMs()));
+            }
+        }
+    }
+
+    private void deadLetter(List<T> chunk, int attempts, Exception error) {
+        String topic = getDeadLetterTopic();
+        if (topic == null || deadLetterJournal == null) {
+            log.error("{}失败，已尝试{}次，丢弃条数: {}", getName(), attempts, chunk.size(), error);
+            return;
+        }
+        log.error("{}失败，已尝试{}次，转入死信日志，条数: {}", getName(), attempts, chunk.size(), error);
+        deadLetterJournal.record(topic, encodeDeadLetter(chunk), error);
+    }
+
+    /**
+     * 重试前等待，关闭信号会打断等待
+     */
+    private static void backoff(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
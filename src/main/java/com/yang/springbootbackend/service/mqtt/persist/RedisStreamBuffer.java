@@ -0,0 +1,211 @@
+package com.yang.springbootbackend.service.mqtt.persist;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.constant.RedisConstant;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.vo.RecentReadingVO;
+import com.yang.springbootbackend.domain.mqtt.vo.RedisStreamStatsVO;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.TelemetryListener;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import com.yang.springbootbackend.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 最近读数的Redis Stream热缓冲
+ * 作为 {@link TelemetryListener} 把读数放入有界缓冲，缓冲和批量写入线程见 {@link AbstractBatchSink}，
+ * 每批在一个管道中对每条读数执行 XADD crane:stream:{craneId} MAXLEN ~ maxLen，并对批内每台塔吊续期一次，
+ * 一批只占一次网络往返，Redis变慢时每批自然变大，往返次数不随消息速率增长。
+ * 管道失败时整批按退避策略重试，已执行的部分命令可能被重复追加，热缓冲可以容忍；
+ * 热缓冲只服务最近窗口的查询，重试用尽的读数不写入死信日志（重放时条目ID会落在重放时刻），只计数。
+ * 条目ID由Redis按写入时间生成，最近N分钟的读数用 XRANGE 从 (当前时间 - N分钟) 开始读取
+ */
+@Component
+@Slf4j
+public class RedisStreamBuffer extends AbstractBatchSink<TelemetryReading> implements TelemetryListener {
+
+    private static final byte[] TS_FIELD = "ts".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 塔吊ID到Stream键，只由写入线程访问
+     */
+    private final Map<String, byte[]> streamKeys = new HashMap<>();
+
+    /**
+     * 指标名的字节形式，按枚举序号存放
+     */
+    private final byte[][] metricFields = new byte[TelemetryMetric.values().length][];
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.RedisStream config = mqttProperties.getRedisStream();
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (TelemetryMetric metric : TelemetryMetric.values()) {
+            metricFields[metric.ordinal()] = metric.getKey().getBytes(StandardCharsets.UTF_8);
+        }
+        startSink("redis-stream-writer");
+        log.info("最近读数Redis Stream已启用，MAXLEN ~ {}, 窗口: {}分钟, 每批: {}条", config.getMaxLen(),
+                config.getWindowMinutes(), config.getBatchSize());
+    }
+
+    @Override
+    public void onReadings(MqttRoutingContext context, List<? extends TelemetryReading> readings) {
+        if (!isRunning()) {
+            return;
+        }
+        for (TelemetryReading reading : readings) {
+            if (reading.getCraneId() != null) {
+                offer(reading);
+            }
+        }
+    }
+
+    /**
+     * 是否已启用
+     */
+    public boolean isEnabled() {
+        return isRunning();
+    }
+
+    /**
+     * 读取塔吊最近若干分钟的读数（按写入顺序）
+     *
+     * @param craneId 塔吊ID
+     * @param minutes 分钟数
+     * @param limit   最多返回条数
+     * @return 读数列表，Stream不存在时返回空列表
+     */
+    public List<RecentReadingVO> recent(String craneId, int minutes, int limit) {
+        byte[] key = (RedisConstant.CRANE_STREAM_PREFIX + craneId).getBytes(StandardCharsets.UTF_8);
+        long fromMillis = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes);
+        Range<String> range = Range.of(Range.Bound.inclusive(fromMillis + "-0"), Range.Bound.unbounded());
+        List<ByteRecord> records = stringRedisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xRange(key, range, RedisZSetCommands.Limit.limit().count(limit)));
+        if (records == null || records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<RecentReadingVO> result = new ArrayList<>(records.size());
+        for (ByteRecord record : records) {
+            RecentReadingVO vo = new RecentReadingVO();
+            vo.setId(record.getId().getValue());
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (Map.Entry<byte[], byte[]> field : record.getValue().entrySet()) {
+                String name = new String(field.getKey(), StandardCharsets.UTF_8);
+                String value = new String(field.getValue(), StandardCharsets.UTF_8);
+                if ("ts".equals(name)) {
+                    vo.setTs(Long.parseLong(value));
+                } else {
+                    values.put(name, Double.valueOf(value));
+                }
+            }
+            vo.setValues(values);
+            result.add(vo);
+        }
+        return result;
+    }
+
+    /**
+     * 获取热缓冲运行指标
+     */
+    public RedisStreamStatsVO getStats() {
+        RedisStreamStatsVO stats = new RedisStreamStatsVO();
+        stats.setEnabled(isRunning());
+        stats.setBufferedEntries(getBufferedCount());
+        stats.setBufferCapacity(mqttProperties.getRedisStream().getBufferCapacity());
+        stats.setWrittenEntries(getWrittenCount());
+        stats.setDroppedEntries(getDroppedCount());
+        stats.setFailedEntries(getFailedCount());
+        stats.setRetryCount(getRetryCount());
+        stats.setPipelineCount(getFlushCount());
+        stats.setAvgBatchEntries(getAvgBatchSize());
+        stats.setMaxBatchEntries(getMaxBatchSize());
+        LatencyHistogram flushLatency = getFlushLatency();
+        stats.setFlushP50Micros(flushLatency.getValueAtPercentile(50) / 1000);
+        stats.setFlushP99Micros(flushLatency.getValueAtPercentile(99) / 1000);
+        stats.setFlushMaxMicros(flushLatency.getMax() / 1000);
+        return stats;
+    }
+
+    @Override
+    protected MqttProperties.BatchSinkConfig getConfig() {
+        return mqttProperties.getRedisStream();
+    }
+
+    @Override
+    protected String getName() {
+        return "读数写入Redis Stream";
+    }
+
+    /**
+     * 在一个管道中追加整批读数，并为批内每台塔吊的Stream续期一次
+     */
+    @Override
+    protected void write(List<TelemetryReading> batch) {
+        MqttProperties.RedisStream config = mqttProperties.getRedisStream();
+        RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions.maxlen(config.getMaxLen())
+                .approximateTrimming(true);
+        long ttlSeconds = TimeUnit.MINUTES.toSeconds(Math.max(1, config.getWindowMinutes()) * 2L);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            // 键数组来自缓存，同一塔吊的键是同一个对象，按引用判重
+            Set<byte[]> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (TelemetryReading reading : batch) {
+                byte[] key = streamKeys.computeIfAbsent(reading.getCraneId(),
+                        id -> (RedisConstant.CRANE_STREAM_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+                MapRecord<byte[], byte[], byte[]> record = StreamRecords.newRecord()
+                        .in(key)
+                        .ofMap(fields(reading));
+                connection.streamCommands().xAdd(record, options);
+                if (touched.add(key)) {
+                    connection.keyCommands().expire(key, ttlSeconds);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 条目字段：设备时间戳和读数携带的各项指标
+     */
+    private Map<byte[], byte[]> fields(TelemetryReading reading) {
+        TelemetryMetric[] metrics = TelemetryMetric.of(reading);
+        Map<byte[], byte[]> fields = new LinkedHashMap<>(metrics.length * 2 + 2);
+        fields.put(TS_FIELD, Long.toString(reading.getTs()).getBytes(StandardCharsets.UTF_8));
+        for (TelemetryMetric metric : metrics) {
+            Double value = metric.extract(reading);
+            if (value != null) {
+                fields.put(metricFields[metric.ordinal()], value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,818 @@
+package com.yang.springbootbackend.service.mqtt.persist;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.entity.SensorReading;
+import com.yang.springbootbackend.domain.mqtt.vo.SensorLoaderStatsVO;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.TelemetryListener;
+import com.yang.springbootbackend.service.mqtt.ingest.DurableSink;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import com.yang.springbootbackend.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 传感器读数批量装载
+ * 作为 {@link TelemetryListener} 把读数按指标拆成行放入有界缓冲，入站线程只做非阻塞入队。
+ * 落盘线程把行追加到本地CSV段文件，段文件达到行数或时长后封存；装载线程按顺序对每个封存的段文件
+ * 执行一次 LOAD DATA LOCAL INFILE 写入按天（UTC）分区的表，成功后删除段文件，失败时保留并重试，重启后继续装载。
+ * 装载与在 {表名}_segment 中登记段文件名在同一事务中提交，装载前先查登记表：装载提交后、删除段文件前崩溃时，
+ * 重启后跳过已装载的段文件，不产生重复行；目标表不设唯一键，同一时间戳的多条读数都会保留。
+ * 段文件序号从启动时刻开始递增，重启后段文件名不会与已登记的重复。
+ * 段文件装载失败（连接错误除外）达到 maxLoadAttempts 次时移入 quarantine 子目录，不再阻塞后续段文件。
+ * 装载前按段文件的时间范围补建分区，并定期创建未来分区、删除超过保留天数的分区。
+ * 装载使用独立连接，只允许读取段文件目录，不经过连接池。
+ * 作为 {@link DurableSink}，段文件封存时先刷到磁盘，缓冲中和写入中段文件里的行阻止入站预写日志推进检查点
+ */
+@Component
+@Slf4j
+public class SensorReadingBulkLoader implements TelemetryListener, DurableSink {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final long RETRY_BACKOFF_MS = 1000;
+
+    private static final int DRAIN_ROWS = 4096;
+
+    private static final String TMP_SUFFIX = ".csv.tmp";
+
+    private static final String QUARANTINE_DIRECTORY = "quarantine";
+
+    private static final String SEGMENT_TABLE_SUFFIX = "_segment";
+
+    /**
+     * 段文件登记的保留时间，只需覆盖装载提交到删除段文件之间的崩溃窗口
+     */
+    private static final long SEGMENT_RETENTION_MILLIS = DAY_MILLIS;
+
+    /**
+     * 封存的段文件名：spool-序号-最小时间戳-最大时间戳.csv
+     */
+    private static final Pattern SEALED_NAME = Pattern.compile("spool-(\\d{20})-(-?\\d+)-(-?\\d+)\\.csv");
+
+    private static final Pattern TMP_NAME = Pattern.compile("spool-(\\d{20})\\.csv\\.tmp");
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("p(\\d{8})");
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z0-9_]+");
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+    private final LongAdder droppedRows = new LongAdder();
+    private final LongAdder outOfRangeRows = new LongAdder();
+    private final AtomicLong spooledRows = new AtomicLong();
+    private final AtomicLong spoolBytes = new AtomicLong();
+    private final AtomicLong loadedRows = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong failedLoads = new AtomicLong();
+    private final AtomicLong quarantinedSegments = new AtomicLong();
+
+    /**
+     * 放入缓冲的行数，入队前计数、入队失败时撤销
+     */
+    private final AtomicLong acceptedRows = new AtomicLong();
+
+    /**
+     * 落盘线程按入队顺序处理完（写入已刷盘的封存段文件或丢弃）的行数
+     */
+    private final AtomicLong settledRows = new AtomicLong();
+    private final AtomicLong addedPartitions = new AtomicLong();
+    private final AtomicLong droppedPartitions = new AtomicLong();
+    private final BlockingDeque<File> sealed = new LinkedBlockingDeque<>();
+
+    private volatile double lastRowsPerSecond;
+    private volatile int partitionCount;
+    private volatile boolean running;
+
+    /**
+     * 请求封存当前段文件，缓冲取空后由落盘线程封存并清除
+     */
+    private volatile boolean sealRequested;
+    private File directory;
+    private String table;
+    private long nextSeq;
+    private BlockingQueue<SensorReading> buffer;
+    private Thread spooler;
+    private Thread loader;
+
+    /**
+     * 正在写入的段文件，仅落盘线程访问
+     */
+    private Segment current;
+
+    /**
+     * 目标表已有分区的天数（UTC纪元日），仅装载线程访问，null表示尚未读取
+     */
+    private TreeSet<Long> partitionDays;
+
+    /**
+     * 装载连接，仅装载线程访问
+     */
+    private Connection connection;
+
+    /**
+     * 队首段文件已失败的次数（不含连接错误），仅装载线程访问
+     */
+    private File failingFile;
+    private int failingAttempts;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.JdbcLoad config = mqttProperties.getJdbcLoad();
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (!TABLE_NAME.matcher(config.getTable()).matches()) {
+            log.error("批量装载目标表名不合法: {}，批量装载未启用", config.getTable());
+            return;
+        }
+        table = config.getTable();
+        directory = new File(config.getSpoolDirectory()).getAbsoluteFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.error("无法创建段文件目录: {}，批量装载未启用", directory);
+            return;
+        }
+        recover();
+        // 段文件目录为空时序号不能从0开始，否则会与已登记装载的段文件重名而被跳过
+        nextSeq = Math.max(nextSeq, System.currentTimeMillis() * 1000);
+        buffer = new ArrayBlockingQueue<>(Math.max(1, config.getBufferCapacity()));
+        running = true;
+        spooler = new Thread(this::spoolLoop, "sensor-reading-spool");
+        spooler.setDaemon(true);
+        spooler.start();
+        loader = new Thread(this::loadLoop, "sensor-reading-loader");
+        loader.setDaemon(true);
+        loader.start();
+        log.info("读数批量装载已启用，目标表: {}, 段文件目录: {}, 待装载段文件: {}", table, directory, sealed.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        // 落盘线程写完缓冲并封存当前段文件；装载线程完成当前段文件后退出，剩余段文件在下次启动时装载
+        spooler.interrupt();
+        loader.interrupt();
+        try {
+            spooler.join(TimeUnit.SECONDS.toMillis(10));
+            loader.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!sealed.isEmpty()) {
+            log.info("关闭时有 {} 个段文件待装载，下次启动时继续", sealed.size());
+        }
+    }
+
+    @Override
+    public void onReadings(MqttRoutingContext context, List<? extends TelemetryReading> readings) {
+        if (!running) {
+            return;
+        }
+        MqttProperties.JdbcLoad config = mqttProperties.getJdbcLoad();
+        long now = System.currentTimeMillis();
+        long today = Math.floorDiv(now, DAY_MILLIS);
+        long minTs = config.getRetentionDays() > 0 ? (today - config.getRetentionDays()) * DAY_MILLIS : Long.MIN_VALUE;
+        long maxTs = (today + config.getAheadDays() + 1) * DAY_MILLIS - 1;
+        boolean full = spoolBytes.get() >= config.getMaxSpoolBytes();
+        for (TelemetryReading reading : readings) {
+            if (reading.getCraneId() == null) {
+                continue;
+            }
+            long ts = reading.getTs();
+            for (TelemetryMetric metric : TelemetryMetric.of(reading)) {
+                Double value = metric.extract(reading);
+                if (value == null) {
+                    continue;
+                }
+                if (ts < minTs || ts > maxTs) {
+                    outOfRangeRows.increment();
+                } else if (full) {
+                    droppedRows.increment();
+                } else {
+                    acceptedRows.incrementAndGet();
+                    if (!buffer.offer(new SensorReading(null, reading.getCraneId(), metric.getKey(), ts, value))) {
+                        acceptedRows.decrementAndGet();
+                        droppedRows.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public long mark() {
+        return acceptedRows.get();
+    }
+
+    /**
+     * 落盘线程按入队顺序处理，处理完的行数达到标记（或当前已接收的行数）时，标记之前入队的行都已刷盘
+     */
+    @Override
+    public boolean isDurable(long mark) {
+        long accepted = acceptedRows.get();
+        return settledRows.get() >= Math.min(mark, accepted);
+    }
+
+    /**
+     * 请求落盘线程立即封存当前段文件，不等它达到时长
+     */
+    @Override
+    public void persist(long timeoutMs) {
+        if (!running) {
+            return;
+        }
+        long mark = mark();
+        sealRequested = true;
+        spooler.interrupt();
+        if (!DurableSink.awaitDurable(this, mark, timeoutMs)) {
+            log.warn("未能在 {}ms 内封存已接收的读数，剩余: {}", timeoutMs, buffer.size());
+        }
+    }
+
+    /**
+     * 获取批量装载运行指标
+     */
+    public SensorLoaderStatsVO getStats() {
+        SensorLoaderStatsVO stats = new SensorLoaderStatsVO();
+        stats.setEnabled(running);
+        stats.setBufferedRows(buffer != null ? buffer.size() : 0);
+        stats.setBufferCapacity(mqttProperties.getJdbcLoad().getBufferCapacity());
+        stats.setSpooledRows(spooledRows.get());
+        stats.setDroppedRows(droppedRows.sum());
+        stats.setOutOfRangeRows(outOfRangeRows.sum());
+        stats.setPendingSegments(sealed.size());
+        stats.setSpoolBytes(spoolBytes.get());
+        stats.setLoadedRows(loadedRows.get());
+        stats.setLoadCount(loadCount.get());
+        stats.setFailedLoads(failedLoads.get());
+        stats.setQuarantinedSegments(quarantinedSegments.get());
+        stats.setLoadP50Millis(loadLatency.getValueAtPercentile(50) / 1_000_000);
+        stats.setLoadP99Millis(loadLatency.getValueAtPercentile(99) / 1_000_000);
+        stats.setLoadMaxMillis(loadLatency.getMax() / 1_000_000);
+        stats.setLastRowsPerSecond(lastRowsPerSecond);
+        stats.setPartitionCount(partitionCount);
+        stats.setAddedPartitions(addedPartitions.get());
+        stats.setDroppedPartitions(droppedPartitions.get());
+        return stats;
+    }
+
+    /**
+     * 按 LOAD DATA 的默认转义规则写出一行：字段以逗号分隔，行以换行结束，塔吊ID中的反斜杠、逗号和换行用反斜杠转义
+     *
+     * @param out     输出流
+     * @param scratch 复用的字符缓冲
+     * @return 写出的字节数
+     */
+    public static int writeRow(OutputStream out, StringBuilder scratch, String craneId, String metric, long ts,
+                               double value) throws IOException {
+        scratch.setLength(0);
+        for (int i = 0; i < craneId.length(); i++) {
+            char c = craneId.charAt(i);
+            switch (c) {
+                case '\\':
+                case ',':
+                    scratch.append('\\').append(c);
+                    break;
+                case '\n':
+                    scratch.append("\\n");
+                    break;
+                case '\r':
+                    scratch.append("\\r");
+                    break;
+                case '\0':
+                    scratch.append("\\0");
+                    break;
+                default:
+                    scratch.append(c);
+            }
+        }
+        scratch.append(',').append(metric).append(',').append(ts).append(',').append(value).append('\n');
+        byte[] bytes = scratch.toString().getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * 装载单个段文件的SQL，字段顺序与 {@link #writeRow} 一致
+     */
+    public static String loadSql(File file, String table) {
+        String path = file.getAbsolutePath().replace('\\', '/').replace("'", "\\'");
+        return "LOAD DATA LOCAL INFILE '" + path + "' INTO TABLE `" + table + "` CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY ',' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n'"
+                + " (craneId, metric, ts, metricValue)";
+    }
+
+    /**
+     * 打开装载连接，只允许 LOAD DATA LOCAL INFILE 读取段文件目录
+     */
+    protected Connection openConnection() throws SQLException {
+        Properties properties = new Properties();
+        if (dataSourceProperties.determineUsername() != null) {
+            properties.setProperty("user", dataSourceProperties.determineUsername());
+        }
+        if (dataSourceProperties.determinePassword() != null) {
+            properties.setProperty("password", dataSourceProperties.determinePassword());
+        }
+        properties.setProperty("allowLoadLocalInfileInPath", directory.getAbsolutePath());
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+    }
+
+    /**
+     * 启动时恢复段文件：写入中的段截断到最后一个完整行后封存，已封存的段按序号排队
+     */
+    private void recover() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> pending = new ArrayList<>();
+        for (File file : files) {
+            Matcher tmp = TMP_NAME.matcher(file.getName());
+            if (tmp.matches()) {
+                nextSeq = Math.max(nextSeq, Long.parseLong(tmp.group(1)) + 1);
+                File recovered = sealRecovered(file, Long.parseLong(tmp.group(1)));
+                if (recovered != null) {
+                    pending.add(recovered);
+                }
+                continue;
+            }
+            Matcher matcher = SEALED_NAME.matcher(file.getName());
+            if (matcher.matches()) {
+                nextSeq = Math.max(nextSeq, Long.parseLong(matcher.group(1)) + 1);
+                pending.add(file);
+            }
+        }
+        pending.sort(Comparator.comparing(File::getName));
+        for (File file : pending) {
+            spoolBytes.addAndGet(file.length());
+            sealed.add(file);
+        }
+    }
+
+    private File sealRecovered(File file, long seq) {
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            int end = bytes.length;
+            while (end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+            long minTs = Long.MAX_VALUE;
+            long maxTs = Long.MIN_VALUE;
+            int lineStart = 0;
+            for (int i = 0; i < end; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                // 行格式 craneId,metric,ts,value，时间戳是倒数第二个字段
+                String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                int valueComma = line.lastIndexOf(',');
+                int tsComma = line.lastIndexOf(',', valueComma - 1);
+                long ts = Long.parseLong(line.substring(tsComma + 1, valueComma));
+                minTs = Math.min(minTs, ts);
+                maxTs = Math.max(maxTs, ts);
+                lineStart = i + 1;
+            }
+            if (end == 0) {
+                Files.delete(file.toPath());
+                return null;
+            }
+            if (end < bytes.length) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(end);
+                }
+                log.warn("段文件 {} 末尾有不完整的行，已截断 {} 字节", file.getName(), bytes.length - end);
+            }
+            File target = new File(directory, sealedName(seq, minTs, maxTs));
+            Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } catch (IOException | RuntimeException e) {
+            log.error("恢复段文件失败，已跳过: {}", file, e);
+            return null;
+        }
+    }
+
+    private static String sealedName(long seq, long minTs, long maxTs) {
+        return String.format("spool-%020d-%d-%d.csv", seq, minTs, maxTs);
+    }
+
+    private void spoolLoop() {
+        MqttProperties.JdbcLoad config = mqttProperties.getJdbcLoad();
+        int segmentRows = Math.max(1, config.getSegmentRows());
+        long maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getSegmentMaxAgeMs()));
+        List<SensorReading> batch = new ArrayList<>(DRAIN_ROWS);
+        StringBuilder scratch = new StringBuilder(128);
+        while (running || !buffer.isEmpty()) {
+            int appended = 0;
+            try {
+                if (running) {
+                    long waitNanos = sealRequested ? 0
+                            : current != null ? current.openedNanos + maxAgeNanos - System.nanoTime() : maxAgeNanos;
+                    SensorReading first = waitNanos > 0 ? buffer.poll(waitNanos, TimeUnit.NANOSECONDS) : buffer.poll();
+                    if (first != null) {
+                        batch.add(first);
+                    }
+                }
+                buffer.drainTo(batch, DRAIN_ROWS - batch.size());
+                for (SensorReading row : batch) {
+                    append(row, scratch);
+                    appended++;
+                    if (current.rows >= segmentRows) {
+                        seal();
+                    }
+                }
+                boolean requested = sealRequested && buffer.isEmpty();
+                if (current != null && (requested || System.nanoTime() - current.openedNanos >= maxAgeNanos)) {
+                    seal();
+                }
+                if (requested) {
+                    sealRequested = false;
+                }
+            } catch (InterruptedException e) {
+                // 关闭或封存请求信号，循环条件会写完剩余读数后退出
+            } catch (IOException e) {
+                abandon(e);
+                // 本批中还没写入段文件的行一并丢弃
+                droppedRows.add(batch.size() - appended);
+                settledRows.addAndGet(batch.size() - appended);
+            } finally {
+                batch.clear();
+            }
+        }
+        try {
+            seal();
+        } catch (IOException e) {
+            abandon(e);
+        }
+    }
+
+    private void append(SensorReading row, StringBuilder scratch) throws IOException {
+        if (current == null) {
+            current = new Segment(nextSeq++);
+        }
+        int bytes = writeRow(current.out, scratch, row.getCraneId(), row.getMetric(), row.getTs(), row.getMetricValue());
+        current.rows++;
+        current.bytes += bytes;
+        current.minTs = Math.min(current.minTs, row.getTs());
+        current.maxTs = Math.max(current.maxTs, row.getTs());
+        spoolBytes.addAndGet(bytes);
+        spooledRows.incrementAndGet();
+    }
+
+    /**
+     * 刷盘并封存当前段文件，交给装载线程；失败时当前段文件保留给 {@link #abandon}
+     */
+    private void seal() throws IOException {
+        Segment segment = current;
+        if (segment == null) {
+            return;
+        }
+        segment.out.flush();
+        segment.fileOut.getFD().sync();
+        segment.out.close();
+        File target = new File(directory, sealedName(segment.seq, segment.minTs, segment.maxTs));
+        Files.move(segment.file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        current = null;
+        sealed.add(target);
+        settledRows.addAndGet(segment.rows);
+    }
+
+    /**
+     * 段文件写入失败时丢弃整个段，避免装载不完整的文件
+     */
+    private void abandon(IOException e) {
+        Segment segment = current;
+        current = null;
+        if (segment == null) {
+            log.error("段文件封存失败", e);
+            return;
+        }
+        log.error("段文件写入失败，丢弃 {} 行: {}", segment.rows, segment.file, e);
+        droppedRows.add(segment.rows);
+        settledRows.addAndGet(segment.rows);
+        spoolBytes.addAndGet(-segment.bytes);
+        try {
+            segment.out.close();
+            Files.deleteIfExists(segment.file.toPath());
+        } catch (IOException ignored) {
+            // 文件保留，下次启动时按未封存的段恢复
+        }
+    }
+
+    private void loadLoop() {
+        long maintenanceNanos = TimeUnit.SECONDS.toNanos(Math.max(1, mqttProperties.getJdbcLoad().getMaintenanceIntervalSeconds()));
+        long nextMaintenance = System.nanoTime();
+        while (running) {
+            try {
+                if (System.nanoTime() - nextMaintenance >= 0) {
+                    nextMaintenance = System.nanoTime() + (maintain() ? maintenanceNanos : TimeUnit.MILLISECONDS.toNanos(RETRY_BACKOFF_MS * 10));
+                }
+                File file = sealed.pollFirst(1, TimeUnit.SECONDS);
+                if (file != null && !load(file)) {
+                    sealed.addFirst(file);
+                    Thread.sleep(RETRY_BACKOFF_MS);
+                }
+            } catch (InterruptedException e) {
+                // 关闭信号，循环条件会退出
+            }
+        }
+        closeConnection();
+    }
+
+    /**
+     * 装载一个段文件，成功后删除；同一段文件非连接错误的失败达到上限时移入隔离目录
+     *
+     * @return 是否已处理（装载或隔离），失败时段文件保留
+     */
+    private boolean load(File file) {
+        Matcher matcher = SEALED_NAME.matcher(file.getName());
+        if (!matcher.matches()) {
+            return true;
+        }
+        long minDay = Math.floorDiv(Long.parseLong(matcher.group(2)), DAY_MILLIS);
+        long maxDay = Math.floorDiv(Long.parseLong(matcher.group(3)), DAY_MILLIS);
+        long length = file.length();
+        long start = System.nanoTime();
+        boolean loading = false;
+        try {
+            Connection conn = connection();
+            if (partitionDays == null) {
+                refreshPartitions(conn);
+            }
+            ensurePartitions(conn, minDay, maxDay);
+            long rows;
+            // 装载和登记在同一事务中提交；失败时关闭连接，未提交的事务回滚
+            conn.setAutoCommit(false);
+            try (Statement statement = conn.createStatement()) {
+                if (isLoaded(statement, file.getName())) {
+                    conn.setAutoCommit(true);
+                    log.info("段文件已装载过，删除: {}", file.getName());
+                    Files.deleteIfExists(file.toPath());
+                    spoolBytes.addAndGet(-length);
+                    return true;
+                }
+                loading = true;
+                rows = statement.executeUpdate(loadSql(file, table));
+                statement.executeUpdate("INSERT INTO `" + table + SEGMENT_TABLE_SUFFIX + "` (segment, rowCount, loadedAt)"
+                        + " VALUES ('" + file.getName() + "', " + rows + ", " + System.currentTimeMillis() + ")");
+                conn.commit();
+            }
+            conn.setAutoCommit(true);
+            failingFile = null;
+            long elapsed = System.nanoTime() - start;
+            loadLatency.record(elapsed);
+            loadCount.incrementAndGet();
+            loadedRows.addAndGet(rows);
+            lastRowsPerSecond = rows * 1e9 / Math.max(1, elapsed);
+            Files.deleteIfExists(file.toPath());
+            spoolBytes.addAndGet(-length);
+            return true;
+        } catch (SQLException e) {
+            failedLoads.incrementAndGet();
+            closeConnection();
+            if (loading && !isConnectionError(e)) {
+                int attempts = file.equals(failingFile) ? failingAttempts + 1 : 1;
+                failingFile = file;
+                failingAttempts = attempts;
+                if (attempts >= Math.max(1, mqttProperties.getJdbcLoad().getMaxLoadAttempts())) {
+                    log.error("段文件装载已失败 {} 次，移入隔离目录: {}", attempts, file.getName(), e);
+                    return quarantine(file, length);
+                }
+            }
+            log.error("段文件装载失败，稍后重试: {}", file.getName(), e);
+            return false;
+        } catch (IOException e) {
+            // 已装载成功但删除失败：不能重试，否则重复装载
+            log.error("段文件已装载但删除失败: {}", file, e);
+            spoolBytes.addAndGet(-length);
+            return true;
+        }
+    }
+
+    /**
+     * 连接错误（数据库不可用）与段文件内容无关，不计入段文件的失败次数
+     */
+    private static boolean isConnectionError(SQLException e) {
+        return e instanceof SQLTransientException || e instanceof SQLRecoverableException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("08"));
+    }
+
+    /**
+     * 把无法装载的段文件移入隔离目录，需人工检查后放回段文件目录重新装载
+     *
+     * @return 是否已移走
+     */
+    private boolean quarantine(File file, long length) {
+        File target = new File(new File(directory, QUARANTINE_DIRECTORY), file.getName());
+        try {
+            Files.createDirectories(target.getParentFile().toPath());
+            Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("段文件移入隔离目录失败，稍后重试: {}", file, e);
+            return false;
+        }
+        failingFile = null;
+        quarantinedSegments.incrementAndGet();
+        spoolBytes.addAndGet(-length);
+        return true;
+    }
+
+    /**
+     * 分区维护：创建到未来 aheadDays 天的分区，删除超过保留天数的分区
+     *
+     * @return 是否成功
+     */
+    private boolean maintain() {
+        MqttProperties.JdbcLoad config = mqttProperties.getJdbcLoad();
+        long today = Math.floorDiv(System.currentTimeMillis(), DAY_MILLIS);
+        try {
+            Connection conn = connection();
+            refreshPartitions(conn);
+            ensurePartitions(conn, today, today + config.getAheadDays());
+            if (config.getRetentionDays() > 0) {
+                dropPartitionsBefore(conn, today - config.getRetentionDays());
+            }
+            try (Statement statement = conn.createStatement()) {
+                statement.executeUpdate("DELETE FROM `" + table + SEGMENT_TABLE_SUFFIX + "` WHERE loadedAt < "
+                        + (System.currentTimeMillis() - SEGMENT_RETENTION_MILLIS));
+            }
+            return true;
+        } catch (SQLException e) {
+            log.error("分区维护失败，稍后重试，表: {}", table, e);
+            closeConnection();
+            return false;
+        }
+    }
+
+    private void refreshPartitions(Connection conn) throws SQLException {
+        TreeSet<Long> days = new TreeSet<>();
+        String sql = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "' AND PARTITION_NAME IS NOT NULL";
+        try (Statement statement = conn.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                Matcher matcher = PARTITION_NAME.matcher(rs.getString(1));
+                if (matcher.matches()) {
+                    days.add(LocalDate.parse(matcher.group(1), DateTimeFormatter.BASIC_ISO_DATE).toEpochDay());
+                }
+            }
+        }
+        if (days.isEmpty()) {
+            throw new SQLException("表 " + table + " 不存在或未按天分区，建表语句见 sql/sensor_reading_daily.sql");
+        }
+        partitionDays = days;
+        partitionCount = days.size();
+    }
+
+    /**
+     * 补建分区直到覆盖 toDay；只能在最高分区之上追加，新建的第一个分区同时覆盖最高分区与 fromDay 之间的空档
+     */
+    private void ensurePartitions(Connection conn, long fromDay, long toDay) throws SQLException {
+        long highest = partitionDays.last();
+        if (highest >= toDay) {
+            return;
+        }
+        List<Long> days = new ArrayList<>();
+        for (long day = Math.max(highest + 1, fromDay); day <= toDay; day++) {
+            days.add(day);
+        }
+        StringBuilder sql = new StringBuilder("ALTER TABLE `").append(table).append("` ADD PARTITION (");
+        for (int i = 0; i < days.size(); i++) {
+            long day = days.get(i);
+            sql.append(i > 0 ? ", " : "").append("PARTITION ").append(partitionName(day))
+                    .append(" VALUES LESS THAN (").append((day + 1) * DAY_MILLIS).append(')');
+        }
+        sql.append(')');
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate(sql.toString());
+        }
+        partitionDays.addAll(days);
+        partitionCount = partitionDays.size();
+        addedPartitions.addAndGet(days.size());
+        log.info("已创建分区，表: {}, 分区: {} 至 {}", table, partitionName(days.get(0)), partitionName(toDay));
+    }
+
+    /**
+     * 删除早于 cutoffDay 的分区，始终保留最高的分区
+     */
+    private void dropPartitionsBefore(Connection conn, long cutoffDay) throws SQLException {
+        List<Long> expired = new ArrayList<>(partitionDays.headSet(Math.min(cutoffDay, partitionDays.last())));
+        if (expired.isEmpty()) {
+            return;
+        }
+        List<String> names = new ArrayList<>(expired.size());
+        for (long day : expired) {
+            names.add(partitionName(day));
+        }
+        String sql = "ALTER TABLE `" + table + "` DROP PARTITION " + String.join(", ", names);
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+        partitionDays.removeAll(expired);
+        partitionCount = partitionDays.size();
+        droppedPartitions.addAndGet(expired.size());
+        log.info("已删除过期分区，表: {}, 分区: {}", table, names);
+    }
+
+    /**
+     * 段文件是否已登记为装载完成；段文件名只含字母、数字和符号，可以直接拼入SQL
+     */
+    private boolean isLoaded(Statement statement, String segment) throws SQLException {
+        String sql = "SELECT 1 FROM `" + table + SEGMENT_TABLE_SUFFIX + "` WHERE segment = '" + segment + "'";
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next();
+        }
+    }
+
+    private static String partitionName(long day) {
+        return "p" + LocalDate.ofEpochDay(day).format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            connection = openConnection();
+        }
+        return connection;
+    }
+
+    private void closeConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // 连接已断开
+        }
+        connection = null;
+        // 重连后重新读取分区，期间可能已被其他节点修改
+        partitionDays = null;
+    }
+
+    /**
+     * 写入中的段文件
+     */
+    private final class Segment {
+
+        private final long seq;
+        private final File file;
+        private final FileOutputStream fileOut;
+        private final OutputStream out;
+        private final long openedNanos = System.nanoTime();
+        private long rows;
+        private long bytes;
+        private long minTs = Long.MAX_VALUE;
+        private long maxTs = Long.MIN_VALUE;
+
+        Segment(long seq) throws IOException {
+            this.seq = seq;
+            this.file = new File(directory, String.format("spool-%020d", seq) + TMP_SUFFIX);
+            this.fileOut = new FileOutputStream(file);
+            this.out = new BufferedOutputStream(fileOut, 64 * 1024);
+        }
+    }
+}
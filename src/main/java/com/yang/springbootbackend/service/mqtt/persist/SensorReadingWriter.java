@@ -0,0 +1,132 @@
+package com.yang.springbootbackend.service.mqtt.persist;
+
+import com.alibaba.fastjson.JSON;
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.entity.SensorReading;
+import com.yang.springbootbackend.domain.mqtt.vo.SensorWriterStatsVO;
+import com.yang.springbootbackend.mapper.SensorReadingMapper;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.TelemetryListener;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import com.yang.springbootbackend.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 传感器读数异步批量写库
+ * 作为 {@link TelemetryListener} 把每批读数按指标拆成行放入有界缓冲，缓冲和批量写入线程见 {@link AbstractBatchSink}，
+ * 每批按 insertRows 行一条多行INSERT写入，数据库变慢时每批自然变大，写入次数不随消息速率增长。
+ * 重试用尽的行以JSON数组写入死信日志，主题为 {@link #DEAD_LETTER_TOPIC}
+ */
+@Component
+@Slf4j
+public class SensorReadingWriter extends AbstractBatchSink<SensorReading> implements TelemetryListener {
+
+    /**
+     * 写库失败的行在死信日志中的主题
+     */
+    public static final String DEAD_LETTER_TOPIC = "$persist/sensor_reading";
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private SensorReadingMapper sensorReadingMapper;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.Jdbc config = mqttProperties.getJdbc();
+        if (!config.isEnabled()) {
+            return;
+        }
+        startSink("sensor-reading-writer");
+        log.info("读数写库已启用，缓冲: {}行, 每批: {}行, 每条INSERT: {}行", config.getBufferCapacity(),
+                config.getBatchSize(), config.getInsertRows());
+    }
+
+    @Override
+    public void onReadings(MqttRoutingContext context, List<? extends TelemetryReading> readings) {
+        if (!isRunning()) {
+            return;
+        }
+        for (TelemetryReading reading : readings) {
+            if (reading.getCraneId() == null) {
+                continue;
+            }
+            Long ts = reading.getTs();
+            for (TelemetryMetric metric : TelemetryMetric.of(reading)) {
+                Double value = metric.extract(reading);
+                if (value != null) {
+                    offer(new SensorReading(null, reading.getCraneId(), metric.getKey(), ts, value));
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取写库运行指标
+     */
+    public SensorWriterStatsVO getStats() {
+        SensorWriterStatsVO stats = new SensorWriterStatsVO();
+        stats.setEnabled(isRunning());
+        stats.setBufferedRows(getBufferedCount());
+        stats.setBufferCapacity(mqttProperties.getJdbc().getBufferCapacity());
+        stats.setWrittenRows(getWrittenCount());
+        stats.setDroppedRows(getDroppedCount());
+        stats.setFailedRows(getFailedCount());
+        stats.setRetryCount(getRetryCount());
+        stats.setFlushCount(getFlushCount());
+        stats.setAvgBatchRows(getAvgBatchSize());
+        stats.setMaxBatchRows(getMaxBatchSize());
+        LatencyHistogram flushLatency = getFlushLatency();
+        stats.setFlushP50Micros(flushLatency.getValueAtPercentile(50) / 1000);
+        stats.setFlushP99Micros(flushLatency.getValueAtPercentile(99) / 1000);
+        stats.setFlushMaxMicros(flushLatency.getMax() / 1000);
+        stats.setLastRowsPerSecond(getLastItemsPerSecond());
+        return stats;
+    }
+
+    @Override
+    public String getDeadLetterTopic() {
+        return DEAD_LETTER_TOPIC;
+    }
+
+    @Override
+    protected MqttProperties.BatchSinkConfig getConfig() {
+        return mqttProperties.getJdbc();
+    }
+
+    @Override
+    protected String getName() {
+        return "读数写入数据库";
+    }
+
+    /**
+     * 每块一条多行INSERT，独立提交
+     */
+    @Override
+    protected void write(List<SensorReading> rows) {
+        sensorReadingMapper.insertBatch(rows);
+    }
+
+    @Override
+    protected int getChunkSize() {
+        return mqttProperties.getJdbc().getInsertRows();
+    }
+
+    @Override
+    protected byte[] encodeDeadLetter(List<SensorReading> rows) {
+        return JSON.toJSONBytes(rows);
+    }
+
+    @Override
+    protected List<SensorReading> decodeDeadLetter(byte[] payload) {
+        return JSON.parseArray(new String(payload, StandardCharsets.UTF_8), SensorReading.class);
+    }
+}
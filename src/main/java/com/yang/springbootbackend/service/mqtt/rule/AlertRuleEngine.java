@@ -0,0 +1,275 @@
+package com.yang.springbootbackend.service.mqtt.rule;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.entity.AlertRule;
+import com.yang.springbootbackend.domain.mqtt.vo.AlertRuleSetVO;
+import com.yang.springbootbackend.domain.mqtt.vo.AlertRuleVO;
+import com.yang.springbootbackend.mapper.AlertRuleMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 告警规则引擎
+ * 从配置、规则文件或 alert_rule 表加载规则，编译为 {@link AlertRuleSet} 后通过 volatile 引用整体替换：
+ * 处理器每批读取一次当前规则集，重载不加锁也不会看到新旧规则混合的中间状态。
+ * 新规则编译失败时保留原规则集并记录错误
+ */
+@Component
+@Slf4j
+public class AlertRuleEngine {
+
+    private static final String SOURCE_CONFIG = "config";
+    private static final String SOURCE_FILE = "file";
+    private static final String SOURCE_DATABASE = "database";
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired(required = false)
+    private AlertRuleMapper alertRuleMapper;
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile AlertRuleSet ruleSet = AlertRuleSet.empty();
+
+    private volatile String lastError;
+
+    private volatile long lastErrorAt;
+
+    /**
+     * 最近一次成功编译的规则内容，用于定时检查时判断是否变化
+     */
+    private RuleSource loaded;
+
+    private ScheduledExecutorService reloadExecutor;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.Rules rules = mqttProperties.getRules();
+        String source = rules.getSource();
+        if (!SOURCE_CONFIG.equals(source) && !SOURCE_FILE.equals(source) && !SOURCE_DATABASE.equals(source)) {
+            throw new IllegalStateException("不支持的告警规则来源: " + source);
+        }
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            if (SOURCE_CONFIG.equals(source)) {
+                throw new IllegalStateException("告警规则配置无效: " + e.getMessage(), e);
+            }
+            // 规则文件或规则表暂不可用时先使用配置中的规则，避免启动后没有任何告警
+            log.error("加载告警规则失败，使用配置中的规则，来源: {}", source, e);
+            ruleSet = AlertRuleSet.compile(rules.getDefinitions(), rules.getCraneClasses(),
+                    versions.incrementAndGet(), SOURCE_CONFIG);
+        }
+        if (!SOURCE_CONFIG.equals(source) && rules.getReloadIntervalMs() > 0) {
+            reloadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "alert-rule-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloadExecutor.scheduleWithFixedDelay(this::reloadIfChanged,
+                    rules.getReloadIntervalMs(), rules.getReloadIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloadExecutor != null) {
+            reloadExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取当前规则集
+     * 调用方在一批读数内应复用同一个规则集
+     */
+    public AlertRuleSet current() {
+        return ruleSet;
+    }
+
+    /**
+     * 立即重新加载并编译规则，成功后整体替换当前规则集
+     *
+     * @return 新的规则集
+     * @throws IllegalArgumentException 规则内容无效，原规则集保持不变
+     * @throws IllegalStateException    规则文件或规则表读取失败，原规则集保持不变
+     */
+    public synchronized AlertRuleSet reload() {
+        return load(true);
+    }
+
+    private synchronized void reloadIfChanged() {
+        try {
+            load(false);
+        } catch (RuntimeException e) {
+            log.error("告警规则重载失败，继续使用版本 {} 的规则", ruleSet.getVersion(), e);
+        }
+    }
+
+    private AlertRuleSet load(boolean force) {
+        String source = mqttProperties.getRules().getSource();
+        try {
+            RuleSource content = read(source);
+            if (!force && content.equals(loaded)) {
+                return ruleSet;
+            }
+            AlertRuleSet compiled = AlertRuleSet.compile(content.definitions, content.craneClasses,
+                    versions.incrementAndGet(), source);
+            ruleSet = compiled;
+            loaded = content;
+            lastError = null;
+            log.info("告警规则已加载，来源: {}, 版本: {}, 规则数: {}, 单独设置规则的塔吊数: {}",
+                    source, compiled.getVersion(), compiled.getRules(null).size(), compiled.getOverriddenCraneCount());
+            return compiled;
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            lastErrorAt = System.currentTimeMillis();
+            throw e;
+        }
+    }
+
+    private RuleSource read(String source) {
+        MqttProperties.Rules rules = mqttProperties.getRules();
+        if (SOURCE_FILE.equals(source)) {
+            return readFile(new File(rules.getFile()), rules.getCraneClasses());
+        }
+        if (SOURCE_DATABASE.equals(source)) {
+            return new RuleSource(readTable(), rules.getCraneClasses());
+        }
+        return new RuleSource(rules.getDefinitions(), rules.getCraneClasses());
+    }
+
+    private static RuleSource readFile(File file, Map<String, List<String>> defaultClasses) {
+        if (!file.isFile()) {
+            throw new IllegalStateException("告警规则文件不存在: " + file.getAbsolutePath());
+        }
+        String text;
+        try {
+            text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("读取告警规则文件失败: " + file.getAbsolutePath(), e);
+        }
+        try {
+            JSONObject json = JSON.parseObject(text);
+            if (json == null || json.getJSONArray("rules") == null) {
+                throw new IllegalArgumentException("告警规则文件缺少 rules: " + file.getAbsolutePath());
+            }
+            List<MqttProperties.RuleDefinition> definitions = json.getJSONArray("rules")
+                    .toJavaList(MqttProperties.RuleDefinition.class);
+            Map<String, List<String>> craneClasses = json.containsKey("craneClasses")
+                    ? JSON.parseObject(json.getString("craneClasses"),
+                    new TypeReference<LinkedHashMap<String, List<String>>>() {
+                    })
+                    : defaultClasses;
+            return new RuleSource(definitions, craneClasses);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("告警规则文件格式错误: " + e.getMessage(), e);
+        }
+    }
+
+    private List<MqttProperties.RuleDefinition> readTable() {
+        if (alertRuleMapper == null) {
+            throw new IllegalStateException("未配置数据源，无法读取 alert_rule 表");
+        }
+        List<AlertRule> rows;
+        try {
+            rows = alertRuleMapper.selectList(null);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("读取 alert_rule 表失败: " + e.getMessage(), e);
+        }
+        List<MqttProperties.RuleDefinition> definitions = new ArrayList<>(rows.size());
+        for (AlertRule row : rows) {
+            MqttProperties.RuleDefinition definition =
+                    new MqttProperties.RuleDefinition(row.getName(), row.getExpression(), row.getMessage());
+            if (row.getCranes() != null && !row.getCranes().trim().isEmpty()) {
+                for (String craneId : row.getCranes().split(",")) {
+                    definition.getCranes().add(craneId.trim());
+                }
+            }
+            definition.setCraneClass(row.getCraneClass());
+            definition.setEnabled(row.getEnabled() == null || row.getEnabled() != 0);
+            definitions.add(definition);
+        }
+        return definitions;
+    }
+
+    /**
+     * 获取规则集状态和规则触发次数
+     *
+     * @param craneId 塔吊ID，指定时只返回该塔吊生效的规则
+     */
+    public AlertRuleSetVO getStats(String craneId) {
+        AlertRuleSet current = ruleSet;
+        AlertRuleSetVO vo = new AlertRuleSetVO();
+        vo.setSource(current.getSource());
+        vo.setVersion(current.getVersion());
+        vo.setLoadedAt(current.getLoadedAt());
+        vo.setRuleCount(current.getRules(null).size());
+        vo.setOverriddenCraneCount(current.getOverriddenCraneCount());
+        vo.setLastError(lastError);
+        vo.setLastErrorAt(lastError != null ? lastErrorAt : 0);
+        List<AlertRuleVO> rules = new ArrayList<>();
+        for (CompiledRule rule : current.getRules(craneId)) {
+            AlertRuleVO ruleVO = new AlertRuleVO();
+            ruleVO.setName(rule.getName());
+            ruleVO.setExpression(rule.getExpression().getSource());
+            ruleVO.setMessage(rule.getMessage());
+            ruleVO.setScope(rule.getScope());
+            ruleVO.setChannel(rule.getChannel().name());
+            ruleVO.setIndexed(rule.getExpression().isIndexed());
+            ruleVO.setFiredCount(rule.getFiredCount());
+            rules.add(ruleVO);
+        }
+        vo.setRules(rules);
+        return vo;
+    }
+
+    /**
+     * 规则来源的内容
+     */
+    private static final class RuleSource {
+
+        private final List<MqttProperties.RuleDefinition> definitions;
+        private final Map<String, List<String>> craneClasses;
+
+        RuleSource(List<MqttProperties.RuleDefinition> definitions, Map<String, List<String>> craneClasses) {
+            this.definitions = definitions;
+            this.craneClasses = craneClasses;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RuleSource)) {
+                return false;
+            }
+            RuleSource other = (RuleSource) o;
+            return definitions.equals(other.definitions) && Objects.equals(craneClasses, other.craneClasses);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(definitions, craneClasses);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.yang.springbootbackend.service.mqtt.rule;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的一组告警规则，创建后不再修改，重载时整体替换
+ * 规则按塔吊预先合并好生效列表（塔吊 > 类别 > 全部，同名覆盖），再按求值时机分组。
+ * 每组中规则的阈值项（见 {@link RuleExpression#getTerms()}）按字段和方向排序：大于类按阈值升序、小于类按阈值降序，
+ * 读数依次比较直到第一个不成立的阈值为止，未越过任何阈值时每个字段每个方向只比较一次，越过阈值的项再执行附加条件；
+ * 不能拆成阈值项的规则逐条执行编译后的条件
+ */
+public final class AlertRuleSet {
+
+    private static final RuleGroup[] EMPTY_GROUPS = groups(Collections.emptyList());
+
+    private final long version;
+    private final String source;
+    private final long loadedAt;
+    private final List<CompiledRule> rules;
+    private final RuleGroup[] defaultGroups;
+    private final Map<String, RuleGroup[]> craneGroups;
+
+    private AlertRuleSet(long version, String source, List<CompiledRule> rules,
+                         RuleGroup[] defaultGroups, Map<String, RuleGroup[]> craneGroups) {
+        this.version = version;
+        this.source = source;
+        this.loadedAt = System.currentTimeMillis();
+        this.rules = Collections.unmodifiableList(rules);
+        this.defaultGroups = defaultGroups;
+        this.craneGroups = craneGroups;
+    }
+
+    /**
+     * 不包含任何规则的规则集
+     */
+    public static AlertRuleSet empty() {
+        return new AlertRuleSet(0, "none", new ArrayList<>(), EMPTY_GROUPS, Collections.emptyMap());
+    }
+
+    /**
+     * 编译规则定义
+     *
+     * @param definitions  规则定义
+     * @param craneClasses 塔吊类别：类别名 -> 塔吊ID列表
+     * @param version      规则集版本
+     * @param source       规则来源描述
+     * @return 规则集
+     * @throws IllegalArgumentException 任一规则无效时，错误信息包含规则名
+     */
+    public static AlertRuleSet compile(List<MqttProperties.RuleDefinition> definitions,
+                                       Map<String, List<String>> craneClasses, long version, String source) {
+        Map<String, List<String>> classes = craneClasses != null ? craneClasses : Collections.emptyMap();
+        List<CompiledRule> rules = new ArrayList<>();
+        // 各层规则：规则名 -> 规则，值为null表示该层停用同名规则
+        Map<String, CompiledRule> global = new LinkedHashMap<>();
+        Map<String, Map<String, CompiledRule>> byClass = new HashMap<>();
+        Map<String, Map<String, CompiledRule>> byCrane = new LinkedHashMap<>();
+        for (MqttProperties.RuleDefinition definition : definitions) {
+            String name = definition.getName();
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("规则名为空: " + definition.getExpression());
+            }
+            List<String> cranes = definition.getCranes() != null ? definition.getCranes() : Collections.emptyList();
+            String craneClass = definition.getCraneClass();
+            if (!cranes.isEmpty() && craneClass != null && !craneClass.isEmpty()) {
+                throw new IllegalArgumentException("规则 " + name + " 不能同时指定 cranes 和 craneClass");
+            }
+            CompiledRule rule = null;
+            String scope;
+            if (!cranes.isEmpty()) {
+                scope = "crane:" + String.join(",", cranes);
+            } else if (craneClass != null && !craneClass.isEmpty()) {
+                if (!classes.containsKey(craneClass)) {
+                    throw new IllegalArgumentException("规则 " + name + " 引用了未定义的塔吊类别 " + craneClass);
+                }
+                scope = "class:" + craneClass;
+            } else {
+                scope = "all";
+            }
+            if (definition.isEnabled()) {
+                RuleExpression expression;
+                try {
+                    expression = RuleCompiler.compile(definition.getExpression());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("规则 " + name + " 编译失败，" + e.getMessage(), e);
+                }
+                String message = definition.getMessage() != null ? definition.getMessage() : name;
+                rule = new CompiledRule(name, expression, message, scope);
+                rules.add(rule);
+            }
+            if (!cranes.isEmpty()) {
+                for (String craneId : cranes) {
+                    put(byCrane.computeIfAbsent(craneId, k -> new LinkedHashMap<>()), name, rule, scope);
+                }
+            } else if (craneClass != null && !craneClass.isEmpty()) {
+                put(byClass.computeIfAbsent(craneClass, k -> new LinkedHashMap<>()), name, rule, scope);
+            } else {
+                put(global, name, rule, scope);
+            }
+        }
+
+        // 只为有类别规则或单独规则的塔吊建立生效列表，其余塔吊共用全局列表
+        Map<String, List<String>> classesOfCrane = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : classes.entrySet()) {
+            if (byClass.containsKey(entry.getKey()) && entry.getValue() != null) {
+                for (String craneId : entry.getValue()) {
+                    classesOfCrane.computeIfAbsent(craneId, k -> new ArrayList<>()).add(entry.getKey());
+                }
+            }
+        }
+        Set<String> overridden = new LinkedHashSet<>(classesOfCrane.keySet());
+        overridden.addAll(byCrane.keySet());
+        // 生效列表相同的塔吊（如同一类别中没有单独规则的塔吊）共用同一组索引
+        RuleGroup[] defaultGroups = groups(global.values());
+        Map<List<CompiledRule>, RuleGroup[]> shared = new HashMap<>();
+        shared.put(new ArrayList<>(global.values()), defaultGroups);
+        Map<String, RuleGroup[]> craneGroups = new HashMap<>(overridden.size() * 2);
+        for (String craneId : overridden) {
+            Map<String, CompiledRule> effective = new LinkedHashMap<>(global);
+            for (String craneClass : classesOfCrane.getOrDefault(craneId, Collections.emptyList())) {
+                effective.putAll(byClass.get(craneClass));
+            }
+            effective.putAll(byCrane.getOrDefault(craneId, Collections.emptyMap()));
+            craneGroups.put(craneId, shared.computeIfAbsent(new ArrayList<>(effective.values()), AlertRuleSet::groups));
+        }
+        return new AlertRuleSet(version, source, rules, defaultGroups, craneGroups);
+    }
+
+    private static void put(Map<String, CompiledRule> layer, String name, CompiledRule rule, String scope) {
+        if (layer.containsKey(name)) {
+            throw new IllegalArgumentException("规则 " + name + " 在 " + scope + " 范围内重复定义");
+        }
+        layer.put(name, rule);
+    }
+
+    private static RuleGroup[] groups(Iterable<CompiledRule> effective) {
+        Map<RuleChannel, List<CompiledRule>> byChannel = new EnumMap<>(RuleChannel.class);
+        for (CompiledRule rule : effective) {
+            if (rule != null) {
+                byChannel.computeIfAbsent(rule.getChannel(), k -> new ArrayList<>()).add(rule);
+            }
+        }
+        RuleChannel[] channels = RuleChannel.values();
+        RuleGroup[] groups = new RuleGroup[channels.length];
+        for (RuleChannel channel : channels) {
+            groups[channel.ordinal()] = new RuleGroup(byChannel.getOrDefault(channel, Collections.emptyList()));
+        }
+        return groups;
+    }
+
+    /**
+     * 对一条读数求值塔吊在该时机生效的规则
+     *
+     * @param channel 求值时机
+     * @param craneId 塔吊ID
+     * @param values  以 {@link RuleField#index()} 为下标的字段值，未携带的字段为NaN
+     * @param fired   条件成立的规则追加到该列表
+     * @return 条件成立的规则数
+     */
+    public int evaluate(RuleChannel channel, String craneId, double[] values, List<CompiledRule> fired) {
+        RuleGroup[] groups = craneId != null && !craneGroups.isEmpty() ? craneGroups.get(craneId) : null;
+        return (groups != null ? groups : defaultGroups)[channel.ordinal()].evaluate(values, fired);
+    }
+
+    /**
+     * 获取塔吊生效的规则
+     *
+     * @param craneId 塔吊ID，为null时返回全部已编译的规则
+     * @return 规则列表
+     */
+    public List<CompiledRule> getRules(String craneId) {
+        if (craneId == null) {
+            return rules;
+        }
+        RuleGroup[] groups = craneGroups.getOrDefault(craneId, defaultGroups);
+        List<CompiledRule> result = new ArrayList<>();
+        for (RuleGroup group : groups) {
+            Collections.addAll(result, group.rules);
+        }
+        return result;
+    }
+
+    /**
+     * 获取塔吊在某一时机生效的规则
+     *
+     * @param channel 求值时机
+     * @param craneId 塔吊ID
+     * @return 规则数组，不能修改
+     */
+    public CompiledRule[] getRules(RuleChannel channel, String craneId) {
+        return craneGroups.getOrDefault(craneId, defaultGroups)[channel.ordinal()].rules;
+    }
+
+    /**
+     * 规则集版本，每次加载递增
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 规则来源
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 编译时间（毫秒）
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * 单独设置了生效列表的塔吊数
+     */
+    public int getOverriddenCraneCount() {
+        return craneGroups.size();
+    }
+
+    /**
+     * 一个求值时机的规则
+     */
+    private static final class RuleGroup {
+
+        private final CompiledRule[] rules;
+        private final ThresholdIndex[] thresholds;
+        private final CompiledRule[] general;
+
+        RuleGroup(List<CompiledRule> rules) {
+            this.rules = rules.toArray(new CompiledRule[0]);
+            Map<String, List<ThresholdEntry>> byField = new LinkedHashMap<>();
+            List<CompiledRule> general = new ArrayList<>();
+            for (CompiledRule rule : rules) {
+                List<RuleExpression.Term> terms = rule.getExpression().getTerms();
+                if (terms == null) {
+                    general.add(rule);
+                    continue;
+                }
+                for (RuleExpression.Term term : terms) {
+                    String key = term.getField().getKey() + (term.isAbove() ? ">" : "<");
+                    byField.computeIfAbsent(key, k -> new ArrayList<>())
+                            .add(new ThresholdEntry(rule, term, terms.size() > 1));
+                }
+            }
+            this.thresholds = new ThresholdIndex[byField.size()];
+            int i = 0;
+            for (List<ThresholdEntry> sameField : byField.values()) {
+                thresholds[i++] = new ThresholdIndex(sameField);
+            }
+            this.general = general.toArray(new CompiledRule[0]);
+        }
+
+        int evaluate(double[] values, List<CompiledRule> fired) {
+            int start = fired.size();
+            for (ThresholdIndex index : thresholds) {
+                index.evaluate(values, fired, start);
+            }
+            for (CompiledRule rule : general) {
+                if (rule.test(values)) {
+                    rule.recordFired();
+                    fired.add(rule);
+                }
+            }
+            return fired.size() - start;
+        }
+    }
+
+    /**
+     * 阈值索引中的一项
+     */
+    private static final class ThresholdEntry {
+
+        private final CompiledRule rule;
+        private final int field;
+        private final boolean above;
+        private final double threshold;
+        private final boolean inclusive;
+        private final RulePredicate residual;
+        private final boolean multiTerm;
+
+        ThresholdEntry(CompiledRule rule, RuleExpression.Term term, boolean multiTerm) {
+            this.rule = rule;
+            this.field = term.getField().index();
+            this.above = term.isAbove();
+            this.threshold = term.getThreshold();
+            this.inclusive = term.isInclusive();
+            this.residual = term.getResidual();
+            this.multiTerm = multiTerm;
+        }
+    }
+
+    /**
+     * 同一字段、同一方向的阈值项
+     * 按越过难度从易到难排序（大于类升序、小于类降序，阈值相同时包含等于的在前），
+     * 越过的项一定排在未越过的项之前，遇到第一个未越过的即可停止；字段缺失（NaN）时第一次比较即停止
+     */
+    private static final class ThresholdIndex {
+
+        private final int field;
+        private final boolean above;
+        private final double[] thresholds;
+        private final boolean[] inclusive;
+        private final ThresholdEntry[] entries;
+
+        ThresholdIndex(List<ThresholdEntry> sameField) {
+            this.field = sameField.get(0).field;
+            this.above = sameField.get(0).above;
+            List<ThresholdEntry> sorted = new ArrayList<>(sameField);
+            Comparator<ThresholdEntry> byThreshold = Comparator.comparingDouble(e -> e.threshold);
+            sorted.sort((above ? byThreshold : byThreshold.reversed()).thenComparing(e -> !e.inclusive));
+            int n = sorted.size();
+            this.entries = sorted.toArray(new ThresholdEntry[0]);
+            this.thresholds = new double[n];
+            this.inclusive = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                thresholds[i] = entries[i].threshold;
+                inclusive[i] = entries[i].inclusive;
+            }
+        }
+
+        void evaluate(double[] values, List<CompiledRule> fired, int start) {
+            double value = values[field];
+            int i = 0;
+            int n = thresholds.length;
+            if (above) {
+                while (i < n && (value > thresholds[i] || value == thresholds[i] && inclusive[i])) {
+                    i++;
+                }
+            } else {
+                while (i < n && (value < thresholds[i] || value == thresholds[i] && inclusive[i])) {
+                    i++;
+                }
+            }
+            for (int j = 0; j < i; j++) {
+                ThresholdEntry entry = entries[j];
+                if (entry.residual != null && !entry.residual.test(values)) {
+                    continue;
+                }
+                // 由多个阈值项组成的规则可能有多项同时成立，只记录一次
+                if (entry.multiTerm && contains(fired, start, entry.rule)) {
+                    continue;
+                }
+                entry.rule.recordFired();
+                fired.add(entry.rule);
+            }
+        }
+
+        private static boolean contains(List<CompiledRule> fired, int start, CompiledRule rule) {
+            for (int k = start; k < fired.size(); k++) {
+                if (fired.get(k) == rule) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
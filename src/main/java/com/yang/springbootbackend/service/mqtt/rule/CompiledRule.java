@@ -0,0 +1,78 @@
+package com.yang.springbootbackend.service.mqtt.rule;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 编译后的告警规则
+ */
+public final class CompiledRule {
+
+    private final String name;
+    private final RuleExpression expression;
+    private final String message;
+    private final String scope;
+    private final LongAdder fired = new LongAdder();
+
+    CompiledRule(String name, RuleExpression expression, String message, String scope) {
+        this.name = name;
+        this.expression = expression;
+        this.message = message;
+        this.scope = scope;
+    }
+
+    /**
+     * 对一条读数求值
+     *
+     * @param values 以 {@link RuleField#index()} 为下标的字段值
+     * @return 条件是否成立
+     */
+    public boolean test(double[] values) {
+        return expression.getPredicate().test(values);
+    }
+
+    /**
+     * 规则名
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 编译后的表达式
+     */
+    public RuleExpression getExpression() {
+        return expression;
+    }
+
+    /**
+     * 告警内容
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * 生效范围：all、class:类别名 或 crane:塔吊ID列表
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    /**
+     * 求值时机
+     */
+    public RuleChannel getChannel() {
+        return expression.getChannel();
+    }
+
+    /**
+     * 自加载以来条件成立的次数
+     */
+    public long getFiredCount() {
+        return fired.sum();
+    }
+
+    void recordFired() {
+        fired.increment();
+    }
+}
@@ -0,0 +1,23 @@
+package com.yang.springbootbackend.service.mqtt.rule;
+
+/**
+ * 告警规则的求值时机
+ * 由规则表达式引用的字段决定，每条读数只求值对应时机的规则
+ */
+public enum RuleChannel {
+
+    /**
+     * 气体传感器读数到达时逐条求值
+     */
+    SENSOR,
+
+    /**
+     * 角度读数到达时逐条立即求值，只能引用角度本身
+     */
+    ANGLE,
+
+    /**
+     * 角度读数按事件时间排序后求值，可以引用角度变化量、回转速度和角加速度
+     */
+    MOTION
+}
@@ -0,0 +1,552 @@
+package com.yang.springbootbackend.service.mqtt.rule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * 告警规则表达式编译器
+ * 表达式在加载规则时解析一次，编译为由条件对象组成的树，求值时不再解析文本。
+ * 语法（优先级从低到高）：
+ * <pre>
+ *   ||
+ *   &amp;&amp;
+ *   ==  !=  &gt;  &gt;=  &lt;  &lt;=
+ *   +  -
+ *   *  /
+ *   一元 -  !
+ *   数字、字段名（见 {@link RuleField}）、abs(x)、min(a, b)、max(a, b)、括号
+ * </pre>
+ * 引用了读数未携带字段的比较结果为false；常量子表达式在编译时折叠。
+ * 单个字段的线性运算与常量比较（如 height * 2 &gt; 30、abs(temperature - 20) &gt; 15）改写为字段阈值，
+ * 由阈值组成的或条件、以阈值开头的与条件记录为阈值项，供规则集建立阈值索引（见 {@link RuleExpression#getTerms()}）
+ */
+public final class RuleCompiler {
+
+    private final String text;
+
+    private final EnumSet<RuleField> fields = EnumSet.noneOf(RuleField.class);
+
+    private int pos;
+
+    private RuleCompiler(String text) {
+        this.text = text;
+    }
+
+    /**
+     * 编译表达式
+     *
+     * @param expression 表达式
+     * @return 编译结果
+     * @throws IllegalArgumentException 语法错误、类型错误、未知字段或同时引用气体和角度字段
+     */
+    public static RuleExpression compile(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("规则表达式为空");
+        }
+        RuleCompiler compiler = new RuleCompiler(expression);
+        Object node = compiler.parseOr();
+        compiler.skipSpaces();
+        if (compiler.pos < expression.length()) {
+            throw compiler.error("多余的内容");
+        }
+        if (!(node instanceof RulePredicate)) {
+            throw new IllegalArgumentException("规则表达式的结果必须是条件: " + expression);
+        }
+        if (compiler.fields.isEmpty()) {
+            throw new IllegalArgumentException("规则表达式未引用任何字段: " + expression);
+        }
+        RulePredicate predicate = (RulePredicate) node;
+        return new RuleExpression(expression, predicate, compiler.fields, compiler.channel(), terms(predicate));
+    }
+
+    /**
+     * 把条件拆成阈值项：阈值本身为一项，或条件的两侧都能拆分时合并两侧的项，
+     * 与条件以其中第一个阈值为项、其余部分为附加条件；其他形式返回null
+     */
+    private static List<RuleExpression.Term> terms(RulePredicate predicate) {
+        if (predicate instanceof FieldCompare) {
+            return Collections.singletonList(((FieldCompare) predicate).term(null));
+        }
+        if (predicate instanceof OrNode) {
+            List<RuleExpression.Term> left = terms(((OrNode) predicate).a);
+            List<RuleExpression.Term> right = left != null ? terms(((OrNode) predicate).b) : null;
+            if (right == null) {
+                return null;
+            }
+            List<RuleExpression.Term> terms = new ArrayList<>(left);
+            terms.addAll(right);
+            return terms;
+        }
+        if (predicate instanceof AndNode) {
+            List<RulePredicate> conjuncts = new ArrayList<>();
+            flattenAnd(predicate, conjuncts);
+            FieldCompare guard = null;
+            RulePredicate residual = null;
+            for (RulePredicate conjunct : conjuncts) {
+                if (guard == null && conjunct instanceof FieldCompare) {
+                    guard = (FieldCompare) conjunct;
+                } else {
+                    residual = residual == null ? conjunct : new AndNode(residual, conjunct);
+                }
+            }
+            return guard != null ? Collections.singletonList(guard.term(residual)) : null;
+        }
+        return null;
+    }
+
+    private static void flattenAnd(RulePredicate predicate, List<RulePredicate> conjuncts) {
+        if (predicate instanceof AndNode) {
+            flattenAnd(((AndNode) predicate).a, conjuncts);
+            flattenAnd(((AndNode) predicate).b, conjuncts);
+        } else {
+            conjuncts.add(predicate);
+        }
+    }
+
+    private RuleChannel channel() {
+        boolean sensor = false;
+        RuleChannel angle = null;
+        for (RuleField field : fields) {
+            if (field.getChannel() == RuleChannel.SENSOR) {
+                sensor = true;
+            } else if (angle != RuleChannel.MOTION) {
+                angle = field.getChannel();
+            }
+        }
+        if (sensor && angle != null) {
+            throw new IllegalArgumentException("规则表达式不能同时引用气体传感器和角度字段: " + text);
+        }
+        return sensor ? RuleChannel.SENSOR : angle;
+    }
+
+    private Object parseOr() {
+        Object left = parseAnd();
+        while (match("||")) {
+            RulePredicate a = predicate(left, "||");
+            RulePredicate b = predicate(parseAnd(), "||");
+            left = new OrNode(a, b);
+        }
+        return left;
+    }
+
+    private Object parseAnd() {
+        Object left = parseComparison();
+        while (match("&&")) {
+            RulePredicate a = predicate(left, "&&");
+            RulePredicate b = predicate(parseComparison(), "&&");
+            left = new AndNode(a, b);
+        }
+        return left;
+    }
+
+    private Object parseComparison() {
+        Object left = parseAdditive();
+        String op = matchAny("==", "!=", ">=", "<=", ">", "<");
+        if (op == null) {
+            return left;
+        }
+        NumberNode a = number(left, op);
+        NumberNode b = number(parseAdditive(), op);
+        if (matchAny("==", "!=", ">=", "<=", ">", "<") != null) {
+            throw error("比较运算不能连用");
+        }
+        return compare(a, op, b);
+    }
+
+    private Object parseAdditive() {
+        Object left = parseMultiplicative();
+        while (true) {
+            String op = matchAny("+", "-");
+            if (op == null) {
+                return left;
+            }
+            NumberNode a = number(left, op);
+            NumberNode b = number(parseMultiplicative(), op);
+            left = add(a, b, "+".equals(op) ? 1 : -1);
+        }
+    }
+
+    private Object parseMultiplicative() {
+        Object left = parseUnary();
+        while (true) {
+            String op = matchAny("*", "/");
+            if (op == null) {
+                return left;
+            }
+            NumberNode a = number(left, op);
+            NumberNode b = number(parseUnary(), op);
+            left = "*".equals(op) ? multiply(a, b) : divide(a, b);
+        }
+    }
+
+    private Object parseUnary() {
+        skipSpaces();
+        if (pos < text.length() && text.charAt(pos) == '!' && !text.startsWith("!=", pos)) {
+            pos++;
+            RulePredicate a = predicate(parseUnary(), "!");
+            return (RulePredicate) v -> !a.test(v);
+        }
+        if (match("-")) {
+            NumberNode a = number(parseUnary(), "-");
+            return multiply(a, new ConstNode(-1));
+        }
+        return parsePrimary();
+    }
+
+    private Object parsePrimary() {
+        skipSpaces();
+        if (pos >= text.length()) {
+            throw error("表达式不完整");
+        }
+        char c = text.charAt(pos);
+        if (c == '(') {
+            pos++;
+            Object node = parseOr();
+            expect(")");
+            return node;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+        if (Character.isLetter(c) || c == '_') {
+            int start = pos;
+            while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                pos++;
+            }
+            String name = text.substring(start, pos);
+            if (match("(")) {
+                return parseFunction(name, start);
+            }
+            RuleField field = RuleField.fromKey(name);
+            if (field == null) {
+                pos = start;
+                throw error("未知字段 " + name);
+            }
+            fields.add(field);
+            return new LinearNode(field.index(), 1, 0);
+        }
+        throw error("无法识别的字符 '" + c + "'");
+    }
+
+    private Object parseFunction(String name, int start) {
+        switch (name) {
+            case "abs": {
+                NumberNode a = number(parseOr(), name);
+                expect(")");
+                if (a instanceof LinearNode) {
+                    return new AbsNode((LinearNode) a);
+                }
+                return fold(a, a, v -> Math.abs(a.eval(v)));
+            }
+            case "min":
+            case "max": {
+                NumberNode a = number(parseOr(), name);
+                expect(",");
+                NumberNode b = number(parseOr(), name);
+                expect(")");
+                return "min".equals(name)
+                        ? fold(a, b, v -> Math.min(a.eval(v), b.eval(v)))
+                        : fold(a, b, v -> Math.max(a.eval(v), b.eval(v)));
+            }
+            default:
+                pos = start;
+                throw error("未知函数 " + name);
+        }
+    }
+
+    private Object parseNumber() {
+        int start = pos;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            boolean exponentSign = (c == '+' || c == '-') && pos > start
+                    && (text.charAt(pos - 1) == 'e' || text.charAt(pos - 1) == 'E');
+            if (!Character.isDigit(c) && c != '.' && c != 'e' && c != 'E' && !exponentSign) {
+                break;
+            }
+            pos++;
+        }
+        try {
+            return new ConstNode(Double.parseDouble(text.substring(start, pos)));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("无效的数字");
+        }
+    }
+
+    /**
+     * 比较运算，单个字段的线性运算或其绝对值与常量的大小比较改写为字段阈值
+     */
+    private RulePredicate compare(NumberNode a, String op, NumberNode b) {
+        boolean ordering = !"==".equals(op) && !"!=".equals(op);
+        if (ordering && a instanceof ConstNode && !(b instanceof ConstNode)) {
+            // 常量在左侧时交换两侧并反转方向
+            NumberNode swap = a;
+            a = b;
+            b = swap;
+            op = (op.charAt(0) == '>' ? "<" : ">") + op.substring(1);
+        }
+        if (ordering && b instanceof ConstNode) {
+            double c = ((ConstNode) b).value;
+            boolean above = op.charAt(0) == '>';
+            boolean inclusive = op.length() == 2;
+            if (a instanceof LinearNode) {
+                RulePredicate threshold = threshold((LinearNode) a, c, above, inclusive);
+                if (threshold != null) {
+                    return threshold;
+                }
+            } else if (a instanceof AbsNode && c >= 0) {
+                // |x| > c 即 x > c || x < -c；|x| < c 即 x < c && x > -c
+                LinearNode x = ((AbsNode) a).inner;
+                RulePredicate high = threshold(x, c, above, inclusive);
+                RulePredicate low = threshold(x, -c, !above, inclusive);
+                if (high != null && low != null) {
+                    return above ? new OrNode(high, low) : new AndNode(high, low);
+                }
+            }
+        }
+        NumberNode x = a;
+        NumberNode y = b;
+        switch (op) {
+            case "==":
+                return v -> x.eval(v) == y.eval(v);
+            case "!=":
+                return v -> {
+                    double l = x.eval(v);
+                    double r = y.eval(v);
+                    // NaN与任何值都不相等，缺失字段的比较统一视为不成立
+                    return l != r && l == l && r == r;
+                };
+            case ">":
+                return v -> x.eval(v) > y.eval(v);
+            case ">=":
+                return v -> x.eval(v) >= y.eval(v);
+            case "<":
+                return v -> x.eval(v) < y.eval(v);
+            default:
+                return v -> x.eval(v) <= y.eval(v);
+        }
+    }
+
+    /**
+     * scale * 字段 + offset 与常量c比较，改写为字段与 (c - offset) / scale 比较，scale为负时反转方向
+     */
+    private static RulePredicate threshold(LinearNode x, double c, boolean above, boolean inclusive) {
+        if (x.scale == 0 || Double.isInfinite(x.scale) || Double.isNaN(x.scale)) {
+            return null;
+        }
+        double threshold = (c - x.offset) / x.scale;
+        return new FieldCompare(x.index, threshold, x.scale > 0 == above, inclusive);
+    }
+
+    private static NumberNode add(NumberNode a, NumberNode b, int sign) {
+        if (a instanceof LinearNode && b instanceof ConstNode) {
+            LinearNode x = (LinearNode) a;
+            return new LinearNode(x.index, x.scale, x.offset + sign * ((ConstNode) b).value);
+        }
+        if (a instanceof ConstNode && b instanceof LinearNode) {
+            LinearNode x = (LinearNode) b;
+            return new LinearNode(x.index, sign * x.scale, ((ConstNode) a).value + sign * x.offset);
+        }
+        return sign > 0
+                ? fold(a, b, v -> a.eval(v) + b.eval(v))
+                : fold(a, b, v -> a.eval(v) - b.eval(v));
+    }
+
+    private static NumberNode multiply(NumberNode a, NumberNode b) {
+        if (a instanceof ConstNode && b instanceof LinearNode) {
+            return multiply(b, a);
+        }
+        if (a instanceof LinearNode && b instanceof ConstNode) {
+            LinearNode x = (LinearNode) a;
+            double k = ((ConstNode) b).value;
+            return new LinearNode(x.index, x.scale * k, x.offset * k);
+        }
+        return fold(a, b, v -> a.eval(v) * b.eval(v));
+    }
+
+    private static NumberNode divide(NumberNode a, NumberNode b) {
+        if (a instanceof LinearNode && b instanceof ConstNode && ((ConstNode) b).value != 0) {
+            LinearNode x = (LinearNode) a;
+            double k = ((ConstNode) b).value;
+            return new LinearNode(x.index, x.scale / k, x.offset / k);
+        }
+        return fold(a, b, v -> a.eval(v) / b.eval(v));
+    }
+
+    private static NumberNode fold(NumberNode a, NumberNode b, NumberNode node) {
+        if (a instanceof ConstNode && b instanceof ConstNode) {
+            return new ConstNode(node.eval(null));
+        }
+        return node;
+    }
+
+    private RulePredicate predicate(Object node, String op) {
+        if (!(node instanceof RulePredicate)) {
+            throw error(op + " 的操作数必须是条件");
+        }
+        return (RulePredicate) node;
+    }
+
+    private NumberNode number(Object node, String op) {
+        if (!(node instanceof NumberNode)) {
+            throw error(op + " 的操作数必须是数值");
+        }
+        return (NumberNode) node;
+    }
+
+    private boolean match(String token) {
+        skipSpaces();
+        if (text.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private String matchAny(String... tokens) {
+        for (String token : tokens) {
+            if (match(token)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    private void expect(String token) {
+        if (!match(token)) {
+            throw error("缺少 " + token);
+        }
+    }
+
+    private void skipSpaces() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(String.format("规则表达式第%d个字符处%s: %s", pos + 1, message, text));
+    }
+
+    /**
+     * 数值子表达式
+     */
+    @FunctionalInterface
+    private interface NumberNode {
+        double eval(double[] values);
+    }
+
+    private static final class ConstNode implements NumberNode {
+
+        private final double value;
+
+        ConstNode(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double eval(double[] values) {
+            return value;
+        }
+    }
+
+    /**
+     * 单个字段的线性运算：scale * 字段 + offset
+     */
+    private static final class LinearNode implements NumberNode {
+
+        private final int index;
+        private final double scale;
+        private final double offset;
+
+        LinearNode(int index, double scale, double offset) {
+            this.index = index;
+            this.scale = scale;
+            this.offset = offset;
+        }
+
+        @Override
+        public double eval(double[] values) {
+            return scale * values[index] + offset;
+        }
+    }
+
+    private static final class AbsNode implements NumberNode {
+
+        private final LinearNode inner;
+
+        AbsNode(LinearNode inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        public double eval(double[] values) {
+            return Math.abs(inner.eval(values));
+        }
+    }
+
+    private static final class AndNode implements RulePredicate {
+
+        private final RulePredicate a;
+        private final RulePredicate b;
+
+        AndNode(RulePredicate a, RulePredicate b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean test(double[] values) {
+            return a.test(values) && b.test(values);
+        }
+    }
+
+    private static final class OrNode implements RulePredicate {
+
+        private final RulePredicate a;
+        private final RulePredicate b;
+
+        OrNode(RulePredicate a, RulePredicate b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean test(double[] values) {
+            return a.test(values) || b.test(values);
+        }
+    }
+
+    /**
+     * 字段与常量的大小比较
+     */
+    private static final class FieldCompare implements RulePredicate {
+
+        private final int index;
+        private final double threshold;
+        private final boolean above;
+        private final boolean inclusive;
+
+        FieldCompare(int index, double threshold, boolean above, boolean inclusive) {
+            this.index = index;
+            this.threshold = threshold;
+            this.above = above;
+            this.inclusive = inclusive;
+        }
+
+        @Override
+        public boolean test(double[] values) {
+            double value = values[index];
+            if (above) {
+                return inclusive ? value >= threshold : value > threshold;
+            }
+            return inclusive ? value <= threshold : value < threshold;
+        }
+
+        RuleExpression.Term term(RulePredicate residual) {
+            return new RuleExpression.Term(RuleField.values()[index], threshold, above, inclusive, residual);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.yang.springbootbackend.service.mqtt.rule;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 编译后的规则表达式
+ * 能改写为若干 "字段阈值 [&amp;&amp; 其余条件]" 之或的表达式额外记录这些项，
+ * 规则集按字段把阈值排序后批量判断，只对越过阈值的项再执行其余条件
+ */
+public final class RuleExpression {
+
+    private final String source;
+    private final RulePredicate predicate;
+    private final Set<RuleField> fields;
+    private final RuleChannel channel;
+    private final List<Term> terms;
+
+    RuleExpression(String source, RulePredicate predicate, Set<RuleField> fields, RuleChannel channel,
+                   List<Term> terms) {
+        this.source = source;
+        this.predicate = predicate;
+        this.fields = Collections.unmodifiableSet(fields);
+        this.channel = channel;
+        this.terms = terms != null ? Collections.unmodifiableList(terms) : null;
+    }
+
+    /**
+     * 表达式原文
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 编译后的条件
+     */
+    public RulePredicate getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * 表达式引用的字段
+     */
+    public Set<RuleField> getFields() {
+        return fields;
+    }
+
+    /**
+     * 求值时机
+     */
+    public RuleChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * 是否能按阈值索引求值
+     */
+    public boolean isIndexed() {
+        return terms != null;
+    }
+
+    /**
+     * 阈值项，任一项成立即规则成立；不能按阈值索引时为null
+     */
+    public List<Term> getTerms() {
+        return terms;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * 阈值项：字段越过阈值且其余条件成立
+     */
+    public static final class Term {
+
+        private final RuleField field;
+        private final double threshold;
+        private final boolean above;
+        private final boolean inclusive;
+        private final RulePredicate residual;
+
+        Term(RuleField field, double threshold, boolean above, boolean inclusive, RulePredicate residual) {
+            this.field = field;
+            this.threshold = threshold;
+            this.above = above;
+            this.inclusive = inclusive;
+            this.residual = residual;
+        }
+
+        /**
+         * 比较的字段
+         */
+        public RuleField getField() {
+            return field;
+        }
+
+        /**
+         * 阈值
+         */
+        public double getThreshold() {
+            return threshold;
+        }
+
+        /**
+         * 方向：true为字段大于阈值时成立，false为小于
+         */
+        public boolean isAbove() {
+            return above;
+        }
+
+        /**
+         * 是否包含等于
+         */
+        public boolean isInclusive() {
+            return inclusive;
+        }
+
+        /**
+         * 越过阈值后还需成立的其余条件，没有时为null
+         */
+        public RulePredicate getResidual() {
+            return residual;
+        }
+    }
+}
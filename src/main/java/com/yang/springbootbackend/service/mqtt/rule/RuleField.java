@@ -0,0 +1,119 @@
+package com.yang.springbootbackend.service.mqtt.rule;
+
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+
+/**
+ * 规则表达式可以引用的字段
+ * 求值前把读数的字段一次性取出放入以 {@link #index()} 为下标的 double 数组，读数未携带的字段为NaN
+ */
+public enum RuleField {
+
+    GAS("gas", RuleChannel.SENSOR),
+    GASRATE("gasrate", RuleChannel.SENSOR),
+    RAIN("rain", RuleChannel.SENSOR),
+    RAINRATE("rainrate", RuleChannel.SENSOR),
+    HEIGHT("height", RuleChannel.SENSOR),
+    LUX("lux", RuleChannel.SENSOR),
+    WIND("wind", RuleChannel.SENSOR),
+    TEMPERATURE("temperature", RuleChannel.SENSOR),
+    ANGLE("angle", RuleChannel.ANGLE),
+    /**
+     * 与上一条读数（按事件时间）的角度差绝对值（度）
+     */
+    ANGLE_CHANGE("angleChange", RuleChannel.MOTION),
+    /**
+     * 回转速度（度/秒），前后读数间隔过长时为NaN
+     */
+    ROTATION_SPEED("rotationSpeed", RuleChannel.MOTION),
+    /**
+     * 角加速度（度/秒²）
+     */
+    ANGULAR_ACCELERATION("angularAcceleration", RuleChannel.MOTION);
+
+    /**
+     * 字段数，即求值数组的长度
+     */
+    public static final int COUNT = values().length;
+
+    private final String key;
+    private final RuleChannel channel;
+
+    RuleField(String key, RuleChannel channel) {
+        this.key = key;
+        this.channel = channel;
+    }
+
+    /**
+     * 表达式中的字段名
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 字段可用的最早求值时机
+     */
+    public RuleChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * 字段在求值数组中的下标
+     */
+    public int index() {
+        return ordinal();
+    }
+
+    /**
+     * 按字段名查找
+     *
+     * @param key 字段名
+     * @return 字段，不存在时返回null
+     */
+    public static RuleField fromKey(String key) {
+        for (RuleField field : values()) {
+            if (field.key.equals(key)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 取出气体传感器读数的字段
+     *
+     * @param data   读数
+     * @param values 求值数组，长度不小于 {@link #COUNT}
+     */
+    public static void load(SensorDataDTO data, double[] values) {
+        values[GAS.ordinal()] = value(data.getGasValue());
+        values[GASRATE.ordinal()] = value(data.getGasrate());
+        values[RAIN.ordinal()] = value(data.getRainValue());
+        values[RAINRATE.ordinal()] = value(data.getRainrate());
+        values[HEIGHT.ordinal()] = value(data.getHeight());
+        values[LUX.ordinal()] = value(data.getLuxValue());
+        values[WIND.ordinal()] = value(data.getWindValue());
+        values[TEMPERATURE.ordinal()] = value(data.getTemperature());
+    }
+
+    /**
+     * 取出角度读数的字段，运动字段由调用方按前后读数计算后填入
+     *
+     * @param data   读数
+     * @param values 求值数组，长度不小于 {@link #COUNT}
+     */
+    public static void load(AngleDataDTO data, double[] values) {
+        values[ANGLE.ordinal()] = value(data.getAngle());
+        values[ANGLE_CHANGE.ordinal()] = Double.NaN;
+        values[ROTATION_SPEED.ordinal()] = Double.NaN;
+        values[ANGULAR_ACCELERATION.ordinal()] = Double.NaN;
+    }
+
+    /**
+     * 装箱数值转为求值数组中的值，null为NaN
+     */
+    public static double value(Number number) {
+        return number != null ? number.doubleValue() : Double.NaN;
+    }
+}
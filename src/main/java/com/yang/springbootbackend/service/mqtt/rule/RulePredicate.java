@@ -0,0 +1,16 @@
+package com.yang.springbootbackend.service.mqtt.rule;
+
+/**
+ * 编译后的规则条件
+ */
+@FunctionalInterface
+public interface RulePredicate {
+
+    /**
+     * 对一条读数求值
+     *
+     * @param values 以 {@link RuleField#index()} 为下标的字段值，未携带的字段为NaN
+     * @return 条件是否成立
+     */
+    boolean test(double[] values);
+}
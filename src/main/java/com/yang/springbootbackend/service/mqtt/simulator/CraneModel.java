@@ -0,0 +1,131 @@
+package com.yang.springbootbackend.service.mqtt.simulator;
+
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+
+import java.util.Random;
+
+/**
+ * 单台塔吊的传感器随机过程模型
+ * 回转角度为速度随机游走，风速为均值回归过程叠加阵风，降雨为开/关两状态的马尔可夫过程，
+ * 气体浓度偶尔出现泄漏尖峰，用于产生接近真实工况（包括告警）的数据流。
+ * 模型只由模拟器的发布线程访问，不是线程安全的
+ */
+class CraneModel {
+
+    private static final double MAX_ANGLE = 60.0;
+    private static final double MAX_SLEW_SPEED = 1.5;
+    private static final double MEAN_WIND = 4.0;
+    private static final double GUST_RATE = 1.0 / 120;
+    private static final double GUST_DECAY_SECONDS = 3.0;
+    private static final double RAIN_START_RATE = 1.0 / 600;
+    private static final double RAIN_STOP_RATE = 1.0 / 120;
+    private static final double GAS_LEAK_RATE = 1.0 / 1800;
+    private static final double GAS_LEAK_DECAY_SECONDS = 20.0;
+
+    /**
+     * 设备序号为uint32，溢出后回绕到0
+     */
+    private static final long SEQ_MASK = 0xFFFFFFFFL;
+
+    private final Random random;
+
+    private double angle;
+    private double slewSpeed;
+    private double baseWind = MEAN_WIND;
+    private double gust;
+    private boolean raining;
+    private double rainIntensity;
+    private double gasLeak;
+    private double height;
+    private double phase;
+
+    private long gasSeq;
+    private long angleSeq;
+
+    CraneModel(long seed, long seqBase) {
+        this.random = new Random(seed);
+        this.gasSeq = seqBase;
+        this.angleSeq = seqBase;
+        this.angle = (random.nextDouble() * 2 - 1) * 30;
+        this.height = random.nextDouble() * 40;
+        this.phase = random.nextDouble() * Math.PI * 2;
+    }
+
+    /**
+     * 推进气体/气象类传感器并生成读数
+     *
+     * @param dt  距上次采样的秒数
+     * @param now 当前时间（毫秒）
+     */
+    SensorDataDTO nextSensorData(double dt, long now) {
+        // 风速：均值回归 + 阵风（泊松到达，指数衰减）
+        baseWind += 0.2 * (MEAN_WIND - baseWind) * dt + random.nextGaussian() * 0.5 * Math.sqrt(dt);
+        gust *= Math.exp(-dt / GUST_DECAY_SECONDS);
+        if (random.nextDouble() < GUST_RATE * dt) {
+            gust += 5 + random.nextDouble() * 10;
+        }
+
+        // 降雨：开/关两状态，雨量百分比100为无雨
+        if (raining ? random.nextDouble() < RAIN_STOP_RATE * dt : random.nextDouble() < RAIN_START_RATE * dt) {
+            raining = !raining;
+        }
+        double targetIntensity = raining ? 60 : 0;
+        rainIntensity += (targetIntensity - rainIntensity) * Math.min(1, dt / 10);
+
+        // 气体：背景值 + 偶发泄漏
+        gasLeak *= Math.exp(-dt / GAS_LEAK_DECAY_SECONDS);
+        if (random.nextDouble() < GAS_LEAK_RATE * dt) {
+            gasLeak += 40 + random.nextDouble() * 30;
+        }
+
+        height = clamp(height + random.nextGaussian() * 0.3 * Math.sqrt(dt), 0, 60);
+        phase += dt * 2 * Math.PI / 86400;
+
+        SensorDataDTO data = new SensorDataDTO();
+        double gas = 10 + random.nextGaussian() + gasLeak;
+        data.setGasValue(round(Math.max(0, gas)));
+        data.setGasrate(gas > 50 ? 1 : 0);
+        data.setRainValue(round(100 - rainIntensity));
+        data.setRainrate(raining ? 1 : 0);
+        data.setHeight(round(height));
+        data.setLuxValue(round(Math.max(0, 40 + 20 * Math.sin(phase) + random.nextGaussian())));
+        data.setWindValue(round(Math.max(0, baseWind + gust)));
+        data.setTemperature(round(20 + 5 * Math.sin(phase) + random.nextGaussian() * 0.1));
+        data.setTs(now);
+        data.setSeq(gasSeq);
+        gasSeq = (gasSeq + 1) & SEQ_MASK;
+        return data;
+    }
+
+    /**
+     * 推进回转角度并生成读数
+     *
+     * @param dt  距上次采样的秒数
+     * @param now 当前时间（毫秒）
+     */
+    AngleDataDTO nextAngleData(double dt, long now) {
+        // 回转速度随机游走，到达限位后反向
+        slewSpeed = clamp(slewSpeed + random.nextGaussian() * 0.3 * Math.sqrt(dt), -MAX_SLEW_SPEED, MAX_SLEW_SPEED);
+        angle += slewSpeed * dt;
+        if (Math.abs(angle) > MAX_ANGLE) {
+            angle = Math.copySign(MAX_ANGLE, angle);
+            slewSpeed = -slewSpeed;
+        }
+
+        AngleDataDTO data = new AngleDataDTO();
+        data.setAngle(Math.round(angle * 1e4) / 1e4);
+        data.setTs(now);
+        data.setSeq(angleSeq);
+        angleSeq = (angleSeq + 1) & SEQ_MASK;
+        return data;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1e3) / 1e3;
+    }
+}
@@ -0,0 +1,420 @@
+package com.yang.springbootbackend.service.mqtt.simulator;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.vo.SimulatorReportVO;
+import com.yang.springbootbackend.exception.BusinessException;
+import com.yang.springbootbackend.exception.ErrorCode;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.TelemetryListener;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryFrameCodec;
+import com.yang.springbootbackend.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 塔吊遥测模拟器
+ * 以独立的MQTT客户端按设定的塔吊数量和频率向 testtopic/{craneId}/gas|angle 发布模拟数据，
+ * 同时作为 {@link TelemetryListener} 接收处理器完成通知，统计端到端吞吐和发布到处理完成的延迟。
+ * 配合内嵌Broker（embedded-broker配置）即可在单机上重复进行容量测试
+ */
+@Service
+@Slf4j
+public class CraneTelemetrySimulator implements TelemetryListener {
+
+    private static final String TOPIC_PREFIX = "testtopic/";
+
+    /**
+     * 每条数据流保留最近发布时间的槽位数
+     */
+    private static final int RING_SIZE = 256;
+
+    private static final long CONNECT_TIMEOUT_MS = 10000;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    private volatile SimulationRun currentRun;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void autoStart() {
+        MqttProperties.Simulator config = mqttProperties.getSimulator();
+        if (!config.isAutoStart()) {
+            return;
+        }
+        try {
+            start(config.getCraneCount(), config.getMessagesPerSecond(), config.getDurationSeconds());
+        } catch (Exception e) {
+            log.error("遥测模拟器自动启动失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stop();
+    }
+
+    /**
+     * 启动模拟
+     *
+     * @param craneCount        塔吊数量
+     * @param messagesPerSecond 每台塔吊每类传感器的上报频率（条/秒）
+     * @param durationSeconds   模拟时长（秒），小于等于0表示一直运行
+     * @return 是否启动成功，已有模拟在运行时返回false
+     */
+    public synchronized boolean start(int craneCount, int messagesPerSecond, int durationSeconds) {
+        SimulationRun previous = currentRun;
+        if (previous != null && previous.isRunning()) {
+            return false;
+        }
+
+        MqttProperties.Simulator config = mqttProperties.getSimulator();
+        SimulationRun run = new SimulationRun(craneCount, messagesPerSecond, durationSeconds,
+                config.getCraneIdPrefix(), config.getQos(), config.isBinary());
+        try {
+            run.connect(mqttProperties);
+        } catch (MqttException e) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "模拟器连接MQTT服务器失败: " + e.getMessage());
+        }
+        currentRun = run;
+        run.start();
+        log.info("遥测模拟器启动，塔吊数: {}, 频率: {}条/秒/传感器, 时长: {}秒, 目标速率: {}条/秒",
+                craneCount, messagesPerSecond, durationSeconds, run.targetRate());
+        return true;
+    }
+
+    /**
+     * 停止模拟
+     */
+    public synchronized void stop() {
+        SimulationRun run = currentRun;
+        if (run != null) {
+            run.stop();
+        }
+    }
+
+    /**
+     * 获取最近一次模拟的运行报告
+     *
+     * @return 运行报告，从未启动时返回空报告
+     */
+    public SimulatorReportVO getReport() {
+        SimulationRun run = currentRun;
+        return run == null ? new SimulatorReportVO() : run.report();
+    }
+
+    @Override
+    public void onReadings(MqttRoutingContext context, List<? extends TelemetryReading> readings) {
+        SimulationRun run = currentRun;
+        if (run == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (TelemetryReading reading : readings) {
+            run.onProcessed(reading, now);
+        }
+    }
+
+    /**
+     * 一次模拟运行
+     */
+    private static final class SimulationRun implements Runnable {
+
+        private final int craneCount;
+        private final int messagesPerSecond;
+        private final long durationNanos;
+        private final String craneIdPrefix;
+        private final int qos;
+        private final boolean binary;
+
+        private final CraneModel[] models;
+        private final String[] gasTopics;
+        private final String[] angleTopics;
+
+        /**
+         * 按 (塔吊, 传感器类型, 序号) 记录的发布时间和对应序号
+         */
+        private final AtomicLongArray publishNanos;
+        private final AtomicLongArray publishSeqs;
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong publishedCount = new AtomicLong();
+        private final AtomicLong publishFailedCount = new AtomicLong();
+        private final AtomicLong processedCount = new AtomicLong();
+
+        private MqttAsyncClient client;
+        private Thread publisher;
+        private volatile boolean stopped;
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        SimulationRun(int craneCount, int messagesPerSecond, int durationSeconds,
+                      String craneIdPrefix, int qos, boolean binary) {
+            this.craneCount = craneCount;
+            this.messagesPerSecond = messagesPerSecond;
+            this.durationNanos = TimeUnit.SECONDS.toNanos(Math.max(0, durationSeconds));
+            this.craneIdPrefix = craneIdPrefix;
+            this.qos = qos;
+            this.binary = binary;
+
+            // 每次运行从随机起点编号，模拟设备重启后的新序号，避免被上一次运行的去重窗口当作重复
+            long seqBase = ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+            this.models = new CraneModel[craneCount];
+            this.gasTopics = new String[craneCount];
+            this.angleTopics = new String[craneCount];
+            for (int i = 0; i < craneCount; i++) {
+                String craneId = craneIdPrefix + String.format("%04d", i);
+                models[i] = new CraneModel(i, seqBase);
+                gasTopics[i] = TOPIC_PREFIX + craneId + "/gas";
+                angleTopics[i] = TOPIC_PREFIX + craneId + "/angle";
+            }
+            this.publishNanos = new AtomicLongArray(craneCount * 2 * RING_SIZE);
+            this.publishSeqs = new AtomicLongArray(craneCount * 2 * RING_SIZE);
+        }
+
+        void connect(MqttProperties properties) throws MqttException {
+            client = new MqttAsyncClient(properties.getUrl(),
+                    properties.getPubClientId() + "-simulator-" + System.currentTimeMillis(), new MemoryPersistence());
+            MqttConnectOptions options = new MqttConnectOptions();
+            options.setCleanSession(true);
+            options.setUserName(properties.getUsername());
+            if (properties.getPassword() != null) {
+                options.setPassword(properties.getPassword().toCharArray());
+            }
+            // 压测时在途消息较多
+            options.setMaxInflight(65535);
+            client.setCallback(new CommandResponder(properties.getCraneIdSegment()));
+            client.connect(options).waitForCompletion(CONNECT_TIMEOUT_MS);
+            // 模拟设备接收下行指令并回执，用于测量指令往返延迟
+            String commandFilter = properties.getCommand().getTopicTemplate().replace("{craneId}", "+");
+            client.subscribe(commandFilter, 1).waitForCompletion(CONNECT_TIMEOUT_MS);
+        }
+
+        /**
+         * 对发给模拟塔吊的指令立即回执
+         */
+        private final class CommandResponder implements MqttCallback {
+
+            private final int craneIdSegment;
+
+            CommandResponder(int craneIdSegment) {
+                this.craneIdSegment = craneIdSegment;
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+                String craneId = MqttRoutingContext.segment(topic, craneIdSegment);
+                if (craneIndex(craneId) < 0) {
+                    return;
+                }
+                JSONObject command = JSON.parseObject(new String(message.getPayload(), StandardCharsets.UTF_8));
+                JSONObject ack = new JSONObject();
+                ack.put("id", command.getString("id"));
+                ack.put("status", "ok");
+                try {
+                    client.publish(TOPIC_PREFIX + craneId + "/ack", JSON.toJSONBytes(ack), 1, false);
+                } catch (MqttException e) {
+                    log.debug("模拟塔吊回执发送失败，塔吊: {}", craneId, e);
+                }
+            }
+
+            @Override
+            public void connectionLost(Throwable cause) {
+                log.warn("遥测模拟器连接断开", cause);
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        }
+
+        void start() {
+            startNanos = System.nanoTime();
+            publisher = new Thread(this, "mqtt-simulator");
+            publisher.setDaemon(true);
+            publisher.start();
+        }
+
+        void stop() {
+            stopped = true;
+            if (publisher != null) {
+                try {
+                    publisher.join(CONNECT_TIMEOUT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        boolean isRunning() {
+            return publisher != null && publisher.isAlive();
+        }
+
+        double targetRate() {
+            return (double) craneCount * messagesPerSecond * 2;
+        }
+
+        @Override
+        public void run() {
+            long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / targetRate());
+            double dt = 1.0 / messagesPerSecond;
+            long next = startNanos;
+            long index = 0;
+            try {
+                while (!stopped && (durationNanos <= 0 || System.nanoTime() - startNanos < durationNanos)) {
+                    long wait;
+                    while ((wait = next - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+
+                    int crane = (int) ((index >>> 1) % craneCount);
+                    publish(crane, (index & 1) == 1, dt);
+                    index++;
+
+                    next += intervalNanos;
+                    // 落后超过1秒时不再追赶，避免瞬时突发
+                    long now = System.nanoTime();
+                    if (now - next > TimeUnit.SECONDS.toNanos(1)) {
+                        next = now;
+                    }
+                }
+            } finally {
+                endNanos = System.nanoTime();
+                disconnect();
+                SimulatorReportVO report = report();
+                log.info("遥测模拟器结束，时长: {}秒, 已发布: {}, 发布失败: {}, 已处理: {}, 处理速率: {}条/秒, "
+                                + "延迟(us) P50: {}, P99: {}, P99.9: {}, 最大: {}",
+                        String.format("%.1f", report.getElapsedSeconds()), report.getPublishedCount(),
+                        report.getPublishFailedCount(), report.getProcessedCount(),
+                        String.format("%.0f", report.getProcessRate()), report.getLatencyP50Micros(),
+                        report.getLatencyP99Micros(), report.getLatencyP999Micros(), report.getLatencyMaxMicros());
+            }
+        }
+
+        private void publish(int crane, boolean angle, double dt) {
+            long now = System.currentTimeMillis();
+            String topic;
+            byte[] payload;
+            long seq;
+            if (angle) {
+                AngleDataDTO data = models[crane].nextAngleData(dt, now);
+                seq = data.getSeq();
+                topic = angleTopics[crane];
+                payload = binary ? TelemetryFrameCodec.encodeAngleData(data) : JSON.toJSONBytes(data);
+            } else {
+                SensorDataDTO data = models[crane].nextSensorData(dt, now);
+                seq = data.getSeq();
+                topic = gasTopics[crane];
+                payload = binary ? TelemetryFrameCodec.encodeSensorData(data) : JSON.toJSONBytes(data);
+            }
+
+            int slot = slot(crane, angle, seq);
+            publishSeqs.set(slot, seq);
+            publishNanos.set(slot, System.nanoTime());
+            try {
+                client.publish(topic, payload, qos, false);
+                publishedCount.incrementAndGet();
+            } catch (MqttException e) {
+                publishFailedCount.incrementAndGet();
+            }
+        }
+
+        void onProcessed(TelemetryReading reading, long nowNanos) {
+            int crane = craneIndex(reading.getCraneId());
+            if (crane < 0 || reading.getSeq() == null) {
+                return;
+            }
+            long seq = reading.getSeq();
+            int slot = slot(crane, reading instanceof AngleDataDTO, seq);
+            if (publishSeqs.get(slot) != seq) {
+                // 槽位已被更新的消息覆盖，积压过多时放弃统计
+                return;
+            }
+            processedCount.incrementAndGet();
+            latency.record(nowNanos - publishNanos.get(slot));
+        }
+
+        /**
+         * 从塔吊ID中解析模拟塔吊序号，非模拟塔吊返回-1
+         */
+        private int craneIndex(String craneId) {
+            if (craneId == null || !craneId.startsWith(craneIdPrefix)) {
+                return -1;
+            }
+            int index = 0;
+            for (int i = craneIdPrefix.length(); i < craneId.length(); i++) {
+                char c = craneId.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                index = index * 10 + (c - '0');
+                if (index >= craneCount) {
+                    return -1;
+                }
+            }
+            return index;
+        }
+
+        private int slot(int crane, boolean angle, long seq) {
+            return ((crane << 1) + (angle ? 1 : 0)) * RING_SIZE + (int) (seq & (RING_SIZE - 1));
+        }
+
+        private void disconnect() {
+            try {
+                if (client.isConnected()) {
+                    client.disconnect().waitForCompletion(CONNECT_TIMEOUT_MS);
+                }
+                client.close();
+            } catch (MqttException e) {
+                log.warn("遥测模拟器断开连接失败", e);
+            }
+        }
+
+        SimulatorReportVO report() {
+            long end = isRunning() || endNanos == 0 ? System.nanoTime() : endNanos;
+            double elapsed = (end - startNanos) / 1e9;
+
+            SimulatorReportVO report = new SimulatorReportVO();
+            report.setRunning(isRunning());
+            report.setCraneCount(craneCount);
+            report.setMessagesPerSecond(messagesPerSecond);
+            report.setTargetRate(targetRate());
+            report.setElapsedSeconds(elapsed);
+            report.setPublishedCount(publishedCount.get());
+            report.setPublishFailedCount(publishFailedCount.get());
+            report.setProcessedCount(processedCount.get());
+            report.setPublishRate(elapsed > 0 ? publishedCount.get() / elapsed : 0);
+            report.setProcessRate(elapsed > 0 ? processedCount.get() / elapsed : 0);
+            report.setLatencyMeanMicros(latency.getMean() / 1000);
+            report.setLatencyP50Micros(latency.getValueAtPercentile(50) / 1000);
+            report.setLatencyP90Micros(latency.getValueAtPercentile(90) / 1000);
+            report.setLatencyP99Micros(latency.getValueAtPercentile(99) / 1000);
+            report.setLatencyP999Micros(latency.getValueAtPercentile(99.9) / 1000);
+            report.setLatencyMaxMicros(latency.getMax() / 1000);
+            return report;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.yang.springbootbackend.service.mqtt.state;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * 单台塔吊的处理器状态
+ * 各处理器的状态按 {@link StateKey} 存放在固定长度的槽位数组中，并记录最近访问时间用于空闲淘汰。
+ * 槽位的创建是线程安全的，槽位内状态对象的并发访问由处理器自行同步
+ */
+public class CraneState {
+
+    private final String craneId;
+
+    private final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(StateKey.MAX_KEYS);
+
+    private volatile long lastAccessNanos;
+
+    /**
+     * 加入淘汰队列后是否再次被访问，淘汰时给予二次机会
+     */
+    private volatile boolean referenced;
+
+    CraneState(String craneId) {
+        this.craneId = craneId;
+        this.lastAccessNanos = System.nanoTime();
+    }
+
+    public String getCraneId() {
+        return craneId;
+    }
+
+    /**
+     * 获取状态
+     *
+     * @param key 状态键
+     * @return 状态，尚未创建时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(StateKey<T> key) {
+        return (T) slots.get(key.getIndex());
+    }
+
+    /**
+     * 获取状态，不存在时创建
+     *
+     * @param key     状态键
+     * @param factory 状态工厂，并发创建时只有一个结果被保留
+     * @return 状态
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T computeIfAbsent(StateKey<T> key, Supplier<? extends T> factory) {
+        int index = key.getIndex();
+        Object value = slots.get(index);
+        if (value == null) {
+            Object created = factory.get();
+            value = slots.compareAndSet(index, null, created) ? created : slots.get(index);
+        }
+        return (T) value;
+    }
+
+    void touch(long nowNanos) {
+        lastAccessNanos = nowNanos;
+        if (!referenced) {
+            referenced = true;
+        }
+    }
+
+    boolean isReferenced() {
+        return referenced;
+    }
+
+    void clearReferenced() {
+        referenced = false;
+    }
+
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+}
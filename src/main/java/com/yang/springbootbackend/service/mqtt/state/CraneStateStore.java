@@ -0,0 +1,185 @@
+package com.yang.springbootbackend.service.mqtt.state;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 塔吊状态存储
+ * 按塔吊ID保存各处理器需要跨消息保留的状态（上次角度、重排缓冲等），处理器通过
+ * {@link com.yang.springbootbackend.service.mqtt.MqttRoutingContext#getStateStore()} 访问。
+ * 基于ConcurrentHashMap，查找没有全局锁；空闲超过TTL的塔吊由后台任务淘汰，
+ * 塔吊数达到上限时按二次机会（时钟）算法淘汰：按创建顺序排队，队首塔吊入队后被访问过则清除标记移到队尾，
+ * 否则淘汰，近似LRU且每次插入均摊O(1)，不扫描全部塔吊，保证堆占用有界
+ */
+@Component
+@Slf4j
+public class CraneStateStore {
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    private final Map<String, CraneState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 淘汰候选队列，按创建顺序（二次机会后移到队尾）排列；已被空闲淘汰的塔吊出队时跳过
+     */
+    private final Queue<CraneState> evictionQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    private long idleTtlNanos;
+
+    private int maxCranes;
+
+    private ScheduledExecutorService evictExecutor;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.State config = mqttProperties.getState();
+        idleTtlNanos = TimeUnit.SECONDS.toNanos(config.getIdleTtlSeconds());
+        maxCranes = config.getMaxCranes();
+        if (idleTtlNanos > 0) {
+            long periodSeconds = Math.max(1, config.getIdleTtlSeconds() / 4);
+            evictExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "crane-state-evict");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictExecutor.scheduleWithFixedDelay(this::evictIdle, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        }
+        log.info("塔吊状态存储初始化完成，空闲淘汰: {}秒, 最大塔吊数: {}", config.getIdleTtlSeconds(), maxCranes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (evictExecutor != null) {
+            evictExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取塔吊状态，不存在时创建，并刷新访问时间
+     *
+     * @param craneId 塔吊ID
+     * @return 塔吊状态
+     */
+    public CraneState getOrCreate(String craneId) {
+        CraneState state = states.get(craneId);
+        if (state != null) {
+            state.touch(System.nanoTime());
+            return state;
+        }
+        if (maxCranes > 0 && states.size() >= maxCranes) {
+            evictOldest();
+        }
+        // 新建的塔吊不带访问标记，并发创建时只有创建者入队
+        CraneState created = new CraneState(craneId);
+        state = states.putIfAbsent(craneId, created);
+        if (state == null) {
+            evictionQueue.offer(created);
+            return created;
+        }
+        state.touch(System.nanoTime());
+        return state;
+    }
+
+    /**
+     * 获取塔吊状态，不刷新访问时间
+     *
+     * @param craneId 塔吊ID
+     * @return 塔吊状态，不存在时返回null
+     */
+    public CraneState get(String craneId) {
+        return states.get(craneId);
+    }
+
+    /**
+     * 遍历所有塔吊状态（弱一致）
+     *
+     * @param action 处理逻辑
+     */
+    public void forEach(Consumer<CraneState> action) {
+        states.values().forEach(action);
+    }
+
+    /**
+     * 当前保存的塔吊数量
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * 累计淘汰的塔吊数量
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    /**
+     * 淘汰空闲超过TTL的塔吊
+     */
+    void evictIdle() {
+        try {
+            long now = System.nanoTime();
+            int evicted = 0;
+            for (Iterator<CraneState> it = evictionQueue.iterator(); it.hasNext(); ) {
+                CraneState state = it.next();
+                if (states.get(state.getCraneId()) != state) {
+                    it.remove();
+                } else if (now - state.getLastAccessNanos() > idleTtlNanos && states.remove(state.getCraneId(), state)) {
+                    it.remove();
+                    evicted++;
+                }
+            }
+            if (evicted > 0) {
+                evictedCount.addAndGet(evicted);
+                log.debug("淘汰空闲塔吊状态 {} 个，剩余: {}", evicted, states.size());
+            }
+        } catch (Exception e) {
+            log.error("淘汰空闲塔吊状态失败", e);
+        }
+    }
+
+    /**
+     * 达到上限时淘汰一个最近未访问的塔吊
+     * 队首塔吊被访问过则清除标记移到队尾；所有塔吊都被访问过时最多绕队列一圈
+     */
+    private synchronized void evictOldest() {
+        if (states.size() < maxCranes) {
+            return;
+        }
+        CraneState candidate;
+        while ((candidate = evictionQueue.poll()) != null) {
+            if (states.get(candidate.getCraneId()) != candidate) {
+                // 已被空闲淘汰
+                continue;
+            }
+            if (candidate.isReferenced()) {
+                candidate.clearReferenced();
+                evictionQueue.offer(candidate);
+                continue;
+            }
+            if (states.remove(candidate.getCraneId(), candidate)) {
+                evictedCount.incrementAndGet();
+                log.warn("塔吊状态数量达到上限 {}，淘汰最近未访问的塔吊: {}", maxCranes, candidate.getCraneId());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.yang.springbootbackend.service.mqtt.state;
+
+/**
+ * 最新值快照（不可变）
+ * 版本号在整个存储内单调递增（从启动时刻开始，跨重启不回退），JSON在更新时序列化一次，查询时直接写出
+ */
+public final class LatestSnapshot {
+
+    private final long version;
+
+    private final String craneId;
+
+    private final Object data;
+
+    private final byte[] json;
+
+    private final String etag;
+
+    LatestSnapshot(long version, String craneId, Object data, byte[] json, String instanceId) {
+        this.version = version;
+        this.craneId = craneId;
+        this.data = data;
+        this.json = json;
+        this.etag = "\"" + instanceId + "-" + version + "\"";
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 塔吊ID，尚无数据的初始快照为null
+     */
+    public String getCraneId() {
+        return craneId;
+    }
+
+    /**
+     * 快照对应的DTO，已被序列化，调用方不应修改
+     */
+    public Object getData() {
+        return data;
+    }
+
+    /**
+     * 序列化后的完整响应体（BaseResponse），调用方不应修改
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * 强ETag，取值为带引号的 实例标识-版本号
+     */
+    public String getEtag() {
+        return etag;
+    }
+}
@@ -0,0 +1,247 @@
+package com.yang.springbootbackend.service.mqtt.state;
+
+import com.alibaba.fastjson.JSON;
+import com.yang.springbootbackend.common.ResultUtils;
+import com.yang.springbootbackend.config.FastJsonConfiguration;
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 最新值存储
+ * 按数据类别和塔吊ID保存不可变快照，处理器每批更新一次，更新时分配单调递增的版本号并预先序列化响应体；
+ * 轮询请求只比较版本号、直接写出字节，值未变化时不做任何序列化。
+ * 版本号从启动时刻（毫秒 x 1000）开始递增，重启后不会回退到客户端已持有的版本之下；ETag另带本实例的随机标识，
+ * 重启后或负载均衡到其他节点时不会与旧的ETag误匹配。
+ * 不同塔吊的更新在不同线程上并发进行，快照只在版本号更高时发布，全局最新值不会被较早分配版本号的更新覆盖。
+ * 长轮询的等待者按塔吊登记，更新时一次性摘下并交给唤醒线程回调，入站处理线程不执行回调，等待期间不占用线程。
+ * 开启共享订阅时仅包含本节点收到的数据
+ */
+@Component
+@Slf4j
+public class LatestValueStore {
+
+    /**
+     * 数据类别
+     */
+    public enum Channel {
+        GAS,
+        ANGLE
+    }
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    private final AtomicLong nextVersion = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    /**
+     * 本实例的标识，写入ETag
+     */
+    private final String instanceId = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+
+    private ExecutorService notifyExecutor;
+
+    private final Map<Channel, Table> tables = new EnumMap<>(Channel.class);
+
+    private int maxCranes;
+
+    @PostConstruct
+    public void start() {
+        maxCranes = mqttProperties.getLatest().getMaxCranes();
+        notifyExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "latest-notify");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tables.put(Channel.GAS, new Table(snapshot(0, null, new SensorDataDTO())));
+        tables.put(Channel.ANGLE, new Table(snapshot(0, null, new AngleDataDTO())));
+        log.info("最新值存储初始化完成，最大塔吊数: {}", maxCranes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (notifyExecutor != null) {
+            notifyExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 更新塔吊的最新值并唤醒等待该塔吊或全局最新值的长轮询
+     *
+     * @param channel 数据类别
+     * @param reading 读数，更新后不应再修改
+     * @return 新快照
+     */
+    public LatestSnapshot update(Channel channel, TelemetryReading reading) {
+        Table table = tables.get(channel);
+        String craneId = reading.getCraneId();
+        LatestSnapshot snapshot = snapshot(nextVersion.getAndIncrement(), craneId, reading);
+        // 先发布快照再唤醒，登记晚于唤醒的等待者在登记后的检查中能看到新快照
+        if (craneId != null && (table.byCrane.size() < maxCranes || table.byCrane.containsKey(craneId))) {
+            table.byCrane.merge(craneId, snapshot, LatestValueStore::newer);
+        }
+        table.latest.accumulateAndGet(snapshot, LatestValueStore::newer);
+        // 在更新线程上只摘下等待者，回调交给唤醒线程
+        List<Consumer<LatestSnapshot>> woken = null;
+        if (craneId != null) {
+            Set<Consumer<LatestSnapshot>> waiters = table.waiters.remove(craneId);
+            if (waiters != null) {
+                woken = new ArrayList<>(waiters);
+            }
+        }
+        Set<Consumer<LatestSnapshot>> anyWaiters = table.anyWaiters;
+        if (!anyWaiters.isEmpty()) {
+            for (Consumer<LatestSnapshot> waiter : anyWaiters) {
+                if (anyWaiters.remove(waiter)) {
+                    if (woken == null) {
+                        woken = new ArrayList<>();
+                    }
+                    woken.add(waiter);
+                }
+            }
+        }
+        if (woken != null) {
+            notify(woken, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 获取最新快照
+     *
+     * @param channel 数据类别
+     * @param craneId 塔吊ID，为null时返回所有塔吊中最近更新的一个
+     * @return 快照，塔吊尚无数据时返回版本号为0的空快照
+     */
+    public LatestSnapshot get(Channel channel, String craneId) {
+        Table table = tables.get(channel);
+        if (craneId == null) {
+            return table.latest.get();
+        }
+        LatestSnapshot snapshot = table.byCrane.get(craneId);
+        return snapshot != null ? snapshot : table.empty;
+    }
+
+    /**
+     * 登记长轮询等待者，快照版本号超过 sinceVersion 时回调一次
+     * 登记时已有更新的快照则立即回调
+     *
+     * @param channel      数据类别
+     * @param craneId      塔吊ID，为null时等待任意塔吊的更新
+     * @param sinceVersion 客户端已有的版本号
+     * @param waiter       回调，在唤醒线程（登记时已有新版本则在调用线程）上执行，不应阻塞
+     */
+    public void await(Channel channel, String craneId, long sinceVersion, Consumer<LatestSnapshot> waiter) {
+        Table table = tables.get(channel);
+        if (craneId == null) {
+            table.anyWaiters.add(waiter);
+        } else {
+            table.waiters.compute(craneId, (key, set) -> {
+                if (set == null) {
+                    set = ConcurrentHashMap.newKeySet();
+                }
+                set.add(waiter);
+                return set;
+            });
+        }
+        LatestSnapshot current = get(channel, craneId);
+        if (current.getVersion() > sinceVersion) {
+            cancel(channel, craneId, waiter);
+            waiter.accept(current);
+        }
+    }
+
+    /**
+     * 取消长轮询等待（超时或连接关闭）
+     */
+    public void cancel(Channel channel, String craneId, Consumer<LatestSnapshot> waiter) {
+        Table table = tables.get(channel);
+        if (craneId == null) {
+            table.anyWaiters.remove(waiter);
+            return;
+        }
+        table.waiters.computeIfPresent(craneId, (key, set) -> {
+            set.remove(waiter);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * 获取等待中的长轮询数量
+     */
+    public int getWaiterCount(Channel channel) {
+        Table table = tables.get(channel);
+        int count = table.anyWaiters.size();
+        for (Set<Consumer<LatestSnapshot>> set : table.waiters.values()) {
+            count += set.size();
+        }
+        return count;
+    }
+
+    private void notify(List<Consumer<LatestSnapshot>> waiters, LatestSnapshot snapshot) {
+        try {
+            notifyExecutor.execute(() -> {
+                for (Consumer<LatestSnapshot> waiter : waiters) {
+                    try {
+                        waiter.accept(snapshot);
+                    } catch (RuntimeException e) {
+                        log.warn("长轮询回调失败", e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 关闭阶段，等待中的请求由超时结束
+            log.debug("最新值存储已关闭，放弃唤醒 {} 个长轮询", waiters.size());
+        }
+    }
+
+    private static LatestSnapshot newer(LatestSnapshot current, LatestSnapshot candidate) {
+        return candidate.getVersion() > current.getVersion() ? candidate : current;
+    }
+
+    private LatestSnapshot snapshot(long version, String craneId, Object data) {
+        byte[] json = JSON.toJSONBytes(ResultUtils.success(data), FastJsonConfiguration.SERIALIZER_FEATURES);
+        return new LatestSnapshot(version, craneId, data, json, instanceId);
+    }
+
+    /**
+     * 单个数据类别的快照和等待者
+     */
+    private static final class Table {
+
+        private final LatestSnapshot empty;
+
+        private final Map<String, LatestSnapshot> byCrane = new ConcurrentHashMap<>();
+
+        private final Map<String, Set<Consumer<LatestSnapshot>>> waiters = new ConcurrentHashMap<>();
+
+        private final Set<Consumer<LatestSnapshot>> anyWaiters = ConcurrentHashMap.newKeySet();
+
+        private final AtomicReference<LatestSnapshot> latest;
+
+        Table(LatestSnapshot empty) {
+            this.empty = empty;
+            this.latest = new AtomicReference<>(empty);
+        }
+    }
+}
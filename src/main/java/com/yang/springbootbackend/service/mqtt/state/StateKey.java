@@ -0,0 +1,56 @@
+package com.yang.springbootbackend.service.mqtt.state;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 塔吊状态槽位键
+ * 各处理器以静态常量声明自己的键，{@link CraneState} 按键的下标在数组中存取状态，
+ * 不需要为每台塔吊创建Map
+ *
+ * @param <T> 状态类型
+ */
+public final class StateKey<T> {
+
+    /**
+     * 最多可声明的键数量
+     */
+    static final int MAX_KEYS = 16;
+
+    private static final AtomicInteger NEXT_INDEX = new AtomicInteger();
+
+    private final int index;
+
+    private final String name;
+
+    private StateKey(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * 声明一个状态键
+     *
+     * @param name 名称，仅用于日志
+     * @return 状态键
+     */
+    public static <T> StateKey<T> create(String name) {
+        int index = NEXT_INDEX.getAndIncrement();
+        if (index >= MAX_KEYS) {
+            throw new IllegalStateException("塔吊状态键数量超过上限: " + MAX_KEYS);
+        }
+        return new StateKey<>(index, name);
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
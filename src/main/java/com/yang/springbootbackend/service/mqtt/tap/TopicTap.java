@@ -0,0 +1,98 @@
+package com.yang.springbootbackend.service.mqtt.tap;
+
+import com.yang.springbootbackend.service.mqtt.MqttTopicTrie;
+import lombok.Getter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个主题监听会话
+ * 入站线程只做过滤器匹配、采样和非阻塞入队，推送由 {@link TopicTapService} 的推送线程完成
+ */
+@Getter
+class TopicTap {
+
+    /**
+     * 待推送的原始消息，载荷直接引用入站字节数组（入站链路不会修改载荷）
+     */
+    static final class Event {
+
+        final String topic;
+        final long timestamp;
+        final byte[] payload;
+
+        Event(String topic, long timestamp, byte[] payload) {
+            this.topic = topic;
+            this.timestamp = timestamp;
+            this.payload = payload;
+        }
+    }
+
+    private final long id;
+    private final String pattern;
+    private final double sampleRate;
+    private final long expiresAt;
+    private final SseEmitter emitter;
+
+    private final MqttTopicTrie<Boolean> filter = new MqttTopicTrie<>();
+    private final BlockingQueue<Event> queue;
+    private final LongAdder matchedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private volatile long sentCount;
+
+    private volatile boolean closed;
+
+    /**
+     * @throws IllegalArgumentException 主题过滤器不合法
+     */
+    TopicTap(long id, String pattern, double sampleRate, long expiresAt, int queueCapacity, SseEmitter emitter) {
+        filter.put(pattern, Boolean.TRUE);
+        this.id = id;
+        this.pattern = pattern;
+        this.sampleRate = sampleRate;
+        this.expiresAt = expiresAt;
+        this.emitter = emitter;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * 在入站线程中调用：匹配并按比例采样后放入推送缓冲，缓冲已满时丢弃
+     */
+    void offer(String topic, byte[] payload, long now) {
+        if (closed || filter.match(topic, null) == null) {
+            return;
+        }
+        matchedCount.increment();
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        if (!queue.offer(new Event(topic, now, payload))) {
+            droppedCount.increment();
+        }
+    }
+
+    /**
+     * 取出待推送的消息，仅由推送线程调用
+     */
+    int drainTo(List<Event> batch) {
+        return queue.drainTo(batch);
+    }
+
+    void markSent(int count) {
+        sentCount += count;
+    }
+
+    boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    void markClosed() {
+        closed = true;
+        queue.clear();
+    }
+}
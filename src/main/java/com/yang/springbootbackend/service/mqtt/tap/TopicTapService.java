@@ -0,0 +1,231 @@
+package com.yang.springbootbackend.service.mqtt.tap;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.TapEventVO;
+import com.yang.springbootbackend.domain.mqtt.vo.TopicTapVO;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryFrameCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MQTT主题监听服务
+ * 替代入站链路中逐条打印载荷的日志：管理员按主题过滤器、采样比例和时长开启监听，
+ * 命中的原始消息通过SSE推送给该管理员，到期后自动关闭。
+ * 没有监听会话时入站线程只读取一次空数组，不做匹配也不分配对象
+ */
+@Service
+@Slf4j
+public class TopicTapService {
+
+    private static final TopicTap[] NO_TAPS = new TopicTap[0];
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    /**
+     * 当前会话，写时复制，入站线程无锁读取
+     */
+    private volatile TopicTap[] taps = NO_TAPS;
+
+    private final AtomicLong idSequence = new AtomicLong();
+
+    private ScheduledExecutorService sender;
+
+    @PostConstruct
+    public void start() {
+        long interval = Math.max(10, mqttProperties.getTap().getFlushIntervalMs());
+        sender = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mqtt-tap-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sender != null) {
+            sender.shutdownNow();
+        }
+        for (TopicTap tap : taps) {
+            close(tap);
+        }
+    }
+
+    /**
+     * 入站消息抄送，在Paho回调线程中调用，不阻塞
+     *
+     * @param topic   消息主题
+     * @param payload 原始载荷
+     */
+    public void capture(String topic, byte[] payload) {
+        TopicTap[] current = taps;
+        if (current.length == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (TopicTap tap : current) {
+            tap.offer(topic, payload, now);
+        }
+    }
+
+    /**
+     * 开启监听会话
+     *
+     * @param pattern         主题过滤器，支持 + 和 # 通配符
+     * @param sampleRate      采样比例，(0, 1]
+     * @param durationSeconds 监听时长（秒）
+     * @return SSE连接，会话到期或被关闭时结束
+     * @throws IllegalArgumentException 主题过滤器不合法
+     * @throws IllegalStateException    会话数已达上限
+     */
+    public synchronized SseEmitter open(String pattern, double sampleRate, long durationSeconds) {
+        MqttProperties.Tap config = mqttProperties.getTap();
+        if (taps.length >= config.getMaxTaps()) {
+            throw new IllegalStateException("监听会话数已达上限: " + config.getMaxTaps());
+        }
+        long durationMs = TimeUnit.SECONDS.toMillis(durationSeconds);
+        // SSE超时比会话稍长，由推送线程在到期时主动结束连接
+        SseEmitter emitter = new SseEmitter(durationMs + 5000);
+        TopicTap tap = new TopicTap(idSequence.incrementAndGet(), pattern, sampleRate,
+                System.currentTimeMillis() + durationMs, Math.max(1, config.getQueueCapacity()), emitter);
+        emitter.onCompletion(() -> remove(tap));
+        emitter.onTimeout(() -> remove(tap));
+        emitter.onError(e -> remove(tap));
+        try {
+            emitter.send(SseEmitter.event().name("tap").data(toVO(tap)));
+        } catch (IOException e) {
+            throw new IllegalStateException("建立监听连接失败", e);
+        }
+
+        TopicTap[] next = Arrays.copyOf(taps, taps.length + 1);
+        next[next.length - 1] = tap;
+        taps = next;
+        log.info("开启主题监听，编号: {}, 过滤器: {}, 采样比例: {}, 时长: {}秒", tap.getId(), pattern, sampleRate, durationSeconds);
+        return emitter;
+    }
+
+    /**
+     * 关闭监听会话
+     *
+     * @param id 会话编号
+     * @return 会话是否存在
+     */
+    public boolean close(long id) {
+        for (TopicTap tap : taps) {
+            if (tap.getId() == id) {
+                close(tap);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 列出当前的监听会话
+     */
+    public List<TopicTapVO> listTaps() {
+        TopicTap[] current = taps;
+        List<TopicTapVO> result = new ArrayList<>(current.length);
+        for (TopicTap tap : current) {
+            result.add(toVO(tap));
+        }
+        return result;
+    }
+
+    /**
+     * 推送缓冲中的消息并结束到期的会话
+     */
+    private void flush() {
+        long now = System.currentTimeMillis();
+        List<TopicTap.Event> batch = new ArrayList<>();
+        for (TopicTap tap : taps) {
+            try {
+                tap.drainTo(batch);
+                if (!batch.isEmpty()) {
+                    List<TapEventVO> events = new ArrayList<>(batch.size());
+                    for (TopicTap.Event event : batch) {
+                        events.add(toVO(event));
+                    }
+                    tap.getEmitter().send(SseEmitter.event().name("messages").data(events));
+                    tap.markSent(events.size());
+                }
+                if (tap.isExpired(now)) {
+                    close(tap);
+                }
+            } catch (Exception e) {
+                // 客户端断开等发送失败，结束该会话
+                log.debug("主题监听推送失败，编号: {}", tap.getId(), e);
+                tap.getEmitter().completeWithError(e);
+                remove(tap);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void close(TopicTap tap) {
+        remove(tap);
+        try {
+            tap.getEmitter().complete();
+        } catch (Exception e) {
+            log.debug("结束监听连接失败，编号: {}", tap.getId(), e);
+        }
+    }
+
+    private synchronized void remove(TopicTap tap) {
+        TopicTap[] current = taps;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == tap) {
+                TopicTap[] next = new TopicTap[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                taps = next.length == 0 ? NO_TAPS : next;
+                tap.markClosed();
+                log.info("关闭主题监听，编号: {}, 命中: {}, 推送: {}, 丢弃: {}", tap.getId(),
+                        tap.getMatchedCount().sum(), tap.getSentCount(), tap.getDroppedCount().sum());
+                return;
+            }
+        }
+    }
+
+    private static TopicTapVO toVO(TopicTap tap) {
+        TopicTapVO vo = new TopicTapVO();
+        vo.setId(tap.getId());
+        vo.setPattern(tap.getPattern());
+        vo.setSampleRate(tap.getSampleRate());
+        vo.setExpiresAt(tap.getExpiresAt());
+        vo.setMatchedCount(tap.getMatchedCount().sum());
+        vo.setSentCount(tap.getSentCount());
+        vo.setDroppedCount(tap.getDroppedCount().sum());
+        return vo;
+    }
+
+    private static TapEventVO toVO(TopicTap.Event event) {
+        TapEventVO vo = new TapEventVO();
+        vo.setTopic(event.topic);
+        vo.setTimestamp(event.timestamp);
+        vo.setPayloadSize(event.payload.length);
+        if (TelemetryFrameCodec.isFrame(event.payload)) {
+            vo.setPayloadBase64(Base64.getEncoder().encodeToString(event.payload));
+        } else {
+            vo.setPayloadText(new String(event.payload, StandardCharsets.UTF_8));
+        }
+        return vo;
+    }
+}
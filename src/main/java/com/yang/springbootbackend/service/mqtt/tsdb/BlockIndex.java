@@ -0,0 +1,159 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * 单条序列已落盘记录的索引
+ * 位置、条目数和时间范围存放在平行的基本类型数组中，每条记录只占28字节，不为每条记录创建对象。
+ * 数组只追加或整体替换，读取方拿到数组引用和条目数后，范围内的条目不会再变化；由调用方加锁
+ */
+final class BlockIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] locations = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private long[] minTs = new long[INITIAL_CAPACITY];
+    private long[] maxTs = new long[INITIAL_CAPACITY];
+    private int size;
+    private long entryCount;
+
+    /**
+     * 登记一条记录
+     *
+     * @param location 记录位置（段编号 << 32 | 段内偏移）
+     * @param count    记录包含的条目数
+     */
+    void add(long location, int count, long blockMinTs, long blockMaxTs) {
+        if (size == locations.length) {
+            int capacity = size * 2;
+            locations = Arrays.copyOf(locations, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            minTs = Arrays.copyOf(minTs, capacity);
+            maxTs = Arrays.copyOf(maxTs, capacity);
+        }
+        locations[size] = location;
+        counts[size] = count;
+        minTs[size] = blockMinTs;
+        maxTs[size] = blockMaxTs;
+        size++;
+        entryCount += count;
+    }
+
+    /**
+     * 整体替换：去掉位置满足条件的记录，在第一条被去掉的记录处插入新记录
+     * 写入新数组，已发出的视图不受影响
+     *
+     * @param removed     需要去掉的记录位置
+     * @param replacement 新记录
+     */
+    void replace(LongPredicate removed, BlockIndex replacement) {
+        BlockIndex result = new BlockIndex();
+        boolean inserted = false;
+        for (int i = 0; i < size; i++) {
+            if (!removed.test(locations[i])) {
+                result.add(locations[i], counts[i], minTs[i], maxTs[i]);
+            } else if (!inserted) {
+                result.addAll(replacement);
+                inserted = true;
+            }
+        }
+        if (!inserted) {
+            result.addAll(replacement);
+        }
+        locations = result.locations;
+        counts = result.counts;
+        minTs = result.minTs;
+        maxTs = result.maxTs;
+        size = result.size;
+        entryCount = result.entryCount;
+    }
+
+    /**
+     * 按最小时间戳排序（稳定），重启时压缩产生的段文件编号较大，恢复后需恢复时间顺序
+     */
+    void sortByMinTs() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(minTs[a], minTs[b]));
+        BlockIndex sorted = new BlockIndex();
+        for (int i : order) {
+            sorted.add(locations[i], counts[i], minTs[i], maxTs[i]);
+        }
+        replace(location -> true, sorted);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 已登记记录包含的条目总数
+     */
+    long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * 只读视图
+     */
+    View view() {
+        return new View(locations, counts, minTs, maxTs, size);
+    }
+
+    private void addAll(BlockIndex other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.locations[i], other.counts[i], other.minTs[i], other.maxTs[i]);
+        }
+    }
+
+    /**
+     * 索引的只读视图
+     */
+    static final class View {
+
+        private final long[] locations;
+        private final int[] counts;
+        private final long[] minTs;
+        private final long[] maxTs;
+        private final int size;
+
+        private View(long[] locations, int[] counts, long[] minTs, long[] maxTs, int size) {
+            this.locations = locations;
+            this.counts = counts;
+            this.minTs = minTs;
+            this.maxTs = maxTs;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long location(int i) {
+            return locations[i];
+        }
+
+        int count(int i) {
+            return counts[i];
+        }
+
+        long minTs(int i) {
+            return minTs[i];
+        }
+
+        long maxTs(int i) {
+            return maxTs[i];
+        }
+
+        /**
+         * 第i条记录是否与 [fromTs, toTs) 有交集
+         */
+        boolean overlaps(int i, long fromTs, long toTs) {
+            return maxTs[i] >= fromTs && minTs[i] < toTs;
+        }
+    }
+}
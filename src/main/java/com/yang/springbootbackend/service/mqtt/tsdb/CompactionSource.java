@@ -0,0 +1,64 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 一组可压缩的落盘数据：一个段日志、引用其记录的各序列索引，以及同一序列多条记录的改写方式
+ */
+interface CompactionSource {
+
+    /**
+     * 名称（raw、1s、1m、1h），用于日志和指标
+     */
+    String getName();
+
+    SegmentLog getLog();
+
+    /**
+     * 保留时长（毫秒），0表示永久保留
+     */
+    long getRetentionMs();
+
+    /**
+     * 遍历各序列的索引，索引须在持有 lock 时访问
+     */
+    void forEachIndex(IndexVisitor visitor);
+
+    /**
+     * 把一条序列的若干记录改写为尽量少的新记录，丢弃早于 cutoff 的数据
+     *
+     * @param records 按索引顺序排列的记录
+     * @param cutoff  保留的最早时间（毫秒）
+     * @param sink    新记录的写出方
+     */
+    void rewrite(List<RecordRef> records, long cutoff, RecordSink sink) throws IOException;
+
+    interface IndexVisitor {
+
+        void visit(Object lock, byte[] key, BlockIndex index);
+    }
+
+    interface RecordSink {
+
+        void write(int count, long minTs, long maxTs, int bitLength, long[] words, int wordCount) throws IOException;
+    }
+
+    /**
+     * 段内一条记录
+     */
+    final class RecordRef {
+
+        final SegmentFile segment;
+        final int offset;
+        final long minTs;
+        final long maxTs;
+
+        RecordRef(SegmentFile segment, int offset, long minTs, long maxTs) {
+            this.segment = segment;
+            this.offset = offset;
+            this.minTs = minTs;
+            this.maxTs = maxTs;
+        }
+    }
+}
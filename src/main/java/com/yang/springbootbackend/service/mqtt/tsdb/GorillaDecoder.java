@@ -0,0 +1,123 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gorilla压缩块解码器，与 {@link GorillaEncoder} 的格式对应
+ * 按块内顺序逐点解码，直接读取（内存映射的）缓冲区，不复制块数据
+ */
+final class GorillaDecoder {
+
+    private GorillaDecoder() {
+    }
+
+    /**
+     * 解码一个块，把时间范围内的点交给消费方
+     *
+     * @param buffer   块数据所在缓冲区，按64位大端字存放
+     * @param base     块数据在缓冲区中的起始位置
+     * @param count    块内点数
+     * @param fromTs   起始时间（含）
+     * @param toTs     结束时间（不含）
+     * @param consumer 点消费方
+     * @return 消费方要求停止时返回false
+     */
+    static boolean decode(ByteBuffer buffer, int base, int count, long fromTs, long toTs, PointConsumer consumer) {
+        if (count == 0) {
+            return true;
+        }
+        Reader reader = new Reader(buffer, base);
+        long ts = reader.read(64);
+        long value = reader.read(64);
+        if (ts >= fromTs && ts < toTs && !consumer.accept(ts, Double.longBitsToDouble(value))) {
+            return false;
+        }
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(reader);
+            ts += delta;
+
+            if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.read(5);
+                    int significant = (int) reader.read(6);
+                    if (significant == 0) {
+                        significant = 64;
+                    }
+                    trailing = 64 - leading - significant;
+                }
+                value ^= reader.read(64 - leading - trailing) << trailing;
+            }
+
+            if (ts >= fromTs && ts < toTs && !consumer.accept(ts, Double.longBitsToDouble(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long readDeltaOfDelta(Reader reader) {
+        if (!reader.readBit()) {
+            return 0;
+        }
+        if (!reader.readBit()) {
+            return reader.read(7) - 63;
+        }
+        if (!reader.readBit()) {
+            return reader.read(9) - 255;
+        }
+        if (!reader.readBit()) {
+            return reader.read(12) - 2047;
+        }
+        return reader.read(64);
+    }
+
+    /**
+     * 按位读取，缓存当前64位字
+     */
+    private static final class Reader {
+
+        private final ByteBuffer buffer;
+        private final int base;
+        private int wordIndex = -1;
+        private long word;
+        private int bitPos;
+
+        Reader(ByteBuffer buffer, int base) {
+            this.buffer = buffer;
+            this.base = base;
+        }
+
+        boolean readBit() {
+            return read(1) != 0;
+        }
+
+        /**
+         * 读取n位（1到64），高位在前
+         */
+        long read(int n) {
+            int index = bitPos >>> 6;
+            int free = 64 - (bitPos & 63);
+            long current = word(index);
+            long result;
+            if (n <= free) {
+                result = current >>> (free - n);
+            } else {
+                int rest = n - free;
+                result = (current << rest) | (word(index + 1) >>> (64 - rest));
+            }
+            bitPos += n;
+            return n == 64 ? result : result & ((1L << n) - 1);
+        }
+
+        private long word(int index) {
+            if (index != wordIndex) {
+                word = buffer.getLong(base + (index << 3));
+                wordIndex = index;
+            }
+            return word;
+        }
+    }
+}
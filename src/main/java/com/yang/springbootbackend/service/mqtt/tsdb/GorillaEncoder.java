@@ -0,0 +1,186 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+/**
+ * Gorilla压缩块编码器
+ * 时间戳按二阶差分（delta-of-delta）变长编码，数值与前一个值异或后只保存有效位，
+ * 按固定间隔上报、数值缓慢变化的传感器数据每个点通常只占几个比特。
+ * 块容量固定，剩余空间不足以容纳最坏情况的一个点时拒绝写入，由调用方封存后换新块。
+ * 非线程安全，由所属序列加锁
+ */
+final class GorillaEncoder {
+
+    /**
+     * 单个点编码后的最大比特数：时间戳 4 + 64，数值 2 + 5 + 6 + 64
+     */
+    static final int MAX_POINT_BITS = 145;
+
+    /**
+     * 块头：首个时间戳和首个数值各64位
+     */
+    private static final int HEADER_BITS = 128;
+
+    private final long[] words;
+    private final int capacityBits;
+
+    private int bitPos;
+    private int count;
+    private long minTs;
+    private long maxTs;
+    private long prevTs;
+    private long prevDelta;
+    private long prevValue;
+    private int prevLeading;
+    private int prevTrailing;
+
+    /**
+     * @param capacityBytes 块容量（字节），向下取整为8的倍数
+     */
+    GorillaEncoder(int capacityBytes) {
+        int wordCount = Math.max(HEADER_BITS + MAX_POINT_BITS, capacityBytes * 8) >>> 6;
+        this.words = new long[wordCount + 1];
+        this.capacityBits = wordCount << 6;
+        reset();
+    }
+
+    /**
+     * 追加一个点
+     *
+     * @param ts    时间戳（毫秒）
+     * @param value 数值
+     * @return 块已满返回false
+     */
+    boolean append(long ts, double value) {
+        if (capacityBits - bitPos < MAX_POINT_BITS) {
+            return false;
+        }
+        long bits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            writeBits(ts, 64);
+            writeBits(bits, 64);
+            minTs = ts;
+            maxTs = ts;
+            prevDelta = 0;
+        } else {
+            long delta = ts - prevTs;
+            writeTimestamp(delta - prevDelta);
+            writeValue(bits);
+            prevDelta = delta;
+            if (ts < minTs) {
+                minTs = ts;
+            } else if (ts > maxTs) {
+                maxTs = ts;
+            }
+        }
+        prevTs = ts;
+        prevValue = bits;
+        count++;
+        return true;
+    }
+
+    /**
+     * 清空块以便复用
+     */
+    void reset() {
+        int used = (bitPos + 63) >>> 6;
+        for (int i = 0; i < used && i < words.length; i++) {
+            words[i] = 0;
+        }
+        bitPos = 0;
+        count = 0;
+        prevLeading = -1;
+        prevTrailing = 0;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int getBitLength() {
+        return bitPos;
+    }
+
+    /**
+     * 已使用的64位字数
+     */
+    int getWordCount() {
+        return (bitPos + 63) >>> 6;
+    }
+
+    long[] getWords() {
+        return words;
+    }
+
+    long getMinTs() {
+        return minTs;
+    }
+
+    long getMaxTs() {
+        return maxTs;
+    }
+
+    /**
+     * 二阶差分分段编码：0 / 10+7位 / 110+9位 / 1110+12位 / 1111+64位
+     */
+    private void writeTimestamp(long dod) {
+        if (dod == 0) {
+            writeBits(0, 1);
+        } else if (dod >= -63 && dod <= 64) {
+            writeBits(0b10, 2);
+            writeBits(dod + 63, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            writeBits(0b110, 3);
+            writeBits(dod + 255, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            writeBits(0b1110, 4);
+            writeBits(dod + 2047, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(dod, 64);
+        }
+    }
+
+    /**
+     * 异或编码：0 表示与前值相同；10 复用前一个有效位窗口；11 + 5位前导零 + 6位有效位数 + 有效位
+     */
+    private void writeValue(long bits) {
+        long xor = bits ^ prevValue;
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+            writeBits(0b10, 2);
+            writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            writeBits(0b11, 2);
+            writeBits(leading, 5);
+            // 有效位数为64时写0
+            writeBits(significant, 6);
+            writeBits(xor >>> trailing, significant);
+            prevLeading = leading;
+            prevTrailing = trailing;
+        }
+    }
+
+    /**
+     * 写入value的低n位（1到64），高位在前
+     */
+    private void writeBits(long value, int n) {
+        if (n < 64) {
+            value &= (1L << n) - 1;
+        }
+        int index = bitPos >>> 6;
+        int free = 64 - (bitPos & 63);
+        if (n <= free) {
+            words[index] |= value << (free - n);
+        } else {
+            int rest = n - free;
+            words[index] |= value >>> rest;
+            words[index + 1] |= value << (64 - rest);
+        }
+        bitPos += n;
+    }
+}
@@ -0,0 +1,16 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+/**
+ * 时序数据点消费方
+ */
+public interface PointConsumer {
+
+    /**
+     * 接收一个数据点
+     *
+     * @param ts    时间戳（毫秒）
+     * @param value 数值
+     * @return 返回false时停止扫描
+     */
+    boolean accept(long ts, double value);
+}
@@ -0,0 +1,285 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import java.util.Arrays;
+
+/**
+ * 可合并的分位数草图（对数分桶，相对误差1%）
+ * 数值按 ceil(log_γ|v|) 落入桶中只计数，任意分位数的相对误差不超过1%；
+ * 两个草图直接按桶累加即可合并，因此不同时间段、不同节点的汇总结果可以任意组合。
+ * 桶计数存放在基本类型的开放寻址表中，写入为O(1)。非线程安全
+ */
+public final class QuantileSketch {
+
+    /**
+     * 相对误差
+     */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    /**
+     * 绝对值小于该值的数视为0
+     */
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    /**
+     * {@link #binOf} 中表示0和NaN的编码
+     */
+    private static final int ZERO_BIN = Integer.MIN_VALUE + 1;
+    private static final int NAN_BIN = Integer.MIN_VALUE;
+
+    private final Bins positive = new Bins();
+    private final Bins negative = new Bins();
+    private long zeroCount;
+    private long count;
+
+    /**
+     * 加入一个数值，NaN忽略
+     */
+    public void add(double value) {
+        addBin(binOf(value));
+    }
+
+    /**
+     * 计算数值所在的桶：正数为 桶号 * 2，负数为 桶号 * 2 + 1
+     * 同一读数写入多个粒度时只需计算一次对数
+     */
+    static int binOf(double value) {
+        if (value > MIN_INDEXABLE) {
+            return index(value) << 1;
+        }
+        if (value < -MIN_INDEXABLE) {
+            return index(-value) << 1 | 1;
+        }
+        return value == value ? ZERO_BIN : NAN_BIN;
+    }
+
+    /**
+     * 按 {@link #binOf} 的结果计数
+     */
+    void addBin(int bin) {
+        if (bin == NAN_BIN) {
+            return;
+        }
+        if (bin == ZERO_BIN) {
+            zeroCount++;
+        } else if ((bin & 1) == 0) {
+            positive.add(bin >> 1, 1);
+        } else {
+            negative.add(bin >> 1, 1);
+        }
+        count++;
+    }
+
+    /**
+     * 合并另一个草图
+     */
+    public void merge(QuantileSketch other) {
+        positive.addAll(other.positive);
+        negative.addAll(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 估算分位数
+     *
+     * @param quantile 分位（0到1）
+     * @return 估计值，草图为空时返回NaN
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, quantile)) * (count - 1));
+        // 负数按绝对值从大到小，即数值从小到大
+        long[] negativeBins = negative.sorted();
+        for (int i = negativeBins.length - 1; i >= 0; i--) {
+            rank -= Bins.countOf(negativeBins[i]);
+            if (rank < 0) {
+                return -value(Bins.keyOf(negativeBins[i]));
+            }
+        }
+        rank -= zeroCount;
+        if (rank < 0) {
+            return 0;
+        }
+        long[] positiveBins = positive.sorted();
+        for (long bin : positiveBins) {
+            rank -= Bins.countOf(bin);
+            if (rank < 0) {
+                return value(Bins.keyOf(bin));
+            }
+        }
+        return positiveBins.length > 0 ? value(Bins.keyOf(positiveBins[positiveBins.length - 1])) : 0;
+    }
+
+    /**
+     * 序列化所需的64位字数
+     */
+    int wordCount() {
+        return 2 + positive.size() + negative.size();
+    }
+
+    /**
+     * 写入：零值计数 | 正数桶数 << 32 | 负数桶数 | 各桶（桶号 << 32 | 计数）
+     *
+     * @return 写入后的位置
+     */
+    int writeTo(long[] words, int pos) {
+        words[pos++] = zeroCount;
+        words[pos++] = (long) positive.size() << 32 | negative.size();
+        pos = positive.writeTo(words, pos);
+        return negative.writeTo(words, pos);
+    }
+
+    /**
+     * 从 {@link #writeTo} 的格式读取并合并
+     *
+     * @return 读取后的位置
+     */
+    int readFrom(WordSource source, int pos) {
+        long zeros = source.word(pos++);
+        long sizes = source.word(pos++);
+        int positiveSize = (int) (sizes >>> 32);
+        int negativeSize = (int) sizes;
+        long total = zeros;
+        for (int i = 0; i < positiveSize; i++) {
+            long bin = source.word(pos++);
+            positive.add(Bins.keyOf(bin), Bins.countOf(bin));
+            total += Bins.countOf(bin);
+        }
+        for (int i = 0; i < negativeSize; i++) {
+            long bin = source.word(pos++);
+            negative.add(Bins.keyOf(bin), Bins.countOf(bin));
+            total += Bins.countOf(bin);
+        }
+        zeroCount += zeros;
+        count += total;
+        return pos;
+    }
+
+    private static int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    /**
+     * 桶的代表值，使桶内任意数的相对误差不超过 RELATIVE_ACCURACY
+     */
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    /**
+     * 按64位字读取序列化数据
+     */
+    interface WordSource {
+
+        long word(int index);
+    }
+
+    /**
+     * 桶号 -> 计数的开放寻址表
+     */
+    private static final class Bins {
+
+        private static final int EMPTY = Integer.MIN_VALUE;
+
+        private static final int[] NO_KEYS = new int[0];
+        private static final long[] NO_COUNTS = new long[0];
+
+        // 首次写入时才分配，只有正数的序列不为负数分配数组
+        private int[] keys = NO_KEYS;
+        private long[] counts = NO_COUNTS;
+        private int size;
+
+        void add(int key, long n) {
+            if (keys.length == 0) {
+                keys = newKeys(8);
+                counts = new long[8];
+            }
+            int mask = keys.length - 1;
+            int i = (key * 0x9E3779B9) >>> 16 & mask;
+            while (keys[i] != EMPTY) {
+                if (keys[i] == key) {
+                    counts[i] += n;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            counts[i] = n;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+        }
+
+        void addAll(Bins other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.keys[i] != EMPTY) {
+                    add(other.keys[i], other.counts[i]);
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * 按桶号升序排列的 (桶号 << 32 | 计数)
+         */
+        long[] sorted() {
+            long[] bins = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    bins[n++] = (long) keys[i] << 32 | (counts[i] & 0xFFFFFFFFL);
+                }
+            }
+            Arrays.sort(bins);
+            return bins;
+        }
+
+        int writeTo(long[] words, int pos) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    words[pos++] = (long) keys[i] << 32 | (counts[i] & 0xFFFFFFFFL);
+                }
+            }
+            return pos;
+        }
+
+        static int keyOf(long bin) {
+            return (int) (bin >> 32);
+        }
+
+        static long countOf(long bin) {
+            return bin & 0xFFFFFFFFL;
+        }
+
+        private void rehash() {
+            int[] oldKeys = keys;
+            long[] oldCounts = counts;
+            keys = newKeys(oldKeys.length * 2);
+            counts = new long[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    add(oldKeys[i], oldCounts[i]);
+                }
+            }
+        }
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+/**
+ * 一个汇总桶：桶内读数的数量、最小/最大值、总和、最后一个值以及分位数草图
+ * 同一起始时间的多个部分桶（空闲提前关闭、重启前后各一段）可以直接合并。非线程安全
+ */
+public final class RollupBucket {
+
+    /**
+     * 不含草图的固定字段数（64位字）
+     */
+    private static final int FIXED_WORDS = 7;
+
+    private final long start;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private double last = Double.NaN;
+    private long lastTs = Long.MIN_VALUE;
+    private final QuantileSketch sketch = new QuantileSketch();
+
+    public RollupBucket(long start) {
+        this.start = start;
+    }
+
+    /**
+     * 加入一条读数
+     */
+    public void add(long ts, double value) {
+        add(ts, value, QuantileSketch.binOf(value));
+    }
+
+    /**
+     * 加入一条读数，草图桶已由调用方计算
+     */
+    void add(long ts, double value, int bin) {
+        count++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        sum += value;
+        if (ts >= lastTs) {
+            lastTs = ts;
+            last = value;
+        }
+        sketch.addBin(bin);
+    }
+
+    /**
+     * 合并同一起始时间的另一个桶
+     */
+    public void merge(RollupBucket other) {
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        if (other.lastTs >= lastTs) {
+            lastTs = other.lastTs;
+            last = other.last;
+        }
+        sketch.merge(other.sketch);
+    }
+
+    /**
+     * 复制一份，供查询读取写入中的桶
+     */
+    RollupBucket copy() {
+        RollupBucket copy = new RollupBucket(start);
+        copy.merge(this);
+        return copy;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    public double getLast() {
+        return last;
+    }
+
+    public long getLastTs() {
+        return lastTs;
+    }
+
+    /**
+     * 估算分位数，相对误差不超过 {@link QuantileSketch#RELATIVE_ACCURACY}
+     */
+    public double quantile(double quantile) {
+        return sketch.quantile(quantile);
+    }
+
+    /**
+     * 序列化所需的64位字数
+     */
+    int wordCount() {
+        return FIXED_WORDS + sketch.wordCount();
+    }
+
+    /**
+     * 写入：起始时间 | 数量 | 最小值 | 最大值 | 总和 | 最后值 | 最后值时间 | 草图
+     *
+     * @return 写入后的位置
+     */
+    int writeTo(long[] words, int pos) {
+        words[pos++] = start;
+        words[pos++] = count;
+        words[pos++] = Double.doubleToRawLongBits(min);
+        words[pos++] = Double.doubleToRawLongBits(max);
+        words[pos++] = Double.doubleToRawLongBits(sum);
+        words[pos++] = Double.doubleToRawLongBits(last);
+        words[pos++] = lastTs;
+        return sketch.writeTo(words, pos);
+    }
+
+    /**
+     * 从 {@link #writeTo} 的格式读取一个桶，读取的字数为返回桶的 {@link #wordCount}
+     */
+    static RollupBucket readFrom(QuantileSketch.WordSource source, int pos) {
+        RollupBucket bucket = new RollupBucket(source.word(pos));
+        bucket.count = source.word(pos + 1);
+        bucket.min = Double.longBitsToDouble(source.word(pos + 2));
+        bucket.max = Double.longBitsToDouble(source.word(pos + 3));
+        bucket.sum = Double.longBitsToDouble(source.word(pos + 4));
+        bucket.last = Double.longBitsToDouble(source.word(pos + 5));
+        bucket.lastTs = source.word(pos + 6);
+        bucket.sketch.readFrom(source, pos + FIXED_WORDS);
+        return bucket;
+    }
+}
@@ -0,0 +1,308 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单条序列 (塔吊, 指标) 的各粒度汇总
+ * 每个粒度用一个小环形数组保存尚未关闭的桶，环的长度覆盖“允许迟到时长 + 一个桶宽”，
+ * 读数按事件时间直接定位到桶，更新为O(1)。水位线 = 已见最大时间戳 - 允许迟到时长，
+ * 桶的结束时间越过水位线后关闭并放入关闭队列，由刷盘线程取走；迟到时长内的读数仍能修正尚未关闭的桶，
+ * 更晚的读数按粒度计入迟到数。
+ * 同一序列的读数只由一个工作通道线程写入，写入方与空闲扫描、查询快照之间只用一个CAS标志互斥，
+ * 正常情况下没有竞争，写入路径不进入任何锁
+ */
+final class RollupSeries {
+
+    private static final RollupTier[] TIERS = RollupTier.values();
+
+    private final String craneId;
+    private final TelemetryMetric metric;
+    private final byte[] keyBytes;
+    private final long latenessMs;
+
+    /**
+     * 粒度 -> 未关闭桶的环
+     */
+    private final RollupBucket[][] open;
+
+    /**
+     * 粒度 -> 起始时间小于该值的桶都已关闭
+     */
+    private final long[] closedBefore;
+
+    private final long[] lateCounts = new long[TIERS.length];
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    private long maxTs = Long.MIN_VALUE;
+    private volatile long lastWriteMillis;
+
+    /**
+     * 粒度 -> 已关闭、等待刷盘的桶
+     */
+    private final Queue<RollupBucket>[] closed;
+
+    /**
+     * 粒度 -> 已落盘记录的索引，由存储按序列加锁访问
+     */
+    private final BlockIndex[] indexes;
+
+    /**
+     * 粒度 -> 已从关闭队列取出、尚未落盘的桶，由存储按序列加锁访问
+     */
+    private final PendingRecord[] pending;
+
+    RollupSeries(String craneId, TelemetryMetric metric, long latenessMs) {
+        this.craneId = craneId;
+        this.metric = metric;
+        this.keyBytes = Series.key(craneId, metric).getBytes(StandardCharsets.UTF_8);
+        this.latenessMs = Math.max(0, latenessMs);
+        this.open = new RollupBucket[TIERS.length][];
+        this.closedBefore = new long[TIERS.length];
+        @SuppressWarnings("unchecked")
+        Queue<RollupBucket>[] queues = (Queue<RollupBucket>[]) new Queue<?>[TIERS.length];
+        this.closed = queues;
+        this.indexes = new BlockIndex[TIERS.length];
+        this.pending = new PendingRecord[TIERS.length];
+        for (RollupTier tier : TIERS) {
+            int i = tier.ordinal();
+            // 未关闭的桶跨越 [水位线所在桶, 最大时间戳所在桶]
+            long slots = (this.latenessMs + tier.getWidthMs() - 1) / tier.getWidthMs() + 2;
+            open[i] = new RollupBucket[(int) Math.min(slots, 1024)];
+            closedBefore[i] = Long.MIN_VALUE;
+            closed[i] = new ConcurrentLinkedQueue<>();
+            indexes[i] = new BlockIndex();
+            pending[i] = new PendingRecord();
+        }
+    }
+
+    String getCraneId() {
+        return craneId;
+    }
+
+    TelemetryMetric getMetric() {
+        return metric;
+    }
+
+    byte[] getKeyBytes() {
+        return keyBytes;
+    }
+
+    BlockIndex getIndex(RollupTier tier) {
+        return indexes[tier.ordinal()];
+    }
+
+    PendingRecord getPending(RollupTier tier) {
+        return pending[tier.ordinal()];
+    }
+
+    Queue<RollupBucket> getClosed(RollupTier tier) {
+        return closed[tier.ordinal()];
+    }
+
+    long getLastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    /**
+     * 加入一条读数
+     *
+     * @return 被判定为迟到（未能计入）的粒度数
+     */
+    int add(long ts, double value, long nowMillis) {
+        acquire();
+        try {
+            int late = 0;
+            int bin = QuantileSketch.binOf(value);
+            if (ts > maxTs) {
+                maxTs = ts;
+            }
+            for (int i = 0; i < TIERS.length; i++) {
+                RollupTier tier = TIERS[i];
+                long start = tier.bucketStart(ts);
+                if (start < closedBefore[i]) {
+                    lateCounts[i]++;
+                    late++;
+                    continue;
+                }
+                bucketFor(i, start).add(ts, value, bin);
+            }
+            advance(maxTs - latenessMs);
+            lastWriteMillis = nowMillis;
+            return late;
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * 序列空闲时按墙钟推算事件时间，关闭已经不会再收到读数的桶
+     *
+     * @param nowMillis 当前时间（毫秒）
+     * @param idleMs    判定为空闲的时长
+     */
+    void closeIdle(long nowMillis, long idleMs) {
+        long idle = nowMillis - lastWriteMillis;
+        if (idle < idleMs || !busy.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (maxTs != Long.MIN_VALUE) {
+                advance(maxTs + idle - latenessMs);
+            }
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * 关闭所有未关闭的桶（停止时调用）
+     */
+    void closeAll() {
+        acquire();
+        try {
+            for (int i = 0; i < TIERS.length; i++) {
+                RollupBucket[] ring = open[i];
+                for (int s = 0; s < ring.length; s++) {
+                    if (ring[s] != null) {
+                        closed[i].add(ring[s]);
+                        ring[s] = null;
+                    }
+                }
+            }
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * 复制某粒度下未关闭和已关闭未取走的桶
+     * 与写入方互斥，保证桶从环移到关闭队列的过程中不会被漏读或重复读取
+     */
+    List<RollupBucket> snapshot(RollupTier tier, long fromTs, long toTs) {
+        List<RollupBucket> buckets = new ArrayList<>();
+        int i = tier.ordinal();
+        acquire();
+        try {
+            for (RollupBucket bucket : open[i]) {
+                if (bucket != null && bucket.getStart() >= fromTs && bucket.getStart() < toTs) {
+                    buckets.add(bucket.copy());
+                }
+            }
+            for (RollupBucket bucket : closed[i]) {
+                if (bucket.getStart() >= fromTs && bucket.getStart() < toTs) {
+                    buckets.add(bucket);
+                }
+            }
+        } finally {
+            busy.set(false);
+        }
+        return buckets;
+    }
+
+    long getLateCount(RollupTier tier) {
+        acquire();
+        try {
+            return lateCounts[tier.ordinal()];
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    /**
+     * 获取写入标志，只会与空闲扫描或查询快照短暂竞争
+     */
+    private void acquire() {
+        while (!busy.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+    }
+
+    private RollupBucket bucketFor(int tier, long start) {
+        RollupBucket[] ring = open[tier];
+        int slot = (int) Math.floorMod(start / TIERS[tier].getWidthMs(), (long) ring.length);
+        RollupBucket bucket = ring[slot];
+        if (bucket != null && bucket.getStart() == start) {
+            return bucket;
+        }
+        if (bucket != null) {
+            // 环已被更新的桶占满（水位线落后过多），提前关闭最老的桶
+            closed[tier].add(bucket);
+            if (bucket.getStart() >= closedBefore[tier]) {
+                closedBefore[tier] = bucket.getStart() + TIERS[tier].getWidthMs();
+            }
+        }
+        bucket = new RollupBucket(start);
+        ring[slot] = bucket;
+        return bucket;
+    }
+
+    /**
+     * 水位线推进：关闭结束时间不晚于水位线的桶
+     * 只在水位线跨过桶边界时扫描环，环只有几个槽位
+     */
+    private void advance(long watermark) {
+        for (int i = 0; i < TIERS.length; i++) {
+            long boundary = TIERS[i].bucketStart(watermark);
+            if (boundary <= closedBefore[i]) {
+                continue;
+            }
+            RollupBucket[] ring = open[i];
+            for (int s = 0; s < ring.length; s++) {
+                if (ring[s] != null && ring[s].getStart() < boundary) {
+                    closed[i].add(ring[s]);
+                    ring[s] = null;
+                }
+            }
+            closedBefore[i] = boundary;
+        }
+    }
+
+    /**
+     * 已取出、尚未落盘的桶，按落盘记录的格式缓存
+     */
+    static final class PendingRecord implements QuantileSketch.WordSource {
+
+        long[] words = new long[64];
+        int wordCount;
+        int count;
+        long minStart = Long.MAX_VALUE;
+        long maxStart = Long.MIN_VALUE;
+        long sinceMillis;
+
+        void add(RollupBucket bucket, long nowMillis) {
+            int need = wordCount + bucket.wordCount();
+            if (need > words.length) {
+                long[] grown = new long[Math.max(need, words.length * 2)];
+                System.arraycopy(words, 0, grown, 0, wordCount);
+                words = grown;
+            }
+            if (count == 0) {
+                sinceMillis = nowMillis;
+            }
+            wordCount = bucket.writeTo(words, wordCount);
+            count++;
+            minStart = Math.min(minStart, bucket.getStart());
+            maxStart = Math.max(maxStart, bucket.getStart());
+        }
+
+        void reset() {
+            if (words.length > 4096) {
+                words = new long[64];
+            }
+            wordCount = 0;
+            count = 0;
+            minStart = Long.MAX_VALUE;
+            maxStart = Long.MIN_VALUE;
+        }
+
+        @Override
+        public long word(int index) {
+            return words[index];
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.vo.RollupStatsVO;
+import com.yang.springbootbackend.domain.mqtt.vo.RollupTierStatsVO;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.TelemetryListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 遥测多粒度汇总（1秒 / 1分钟 / 1小时）
+ * 作为 {@link TelemetryListener} 接收处理器完成的读数，按 (塔吊, 指标) 增量更新各粒度的汇总桶
+ * （数量、最小/最大值、总和、最后值和可合并的分位数草图），看板查询长时间范围时不再扫描原始读数。
+ * 桶在事件时间水位线越过其结束时间后关闭，水位线与入站重排缓冲使用同一个允许迟到时长，
+ * 迟到时长内的读数仍会修正对应的桶。
+ * 刷盘线程取走关闭的桶，每条序列每个粒度攒够一批或超过最长等待时间后作为一条记录追加到该粒度的段文件；
+ * 查询时合并已落盘记录、待落盘桶和写入中的桶，同一起始时间的部分桶在读取时合并
+ */
+@Component
+@Slf4j
+public class RollupStore implements TelemetryListener {
+
+    private static final RollupTier[] TIERS = RollupTier.values();
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    /**
+     * 塔吊ID -> 按指标序号排列的序列
+     */
+    private final Map<String, RollupSeries[]> seriesByCrane = new ConcurrentHashMap<>();
+
+    private final LongAdder readingCount = new LongAdder();
+
+    private boolean enabled;
+    private long latenessMs;
+    private SegmentLog[] logs;
+    private ScheduledExecutorService flushExecutor;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.Rollup config = mqttProperties.getRollup();
+        enabled = config.isEnabled();
+        if (!enabled) {
+            log.info("遥测汇总未启用");
+            return;
+        }
+        latenessMs = Math.max(0, mqttProperties.getReorder().getLatenessMs());
+        long segmentBytes = Math.min(Integer.MAX_VALUE, Math.max(config.getSegmentBytes(), 1024 * 1024));
+        Path directory = Paths.get(mqttProperties.getTsdb().getDirectory());
+        logs = new SegmentLog[TIERS.length];
+        for (RollupTier tier : TIERS) {
+            SegmentLog segmentLog = new SegmentLog(directory.resolve("rollup-" + tier.getKey()), segmentBytes);
+            try {
+                segmentLog.open((location, seriesKey, count, minTs, maxTs) ->
+                        recoverRecord(tier, location, seriesKey, count, minTs, maxTs));
+            } catch (IOException e) {
+                throw new UncheckedIOException("打开汇总目录失败: " + directory.toAbsolutePath(), e);
+            }
+            logs[tier.ordinal()] = segmentLog;
+        }
+
+        // 压缩产生的段编号较大，恢复后按时间重新排序
+        forEachSeries(series -> {
+            for (RollupTier tier : TIERS) {
+                series.getIndex(tier).sortByMinTs();
+            }
+        });
+
+        long interval = Math.max(100, config.getFlushIntervalMs());
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rollup-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("遥测汇总启动完成，目录: {}, 允许迟到: {}ms", directory.toAbsolutePath(), latenessMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+        // 写入中的桶全部关闭并落盘
+        long now = System.currentTimeMillis();
+        forEachSeries(series -> {
+            series.closeAll();
+            synchronized (series) {
+                for (RollupTier tier : TIERS) {
+                    drain(series, tier, now);
+                    persist(series, tier);
+                }
+            }
+        });
+        for (SegmentLog segmentLog : logs) {
+            segmentLog.close();
+        }
+        enabled = false;
+    }
+
+    @Override
+    public void onReadings(MqttRoutingContext context, List<? extends TelemetryReading> readings) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (TelemetryReading reading : readings) {
+            TelemetryMetric[] metrics = TelemetryMetric.of(reading);
+            if (metrics.length == 0 || reading.getCraneId() == null) {
+                continue;
+            }
+            long ts = reading.getTs();
+            RollupSeries[] series = seriesOf(reading.getCraneId());
+            for (TelemetryMetric metric : metrics) {
+                Double value = metric.extract(reading);
+                if (value != null) {
+                    seriesFor(series, reading.getCraneId(), metric).add(ts, value, now);
+                    readingCount.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入一条读数
+     *
+     * @param craneId 塔吊ID
+     * @param metric  指标
+     * @param ts      时间戳（毫秒）
+     * @param value   数值
+     */
+    public void append(String craneId, TelemetryMetric metric, long ts, double value) {
+        if (enabled) {
+            seriesFor(seriesOf(craneId), craneId, metric).add(ts, value, System.currentTimeMillis());
+            readingCount.increment();
+        }
+    }
+
+    /**
+     * 查询时间范围内的汇总桶
+     *
+     * @param craneId 塔吊ID
+     * @param metric  指标
+     * @param tier    粒度
+     * @param fromTs  起始时间（含，毫秒），按桶起始时间比较
+     * @param toTs    结束时间（不含，毫秒）
+     * @return 按起始时间升序排列的桶，同一起始时间的部分桶已合并
+     */
+    public List<RollupBucket> query(String craneId, TelemetryMetric metric, RollupTier tier, long fromTs, long toTs) {
+        RollupSeries[] all = enabled ? seriesByCrane.get(craneId) : null;
+        RollupSeries series = all != null ? all[metric.ordinal()] : null;
+        if (series == null) {
+            return new ArrayList<>();
+        }
+        BlockIndex.View records;
+        long[] pendingWords;
+        int pendingCount;
+        List<RollupBucket> recent;
+        synchronized (series) {
+            records = series.getIndex(tier).view();
+            RollupSeries.PendingRecord pending = series.getPending(tier);
+            pendingCount = pending.count;
+            pendingWords = pendingCount > 0 ? Arrays.copyOf(pending.words, pending.wordCount) : null;
+            recent = series.snapshot(tier, fromTs, toTs);
+        }
+
+        TreeMap<Long, RollupBucket> merged = new TreeMap<>();
+        SegmentLog segmentLog = logs[tier.ordinal()];
+        for (int i = 0; i < records.size(); i++) {
+            if (!records.overlaps(i, fromTs, toTs)) {
+                continue;
+            }
+            long location = records.location(i);
+            SegmentFile segment = segmentLog.segmentOf(location);
+            if (segment == null) {
+                continue;
+            }
+            int offset = SegmentLog.offsetOf(location);
+            ByteBuffer buffer = segment.getBuffer();
+            int base = segment.dataOffset(offset);
+            collect(index -> buffer.getLong(base + (index << 3)), segment.count(offset), fromTs, toTs, merged);
+        }
+        if (pendingWords != null) {
+            collect(index -> pendingWords[index], pendingCount, fromTs, toTs, merged);
+        }
+        for (RollupBucket bucket : recent) {
+            mergeInto(merged, bucket);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取汇总运行指标
+     */
+    public RollupStatsVO getStats() {
+        RollupStatsVO stats = new RollupStatsVO();
+        stats.setEnabled(enabled);
+        stats.setLatenessMs(latenessMs);
+        stats.setReadingCount(readingCount.sum());
+        long[][] totals = new long[TIERS.length][3];
+        int[] seriesCount = new int[1];
+        forEachSeries(series -> {
+            seriesCount[0]++;
+            for (RollupTier tier : TIERS) {
+                long[] tierTotals = totals[tier.ordinal()];
+                tierTotals[0] += series.getLateCount(tier);
+                synchronized (series) {
+                    tierTotals[1] += series.getPending(tier).count + series.getClosed(tier).size();
+                    tierTotals[2] += series.getIndex(tier).getEntryCount();
+                }
+            }
+        });
+        stats.setSeriesCount(seriesCount[0]);
+        List<RollupTierStatsVO> tiers = new ArrayList<>();
+        for (RollupTier tier : TIERS) {
+            RollupTierStatsVO vo = new RollupTierStatsVO();
+            vo.setTier(tier.getKey());
+            vo.setLateCount(totals[tier.ordinal()][0]);
+            vo.setPendingBuckets(totals[tier.ordinal()][1]);
+            vo.setPersistedBuckets(totals[tier.ordinal()][2]);
+            if (enabled) {
+                vo.setSegmentCount(logs[tier.ordinal()].getSegmentCount());
+                vo.setStoredBytes(logs[tier.ordinal()].getStoredBytes());
+            }
+            tiers.add(vo);
+        }
+        stats.setTiers(tiers);
+        return stats;
+    }
+
+    private static void collect(QuantileSketch.WordSource source, int count, long fromTs, long toTs,
+                                TreeMap<Long, RollupBucket> merged) {
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            RollupBucket bucket = RollupBucket.readFrom(source, pos);
+            pos += bucket.wordCount();
+            if (bucket.getStart() >= fromTs && bucket.getStart() < toTs) {
+                mergeInto(merged, bucket);
+            }
+        }
+    }
+
+    private static void mergeInto(TreeMap<Long, RollupBucket> merged, RollupBucket bucket) {
+        RollupBucket existing = merged.get(bucket.getStart());
+        if (existing == null) {
+            // 复制一份，避免合并时修改关闭队列中的桶
+            merged.put(bucket.getStart(), bucket.copy());
+        } else {
+            existing.merge(bucket);
+        }
+    }
+
+    private RollupSeries[] seriesOf(String craneId) {
+        RollupSeries[] series = seriesByCrane.get(craneId);
+        if (series == null) {
+            series = seriesByCrane.computeIfAbsent(craneId, k -> new RollupSeries[TelemetryMetric.values().length]);
+        }
+        return series;
+    }
+
+    private RollupSeries seriesFor(RollupSeries[] all, String craneId, TelemetryMetric metric) {
+        int index = metric.ordinal();
+        RollupSeries series = all[index];
+        if (series == null) {
+            synchronized (all) {
+                series = all[index];
+                if (series == null) {
+                    series = new RollupSeries(craneId, metric, latenessMs);
+                    all[index] = series;
+                }
+            }
+        }
+        return series;
+    }
+
+    /**
+     * 定期刷盘：关闭空闲序列的桶，取走关闭的桶，攒够一批或等待过久的写入段文件
+     */
+    private void flush() {
+        try {
+            MqttProperties.Rollup config = mqttProperties.getRollup();
+            long now = System.currentTimeMillis();
+            long idleMs = Math.max(latenessMs, config.getIdleCloseMs());
+            long maxWaitMs = TimeUnit.SECONDS.toMillis(config.getMaxPendingSeconds());
+            forEachSeries(series -> {
+                series.closeIdle(now, idleMs);
+                synchronized (series) {
+                    for (RollupTier tier : TIERS) {
+                        drain(series, tier, now);
+                        RollupSeries.PendingRecord pending = series.getPending(tier);
+                        if (pending.count > 0 && now - pending.sinceMillis >= maxWaitMs) {
+                            persist(series, tier);
+                        }
+                    }
+                }
+            });
+            for (SegmentLog segmentLog : logs) {
+                segmentLog.force();
+            }
+        } catch (Exception e) {
+            log.error("汇总刷盘失败", e);
+        }
+    }
+
+    /**
+     * 把关闭队列中的桶移入待落盘记录，攒够一批即落盘，单条记录不超过 batchBuckets 个桶；调用方持有序列锁
+     */
+    private void drain(RollupSeries series, RollupTier tier, long now) {
+        int batchBuckets = Math.max(1, mqttProperties.getRollup().getBatchBuckets());
+        Queue<RollupBucket> closed = series.getClosed(tier);
+        RollupSeries.PendingRecord pending = series.getPending(tier);
+        RollupBucket bucket;
+        while ((bucket = closed.poll()) != null) {
+            pending.add(bucket, now);
+            if (pending.count >= batchBuckets) {
+                persist(series, tier);
+            }
+        }
+    }
+
+    /**
+     * 待落盘记录追加到段文件并登记索引，调用方持有序列锁
+     */
+    private void persist(RollupSeries series, RollupTier tier) {
+        RollupSeries.PendingRecord pending = series.getPending(tier);
+        if (pending.count == 0) {
+            return;
+        }
+        long location = logs[tier.ordinal()].append(series.getKeyBytes(), pending.count, pending.minStart,
+                pending.maxStart, pending.wordCount << 6, pending.words, pending.wordCount);
+        if (location < 0) {
+            return;
+        }
+        series.getIndex(tier).add(location, pending.count, pending.minStart, pending.maxStart);
+        pending.reset();
+    }
+
+    /**
+     * 各粒度的压缩来源：同一序列的多条记录合并为一条，同一起始时间的部分桶合并，丢弃过期的桶
+     *
+     * @return 未启用时返回空列表
+     */
+    List<CompactionSource> getCompactionSources() {
+        List<CompactionSource> sources = new ArrayList<>();
+        if (!enabled) {
+            return sources;
+        }
+        for (RollupTier tier : TIERS) {
+            sources.add(new CompactionSource() {
+                @Override
+                public String getName() {
+                    return tier.getKey();
+                }
+
+                @Override
+                public SegmentLog getLog() {
+                    return logs[tier.ordinal()];
+                }
+
+                @Override
+                public long getRetentionMs() {
+                    return TimeUnit.HOURS.toMillis(retentionHours(tier));
+                }
+
+                @Override
+                public void forEachIndex(IndexVisitor visitor) {
+                    forEachSeries(series -> visitor.visit(series, series.getKeyBytes(), series.getIndex(tier)));
+                }
+
+                @Override
+                public void rewrite(List<RecordRef> records, long cutoff, RecordSink sink) throws IOException {
+                    TreeMap<Long, RollupBucket> merged = new TreeMap<>();
+                    for (RecordRef record : records) {
+                        SegmentFile segment = record.segment;
+                        ByteBuffer buffer = segment.getBuffer();
+                        int base = segment.dataOffset(record.offset);
+                        collect(index -> buffer.getLong(base + (index << 3)), segment.count(record.offset),
+                                cutoff, Long.MAX_VALUE, merged);
+                    }
+                    int batchBuckets = Math.max(1, mqttProperties.getRollup().getBatchBuckets());
+                    RollupSeries.PendingRecord batch = new RollupSeries.PendingRecord();
+                    for (RollupBucket bucket : merged.values()) {
+                        batch.add(bucket, 0);
+                        if (batch.count >= batchBuckets) {
+                            sink.write(batch.count, batch.minStart, batch.maxStart, batch.wordCount << 6,
+                                    batch.words, batch.wordCount);
+                            batch.reset();
+                        }
+                    }
+                    if (batch.count > 0) {
+                        sink.write(batch.count, batch.minStart, batch.maxStart, batch.wordCount << 6,
+                                batch.words, batch.wordCount);
+                    }
+                }
+            });
+        }
+        return sources;
+    }
+
+    private long retentionHours(RollupTier tier) {
+        MqttProperties.Compaction config = mqttProperties.getCompaction();
+        switch (tier) {
+            case SECOND:
+                return config.getSecondRetentionHours();
+            case MINUTE:
+                return config.getMinuteRetentionHours();
+            default:
+                return config.getHourRetentionHours();
+        }
+    }
+
+    /**
+     * 重启时登记段文件中的一条记录
+     */
+    private void recoverRecord(RollupTier tier, long location, String seriesKey, int count, long minTs, long maxTs) {
+        int split = seriesKey.lastIndexOf('/');
+        TelemetryMetric metric = split > 0 ? TelemetryMetric.fromKey(seriesKey.substring(split + 1)) : null;
+        if (metric == null) {
+            log.warn("汇总段文件中存在未知序列，已跳过: {}", seriesKey);
+            return;
+        }
+        String craneId = seriesKey.substring(0, split);
+        seriesFor(seriesOf(craneId), craneId, metric).getIndex(tier).add(location, count, minTs, maxTs);
+    }
+
+    private void forEachSeries(Consumer<RollupSeries> action) {
+        for (RollupSeries[] all : seriesByCrane.values()) {
+            for (RollupSeries series : all) {
+                if (series != null) {
+                    action.accept(series);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+/**
+ * 汇总粒度
+ */
+public enum RollupTier {
+
+    SECOND(1000L, "1s"),
+    MINUTE(60_000L, "1m"),
+    HOUR(3_600_000L, "1h");
+
+    private final long widthMs;
+    private final String key;
+
+    RollupTier(long widthMs, String key) {
+        this.widthMs = widthMs;
+        this.key = key;
+    }
+
+    /**
+     * 桶宽度（毫秒）
+     */
+    public long getWidthMs() {
+        return widthMs;
+    }
+
+    /**
+     * 粒度标识，用于接口参数和目录名
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 时间戳所在桶的起始时间
+     */
+    public long bucketStart(long ts) {
+        return ts - Math.floorMod(ts, widthMs);
+    }
+
+    /**
+     * 按标识查找粒度
+     *
+     * @return 未知标识返回null
+     */
+    public static RollupTier fromKey(String key) {
+        for (RollupTier tier : values()) {
+            if (tier.key.equals(key)) {
+                return tier;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,237 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加的内存映射段文件
+ * 段内依次存放记录（原始数据的压缩块或汇总桶），每条记录格式：
+ * 魔数(4) | 记录长度(4) | CRC32(4) | 条目数(4) | 最小时间戳(8) | 最大时间戳(8) | 比特长度(4) | 序列键长度(2) | 序列键 | 数据(64位字)。
+ * 段文件创建时即映射为固定大小，写入只是内存拷贝；进程重启时顺序扫描记录重建索引，遇到魔数或校验失败的位置即视为段尾
+ */
+final class SegmentFile {
+
+    static final int MAGIC = 0x54534442;
+
+    static final int HEADER_BYTES = 38;
+
+    static final String FILE_PREFIX = "segment-";
+    static final String FILE_SUFFIX = ".tsdb";
+
+    /**
+     * 扫描段文件时回调每条有效记录
+     */
+    interface RecordVisitor {
+
+        void visit(int offset, String seriesKey, int count, long minTs, long maxTs);
+    }
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private volatile int writePosition;
+    private boolean dirty;
+
+    private SegmentFile(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+    }
+
+    /**
+     * 打开或创建段文件，已有文件按原大小映射
+     */
+    static SegmentFile open(Path directory, int id, long size) throws IOException {
+        return openFile(directory.resolve(fileName(id)), id, size);
+    }
+
+    /**
+     * 按指定路径打开或创建段文件，用于压缩时先写入临时文件
+     */
+    static SegmentFile openFile(Path path, int id, long size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            // 已有段按原大小映射，新段直接扩展到固定大小（稀疏文件，不预先占用磁盘）
+            long mapSize = Math.min(Integer.MAX_VALUE, channel.size() > 0 ? channel.size() : size);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mapSize);
+            return new SegmentFile(id, path, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static String fileName(int id) {
+        return String.format("%s%08d%s", FILE_PREFIX, id, FILE_SUFFIX);
+    }
+
+    /**
+     * 从文件名解析段编号
+     *
+     * @return 不是段文件时返回-1
+     */
+    static int parseId(String fileName) {
+        if (!fileName.startsWith(FILE_PREFIX) || !fileName.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 顺序扫描全部有效记录，并把写入位置设为最后一条有效记录之后
+     */
+    void recover(RecordVisitor visitor) {
+        int pos = 0;
+        CRC32 crc = new CRC32();
+        while (pos + HEADER_BYTES <= capacity) {
+            if (buffer.getInt(pos) != MAGIC) {
+                break;
+            }
+            int length = buffer.getInt(pos + 4);
+            if (length < HEADER_BYTES || length > capacity - pos || crc(crc, pos, length) != buffer.getInt(pos + 8)) {
+                break;
+            }
+            int keyLength = buffer.getShort(pos + 36);
+            byte[] key = new byte[keyLength];
+            for (int i = 0; i < keyLength; i++) {
+                key[i] = buffer.get(pos + HEADER_BYTES + i);
+            }
+            visitor.visit(pos, new String(key, StandardCharsets.UTF_8), buffer.getInt(pos + 12),
+                    buffer.getLong(pos + 16), buffer.getLong(pos + 24));
+            pos += length;
+        }
+        writePosition = pos;
+    }
+
+    /**
+     * 追加一个封存的压缩块，由所属日志的写入锁串行调用
+     *
+     * @param key   序列键
+     * @param block 压缩块
+     * @return 记录在段内的偏移，剩余空间不足时返回-1
+     */
+    int append(byte[] key, GorillaEncoder block) {
+        return append(key, block.getCount(), block.getMinTs(), block.getMaxTs(), block.getBitLength(),
+                block.getWords(), block.getWordCount());
+    }
+
+    /**
+     * 追加一条记录，由所属日志的写入锁串行调用
+     *
+     * @param key       序列键
+     * @param count     记录包含的条目数
+     * @param minTs     最小时间戳
+     * @param maxTs     最大时间戳
+     * @param bitLength 数据有效比特数
+     * @param words     数据
+     * @param wordCount 数据字数
+     * @return 记录在段内的偏移，剩余空间不足时返回-1
+     */
+    int append(byte[] key, int count, long minTs, long maxTs, int bitLength, long[] words, int wordCount) {
+        int length = HEADER_BYTES + key.length + (wordCount << 3);
+        int pos = writePosition;
+        if (length > capacity - pos) {
+            return -1;
+        }
+        buffer.putInt(pos + 4, length);
+        buffer.putInt(pos + 12, count);
+        buffer.putLong(pos + 16, minTs);
+        buffer.putLong(pos + 24, maxTs);
+        buffer.putInt(pos + 32, bitLength);
+        buffer.putShort(pos + 36, (short) key.length);
+        for (int i = 0; i < key.length; i++) {
+            buffer.put(pos + HEADER_BYTES + i, key[i]);
+        }
+        int dataStart = pos + HEADER_BYTES + key.length;
+        for (int i = 0; i < wordCount; i++) {
+            buffer.putLong(dataStart + (i << 3), words[i]);
+        }
+        buffer.putInt(pos + 8, crc(new CRC32(), pos, length));
+        // 魔数最后写入，记录完整后才会被恢复过程识别
+        buffer.putInt(pos, MAGIC);
+        writePosition = pos + length;
+        dirty = true;
+        return pos;
+    }
+
+    /**
+     * 记录包含的条目数
+     */
+    int count(int recordOffset) {
+        return buffer.getInt(recordOffset + 12);
+    }
+
+    /**
+     * 记录总长度（字节）
+     */
+    int recordLength(int recordOffset) {
+        return buffer.getInt(recordOffset + 4);
+    }
+
+    /**
+     * 记录中块数据的起始位置
+     */
+    int dataOffset(int recordOffset) {
+        return recordOffset + HEADER_BYTES + buffer.getShort(recordOffset + 36);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * 只读视图，使用绝对位置读取，多线程共享安全
+     */
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    /**
+     * 把已写入的数据刷到磁盘，由存储的写入锁串行调用
+     */
+    void force() {
+        if (dirty) {
+            dirty = false;
+            buffer.force();
+        }
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private int crc(CRC32 crc, int pos, int length) {
+        ByteBuffer view = buffer.duplicate();
+        // 转为Buffer调用，避免JDK9+编译产物在Java 8上找不到协变返回的方法
+        ((Buffer) view).limit(pos + length);
+        ((Buffer) view).position(pos + 12);
+        crc.reset();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
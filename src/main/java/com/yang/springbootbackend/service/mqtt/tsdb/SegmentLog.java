@@ -0,0 +1,396 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import com.yang.springbootbackend.util.DirectoryLock;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一个目录下按编号排列的段文件
+ * 追加写入当前段，写满后切换到新段；记录位置编码为 段编号 << 32 | 段内偏移，供各序列的块索引引用。
+ * 压缩时把若干已写满的段改写为一个新编号的段：先写临时文件，再写入标记文件（列出被替换的段）后改名生效，
+ * 被替换的段经过宽限期（等待进行中的查询读完）后才删除，删除完成后移除标记。
+ * 重启时若发现标记文件，说明压缩结果已生效，继续完成改名并删除被替换的段，保证数据不会重复也不会丢失。
+ * 段编号只增不减，不会复用。打开期间持有目录锁，同一目录不能被两个进程同时打开
+ */
+@Slf4j
+final class SegmentLog {
+
+    private final Path directory;
+    private final long segmentBytes;
+
+    /**
+     * 段编号 -> 段文件
+     */
+    private final Map<Integer, SegmentFile> segments = new ConcurrentHashMap<>();
+
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final String MARKER_PREFIX = "compact-";
+    private static final String MARKER_SUFFIX = ".marker";
+
+    /**
+     * 已被压缩替换或整体过期、等待删除的段
+     */
+    private final List<Retired> retired = new ArrayList<>();
+
+    private SegmentFile active;
+    private int nextId = 1;
+    private DirectoryLock lock;
+
+    SegmentLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * 按编号顺序打开已有段文件并扫描记录，最后一个段作为当前写入段
+     *
+     * @param visitor 每条有效记录的回调，位置参数为编码后的记录位置
+     */
+    synchronized void open(LocationVisitor visitor) throws IOException {
+        lock = DirectoryLock.acquire(directory);
+        try {
+            openSegments(visitor);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void openSegments(LocationVisitor visitor) throws IOException {
+        completeCompactions();
+        List<Integer> ids = new ArrayList<>();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                int id = SegmentFile.parseId(file.getName());
+                if (id >= 0) {
+                    ids.add(id);
+                }
+            }
+        }
+        Collections.sort(ids);
+        for (int id : ids) {
+            SegmentFile segment = SegmentFile.open(directory, id, segmentBytes);
+            segments.put(id, segment);
+            segment.recover((offset, seriesKey, count, minTs, maxTs) ->
+                    visitor.visit(location(id, offset), seriesKey, count, minTs, maxTs));
+            active = segment;
+            nextId = id + 1;
+        }
+        if (active == null) {
+            active = SegmentFile.open(directory, nextId, segmentBytes);
+            segments.put(nextId++, active);
+        }
+    }
+
+    /**
+     * 追加一个压缩块
+     *
+     * @return 记录位置，日志已关闭时返回-1
+     */
+    synchronized long append(byte[] key, GorillaEncoder block) {
+        return append(key, block.getCount(), block.getMinTs(), block.getMaxTs(), block.getBitLength(),
+                block.getWords(), block.getWordCount());
+    }
+
+    /**
+     * 追加一条记录，当前段空间不足时切换到新段
+     *
+     * @return 记录位置，日志已关闭时返回-1
+     */
+    synchronized long append(byte[] key, int count, long minTs, long maxTs, int bitLength, long[] words, int wordCount) {
+        if (active == null) {
+            return -1;
+        }
+        int offset = active.append(key, count, minTs, maxTs, bitLength, words, wordCount);
+        if (offset < 0) {
+            roll();
+            offset = active.append(key, count, minTs, maxTs, bitLength, words, wordCount);
+            if (offset < 0) {
+                throw new IllegalArgumentException("记录超过段文件大小: " + wordCount * 8L + "字节");
+            }
+        }
+        return location(active.getId(), offset);
+    }
+
+    /**
+     * 记录位置对应的段，段已删除时返回null
+     */
+    SegmentFile segmentOf(long location) {
+        return segments.get((int) (location >>> 32));
+    }
+
+    static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * 刷新当前段
+     */
+    synchronized void force() {
+        if (active != null) {
+            active.force();
+        }
+    }
+
+    synchronized void close() {
+        for (SegmentFile segment : segments.values()) {
+            try {
+                segment.force();
+                segment.close();
+            } catch (IOException e) {
+                log.warn("关闭段文件失败: {}", segment.getPath(), e);
+            }
+        }
+        segments.clear();
+        active = null;
+        if (lock != null) {
+            try {
+                lock.close();
+            } catch (IOException e) {
+                log.warn("释放目录锁失败: {}", directory, e);
+            }
+            lock = null;
+        }
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    long getStoredBytes() {
+        long bytes = 0;
+        for (SegmentFile segment : segments.values()) {
+            bytes += segment.getWritePosition();
+        }
+        return bytes;
+    }
+
+    /**
+     * 除当前写入段以外的段，按编号升序
+     */
+    synchronized List<SegmentFile> getSealedSegments() {
+        List<SegmentFile> sealed = new ArrayList<>();
+        for (SegmentFile segment : segments.values()) {
+            if (segment != active && !isRetired(segment)) {
+                sealed.add(segment);
+            }
+        }
+        sealed.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        return sealed;
+    }
+
+    long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * 创建压缩输出段：分配新编号，写入临时文件，生效前不参与恢复
+     */
+    synchronized SegmentFile createCompactionOutput(long size) throws IOException {
+        int id = nextId++;
+        Path path = directory.resolve(SegmentFile.fileName(id) + COMPACTING_SUFFIX);
+        return SegmentFile.openFile(path, id, Math.min(Integer.MAX_VALUE, size));
+    }
+
+    /**
+     * 放弃未生效的压缩输出
+     */
+    void abortCompaction(SegmentFile output) {
+        try {
+            output.close();
+            Files.deleteIfExists(output.getPath());
+        } catch (IOException e) {
+            log.warn("删除压缩临时文件失败: {}", output.getPath(), e);
+        }
+    }
+
+    /**
+     * 压缩结果生效：写入标记、改名并加入日志，被替换的段进入宽限期
+     * 返回后即可把各序列索引切换到输出段
+     *
+     * @param output  已写完的输出段
+     * @param sources 被替换的段
+     */
+    synchronized void commitCompaction(SegmentFile output, List<SegmentFile> sources) throws IOException {
+        output.force();
+        output.close();
+        StringBuilder content = new StringBuilder();
+        for (SegmentFile source : sources) {
+            content.append(source.getId()).append('\n');
+        }
+        Path marker = markerPath(output.getId());
+        Path markerTmp = directory.resolve(marker.getFileName() + ".tmp");
+        Files.write(markerTmp, content.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(markerTmp, marker, StandardCopyOption.ATOMIC_MOVE);
+
+        Path target = directory.resolve(SegmentFile.fileName(output.getId()));
+        Files.move(output.getPath(), target, StandardCopyOption.ATOMIC_MOVE);
+        SegmentFile committed = SegmentFile.open(directory, output.getId(), 0);
+        committed.recover((offset, seriesKey, count, minTs, maxTs) -> {
+        });
+        segments.put(committed.getId(), committed);
+        for (SegmentFile source : sources) {
+            retired.add(new Retired(source, marker, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * 整段过期，直接进入宽限期
+     */
+    synchronized void drop(SegmentFile segment) {
+        if (segment != active && !isRetired(segment)) {
+            retired.add(new Retired(segment, null, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * 删除宽限期已过的段；同一次压缩替换的段全部删除后移除标记
+     *
+     * @return 释放的字节数（按段文件大小）
+     */
+    synchronized long purgeRetired(long graceMs) {
+        long now = System.currentTimeMillis();
+        long reclaimed = 0;
+        List<Path> touchedMarkers = new ArrayList<>();
+        for (Iterator<Retired> it = retired.iterator(); it.hasNext(); ) {
+            Retired entry = it.next();
+            if (now - entry.retiredMillis < graceMs) {
+                continue;
+            }
+            SegmentFile segment = entry.segment;
+            try {
+                long size = Files.size(segment.getPath());
+                segment.close();
+                Files.deleteIfExists(segment.getPath());
+                reclaimed += size;
+            } catch (IOException e) {
+                // 部分平台上仍被映射的文件无法删除，下一轮重试
+                log.warn("删除段文件失败: {}", segment.getPath(), e);
+                continue;
+            }
+            segments.remove(segment.getId());
+            it.remove();
+            if (entry.marker != null && !touchedMarkers.contains(entry.marker)) {
+                touchedMarkers.add(entry.marker);
+            }
+        }
+        for (Path marker : touchedMarkers) {
+            boolean pending = false;
+            for (Retired entry : retired) {
+                pending |= marker.equals(entry.marker);
+            }
+            if (!pending) {
+                try {
+                    Files.deleteIfExists(marker);
+                } catch (IOException e) {
+                    log.warn("删除压缩标记失败: {}", marker, e);
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    synchronized int getRetiredCount() {
+        return retired.size();
+    }
+
+    private boolean isRetired(SegmentFile segment) {
+        for (Retired entry : retired) {
+            if (entry.segment == segment) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 重启时完成已生效的压缩并清理未生效的临时文件
+     */
+    private void completeCompactions() throws IOException {
+        File[] files = directory.toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(MARKER_PREFIX) || !name.endsWith(MARKER_SUFFIX)) {
+                continue;
+            }
+            int outputId = Integer.parseInt(name.substring(MARKER_PREFIX.length(), name.length() - MARKER_SUFFIX.length()));
+            Path pending = directory.resolve(SegmentFile.fileName(outputId) + COMPACTING_SUFFIX);
+            if (Files.exists(pending)) {
+                Files.move(pending, directory.resolve(SegmentFile.fileName(outputId)), StandardCopyOption.ATOMIC_MOVE);
+            }
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    Files.deleteIfExists(directory.resolve(SegmentFile.fileName(Integer.parseInt(line.trim()))));
+                }
+            }
+            Files.delete(file.toPath());
+            log.info("已完成上次未结束的段压缩: {}", SegmentFile.fileName(outputId));
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(COMPACTING_SUFFIX) && file.exists()) {
+                // 没有标记的临时文件是未完成的压缩，直接丢弃
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    private Path markerPath(int outputId) {
+        return directory.resolve(MARKER_PREFIX + outputId + MARKER_SUFFIX);
+    }
+
+    private void roll() {
+        active.force();
+        int id = nextId++;
+        try {
+            active = SegmentFile.open(directory, id, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建段文件失败: " + directory.resolve(SegmentFile.fileName(id)), e);
+        }
+        segments.put(id, active);
+    }
+
+    static long location(int segmentId, int offset) {
+        return (long) segmentId << 32 | offset;
+    }
+
+    /**
+     * 等待删除的段
+     */
+    private static final class Retired {
+
+        final SegmentFile segment;
+        final Path marker;
+        final long retiredMillis;
+
+        Retired(SegmentFile segment, Path marker, long retiredMillis) {
+            this.segment = segment;
+            this.marker = marker;
+            this.retiredMillis = retiredMillis;
+        }
+    }
+
+    /**
+     * 打开日志时回调每条有效记录
+     */
+    interface LocationVisitor {
+
+        void visit(long location, String seriesKey, int count, long minTs, long maxTs);
+    }
+}
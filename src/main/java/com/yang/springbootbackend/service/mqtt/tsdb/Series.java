@@ -0,0 +1,185 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单条时序序列：(塔吊, 指标)
+ * 内存中保留一个写入中的块；写满的块先进入待落盘队列，由落盘线程追加到段文件后登记在 {@link BlockIndex} 中。
+ * 所有操作由调用方持有序列锁
+ */
+final class Series {
+
+    private final String craneId;
+    private final TelemetryMetric metric;
+    private final byte[] keyBytes;
+    private final int blockBytes;
+    private final BlockIndex index = new BlockIndex();
+
+    /**
+     * 已封存、等待落盘线程写入段文件的块，按封存顺序排列
+     */
+    private final ArrayDeque<GorillaEncoder> pending = new ArrayDeque<>(2);
+
+    private GorillaEncoder head;
+
+    /**
+     * 已写入段文件的块，复用为下一个写入中的块
+     */
+    private GorillaEncoder spare;
+
+    private long headCreatedMillis;
+
+    /**
+     * 写入中的块第一个点的写入序号，见 {@link TimeSeriesStore#mark()}
+     */
+    private long headFirstTick;
+
+    Series(String craneId, TelemetryMetric metric, int blockBytes) {
+        this.craneId = craneId;
+        this.metric = metric;
+        this.keyBytes = key(craneId, metric).getBytes(StandardCharsets.UTF_8);
+        this.blockBytes = blockBytes;
+        this.head = new GorillaEncoder(blockBytes);
+    }
+
+    /**
+     * 序列键，写入每条段记录用于重启时恢复索引
+     */
+    static String key(String craneId, TelemetryMetric metric) {
+        return craneId + "/" + metric.getKey();
+    }
+
+    String getCraneId() {
+        return craneId;
+    }
+
+    TelemetryMetric getMetric() {
+        return metric;
+    }
+
+    byte[] getKeyBytes() {
+        return keyBytes;
+    }
+
+    GorillaEncoder getHead() {
+        return head;
+    }
+
+    BlockIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * 追加到写入中的块
+     *
+     * @param tick 写入序号
+     * @return 块已满返回false，调用方封存后重试
+     */
+    boolean appendToHead(long ts, double value, long tick) {
+        if (head.getCount() == 0) {
+            headCreatedMillis = System.currentTimeMillis();
+            headFirstTick = tick;
+        }
+        return head.append(ts, value);
+    }
+
+    long getHeadCreatedMillis() {
+        return headCreatedMillis;
+    }
+
+    long getHeadFirstTick() {
+        return headFirstTick;
+    }
+
+    /**
+     * 封存写入中的块：移入待落盘队列并换上新块，不接触段文件
+     */
+    void sealHead() {
+        pending.addLast(head);
+        head = spare != null ? spare : new GorillaEncoder(blockBytes);
+        spare = null;
+    }
+
+    /**
+     * 最早封存、尚未写入段文件的块
+     *
+     * @return 没有待落盘的块时返回null
+     */
+    GorillaEncoder peekPending() {
+        return pending.peekFirst();
+    }
+
+    /**
+     * 最早封存的块已写入段文件：登记索引并回收块
+     */
+    void pendingWritten(long location) {
+        GorillaEncoder block = pending.removeFirst();
+        if (location >= 0) {
+            index.add(location, block.getCount(), block.getMinTs(), block.getMaxTs());
+        }
+        block.reset();
+        spare = block;
+    }
+
+    /**
+     * 尚未写入段文件的块和写入中的块，按写入顺序排列
+     */
+    List<GorillaEncoder> unsealed() {
+        List<GorillaEncoder> blocks = new ArrayList<>(pending.size() + 1);
+        blocks.addAll(pending);
+        if (head.getCount() > 0) {
+            blocks.add(head);
+        }
+        return blocks;
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 在序列锁内取得查询快照：已封存块的索引视图，以及待落盘块和写入中块的副本
+     */
+    synchronized Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.blocks = index.view();
+        List<GorillaEncoder> unsealed = unsealed();
+        snapshot.heads = new ArrayList<>(unsealed.size());
+        for (GorillaEncoder block : unsealed) {
+            int words = block.getWordCount();
+            ByteBuffer copy = ByteBuffer.allocate(words << 3);
+            copy.asLongBuffer().put(block.getWords(), 0, words);
+            snapshot.heads.add(new HeadCopy(copy, block.getCount(), block.getMinTs(), block.getMaxTs()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * 查询快照
+     */
+    static final class Snapshot {
+        BlockIndex.View blocks;
+        List<HeadCopy> heads;
+    }
+
+    /**
+     * 未写入段文件的块的副本
+     */
+    static final class HeadCopy {
+        final ByteBuffer data;
+        final int count;
+        final long minTs;
+        final long maxTs;
+
+        HeadCopy(ByteBuffer data, int count, long minTs, long maxTs) {
+            this.data = data;
+            this.count = count;
+            this.minTs = minTs;
+            this.maxTs = maxTs;
+        }
+    }
+}
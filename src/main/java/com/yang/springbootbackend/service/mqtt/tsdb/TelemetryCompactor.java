@@ -0,0 +1,422 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.CompactionStatsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 落盘遥测数据的分层保留与后台压缩
+ * 原始数据和各粒度汇总分别按保留时长过期：整段过期的段直接删除；过期或无效数据占比高的段、以及相邻的小段
+ * 改写合并为一个新段，改写时原始数据的小块重新编码为满块，汇总的同一序列多条记录合并为一条。
+ * 压缩在最低优先级的单线程上执行，读写速率受令牌桶限制；改写结果生效后才切换各序列索引，
+ * 被替换的段等待宽限期后删除，进行中的查询不受影响
+ */
+@Component
+@Slf4j
+public class TelemetryCompactor {
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private TimeSeriesStore timeSeriesStore;
+
+    @Autowired
+    private RollupStore rollupStore;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong segmentsCompacted = new AtomicLong();
+    private final AtomicLong segmentsDropped = new AtomicLong();
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong bytesReclaimed = new AtomicLong();
+    private final AtomicLong plannedBytes = new AtomicLong();
+    private final AtomicLong processedBytes = new AtomicLong();
+
+    private volatile long lastRunStartMillis;
+    private volatile long lastRunDurationMs;
+    private volatile long maxRunDurationMs;
+
+    private boolean enabled;
+    private IoBudget budget;
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.Compaction config = mqttProperties.getCompaction();
+        enabled = config.isEnabled();
+        budget = new IoBudget(config.getIoBytesPerSecond());
+        if (!enabled) {
+            log.info("遥测数据压缩未启用");
+            return;
+        }
+        long interval = Math.max(1, config.getIntervalSeconds());
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tsdb-compactor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runOnce, interval, interval, TimeUnit.SECONDS);
+        log.info("遥测数据压缩启动完成，间隔: {}秒, 读写上限: {}字节/秒", interval, config.getIoBytesPerSecond());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 立即在后台执行一轮压缩
+     *
+     * @return 已有压缩在执行或未启用时返回false
+     */
+    public boolean trigger() {
+        if (executor == null || running.get()) {
+            return false;
+        }
+        executor.execute(this::runOnce);
+        return true;
+    }
+
+    /**
+     * 执行一轮：删除宽限期已过的段，再依次处理原始数据和各粒度汇总
+     *
+     * @return 本轮是否执行（已有压缩在执行时返回false）
+     */
+    public boolean runOnce() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        lastRunStartMillis = start;
+        plannedBytes.set(0);
+        processedBytes.set(0);
+        try {
+            long graceMs = TimeUnit.SECONDS.toMillis(mqttProperties.getCompaction().getGraceSeconds());
+            List<CompactionSource> sources = new ArrayList<>();
+            CompactionSource raw = timeSeriesStore.getCompactionSource();
+            if (raw != null) {
+                sources.add(raw);
+            }
+            sources.addAll(rollupStore.getCompactionSources());
+            for (CompactionSource source : sources) {
+                bytesReclaimed.addAndGet(source.getLog().purgeRetired(graceMs));
+                compact(source);
+            }
+            if (graceMs == 0) {
+                for (CompactionSource source : sources) {
+                    bytesReclaimed.addAndGet(source.getLog().purgeRetired(0));
+                }
+            }
+            runCount.incrementAndGet();
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            log.error("遥测数据压缩失败", e);
+        } finally {
+            long duration = System.currentTimeMillis() - start;
+            lastRunDurationMs = duration;
+            maxRunDurationMs = Math.max(maxRunDurationMs, duration);
+            running.set(false);
+        }
+        return true;
+    }
+
+    /**
+     * 获取压缩运行指标
+     */
+    public CompactionStatsVO getStats() {
+        CompactionStatsVO stats = new CompactionStatsVO();
+        stats.setEnabled(enabled);
+        stats.setRunning(running.get());
+        long planned = plannedBytes.get();
+        stats.setProgressPercent(planned > 0 ? Math.min(100, processedBytes.get() * 100.0 / planned) : 100);
+        stats.setRunCount(runCount.get());
+        stats.setFailureCount(failureCount.get());
+        stats.setLastRunStartMillis(lastRunStartMillis);
+        stats.setLastRunDurationMs(lastRunDurationMs);
+        stats.setMaxRunDurationMs(maxRunDurationMs);
+        stats.setSegmentsCompacted(segmentsCompacted.get());
+        stats.setSegmentsDropped(segmentsDropped.get());
+        stats.setRecordsWritten(recordsWritten.get());
+        stats.setBytesRead(bytesRead.get());
+        stats.setBytesWritten(bytesWritten.get());
+        stats.setBytesReclaimed(bytesReclaimed.get());
+        stats.setThrottledMs(budget.getThrottledMs());
+        int retired = 0;
+        CompactionSource raw = timeSeriesStore.getCompactionSource();
+        if (raw != null) {
+            retired += raw.getLog().getRetiredCount();
+        }
+        for (CompactionSource source : rollupStore.getCompactionSources()) {
+            retired += source.getLog().getRetiredCount();
+        }
+        stats.setRetiredSegments(retired);
+        return stats;
+    }
+
+    private void compact(CompactionSource source) throws IOException, InterruptedException {
+        MqttProperties.Compaction config = mqttProperties.getCompaction();
+        long retentionMs = source.getRetentionMs();
+        long cutoff = retentionMs > 0 ? System.currentTimeMillis() - retentionMs : Long.MIN_VALUE;
+        SegmentLog segmentLog = source.getLog();
+        List<SegmentFile> sealed = segmentLog.getSealedSegments();
+        if (sealed.isEmpty()) {
+            return;
+        }
+        Map<Integer, SegmentFile> sealedById = new HashMap<>();
+        for (SegmentFile segment : sealed) {
+            sealedById.put(segment.getId(), segment);
+        }
+
+        // 收集已封存段中的记录，按序列分组，并统计各段的有效字节
+        Map<Integer, Long> liveBytes = new HashMap<>();
+        List<SeriesRecords> allSeries = new ArrayList<>();
+        source.forEachIndex((lock, key, index) -> {
+            BlockIndex.View view;
+            synchronized (lock) {
+                view = index.view();
+            }
+            SeriesRecords series = null;
+            for (int i = 0; i < view.size(); i++) {
+                long location = view.location(i);
+                SegmentFile segment = sealedById.get((int) (location >>> 32));
+                if (segment == null) {
+                    continue;
+                }
+                if (series == null) {
+                    series = new SeriesRecords(lock, key, index);
+                    allSeries.add(series);
+                }
+                int offset = SegmentLog.offsetOf(location);
+                series.records.add(new CompactionSource.RecordRef(segment, offset, view.minTs(i), view.maxTs(i)));
+                if (view.maxTs(i) >= cutoff) {
+                    liveBytes.merge(segment.getId(), (long) segment.recordLength(offset), Long::sum);
+                }
+            }
+        });
+
+        // 整段过期直接删除；过期或无效数据占比高的段、相邻的小段合并改写
+        long segmentBytes = segmentLog.getSegmentBytes();
+        List<List<SegmentFile>> groups = new ArrayList<>();
+        List<SegmentFile> group = new ArrayList<>();
+        long groupLive = 0;
+        for (SegmentFile segment : sealed) {
+            long live = liveBytes.getOrDefault(segment.getId(), 0L);
+            long written = Math.max(1, segment.getWritePosition());
+            if (live == 0) {
+                plannedBytes.addAndGet(written);
+                dropSegment(segmentLog, segment, allSeries);
+                processedBytes.addAndGet(written);
+                continue;
+            }
+            boolean garbage = 1 - (double) live / written >= config.getMinGarbageRatio();
+            boolean small = written < segmentBytes / 4;
+            if ((garbage || small) && groupLive + live <= segmentBytes) {
+                group.add(segment);
+                groupLive += live;
+                continue;
+            }
+            closeGroup(groups, group, liveBytes, config);
+            group = new ArrayList<>();
+            groupLive = 0;
+            if (garbage || small) {
+                group.add(segment);
+                groupLive = live;
+            }
+        }
+        closeGroup(groups, group, liveBytes, config);
+
+        for (List<SegmentFile> candidates : groups) {
+            for (SegmentFile segment : candidates) {
+                plannedBytes.addAndGet(liveBytes.get(segment.getId()));
+            }
+        }
+        for (List<SegmentFile> candidates : groups) {
+            rewriteGroup(source, candidates, liveBytes, cutoff, allSeries);
+        }
+    }
+
+    /**
+     * 单个段只有在无效数据足够多时才值得改写，多个相邻小段总是合并
+     */
+    private static void closeGroup(List<List<SegmentFile>> groups, List<SegmentFile> group, Map<Integer, Long> liveBytes,
+                                   MqttProperties.Compaction config) {
+        if (group.size() > 1) {
+            groups.add(group);
+        } else if (group.size() == 1) {
+            SegmentFile segment = group.get(0);
+            double garbage = 1 - (double) liveBytes.get(segment.getId()) / Math.max(1, segment.getWritePosition());
+            if (garbage >= config.getMinGarbageRatio()) {
+                groups.add(group);
+            }
+        }
+    }
+
+    private void dropSegment(SegmentLog segmentLog, SegmentFile segment, List<SeriesRecords> allSeries) {
+        int id = segment.getId();
+        BlockIndex empty = new BlockIndex();
+        for (SeriesRecords series : allSeries) {
+            if (series.references(id)) {
+                synchronized (series.lock) {
+                    series.index.replace(location -> (int) (location >>> 32) == id, empty);
+                }
+            }
+        }
+        segmentLog.drop(segment);
+        segmentsDropped.incrementAndGet();
+        log.info("段文件已整体过期: {}", segment.getPath());
+    }
+
+    private void rewriteGroup(CompactionSource source, List<SegmentFile> group, Map<Integer, Long> liveBytes,
+                              long cutoff, List<SeriesRecords> allSeries) throws IOException, InterruptedException {
+        SegmentLog segmentLog = source.getLog();
+        Set<Integer> ids = new HashSet<>();
+        long live = 0;
+        for (SegmentFile segment : group) {
+            ids.add(segment.getId());
+            live += liveBytes.get(segment.getId());
+        }
+        // 重新编码可能比原记录略大，留出余量
+        SegmentFile output = segmentLog.createCompactionOutput(live + live / 8 + 64 * 1024);
+        int outputId = output.getId();
+        Map<SeriesRecords, BlockIndex> replacements = new LinkedHashMap<>();
+        long written = 0;
+        long records = 0;
+        try {
+            for (SeriesRecords series : allSeries) {
+                List<CompactionSource.RecordRef> inGroup = new ArrayList<>();
+                long read = 0;
+                for (CompactionSource.RecordRef record : series.records) {
+                    if (ids.contains(record.segment.getId())) {
+                        inGroup.add(record);
+                        if (record.maxTs >= cutoff) {
+                            read += record.segment.recordLength(record.offset);
+                        }
+                    }
+                }
+                if (inGroup.isEmpty()) {
+                    continue;
+                }
+                budget.acquire(read);
+                bytesRead.addAndGet(read);
+                BlockIndex replacement = new BlockIndex();
+                long[] outputBytes = new long[1];
+                source.rewrite(inGroup, cutoff, (count, minTs, maxTs, bitLength, words, wordCount) -> {
+                    int offset = output.append(series.key, count, minTs, maxTs, bitLength, words, wordCount);
+                    if (offset < 0) {
+                        throw new IOException("压缩输出段空间不足");
+                    }
+                    replacement.add(SegmentLog.location(outputId, offset), count, minTs, maxTs);
+                    outputBytes[0] += output.recordLength(offset);
+                });
+                budget.acquire(outputBytes[0]);
+                written += outputBytes[0];
+                records += replacement.size();
+                replacements.put(series, replacement);
+                processedBytes.addAndGet(read);
+            }
+            segmentLog.commitCompaction(output, group);
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            segmentLog.abortCompaction(output);
+            throw e;
+        }
+
+        // 输出段已生效，切换各序列索引；被替换的段等待宽限期后删除
+        for (Map.Entry<SeriesRecords, BlockIndex> entry : replacements.entrySet()) {
+            SeriesRecords series = entry.getKey();
+            synchronized (series.lock) {
+                series.index.replace(location -> ids.contains((int) (location >>> 32)), entry.getValue());
+            }
+        }
+        bytesWritten.addAndGet(written);
+        recordsWritten.addAndGet(records);
+        segmentsCompacted.addAndGet(group.size());
+        log.info("{} 段文件压缩完成: {}个段 -> {}, 有效数据 {} 字节 -> {} 字节", source.getName(), group.size(),
+                SegmentFile.fileName(outputId), live, written);
+    }
+
+    /**
+     * 一条序列在已封存段中的记录
+     */
+    private static final class SeriesRecords {
+
+        final Object lock;
+        final byte[] key;
+        final BlockIndex index;
+        final List<CompactionSource.RecordRef> records = new ArrayList<>();
+
+        SeriesRecords(Object lock, byte[] key, BlockIndex index) {
+            this.lock = lock;
+            this.key = key;
+            this.index = index;
+        }
+
+        boolean references(int segmentId) {
+            for (CompactionSource.RecordRef record : records) {
+                if (record.segment.getId() == segmentId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 读写速率令牌桶：超出上限时在调用线程上等待（压缩线程、导出请求线程）
+     */
+    static final class IoBudget {
+
+        private final long bytesPerSecond;
+        private long available;
+        private long lastRefillNanos = System.nanoTime();
+        private final AtomicLong throttledMs = new AtomicLong();
+
+        IoBudget(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            this.available = bytesPerSecond;
+        }
+
+        void acquire(long bytes) throws InterruptedException {
+            if (bytesPerSecond <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            available = Math.min(bytesPerSecond, available + (now - lastRefillNanos) * bytesPerSecond / 1_000_000_000L);
+            lastRefillNanos = now;
+            available -= bytes;
+            if (available < 0) {
+                long waitMs = -available * 1000 / bytesPerSecond;
+                throttledMs.addAndGet(waitMs);
+                Thread.sleep(waitMs);
+            }
+        }
+
+        long getThrottledMs() {
+            return throttledMs.get();
+        }
+    }
+}
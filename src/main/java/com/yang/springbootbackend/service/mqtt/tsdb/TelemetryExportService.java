@@ -0,0 +1,300 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.ExportTaskVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 遥测数据批量导出
+ * 按 塔吊 → 指标 的顺序逐条序列扫描原始数据，每个点直接编码为一行CSV写入固定大小的缓冲区，
+ * 缓冲区写满后经令牌桶限速写出，内存占用与导出的时间范围和数据量无关。
+ * 导出在请求线程上以最低优先级执行，同时进行的导出数量受限；客户端断开或调用 {@link #cancel} 后停止扫描
+ */
+@Service
+@Slf4j
+public class TelemetryExportService {
+
+    private static final byte[] CSV_HEADER = "crane_id,metric,ts,value\n".getBytes(StandardCharsets.US_ASCII);
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    @Autowired
+    private TimeSeriesStore timeSeriesStore;
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, Task> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * 登记一个导出任务
+     *
+     * @param craneIds       塔吊ID，为空时导出全部塔吊
+     * @param metrics        指标
+     * @param fromTs         起始时间（含，毫秒）
+     * @param toTs           结束时间（不含，毫秒）
+     * @param bytesPerSecond 写出速率上限（字节/秒），0表示不限速
+     * @return 任务，同时进行的导出已达上限时返回null
+     */
+    public synchronized Task open(List<String> craneIds, List<TelemetryMetric> metrics, long fromTs, long toTs,
+                                  long bytesPerSecond) {
+        if (tasks.size() >= mqttProperties.getExport().getMaxConcurrent()) {
+            return null;
+        }
+        List<String> cranes = craneIds == null || craneIds.isEmpty() ? timeSeriesStore.getCraneIds() : craneIds;
+        Task task = new Task(nextId.getAndIncrement(), cranes, metrics, fromTs, toTs, bytesPerSecond);
+        tasks.put(task.id, task);
+        return task;
+    }
+
+    /**
+     * 执行导出并注销任务；客户端断开时抛出IOException，被取消时正常结束
+     *
+     * @param task 任务
+     * @param out  输出流，由调用方关闭
+     */
+    public void write(Task task, OutputStream out) throws IOException {
+        Thread thread = Thread.currentThread();
+        int priority = thread.getPriority();
+        thread.setPriority(Thread.MIN_PRIORITY);
+        CsvWriter writer = new CsvWriter(task, out, Math.max(1024, mqttProperties.getExport().getChunkBytes()));
+        try {
+            writer.write(CSV_HEADER);
+            for (String craneId : task.craneIds) {
+                byte[] crane = csvField(craneId);
+                for (TelemetryMetric metric : task.metrics) {
+                    if (task.cancelled) {
+                        break;
+                    }
+                    byte[] prefix = concat(crane, (',' + metric.getKey() + ',').getBytes(StandardCharsets.US_ASCII));
+                    timeSeriesStore.scan(craneId, metric, task.fromTs, task.toTs, (ts, value) -> {
+                        try {
+                            writer.row(prefix, ts, value);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return !task.cancelled;
+                    });
+                }
+            }
+            writer.flush();
+            if (task.cancelled) {
+                log.info("导出任务 {} 已取消，已写出 {} 行", task.id, task.rows.get());
+            }
+        } catch (UncheckedIOException e) {
+            log.info("导出任务 {} 客户端已断开，已写出 {} 行", task.id, task.rows.get());
+            throw e.getCause();
+        } finally {
+            tasks.remove(task.id);
+            thread.setPriority(priority);
+        }
+    }
+
+    /**
+     * 取消导出任务，任务在写出下一块数据前停止
+     *
+     * @return 任务是否存在
+     */
+    public boolean cancel(long id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            return false;
+        }
+        task.cancelled = true;
+        return true;
+    }
+
+    /**
+     * 获取进行中的导出任务
+     */
+    public List<ExportTaskVO> listTasks() {
+        List<ExportTaskVO> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Task task : tasks.values()) {
+            ExportTaskVO vo = new ExportTaskVO();
+            vo.setId(task.id);
+            vo.setCraneCount(task.craneIds.size());
+            List<String> metricKeys = new ArrayList<>(task.metrics.size());
+            for (TelemetryMetric metric : task.metrics) {
+                metricKeys.add(metric.getKey());
+            }
+            vo.setMetrics(metricKeys);
+            vo.setFromTs(task.fromTs);
+            vo.setToTs(task.toTs);
+            vo.setStartMillis(task.startMillis);
+            vo.setElapsedMs(now - task.startMillis);
+            vo.setRows(task.rows.get());
+            vo.setBytes(task.bytes.get());
+            vo.setBytesPerSecondLimit(task.bytesPerSecond);
+            vo.setThrottledMs(task.budget.getThrottledMs());
+            vo.setCancelled(task.cancelled);
+            result.add(vo);
+        }
+        result.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        return result;
+    }
+
+    /**
+     * 塔吊ID含逗号、引号或换行时按CSV规则加引号
+     */
+    static byte[] csvField(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        String field = quote ? '"' + value.replace("\"", "\"\"") + '"' : value;
+        return field.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * 导出任务
+     */
+    public static final class Task {
+
+        private final long id;
+        private final List<String> craneIds;
+        private final List<TelemetryMetric> metrics;
+        private final long fromTs;
+        private final long toTs;
+        private final long bytesPerSecond;
+        private final long startMillis = System.currentTimeMillis();
+        private final TelemetryCompactor.IoBudget budget;
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile boolean cancelled;
+
+        private Task(long id, List<String> craneIds, List<TelemetryMetric> metrics, long fromTs, long toTs,
+                     long bytesPerSecond) {
+            this.id = id;
+            this.craneIds = craneIds;
+            this.metrics = metrics;
+            this.fromTs = fromTs;
+            this.toTs = toTs;
+            this.bytesPerSecond = bytesPerSecond;
+            this.budget = new TelemetryCompactor.IoBudget(bytesPerSecond);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        public long getThrottledMs() {
+            return budget.getThrottledMs();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * CSV编码：数字逐位写入字节缓冲区，不为每行创建字符串
+     */
+    private static final class CsvWriter {
+
+        private final Task task;
+        private final OutputStream out;
+        private final byte[] chunk;
+        private final StringBuilder number = new StringBuilder(32);
+        private int size;
+
+        CsvWriter(Task task, OutputStream out, int chunkBytes) {
+            this.task = task;
+            this.out = out;
+            this.chunk = new byte[chunkBytes];
+        }
+
+        void row(byte[] prefix, long ts, double value) throws IOException {
+            // 一行最长：前缀 + 20位时间戳 + 逗号 + 最长24位数值 + 换行
+            if (size + prefix.length + 48 > chunk.length) {
+                flushChunk();
+            }
+            System.arraycopy(prefix, 0, chunk, size, prefix.length);
+            size += prefix.length;
+            appendLong(ts);
+            chunk[size++] = ',';
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                number.setLength(0);
+                number.append(value);
+                for (int i = 0; i < number.length(); i++) {
+                    chunk[size++] = (byte) number.charAt(i);
+                }
+            }
+            chunk[size++] = '\n';
+            task.rows.incrementAndGet();
+        }
+
+        void write(byte[] bytes) throws IOException {
+            if (size + bytes.length > chunk.length) {
+                flushChunk();
+            }
+            System.arraycopy(bytes, 0, chunk, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void flush() throws IOException {
+            flushChunk();
+            out.flush();
+        }
+
+        private void flushChunk() throws IOException {
+            if (size == 0) {
+                return;
+            }
+            try {
+                task.budget.acquire(size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("导出被中断");
+            }
+            out.write(chunk, 0, size);
+            task.bytes.addAndGet(size);
+            size = 0;
+        }
+
+        private void appendLong(long value) {
+            if (value < 0) {
+                chunk[size++] = '-';
+                value = -value;
+            }
+            int start = size;
+            do {
+                chunk[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte tmp = chunk[i];
+                chunk[i] = chunk[j];
+                chunk[j] = tmp;
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 历史遥测查询
+ * 按时间范围和返回点数上限选择分辨率：原始点数不超过上限时返回原始数据，否则选择桶数不超过上限的最细汇总粒度，
+ * 最粗的粒度仍超过上限时把相邻的桶合并（见 {@link #bucketMs}），返回的桶数不超过上限、覆盖完整的时间范围。
+ * 未启用汇总时只能返回原始数据，达到上限后以截断标记结尾，不会静默截断。
+ * 结果边扫描边写出（NDJSON或定长二进制），不在内存中组装完整列表，首字节在扫描开始前即写出
+ */
+@Service
+@Slf4j
+public class TelemetryHistoryService {
+
+    /**
+     * NDJSON每写出多少行刷新一次
+     */
+    private static final int FLUSH_EVERY = 512;
+
+    /**
+     * 合并相邻桶时每次从汇总存储读取的桶数，限制内存占用
+     */
+    private static final int QUERY_BUCKETS = 4096;
+
+    @Autowired
+    private TimeSeriesStore timeSeriesStore;
+
+    @Autowired
+    private RollupStore rollupStore;
+
+    /**
+     * 输出格式
+     */
+    public enum Format {
+        /**
+         * 每行一个JSON对象，第一行为查询信息（汇总数据含合并后的桶宽度bucketMs），
+         * 原始数据被截断时最后一行为 {"truncated":true,"next":下一个未返回点的时间戳}
+         */
+        NDJSON,
+        /**
+         * 大端定长记录：1字节分辨率（0原始、1秒、2分钟、3小时），
+         * 之后原始数据每点为 时间戳(8) + 数值(8)，汇总每桶为 起始时间(8) + 数量(8) + 最小/最大/均值/最后值(各8)；
+         * 原始数据被截断时以一条时间戳为 Long.MIN_VALUE 的标记记录结尾，数值位置为下一个未返回点的时间戳(long)
+         */
+        BINARY
+    }
+
+    /**
+     * 选择分辨率
+     *
+     * @return 汇总粒度，返回null表示使用原始数据
+     */
+    public RollupTier chooseTier(String craneId, TelemetryMetric metric, long fromTs, long toTs, int maxPoints) {
+        if (timeSeriesStore.estimatePoints(craneId, metric, fromTs, toTs) <= maxPoints) {
+            return null;
+        }
+        if (!rollupStore.isEnabled()) {
+            // 没有汇总数据，只能返回原始数据，超过上限时以截断标记结尾
+            return null;
+        }
+        long range = toTs - fromTs;
+        for (RollupTier tier : RollupTier.values()) {
+            if ((range + tier.getWidthMs() - 1) / tier.getWidthMs() <= maxPoints) {
+                return tier;
+            }
+        }
+        return RollupTier.HOUR;
+    }
+
+    /**
+     * 输出桶宽度：粒度的桶数不超过上限时即粒度宽度，否则为相邻若干个桶合并后的宽度
+     *
+     * @param tier 汇总粒度
+     * @return 桶宽度（毫秒），是粒度宽度的整数倍
+     */
+    public long bucketMs(RollupTier tier, long fromTs, long toTs, int maxPoints) {
+        long width = tier.getWidthMs();
+        long buckets = Math.max(1, (toTs - firstBucketStart(tier, fromTs) + width - 1) / width);
+        return width * ((buckets + maxPoints - 1) / maxPoints);
+    }
+
+    /**
+     * 查询并写出结果，最多写出 maxPoints 个点或桶；客户端断开时停止扫描
+     *
+     * @param tier 分辨率，null表示原始数据
+     */
+    public void write(String craneId, TelemetryMetric metric, long fromTs, long toTs, int maxPoints,
+                      RollupTier tier, Format format, OutputStream out) throws IOException {
+        HistoryWriter writer = format == Format.BINARY ? new BinaryWriter(out) : new JsonWriter(out);
+        long bucketMs = tier != null ? bucketMs(tier, fromTs, toTs, maxPoints) : 0;
+        writer.header(craneId, metric, tier, bucketMs, fromTs, toTs);
+        writer.flush();
+        try {
+            if (tier == null) {
+                writePoints(craneId, metric, fromTs, toTs, maxPoints, writer);
+            } else {
+                writeBuckets(craneId, metric, fromTs, toTs, tier, bucketMs, writer);
+            }
+        } catch (UncheckedIOException e) {
+            log.debug("历史查询客户端已断开: {}/{}", craneId, metric.getKey());
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * 写出原始数据，达到上限时写出截断标记
+     */
+    private void writePoints(String craneId, TelemetryMetric metric, long fromTs, long toTs, int maxPoints,
+                             HistoryWriter writer) throws IOException {
+        int[] written = new int[1];
+        long[] next = new long[1];
+        boolean complete = timeSeriesStore.scan(craneId, metric, fromTs, toTs, (ts, value) -> {
+            if (written[0] == maxPoints) {
+                next[0] = ts;
+                return false;
+            }
+            try {
+                writer.point(ts, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            written[0]++;
+            return true;
+        });
+        if (!complete) {
+            writer.truncated(next[0]);
+        }
+    }
+
+    /**
+     * 写出汇总数据：按 bucketMs 合并相邻的桶，分段读取汇总存储，内存占用与请求的时间范围无关
+     */
+    private void writeBuckets(String craneId, TelemetryMetric metric, long fromTs, long toTs, RollupTier tier,
+                              long bucketMs, HistoryWriter writer) throws IOException {
+        long base = firstBucketStart(tier, fromTs);
+        long windowMs = Math.max(1, QUERY_BUCKETS / (bucketMs / tier.getWidthMs())) * bucketMs;
+        RollupBucket group = null;
+        for (long windowFrom = base; windowFrom < toTs; windowFrom += windowMs) {
+            long windowTo = Math.min(toTs, windowFrom + windowMs);
+            for (RollupBucket bucket : rollupStore.query(craneId, metric, tier, windowFrom, windowTo)) {
+                long groupStart = base + Math.floorDiv(bucket.getStart() - base, bucketMs) * bucketMs;
+                if (group != null && group.getStart() != groupStart) {
+                    writer.bucket(group);
+                    group = null;
+                }
+                if (group == null) {
+                    group = new RollupBucket(groupStart);
+                }
+                group.merge(bucket);
+            }
+        }
+        if (group != null) {
+            writer.bucket(group);
+        }
+    }
+
+    /**
+     * 范围内第一个完整桶的起始时间，汇总查询按桶起始时间比较
+     */
+    private static long firstBucketStart(RollupTier tier, long fromTs) {
+        long start = tier.bucketStart(fromTs);
+        return start == fromTs ? start : start + tier.getWidthMs();
+    }
+
+    private interface HistoryWriter {
+
+        void header(String craneId, TelemetryMetric metric, RollupTier tier, long bucketMs, long fromTs, long toTs)
+                throws IOException;
+
+        void point(long ts, double value) throws IOException;
+
+        void bucket(RollupBucket bucket) throws IOException;
+
+        /**
+         * 原始数据达到点数上限
+         *
+         * @param nextTs 下一个未返回点的时间戳
+         */
+        void truncated(long nextTs) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * NDJSON输出：数字直接拼接，不经过对象序列化
+     */
+    private static final class JsonWriter implements HistoryWriter {
+
+        private final OutputStream out;
+        private final StringBuilder line = new StringBuilder(160);
+        private int pending;
+
+        JsonWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void header(String craneId, TelemetryMetric metric, RollupTier tier, long bucketMs, long fromTs,
+                           long toTs) throws IOException {
+            line.append("{\"craneId\":");
+            appendString(craneId);
+            line.append(",\"metric\":\"").append(metric.getKey())
+                    .append("\",\"resolution\":\"").append(tier == null ? "raw" : tier.getKey()).append('"');
+            if (tier != null) {
+                line.append(",\"bucketMs\":").append(bucketMs);
+            }
+            line.append(",\"from\":").append(fromTs)
+                    .append(",\"to\":").append(toTs).append('}');
+            endLine();
+        }
+
+        @Override
+        public void point(long ts, double value) throws IOException {
+            line.append("{\"ts\":").append(ts).append(",\"value\":");
+            appendNumber(value);
+            line.append('}');
+            endLine();
+        }
+
+        @Override
+        public void bucket(RollupBucket bucket) throws IOException {
+            line.append("{\"ts\":").append(bucket.getStart()).append(",\"count\":").append(bucket.getCount());
+            line.append(",\"min\":");
+            appendNumber(bucket.getMin());
+            line.append(",\"max\":");
+            appendNumber(bucket.getMax());
+            line.append(",\"mean\":");
+            appendNumber(bucket.getMean());
+            line.append(",\"last\":");
+            appendNumber(bucket.getLast());
+            line.append(",\"p50\":");
+            appendNumber(bucket.quantile(0.5));
+            line.append(",\"p99\":");
+            appendNumber(bucket.quantile(0.99));
+            line.append('}');
+            endLine();
+        }
+
+        @Override
+        public void truncated(long nextTs) throws IOException {
+            line.append("{\"truncated\":true,\"next\":").append(nextTs).append('}');
+            endLine();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            pending = 0;
+        }
+
+        private void endLine() throws IOException {
+            line.append('\n');
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+            line.setLength(0);
+            if (++pending >= FLUSH_EVERY) {
+                flush();
+            }
+        }
+
+        private void appendNumber(double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                line.append("null");
+            } else {
+                line.append(value);
+            }
+        }
+
+        private void appendString(String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    line.append('\\').append(c);
+                } else if (c < 0x20) {
+                    line.append(String.format("\\u%04x", (int) c));
+                } else {
+                    line.append(c);
+                }
+            }
+            line.append('"');
+        }
+    }
+
+    /**
+     * 定长二进制输出
+     */
+    private static final class BinaryWriter implements HistoryWriter {
+
+        private final DataOutputStream out;
+
+        BinaryWriter(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        @Override
+        public void header(String craneId, TelemetryMetric metric, RollupTier tier, long bucketMs, long fromTs,
+                           long toTs) throws IOException {
+            out.writeByte(tier == null ? 0 : tier.ordinal() + 1);
+        }
+
+        @Override
+        public void point(long ts, double value) throws IOException {
+            out.writeLong(ts);
+            out.writeDouble(value);
+        }
+
+        @Override
+        public void bucket(RollupBucket bucket) throws IOException {
+            out.writeLong(bucket.getStart());
+            out.writeLong(bucket.getCount());
+            out.writeDouble(bucket.getMin());
+            out.writeDouble(bucket.getMax());
+            out.writeDouble(bucket.getMean());
+            out.writeDouble(bucket.getLast());
+        }
+
+        @Override
+        public void truncated(long nextTs) throws IOException {
+            out.writeLong(Long.MIN_VALUE);
+            out.writeLong(nextTs);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+
+import java.util.function.Function;
+
+/**
+ * 存储的遥测指标
+ * 每个指标对应读数DTO中的一个数值字段，序列按 (塔吊, 指标) 划分
+ */
+public enum TelemetryMetric {
+
+    GAS("gas", SensorDataDTO.class, r -> ((SensorDataDTO) r).getGasValue()),
+    RAIN("rain", SensorDataDTO.class, r -> ((SensorDataDTO) r).getRainValue()),
+    HEIGHT("height", SensorDataDTO.class, r -> ((SensorDataDTO) r).getHeight()),
+    LUX("lux", SensorDataDTO.class, r -> ((SensorDataDTO) r).getLuxValue()),
+    WIND("wind", SensorDataDTO.class, r -> ((SensorDataDTO) r).getWindValue()),
+    TEMPERATURE("temperature", SensorDataDTO.class, r -> ((SensorDataDTO) r).getTemperature()),
+    ANGLE("angle", AngleDataDTO.class, r -> ((AngleDataDTO) r).getAngle());
+
+    private static final TelemetryMetric[] SENSOR_METRICS = forType(SensorDataDTO.class);
+    private static final TelemetryMetric[] ANGLE_METRICS = forType(AngleDataDTO.class);
+    private static final TelemetryMetric[] NONE = new TelemetryMetric[0];
+
+    private final String key;
+    private final Class<? extends TelemetryReading> readingType;
+    private final Function<TelemetryReading, Double> extractor;
+
+    TelemetryMetric(String key, Class<? extends TelemetryReading> readingType,
+                    Function<TelemetryReading, Double> extractor) {
+        this.key = key;
+        this.readingType = readingType;
+        this.extractor = extractor;
+    }
+
+    /**
+     * 指标名，用于接口参数和存储中的序列键
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 从读数中取出指标值
+     *
+     * @param reading 读数，类型需与指标对应
+     * @return 指标值，读数未携带时返回null
+     */
+    public Double extract(TelemetryReading reading) {
+        return extractor.apply(reading);
+    }
+
+    /**
+     * 按指标名查找
+     *
+     * @param key 指标名
+     * @return 指标，不存在时返回null
+     */
+    public static TelemetryMetric fromKey(String key) {
+        for (TelemetryMetric metric : values()) {
+            if (metric.key.equals(key)) {
+                return metric;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取读数类型包含的指标
+     *
+     * @param reading 读数
+     * @return 指标数组，不支持的读数类型返回空数组
+     */
+    public static TelemetryMetric[] of(TelemetryReading reading) {
+        if (reading instanceof SensorDataDTO) {
+            return SENSOR_METRICS;
+        }
+        if (reading instanceof AngleDataDTO) {
+            return ANGLE_METRICS;
+        }
+        return NONE;
+    }
+
+    private static TelemetryMetric[] forType(Class<? extends TelemetryReading> type) {
+        int n = 0;
+        TelemetryMetric[] all = values();
+        TelemetryMetric[] result = new TelemetryMetric[all.length];
+        for (TelemetryMetric metric : all) {
+            if (metric.readingType == type) {
+                result[n++] = metric;
+            }
+        }
+        TelemetryMetric[] trimmed = new TelemetryMetric[n];
+        System.arraycopy(result, 0, trimmed, 0, n);
+        return trimmed;
+    }
+}
@@ -0,0 +1,559 @@
+package com.yang.springbootbackend.service.mqtt.tsdb;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.vo.TimeSeriesStatsVO;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.TelemetryListener;
+import com.yang.springbootbackend.service.mqtt.ingest.DurableSink;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 塔吊遥测时序存储
+ * 作为 {@link TelemetryListener} 接收处理器完成的读数，按 (塔吊, 指标) 分序列写入内存中的Gorilla压缩块，
+ * 块写满（或超过最长保留时间）后封存，经有界队列交给落盘线程追加到内存映射的段文件，段文件只追加、写满后切换。
+ * 写入一个点只是一次哈希查找和几十个比特的位运算，段文件的追加、切换和刷盘都在落盘线程中进行，不占用入站线程；
+ * 落盘队列满时丢弃新的点并计数。范围查询按块的时间范围跳过无关块，顺序解码命中的块。
+ * 进程重启时扫描段文件重建索引；尚未封存的写入中块在正常关闭时落盘，进程崩溃时最多丢失 maxHeadAgeSeconds 内的数据。
+ * 作为 {@link DurableSink}，写入中块里的点在落盘前阻止入站预写日志推进检查点，崩溃后这些点由日志重放补回
+ */
+@Component
+@Slf4j
+public class TimeSeriesStore implements TelemetryListener, DurableSink {
+
+    /**
+     * 落盘线程等待封存块时检查持久化请求的间隔（毫秒）
+     */
+    private static final long PERSIST_CHECK_MS = 50;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    /**
+     * 塔吊ID -> 按指标序号排列的序列
+     */
+    private final Map<String, Series[]> seriesByCrane = new ConcurrentHashMap<>();
+
+    private final LongAdder appendedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    /**
+     * 写入序号，每个点在序列锁内分配一个
+     */
+    private final AtomicLong appendTicks = new AtomicLong();
+
+    /**
+     * 写入序号小于该值的点都已落盘，由落盘线程在每次定期落盘和持久化请求后更新
+     */
+    private volatile long durableTick = 1;
+
+    /**
+     * 请求落盘线程封存全部写入中块，完成后清除
+     */
+    private volatile boolean persistRequested;
+
+    /**
+     * 已封存、等待写入段文件的块，每个元素对应所属序列的一个待落盘块
+     */
+    private BlockingQueue<Series> sealQueue;
+
+    private volatile boolean enabled;
+    private int blockBytes;
+    private SegmentLog segmentLog;
+    private Thread flushThread;
+
+    @PostConstruct
+    public void start() {
+        MqttProperties.Tsdb config = mqttProperties.getTsdb();
+        enabled = config.isEnabled();
+        if (!enabled) {
+            log.info("遥测时序存储未启用");
+            return;
+        }
+        blockBytes = Math.max(256, config.getBlockBytes());
+        // 段大小至少容纳一个块，且不超过单次映射上限
+        long segmentBytes = Math.min(Integer.MAX_VALUE, Math.max(config.getSegmentBytes(), blockBytes * 2L + 1024));
+        Path directory = Paths.get(config.getDirectory());
+        segmentLog = new SegmentLog(directory, segmentBytes);
+        try {
+            segmentLog.open(this::recoverBlock);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开时序存储目录失败: " + directory.toAbsolutePath(), e);
+        }
+
+        // 压缩产生的段编号较大，恢复后按时间重新排序
+        forEachSeries(series -> series.getIndex().sortByMinTs());
+
+        sealQueue = new ArrayBlockingQueue<>(Math.max(1, config.getSealQueueCapacity()));
+        flushThread = new Thread(this::flushLoop, "tsdb-flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+        log.info("遥测时序存储启动完成，目录: {}, 段文件: {}, 序列: {}", directory.toAbsolutePath(),
+                segmentLog.getSegmentCount(), countSeries());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        if (flushThread != null) {
+            flushThread.interrupt();
+            try {
+                flushThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 待落盘的块和写入中的块全部落盘
+        sealAll();
+        segmentLog.close();
+    }
+
+    @Override
+    public void onReadings(MqttRoutingContext context, List<? extends TelemetryReading> readings) {
+        if (!enabled) {
+            return;
+        }
+        for (TelemetryReading reading : readings) {
+            TelemetryMetric[] metrics = TelemetryMetric.of(reading);
+            if (metrics.length == 0 || reading.getCraneId() == null) {
+                continue;
+            }
+            long ts = reading.getTs();
+            Series[] series = seriesOf(reading.getCraneId());
+            for (TelemetryMetric metric : metrics) {
+                Double value = metric.extract(reading);
+                if (value != null) {
+                    append(series, reading.getCraneId(), metric, ts, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入一个点
+     *
+     * @param craneId 塔吊ID
+     * @param metric  指标
+     * @param ts      时间戳（毫秒）
+     * @param value   数值
+     */
+    public void append(String craneId, TelemetryMetric metric, long ts, double value) {
+        if (enabled) {
+            append(seriesOf(craneId), craneId, metric, ts, value);
+        }
+    }
+
+    /**
+     * 按写入顺序扫描时间范围内的点
+     *
+     * @param craneId  塔吊ID
+     * @param metric   指标
+     * @param fromTs   起始时间（含，毫秒）
+     * @param toTs     结束时间（不含，毫秒）
+     * @param consumer 点消费方，返回false时停止
+     * @return 扫描是否完整结束（消费方未要求停止）
+     */
+    public boolean scan(String craneId, TelemetryMetric metric, long fromTs, long toTs, PointConsumer consumer) {
+        Series[] all = enabled ? seriesByCrane.get(craneId) : null;
+        Series series = all != null ? all[metric.ordinal()] : null;
+        if (series == null) {
+            return true;
+        }
+        Series.Snapshot snapshot = series.snapshot();
+        BlockIndex.View blocks = snapshot.blocks;
+        for (int i = 0; i < blocks.size(); i++) {
+            if (!blocks.overlaps(i, fromTs, toTs)) {
+                continue;
+            }
+            long location = blocks.location(i);
+            SegmentFile segment = segmentLog.segmentOf(location);
+            if (segment == null) {
+                continue;
+            }
+            int offset = SegmentLog.offsetOf(location);
+            if (!GorillaDecoder.decode(segment.getBuffer(), segment.dataOffset(offset), segment.count(offset),
+                    fromTs, toTs, consumer)) {
+                return false;
+            }
+        }
+        for (Series.HeadCopy head : snapshot.heads) {
+            if (head.maxTs >= fromTs && head.minTs < toTs
+                    && !GorillaDecoder.decode(head.data, 0, head.count, fromTs, toTs, consumer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 估算时间范围内的点数：与范围有交集的块的点数之和，是实际点数的上界
+     *
+     * @param craneId 塔吊ID
+     * @param metric  指标
+     * @param fromTs  起始时间（含，毫秒）
+     * @param toTs    结束时间（不含，毫秒）
+     * @return 点数上界
+     */
+    public long estimatePoints(String craneId, TelemetryMetric metric, long fromTs, long toTs) {
+        Series[] all = enabled ? seriesByCrane.get(craneId) : null;
+        Series series = all != null ? all[metric.ordinal()] : null;
+        if (series == null) {
+            return 0;
+        }
+        BlockIndex.View blocks;
+        long points = 0;
+        synchronized (series) {
+            blocks = series.getIndex().view();
+            for (GorillaEncoder head : series.unsealed()) {
+                if (head.getMaxTs() >= fromTs && head.getMinTs() < toTs) {
+                    points += head.getCount();
+                }
+            }
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            if (blocks.overlaps(i, fromTs, toTs)) {
+                SegmentFile segment = segmentLog.segmentOf(blocks.location(i));
+                if (segment != null) {
+                    points += segment.count(SegmentLog.offsetOf(blocks.location(i)));
+                }
+            }
+        }
+        return points;
+    }
+
+    @Override
+    public long mark() {
+        return appendTicks.get();
+    }
+
+    @Override
+    public boolean isDurable(long mark) {
+        return durableTick > mark;
+    }
+
+    /**
+     * 请求落盘线程封存全部写入中块并刷新段文件，不等待 maxHeadAgeSeconds
+     */
+    @Override
+    public void persist(long timeoutMs) {
+        if (!enabled) {
+            return;
+        }
+        long mark = mark();
+        persistRequested = true;
+        if (!DurableSink.awaitDurable(this, mark, timeoutMs)) {
+            log.warn("时序存储未能在 {}ms 内落盘写入中的块", timeoutMs);
+        }
+    }
+
+    /**
+     * 获取有数据的塔吊ID
+     */
+    public List<String> getCraneIds() {
+        List<String> craneIds = new ArrayList<>(seriesByCrane.keySet());
+        Collections.sort(craneIds);
+        return craneIds;
+    }
+
+    /**
+     * 获取存储运行指标
+     */
+    public TimeSeriesStatsVO getStats() {
+        TimeSeriesStatsVO stats = new TimeSeriesStatsVO();
+        stats.setEnabled(enabled);
+        stats.setAppendedCount(appendedCount.sum());
+        stats.setDroppedCount(droppedCount.sum());
+        long[] totals = new long[5];
+        forEachSeries(series -> {
+            synchronized (series) {
+                totals[0]++;
+                totals[1] += series.getIndex().size();
+                totals[2] += series.getIndex().getEntryCount();
+                for (GorillaEncoder head : series.unsealed()) {
+                    totals[3] += head.getCount();
+                }
+                totals[4] += series.getPendingCount();
+            }
+        });
+        stats.setSeriesCount((int) totals[0]);
+        stats.setSealedBlocks(totals[1]);
+        stats.setSealedPoints(totals[2]);
+        stats.setHeadPoints(totals[3]);
+        stats.setPendingBlocks((int) totals[4]);
+        long storedBytes = enabled ? segmentLog.getStoredBytes() : 0;
+        stats.setSegmentCount(enabled ? segmentLog.getSegmentCount() : 0);
+        stats.setStoredBytes(storedBytes);
+        stats.setBytesPerPoint(totals[2] > 0 ? (double) storedBytes / totals[2] : 0);
+        return stats;
+    }
+
+    private void append(Series[] all, String craneId, TelemetryMetric metric, long ts, double value) {
+        int index = metric.ordinal();
+        Series series = all[index];
+        if (series == null) {
+            synchronized (all) {
+                series = all[index];
+                if (series == null) {
+                    series = new Series(craneId, metric, blockBytes);
+                    all[index] = series;
+                }
+            }
+        }
+        synchronized (series) {
+            long tick = appendTicks.incrementAndGet();
+            if (!series.appendToHead(ts, value, tick)) {
+                // 块已满：交给落盘线程，队列满时丢弃这个点，入站线程不等待
+                if (!sealQueue.offer(series)) {
+                    droppedCount.increment();
+                    return;
+                }
+                series.sealHead();
+                series.appendToHead(ts, value, tick);
+            }
+        }
+        appendedCount.increment();
+    }
+
+    private Series[] seriesOf(String craneId) {
+        Series[] series = seriesByCrane.get(craneId);
+        if (series == null) {
+            series = seriesByCrane.computeIfAbsent(craneId, k -> new Series[TelemetryMetric.values().length]);
+        }
+        return series;
+    }
+
+    /**
+     * 原始数据的压缩来源：小块重新编码合并为满块，丢弃过期的点
+     *
+     * @return 未启用时返回null
+     */
+    CompactionSource getCompactionSource() {
+        if (!enabled) {
+            return null;
+        }
+        return new CompactionSource() {
+            @Override
+            public String getName() {
+                return "raw";
+            }
+
+            @Override
+            public SegmentLog getLog() {
+                return segmentLog;
+            }
+
+            @Override
+            public long getRetentionMs() {
+                return TimeUnit.HOURS.toMillis(mqttProperties.getCompaction().getRawRetentionHours());
+            }
+
+            @Override
+            public void forEachIndex(IndexVisitor visitor) {
+                forEachSeries(series -> visitor.visit(series, series.getKeyBytes(), series.getIndex()));
+            }
+
+            @Override
+            public void rewrite(List<RecordRef> records, long cutoff, RecordSink sink) throws IOException {
+                GorillaEncoder encoder = new GorillaEncoder(blockBytes);
+                try {
+                    for (RecordRef record : records) {
+                        SegmentFile segment = record.segment;
+                        GorillaDecoder.decode(segment.getBuffer(), segment.dataOffset(record.offset),
+                                segment.count(record.offset), cutoff, Long.MAX_VALUE, (ts, value) -> {
+                                    if (!encoder.append(ts, value)) {
+                                        writeBlock(encoder, sink);
+                                        encoder.append(ts, value);
+                                    }
+                                    return true;
+                                });
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                if (encoder.getCount() > 0) {
+                    writeBlock(encoder, sink);
+                }
+            }
+        };
+    }
+
+    private static void writeBlock(GorillaEncoder encoder, CompactionSource.RecordSink sink) {
+        try {
+            sink.write(encoder.getCount(), encoder.getMinTs(), encoder.getMaxTs(), encoder.getBitLength(),
+                    encoder.getWords(), encoder.getWordCount());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        encoder.reset();
+    }
+
+    /**
+     * 落盘线程：封存的块到达后立即写入段文件，每隔 flushIntervalMs 封存超龄的写入中块并刷新当前段
+     */
+    private void flushLoop() {
+        long interval = Math.max(100, mqttProperties.getTsdb().getFlushIntervalMs());
+        long nextFlush = System.currentTimeMillis() + interval;
+        while (enabled) {
+            try {
+                long wait = Math.min(PERSIST_CHECK_MS, Math.max(1, nextFlush - System.currentTimeMillis()));
+                Series series = sealQueue.poll(wait, TimeUnit.MILLISECONDS);
+                if (series != null) {
+                    writePending(series);
+                    drainSealed();
+                }
+                if (persistRequested) {
+                    persistRequested = false;
+                    persistAll();
+                } else if (System.currentTimeMillis() >= nextFlush) {
+                    flush();
+                    nextFlush = System.currentTimeMillis() + interval;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("时序存储刷盘失败", e);
+            }
+        }
+    }
+
+    private void drainSealed() {
+        Series series;
+        while ((series = sealQueue.poll()) != null) {
+            writePending(series);
+        }
+    }
+
+    /**
+     * 把序列最早封存的块追加到段文件并登记索引
+     * 块在待落盘期间不再变化，追加时不持有序列锁，入站线程可以继续写入新的块
+     *
+     * @return 是否写入了一个块
+     */
+    private boolean writePending(Series series) {
+        GorillaEncoder block;
+        synchronized (series) {
+            block = series.peekPending();
+        }
+        if (block == null) {
+            return false;
+        }
+        long location = segmentLog.append(series.getKeyBytes(), block);
+        synchronized (series) {
+            series.pendingWritten(location);
+        }
+        return true;
+    }
+
+    /**
+     * 定期落盘：封存超过最长保留时间的写入中块，并刷新当前段文件
+     * 刷新后仍未落盘的只有留在内存中的写入中块，其中最早的写入序号即新的持久化位置；
+     * 遍历开始后写入的点序号都不小于 limit
+     */
+    private void flush() {
+        long deadline = System.currentTimeMillis()
+                - TimeUnit.SECONDS.toMillis(mqttProperties.getTsdb().getMaxHeadAgeSeconds());
+        long[] minTick = {appendTicks.get() + 1};
+        forEachSeries(series -> {
+            synchronized (series) {
+                if (series.getHead().getCount() == 0) {
+                    return;
+                }
+                if (series.getHeadCreatedMillis() < deadline && sealQueue.offer(series)) {
+                    series.sealHead();
+                } else {
+                    minTick[0] = Math.min(minTick[0], series.getHeadFirstTick());
+                }
+            }
+        });
+        drainSealed();
+        segmentLog.force();
+        durableTick = minTick[0];
+    }
+
+    /**
+     * 封存全部写入中块并刷新段文件，之后所有已写入的点都已落盘
+     * 遍历开始后写入的点序号都不小于 limit
+     */
+    private void persistAll() {
+        long limit = appendTicks.get() + 1;
+        sealAll();
+        segmentLog.force();
+        durableTick = limit;
+    }
+
+    /**
+     * 写入待落盘的块，再逐个序列封存写入中块并直接写入段文件，不经过落盘队列
+     * 只在落盘线程中或落盘线程停止后调用
+     */
+    private void sealAll() {
+        drainSealed();
+        forEachSeries(series -> {
+            synchronized (series) {
+                if (series.getHead().getCount() > 0) {
+                    series.sealHead();
+                }
+            }
+            while (writePending(series)) {
+                // 逐块写入
+            }
+        });
+    }
+
+    /**
+     * 重启时登记段文件中的一条记录
+     */
+    private void recoverBlock(long location, String seriesKey, int count, long minTs, long maxTs) {
+        int split = seriesKey.lastIndexOf('/');
+        TelemetryMetric metric = split > 0 ? TelemetryMetric.fromKey(seriesKey.substring(split + 1)) : null;
+        if (metric == null) {
+            log.warn("段文件中存在未知序列，已跳过: {}", seriesKey);
+            return;
+        }
+        String craneId = seriesKey.substring(0, split);
+        Series[] all = seriesOf(craneId);
+        if (all[metric.ordinal()] == null) {
+            all[metric.ordinal()] = new Series(craneId, metric, blockBytes);
+        }
+        all[metric.ordinal()].getIndex().add(location, count, minTs, maxTs);
+    }
+
+    private void forEachSeries(Consumer<Series> action) {
+        for (Series[] all : seriesByCrane.values()) {
+            for (Series series : all) {
+                if (series != null) {
+                    action.accept(series);
+                }
+            }
+        }
+    }
+
+    private int countSeries() {
+        int[] count = new int[1];
+        forEachSeries(series -> count[0]++);
+        return count[0];
+    }
+}
@@ -0,0 +1,65 @@
+package com.yang.springbootbackend.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 数据目录独占锁
+ * 对目录下的 .lock 文件加操作系统文件锁，防止两个进程（或同一进程重复打开）同时写同一个数据目录，
+ * 进程退出时由操作系统释放，崩溃后不会残留
+ */
+public final class DirectoryLock implements Closeable {
+
+    public static final String LOCK_FILE = ".lock";
+
+    private final FileChannel channel;
+
+    private final FileLock lock;
+
+    private DirectoryLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * 锁定目录，目录不存在时创建
+     *
+     * @param directory 数据目录
+     * @return 锁，关闭时释放
+     * @throws IOException 目录已被锁定或无法创建锁文件
+     */
+    public static DirectoryLock acquire(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("数据目录已被其他进程使用: " + directory.toAbsolutePath());
+        }
+        return new DirectoryLock(channel, lock);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
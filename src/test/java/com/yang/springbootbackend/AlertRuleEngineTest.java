@@ -0,0 +1,302 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.domain.mqtt.vo.AlertRuleSetVO;
+import com.yang.springbootbackend.service.mqtt.rule.AlertRuleEngine;
+import com.yang.springbootbackend.service.mqtt.rule.AlertRuleSet;
+import com.yang.springbootbackend.service.mqtt.rule.CompiledRule;
+import com.yang.springbootbackend.service.mqtt.rule.RuleChannel;
+import com.yang.springbootbackend.service.mqtt.rule.RuleCompiler;
+import com.yang.springbootbackend.service.mqtt.rule.RuleExpression;
+import com.yang.springbootbackend.service.mqtt.rule.RuleField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlertRuleEngineTest {
+
+    @TempDir
+    File tempDir;
+
+    private static double[] values(RuleField field, double value) {
+        double[] values = new double[RuleField.COUNT];
+        Arrays.fill(values, Double.NaN);
+        values[field.index()] = value;
+        return values;
+    }
+
+    private static boolean test(String expression, double[] values) {
+        return RuleCompiler.compile(expression).getPredicate().test(values);
+    }
+
+    private static MqttProperties.RuleDefinition rule(String name, String expression, String... cranes) {
+        MqttProperties.RuleDefinition definition = new MqttProperties.RuleDefinition(name, expression, name);
+        definition.getCranes().addAll(Arrays.asList(cranes));
+        return definition;
+    }
+
+    private static List<String> fired(AlertRuleSet set, RuleChannel channel, String craneId, double[] values) {
+        List<CompiledRule> fired = new ArrayList<>();
+        int count = set.evaluate(channel, craneId, values, fired);
+        assertEquals(count, fired.size());
+        return fired.stream().map(CompiledRule::getName).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testCompileExpressions() {
+        double[] values = values(RuleField.GAS, 60);
+        values[RuleField.WIND.index()] = 4;
+        assertTrue(test("gas > 50", values));
+        assertTrue(test("50 < gas", values));
+        assertFalse(test("gas <= 50", values));
+        assertTrue(test("gas - wind * 2 >= 52", values));
+        assertTrue(test("(gas - wind) * 2 == 112", values));
+        assertTrue(test("gas > 70 || wind < 5 && !(gas == 0)", values));
+        assertTrue(test("abs(-gas) == max(gas, wind) && min(gas, wind) == 4", values));
+        assertTrue(test("gas > 1.5e1 && gas != 61", values));
+
+        // 读数未携带的字段参与比较时不成立，包括 !=
+        assertFalse(test("rain > -1000", values));
+        assertFalse(test("rain != 0", values));
+        assertTrue(test("!(rain > 0)", values));
+
+        // 阈值项记录字段、方向和阈值，常量在左侧时反转方向
+        RuleExpression threshold = RuleCompiler.compile("50 <= gas");
+        assertEquals(1, threshold.getTerms().size());
+        RuleExpression.Term term = threshold.getTerms().get(0);
+        assertEquals(RuleField.GAS, term.getField());
+        assertTrue(term.isAbove());
+        assertTrue(term.isInclusive());
+        assertEquals(50.0, term.getThreshold());
+        assertNull(term.getResidual());
+        assertEquals(RuleChannel.SENSOR, threshold.getChannel());
+
+        // 单字段线性运算改写为阈值：(60 - height) / 2 < 5 即 height > 50
+        term = RuleCompiler.compile("(60 - height) / 2 < 5").getTerms().get(0);
+        assertEquals(RuleField.HEIGHT, term.getField());
+        assertTrue(term.isAbove());
+        assertFalse(term.isInclusive());
+        assertEquals(50.0, term.getThreshold());
+        // |temperature - 20| > 15 拆为两项，与条件以阈值为项、其余部分为附加条件
+        List<RuleExpression.Term> terms = RuleCompiler.compile("abs(temperature - 20) > 15").getTerms();
+        assertEquals(Arrays.asList(35.0, 5.0), terms.stream().map(RuleExpression.Term::getThreshold)
+                .collect(Collectors.toList()));
+        assertFalse(terms.get(1).isAbove());
+        term = RuleCompiler.compile("gas * wind > 100 && gas > 30").getTerms().get(0);
+        assertEquals(RuleField.GAS, term.getField());
+        assertNotNull(term.getResidual());
+        assertFalse(RuleCompiler.compile("gas * wind > 100 || gas > 30").isIndexed());
+        assertFalse(RuleCompiler.compile("gas == 30").isIndexed());
+        assertEquals(RuleChannel.ANGLE, RuleCompiler.compile("angle < -45 || angle > 45").getChannel());
+        assertEquals(RuleChannel.MOTION, RuleCompiler.compile("angle > 0 && abs(rotationSpeed) > 3").getChannel());
+
+        for (String invalid : Arrays.asList("", "gas >", "gas > 50 50", "gas + 1", "unknown > 1", "sqrt(gas) > 1",
+                "gas > 50 && 3", "1 < gas < 2", "gas > 50 && angle > 1", "1 > 0", "(gas > 1")) {
+            assertThrows(IllegalArgumentException.class, () -> RuleCompiler.compile(invalid), invalid);
+        }
+    }
+
+    @Test
+    public void testThresholdIndexMatchesPredicates() {
+        List<MqttProperties.RuleDefinition> definitions = new ArrayList<>();
+        double[] thresholds = {10, 20, 20, 30, 40, -5};
+        for (int i = 0; i < thresholds.length; i++) {
+            definitions.add(rule("gt" + i, "gas > " + thresholds[i]));
+            definitions.add(rule("ge" + i, "gas >= " + thresholds[i]));
+            definitions.add(rule("lt" + i, "gas < " + thresholds[i]));
+            definitions.add(rule("le" + i, thresholds[i] + " >= gas"));
+        }
+        definitions.add(rule("band", "gas > 15 && gas < 25"));
+        definitions.add(rule("square", "gas >= 20 && gas * gas < 625"));
+        definitions.add(rule("far", "abs(gas - 20) >= 10"));
+        definitions.add(rule("near", "abs(gas) < 15"));
+        definitions.add(rule("either", "gas > 0 || 2 * gas > 10"));
+        definitions.add(rule("product", "gas * gas > 900"));
+        AlertRuleSet set = AlertRuleSet.compile(definitions, null, 1, "config");
+
+        // 阈值索引的结果与逐条执行编译后的条件一致，包括阈值相等和字段缺失的情况
+        for (double gas : new double[]{-10, -5, 0, 10, 15, 20, 25, 30, 40, 41, Double.NaN}) {
+            double[] values = values(RuleField.GAS, gas);
+            List<String> expected = new ArrayList<>();
+            for (CompiledRule rule : set.getRules(RuleChannel.SENSOR, "1")) {
+                if (rule.test(values)) {
+                    expected.add(rule.getName());
+                }
+            }
+            Collections.sort(expected);
+            assertEquals(expected, fired(set, RuleChannel.SENSOR, "1", values), "gas=" + gas);
+        }
+        // 两项同时成立的规则只记录一次
+        assertEquals(Arrays.asList("band", "either", "ge0", "ge1", "ge2", "ge5", "gt0", "gt5", "le1", "le2", "le3",
+                "le4", "lt3", "lt4", "square"),
+                fired(set, RuleChannel.SENSOR, "1", values(RuleField.GAS, 20)));
+        // 其他时机的规则不求值
+        assertTrue(fired(set, RuleChannel.ANGLE, "1", values(RuleField.GAS, 100)).isEmpty());
+    }
+
+    @Test
+    public void testScopeOverrides() {
+        Map<String, List<String>> classes = new LinkedHashMap<>();
+        classes.put("tall", Arrays.asList("1", "2"));
+        MqttProperties.RuleDefinition tallWind = rule("wind", "wind > 6");
+        tallWind.setCraneClass("tall");
+        MqttProperties.RuleDefinition disabled = rule("gas", "gas > 0", "2");
+        disabled.setEnabled(false);
+        AlertRuleSet set = AlertRuleSet.compile(Arrays.asList(
+                rule("gas", "gas > 50"),
+                rule("wind", "wind > 10"),
+                tallWind,
+                rule("wind", "wind > 8", "2"),
+                disabled,
+                rule("angle-range", "angle > 45")), classes, 1, "config");
+
+        double[] values = values(RuleField.GAS, 60);
+        values[RuleField.WIND.index()] = 7;
+        assertEquals(Arrays.asList("gas"), fired(set, RuleChannel.SENSOR, "3", values));
+        assertEquals(Arrays.asList("gas"), fired(set, RuleChannel.SENSOR, null, values));
+        assertEquals(Arrays.asList("gas", "wind"), fired(set, RuleChannel.SENSOR, "1", values));
+        // 塔吊2：单独的风速阈值覆盖类别阈值，气体规则被停用
+        assertTrue(fired(set, RuleChannel.SENSOR, "2", values).isEmpty());
+        values[RuleField.WIND.index()] = 9;
+        assertEquals(Arrays.asList("wind"), fired(set, RuleChannel.SENSOR, "2", values));
+        assertEquals(Arrays.asList("angle-range"), fired(set, RuleChannel.ANGLE, "2", values(RuleField.ANGLE, 50)));
+        assertEquals(2, set.getOverriddenCraneCount());
+        assertEquals(5, set.getRules(null).size());
+        assertEquals(Arrays.asList("wind > 8", "angle > 45"), set.getRules("2").stream()
+                .map(r -> r.getExpression().getSource()).collect(Collectors.toList()));
+
+        MqttProperties.RuleDefinition unknownClass = rule("wind", "wind > 6");
+        unknownClass.setCraneClass("short");
+        assertThrows(IllegalArgumentException.class,
+                () -> AlertRuleSet.compile(Arrays.asList(unknownClass), classes, 1, "config"));
+        assertThrows(IllegalArgumentException.class, () -> AlertRuleSet.compile(
+                Arrays.asList(rule("gas", "gas > 1"), rule("gas", "gas > 2")), classes, 1, "config"));
+    }
+
+    @Test
+    public void testDefaultRulesMatchPreviousThresholds() {
+        AlertRuleEngine engine = new AlertRuleEngine();
+        ReflectionTestUtils.setField(engine, "mqttProperties", new MqttProperties());
+        engine.start();
+        AlertRuleSet set = engine.current();
+
+        SensorDataDTO sensor = new SensorDataDTO();
+        sensor.setGasValue(50.0);
+        sensor.setWindValue(10.0);
+        sensor.setRainrate(0);
+        double[] values = new double[RuleField.COUNT];
+        RuleField.load(sensor, values);
+        assertTrue(fired(set, RuleChannel.SENSOR, "1", values).isEmpty());
+        sensor.setGasValue(50.1);
+        sensor.setWindValue(10.1);
+        sensor.setRainrate(1);
+        RuleField.load(sensor, values);
+        assertEquals(Arrays.asList("gas", "rain", "wind"), fired(set, RuleChannel.SENSOR, "1", values));
+
+        assertTrue(fired(set, RuleChannel.ANGLE, "1", values(RuleField.ANGLE, 45)).isEmpty());
+        assertEquals(Arrays.asList("angle-range"), fired(set, RuleChannel.ANGLE, "1", values(RuleField.ANGLE, -45.5)));
+        double[] motion = values(RuleField.ANGLE, 0);
+        motion[RuleField.ANGLE_CHANGE.index()] = 10.5;
+        assertEquals(Arrays.asList("angle-change"), fired(set, RuleChannel.MOTION, "1", motion));
+        assertEquals(2, engine.getStats(null).getRules().stream().filter(r -> r.getFiredCount() > 0)
+                .filter(r -> r.getName().startsWith("angle")).count());
+    }
+
+    @Test
+    public void testFileReloadSwapsAtomicallyAndKeepsRulesOnError() throws Exception {
+        File file = new File(tempDir, "alert-rules.json");
+        write(file, "{\"craneClasses\": {\"tall\": [\"7\"]}, \"rules\": ["
+                + "{\"name\": \"gas\", \"expression\": \"gas > 50\", \"message\": \"气体浓度超标\"},"
+                + "{\"name\": \"gas\", \"expression\": \"gas > 30\", \"craneClass\": \"tall\"}]}");
+        MqttProperties properties = new MqttProperties();
+        properties.getRules().setSource("file");
+        properties.getRules().setFile(file.getAbsolutePath());
+        properties.getRules().setReloadIntervalMs(20);
+        AlertRuleEngine engine = new AlertRuleEngine();
+        ReflectionTestUtils.setField(engine, "mqttProperties", properties);
+        engine.start();
+        try {
+            AlertRuleSet first = engine.current();
+            assertEquals("file", first.getSource());
+            assertEquals(Arrays.asList("gas"), fired(first, RuleChannel.SENSOR, "7", values(RuleField.GAS, 40)));
+            assertTrue(fired(first, RuleChannel.SENSOR, "1", values(RuleField.GAS, 40)).isEmpty());
+
+            // 内容不变时不重新编译
+            Thread.sleep(100);
+            assertSame(first, engine.current());
+
+            // 文件修改后由后台线程重新编译并替换，已取得旧规则集的调用方不受影响
+            write(file, "{\"rules\": [{\"name\": \"gas\", \"expression\": \"gas > 35\"}]}");
+            AlertRuleSet second = awaitNewVersion(engine, first);
+            assertTrue(second.getVersion() > first.getVersion());
+            assertEquals(Arrays.asList("gas"), fired(second, RuleChannel.SENSOR, "1", values(RuleField.GAS, 40)));
+            assertTrue(fired(first, RuleChannel.SENSOR, "1", values(RuleField.GAS, 40)).isEmpty());
+
+            // 编译失败时保留原规则并记录错误
+            write(file, "{\"rules\": [{\"name\": \"gas\", \"expression\": \"gas >\"}]}");
+            assertThrows(IllegalArgumentException.class, engine::reload);
+            assertSame(second, engine.current());
+            AlertRuleSetVO stats = engine.getStats(null);
+            assertTrue(stats.getLastError().contains("规则 gas 编译失败"));
+            assertEquals(second.getVersion(), stats.getVersion());
+
+            write(file, "{\"rules\": [{\"name\": \"wind\", \"expression\": \"wind > 10\"}]}");
+            AlertRuleSet third = engine.reload();
+            assertSame(third, engine.current());
+            assertNull(engine.getStats(null).getLastError());
+            assertEquals("wind > 10", engine.getStats("1").getRules().get(0).getExpression());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void testFallsBackToConfigWhenSourceUnavailable() {
+        MqttProperties properties = new MqttProperties();
+        properties.getRules().setSource("file");
+        properties.getRules().setFile(new File(tempDir, "missing.json").getAbsolutePath());
+        properties.getRules().setReloadIntervalMs(0);
+        AlertRuleEngine engine = new AlertRuleEngine();
+        ReflectionTestUtils.setField(engine, "mqttProperties", properties);
+        engine.start();
+
+        assertEquals("config", engine.current().getSource());
+        assertEquals(5, engine.current().getRules(null).size());
+        assertNotNull(engine.getStats(null).getLastError());
+        assertThrows(IllegalStateException.class, engine::reload);
+    }
+
+    private static AlertRuleSet awaitNewVersion(AlertRuleEngine engine, AlertRuleSet previous)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (engine.current() == previous && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotSame(previous, engine.current());
+        return engine.current();
+    }
+
+    /**
+     * 先写临时文件再原子替换，后台重载线程不会读到写了一半的文件
+     */
+    private static void write(File file, String content) throws Exception {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.write(tmp.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
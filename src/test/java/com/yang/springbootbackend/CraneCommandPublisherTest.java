@@ -0,0 +1,105 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.CommandStatsVO;
+import com.yang.springbootbackend.service.mqtt.command.CraneCommandPublisher;
+import com.yang.springbootbackend.service.mqtt.command.CraneCommandType;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CraneCommandPublisherTest {
+
+    @Test
+    public void testCoalescesPendingCommandsPerCraneAndGroup() {
+        MqttProperties properties = new MqttProperties();
+        // 无法连接的地址，指令保持待发送状态
+        properties.setUrl("tcp://127.0.0.1:1");
+        properties.setSubClientId("test");
+        properties.getCommand().setQueueCapacity(3);
+
+        CraneCommandPublisher publisher = new CraneCommandPublisher();
+        ReflectionTestUtils.setField(publisher, "mqttProperties", properties);
+        publisher.start();
+        try {
+            assertNotNull(publisher.submit("1", CraneCommandType.SLOW_DOWN, null));
+            // 同组的停机建议取代尚未发出的减速建议
+            assertNotNull(publisher.submit("1", CraneCommandType.STOP, null));
+            assertNotNull(publisher.submit("1", CraneCommandType.SET_SAMPLING_RATE,
+                    Collections.singletonMap("rate", 5)));
+            // 队列容量为3，第三台塔吊的指令被拒绝
+            assertEquals(1, publisher.broadcast(Arrays.asList("2", "3"), CraneCommandType.STOP, null));
+
+            CommandStatsVO stats = publisher.getStats();
+            assertEquals(4, stats.getSubmittedCount());
+            assertEquals(1, stats.getSupersededCount());
+            assertEquals(3, stats.getQueuedCount());
+            assertEquals(1, stats.getRejectedCount());
+            assertFalse(stats.isConnected());
+        } finally {
+            publisher.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConcurrentSubmitNeverOrphansPendingCommand() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        properties.setUrl("tcp://127.0.0.1:1");
+        properties.setSubClientId("test");
+        properties.getCommand().setQueueCapacity(4);
+
+        CraneCommandPublisher publisher = new CraneCommandPublisher();
+        ReflectionTestUtils.setField(publisher, "mqttProperties", properties);
+        publisher.start();
+        try {
+            int threads = 8;
+            int perThread = 20_000;
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < perThread; i++) {
+                        // 16台塔吊争用容量为4的队列，入队失败与同键的合并并发发生
+                        publisher.submit(String.valueOf(random.nextInt(16)), CraneCommandType.STOP, null);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            // 每条待发送指令的合并键都在队列中，否则永远不会发出
+            Map<String, ?> pending = (Map<String, ?>) ReflectionTestUtils.getField(publisher, "pending");
+            Collection<String> readyKeys = (Collection<String>) ReflectionTestUtils.getField(publisher, "readyKeys");
+            assertEquals(new HashSet<>(readyKeys), pending.keySet());
+            assertEquals(readyKeys.size(), pending.size());
+
+            CommandStatsVO stats = publisher.getStats();
+            assertEquals((long) threads * perThread, stats.getSubmittedCount() + stats.getRejectedCount());
+            assertEquals(stats.getSubmittedCount(), stats.getSupersededCount() + pending.size());
+        } finally {
+            publisher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.service.mqtt.state.CraneState;
+import com.yang.springbootbackend.service.mqtt.state.CraneStateStore;
+import com.yang.springbootbackend.service.mqtt.state.StateKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CraneStateStoreTest {
+
+    private static final StateKey<AtomicLong> COUNTER = StateKey.create("counter");
+
+    private CraneStateStore newStore(long idleTtlSeconds, int maxCranes) {
+        MqttProperties properties = new MqttProperties();
+        properties.getState().setIdleTtlSeconds(idleTtlSeconds);
+        properties.getState().setMaxCranes(maxCranes);
+        CraneStateStore store = new CraneStateStore();
+        ReflectionTestUtils.setField(store, "mqttProperties", properties);
+        store.start();
+        return store;
+    }
+
+    @Test
+    public void testStatePerCraneAndSlot() {
+        CraneStateStore store = newStore(0, 0);
+        store.getOrCreate("1").computeIfAbsent(COUNTER, AtomicLong::new).incrementAndGet();
+        store.getOrCreate("1").computeIfAbsent(COUNTER, AtomicLong::new).incrementAndGet();
+        store.getOrCreate("2").computeIfAbsent(COUNTER, AtomicLong::new).incrementAndGet();
+
+        assertEquals(2, store.get("1").get(COUNTER).get());
+        assertEquals(1, store.get("2").get(COUNTER).get());
+        assertNull(store.get("3"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedAtCapacity() throws InterruptedException {
+        CraneStateStore store = newStore(0, 3);
+        for (String id : new String[]{"1", "2", "3"}) {
+            store.getOrCreate(id);
+            Thread.sleep(2);
+        }
+        store.getOrCreate("1");
+        CraneState added = store.getOrCreate("4");
+
+        assertEquals(3, store.size());
+        assertNull(store.get("2"));
+        assertSame(added, store.get("4"));
+        assertEquals(1, store.getEvictedCount());
+        store.shutdown();
+    }
+
+    @Test
+    public void testActiveCraneSurvivesChurnAtCapacity() {
+        CraneStateStore store = newStore(0, 100);
+        CraneState hot = store.getOrCreate("hot");
+        for (int i = 0; i < 100_000; i++) {
+            store.getOrCreate("cold" + i);
+            assertSame(hot, store.getOrCreate("hot"));
+            assertTrue(store.size() <= 100);
+        }
+        assertEquals(100_000 - 99, store.getEvictedCount());
+        store.shutdown();
+    }
+}
@@ -0,0 +1,89 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.service.mqtt.deadletter.DeadLetterEntry;
+import com.yang.springbootbackend.service.mqtt.deadletter.DeadLetterJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadLetterJournalTest {
+
+    @TempDir
+    File tempDir;
+
+    private DeadLetterJournal newJournal(long segmentBytes, long maxTotalBytes) {
+        MqttProperties properties = new MqttProperties();
+        properties.getDeadLetter().setDirectory(tempDir.getAbsolutePath());
+        properties.getDeadLetter().setSegmentBytes(segmentBytes);
+        properties.getDeadLetter().setMaxTotalBytes(maxTotalBytes);
+        DeadLetterJournal journal = new DeadLetterJournal();
+        ReflectionTestUtils.setField(journal, "mqttProperties", properties);
+        journal.start();
+        return journal;
+    }
+
+    private static void awaitWritten(DeadLetterJournal journal, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (journal.getWrittenCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, journal.getWrittenCount());
+    }
+
+    @Test
+    public void testRecordAndReadBack() throws InterruptedException {
+        DeadLetterJournal journal = newJournal(1024 * 1024, 16 * 1024 * 1024);
+        journal.record("testtopic/1/gas", "{\"gas_value\":1}".getBytes(StandardCharsets.UTF_8),
+                new IllegalStateException("boom"));
+        journal.record("unknown/topic", new byte[]{(byte) 0xA7, 1, 2}, DeadLetterJournal.FAILURE_UNKNOWN_TOPIC, null);
+        awaitWritten(journal, 2);
+
+        List<DeadLetterEntry> entries = journal.read(0, 10);
+        assertEquals(2, entries.size());
+        DeadLetterEntry first = entries.get(0);
+        assertEquals(0, first.getId());
+        assertEquals("testtopic/1/gas", first.getTopic());
+        assertEquals(IllegalStateException.class.getName(), first.getFailureClass());
+        assertEquals("boom", first.getErrorMessage());
+        assertEquals("{\"gas_value\":1}", new String(first.getPayload(), StandardCharsets.UTF_8));
+        assertArrayEquals(new byte[]{(byte) 0xA7, 1, 2}, entries.get(1).getPayload());
+        assertNull(entries.get(1).getErrorMessage());
+
+        assertEquals(1, journal.read(1, 10).size());
+        assertEquals(1L, journal.getFailureCounts().get(DeadLetterJournal.FAILURE_UNKNOWN_TOPIC));
+        journal.shutdown();
+    }
+
+    @Test
+    public void testRotationRespectsDiskBudgetAndRecoversIds() throws InterruptedException {
+        DeadLetterJournal journal = newJournal(200, 600);
+        byte[] payload = new byte[100];
+        for (int i = 0; i < 20; i++) {
+            journal.record("testtopic/" + i + "/angle", payload, DeadLetterJournal.FAILURE_INGEST_REJECTED, null);
+        }
+        awaitWritten(journal, 20);
+        journal.shutdown();
+
+        // 每个分段写满两条后滚动，最旧的分段被删除
+        assertTrue(journal.getDiskBytes() <= 600 + 200, "disk bytes " + journal.getDiskBytes());
+        List<DeadLetterEntry> remaining = journal.read(0, 100);
+        assertFalse(remaining.isEmpty());
+        assertTrue(remaining.get(0).getId() > 0);
+        assertEquals(19, remaining.get(remaining.size() - 1).getId());
+
+        // 重启后编号接续
+        DeadLetterJournal restarted = newJournal(200, 600);
+        assertEquals(20, restarted.getNextId());
+        restarted.record("testtopic/x/angle", payload, DeadLetterJournal.FAILURE_INGEST_REJECTED, null);
+        awaitWritten(restarted, 1);
+        assertEquals(20, restarted.read(20, 1).get(0).getId());
+        restarted.shutdown();
+    }
+}
@@ -0,0 +1,54 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.service.mqtt.ingest.EventTimeReorderBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventTimeReorderBufferTest {
+
+    @Test
+    public void testReleasesInEventTimeOrderBehindWatermark() {
+        List<Long> released = new ArrayList<>();
+        EventTimeReorderBuffer.Sink<String> sink = (ts, item) -> released.add(ts);
+        EventTimeReorderBuffer<String> buffer = new EventTimeReorderBuffer<>(50, 8);
+
+        for (long ts : new long[]{100, 140, 120, 160, 130, 200}) {
+            assertTrue(buffer.offer(ts, "r" + ts, sink));
+        }
+        // 水位线 200 - 50 = 150，之前的读数已按时间顺序释放
+        assertEquals(Arrays.asList(100L, 120L, 130L, 140L), released);
+
+        // 早于已释放读数的迟到读数被拒绝
+        assertFalse(buffer.offer(135, "late", sink));
+        assertEquals(2, buffer.size());
+
+        buffer.flushIdle(System.nanoTime() + 60_000_000L, sink);
+        assertEquals(Arrays.asList(100L, 120L, 130L, 140L, 160L, 200L), released);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testFullBufferReleasesOldestAndZeroLatenessPassesThrough() {
+        List<Long> released = new ArrayList<>();
+        EventTimeReorderBuffer.Sink<String> sink = (ts, item) -> released.add(ts);
+        EventTimeReorderBuffer<String> buffer = new EventTimeReorderBuffer<>(10_000, 4);
+        for (long ts = 5; ts >= 1; ts--) {
+            buffer.offer(ts, "r" + ts, sink);
+        }
+        // 缓冲满时最早的读数先释放，释放顺序仍按事件时间
+        assertEquals(Arrays.asList(1L), released);
+        buffer.offer(6, "r6", sink);
+        assertEquals(Arrays.asList(1L, 2L), released);
+
+        EventTimeReorderBuffer<String> direct = new EventTimeReorderBuffer<>(0, 4);
+        released.clear();
+        direct.offer(3, "a", sink);
+        direct.offer(3, "b", sink);
+        assertEquals(Arrays.asList(3L, 3L), released);
+    }
+}
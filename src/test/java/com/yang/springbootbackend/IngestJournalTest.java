@@ -0,0 +1,220 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.IngestJournalStatsVO;
+import com.yang.springbootbackend.service.mqtt.ingest.DurableSink;
+import com.yang.springbootbackend.service.mqtt.ingest.IngestJournal;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import com.yang.springbootbackend.service.mqtt.tsdb.TimeSeriesStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestJournalTest {
+
+    @TempDir
+    File tempDir;
+
+    private IngestJournal newJournal(long segmentBytes) {
+        return newJournal(segmentBytes, Collections.emptyList());
+    }
+
+    private IngestJournal newJournal(long segmentBytes, List<DurableSink> sinks) {
+        MqttProperties properties = new MqttProperties();
+        properties.getJournal().setDirectory(tempDir.getAbsolutePath());
+        properties.getJournal().setSegmentBytes(segmentBytes);
+        properties.getJournal().setSyncIntervalMs(5);
+        properties.getJournal().setCheckpointIntervalMs(10);
+        IngestJournal journal = new IngestJournal();
+        ReflectionTestUtils.setField(journal, "mqttProperties", properties);
+        ReflectionTestUtils.setField(journal, "durableSinks", sinks);
+        journal.start();
+        return journal;
+    }
+
+    private static byte[] payload(int i) {
+        return ("{\"gas_value\":" + i + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void awaitCheckpoint(IngestJournal journal, long seq) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (journal.getStats().getCheckpointSeq() < seq && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(seq, journal.getStats().getCheckpointSeq());
+    }
+
+    @Test
+    public void testReplaysMessagesAfterCheckpoint() throws InterruptedException {
+        IngestJournal journal = newJournal(1024 * 1024);
+        assertEquals(0, journal.replay((seq, topic, payload) -> fail("空日志不应重放")));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, journal.append("testtopic/" + (i % 4) + "/gas", payload(i)));
+        }
+        // 乱序完成：编号50未完成时检查点停在50
+        for (int i = 59; i >= 0; i--) {
+            if (i != 50) {
+                journal.complete(i);
+            }
+        }
+        awaitCheckpoint(journal, 50);
+        IngestJournalStatsVO stats = journal.getStats();
+        assertEquals(100, stats.getAppendedRecords());
+        assertEquals(100, stats.getSyncedSeq());
+        assertTrue(stats.getSyncCount() > 0);
+        assertTrue(stats.getAvgSyncRecords() > 1, "一次刷盘应提交一组消息");
+        journal.shutdown();
+
+        // 重启后从检查点重放，已完成但在检查点之后的消息重复投递
+        IngestJournal restarted = newJournal(1024 * 1024);
+        List<Long> seqs = new ArrayList<>();
+        restarted.replay((seq, topic, payload) -> {
+            assertEquals("testtopic/" + (seq % 4) + "/gas", topic);
+            assertArrayEquals(payload((int) seq), payload);
+            seqs.add(seq);
+        });
+        assertEquals(50, seqs.size());
+        assertEquals(50L, seqs.get(0));
+        assertEquals(99L, seqs.get(49));
+        assertEquals(100, restarted.append("testtopic/1/gas", payload(100)));
+
+        for (long seq = 50; seq <= 100; seq++) {
+            restarted.complete(seq);
+        }
+        awaitCheckpoint(restarted, 101);
+        restarted.shutdown();
+        assertEquals(0, newJournal(1024 * 1024).replay((seq, topic, payload) -> fail("检查点之前的消息不应重放")));
+    }
+
+    @Test
+    public void testDeletesSegmentsBeforeCheckpoint() throws InterruptedException {
+        IngestJournal journal = newJournal(4096);
+        for (int i = 0; i < 500; i++) {
+            journal.append("testtopic/1/gas", payload(i));
+        }
+        int segments = journal.getStats().getSegmentCount();
+        assertTrue(segments > 5, "分段应写满后滚动: " + segments);
+
+        for (int i = 0; i < 400; i++) {
+            journal.complete(i);
+        }
+        awaitCheckpoint(journal, 400);
+        assertTrue(journal.getStats().getSegmentCount() < segments);
+        assertEquals(journal.getStats().getSegmentCount(), tempDir.listFiles((dir, name) -> name.endsWith(".log")).length);
+        journal.shutdown();
+
+        List<Long> seqs = new ArrayList<>();
+        newJournal(4096).replay((seq, topic, payload) -> seqs.add(seq));
+        assertEquals(100, seqs.size());
+        assertEquals(400L, seqs.get(0));
+    }
+
+    @Test
+    public void testRetainedMessageHoldsCheckpoint() throws InterruptedException {
+        IngestJournal journal = newJournal(1024 * 1024);
+        for (int i = 0; i < 10; i++) {
+            journal.append("testtopic/1/gas", payload(i));
+        }
+        // 编号3的监听器转到其他通道执行：消息本身完成后检查点仍停在3
+        journal.retain(3);
+        for (int i = 0; i < 10; i++) {
+            journal.complete(i);
+        }
+        awaitCheckpoint(journal, 3);
+        Thread.sleep(50);
+        assertEquals(3, journal.getStats().getCheckpointSeq());
+
+        journal.complete(3);
+        awaitCheckpoint(journal, 10);
+        journal.shutdown();
+    }
+
+    @Test
+    public void testCheckpointWaitsForDurableSinks() throws InterruptedException {
+        // 下游组件：标记为已接收条数，persisted 之前的条目已持久化
+        AtomicLong received = new AtomicLong();
+        AtomicLong persisted = new AtomicLong();
+        DurableSink sink = new DurableSink() {
+            @Override
+            public long mark() {
+                return received.get();
+            }
+
+            @Override
+            public boolean isDurable(long mark) {
+                return persisted.get() >= mark;
+            }
+
+            @Override
+            public void persist(long timeoutMs) {
+            }
+        };
+        IngestJournal journal = newJournal(1024 * 1024, Collections.singletonList(sink));
+        for (int i = 0; i < 10; i++) {
+            journal.append("testtopic/1/gas", payload(i));
+            received.incrementAndGet();
+            journal.complete(i);
+        }
+        // 消息已处理完但数据还在下游缓冲中，检查点不推进
+        Thread.sleep(50);
+        assertEquals(10, journal.getStats().getCompletedSeq());
+        assertEquals(0, journal.getStats().getCheckpointSeq());
+
+        persisted.set(10);
+        awaitCheckpoint(journal, 10);
+        journal.shutdown();
+    }
+
+    @Test
+    public void testCleanShutdownDoesNotReplayStoredData() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        properties.getTsdb().setDirectory(new File(tempDir, "tsdb").getAbsolutePath());
+        TimeSeriesStore store = new TimeSeriesStore();
+        ReflectionTestUtils.setField(store, "mqttProperties", properties);
+        store.start();
+
+        IngestJournal journal = newJournal(1024 * 1024, Collections.singletonList(store));
+        for (int i = 0; i < 10; i++) {
+            long seq = journal.append("testtopic/1/gas", payload(i));
+            store.append("1", TelemetryMetric.GAS, 1000L + i, i);
+            journal.complete(seq);
+        }
+        // 点还在写入中块里（未到 maxHeadAgeSeconds），运行期间检查点不推进
+        Thread.sleep(50);
+        assertEquals(10, journal.getStats().getCompletedSeq());
+        assertEquals(0, journal.getStats().getCheckpointSeq());
+
+        // 正常关闭时先让时序存储落盘，最终检查点推进到水位，重启后不重放
+        journal.shutdown();
+        IngestJournal restarted = newJournal(1024 * 1024, Collections.singletonList(store));
+        assertEquals(0, restarted.replay((seq, topic, payload) -> fail("已落盘的消息不应重放")));
+        restarted.shutdown();
+        assertEquals(0, store.getStats().getHeadPoints());
+        assertEquals(10, store.getStats().getSealedPoints());
+        store.shutdown();
+    }
+
+    @Test
+    public void testDirectoryIsLockedWhileRunning() throws InterruptedException {
+        IngestJournal journal = newJournal(1024 * 1024);
+        assertTrue(journal.isEnabled());
+        // 同一目录不能被第二个实例打开
+        IngestJournal second = newJournal(1024 * 1024);
+        assertFalse(second.isEnabled());
+        assertEquals(-1, second.append("testtopic/1/gas", payload(0)));
+        journal.shutdown();
+
+        IngestJournal reopened = newJournal(1024 * 1024);
+        assertTrue(reopened.isEnabled());
+        reopened.shutdown();
+    }
+}
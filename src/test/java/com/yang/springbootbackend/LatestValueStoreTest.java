@@ -0,0 +1,169 @@
+package com.yang.springbootbackend;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.service.mqtt.state.LatestSnapshot;
+import com.yang.springbootbackend.service.mqtt.state.LatestValueStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatestValueStoreTest {
+
+    private static LatestValueStore newStore(int maxCranes) {
+        MqttProperties properties = new MqttProperties();
+        properties.getLatest().setMaxCranes(maxCranes);
+        LatestValueStore store = new LatestValueStore();
+        ReflectionTestUtils.setField(store, "mqttProperties", properties);
+        store.start();
+        return store;
+    }
+
+    private static SensorDataDTO gas(String craneId, double value) {
+        SensorDataDTO sensor = new SensorDataDTO();
+        sensor.setCraneId(craneId);
+        sensor.setTs(1000L);
+        sensor.setGasValue(value);
+        return sensor;
+    }
+
+    @Test
+    public void testVersionedSnapshotsPerCrane() throws Exception {
+        long bootMillis = System.currentTimeMillis();
+        LatestValueStore store = newStore(2);
+
+        LatestSnapshot empty = store.get(LatestValueStore.Channel.GAS, null);
+        assertEquals(0, empty.getVersion());
+        JSONObject emptyJson = JSON.parseObject(new String(empty.getJson()));
+        assertEquals(0, emptyJson.getIntValue("code"));
+        assertNotNull(emptyJson.getJSONObject("data"));
+
+        LatestSnapshot first = store.update(LatestValueStore.Channel.GAS, gas("1", 10));
+        LatestSnapshot second = store.update(LatestValueStore.Channel.GAS, gas("2", 20));
+        LatestSnapshot angle = store.update(LatestValueStore.Channel.ANGLE, new AngleDataDTO());
+        assertTrue(first.getVersion() < second.getVersion() && second.getVersion() < angle.getVersion());
+        assertTrue(first.getEtag().startsWith("\"") && first.getEtag().endsWith("-" + first.getVersion() + "\""));
+
+        // 版本号从启动时刻开始，重启后的新实例版本号更大、ETag不同
+        assertTrue(first.getVersion() >= bootMillis * 1000);
+        Thread.sleep(2);
+        LatestValueStore restarted = newStore(2);
+        assertNotEquals(empty.getEtag(), restarted.get(LatestValueStore.Channel.GAS, null).getEtag());
+        assertTrue(restarted.update(LatestValueStore.Channel.GAS, gas("1", 10)).getVersion() > angle.getVersion());
+        restarted.shutdown();
+
+        // 按塔吊返回各自的快照，不指定塔吊时返回最近更新的一台
+        assertSame(first, store.get(LatestValueStore.Channel.GAS, "1"));
+        assertSame(second, store.get(LatestValueStore.Channel.GAS, null));
+        JSONObject json = JSON.parseObject(new String(first.getJson()));
+        assertEquals("ok", json.getString("message"));
+        assertEquals(10.0, json.getJSONObject("data").getDoubleValue("gas_value"));
+        assertEquals("1", json.getJSONObject("data").getString("craneId"));
+
+        // 未更新时返回同一个快照对象，查询不做序列化
+        assertSame(first, store.get(LatestValueStore.Channel.GAS, "1"));
+
+        // 超出塔吊数量上限的新塔吊只更新全局最新值
+        LatestSnapshot third = store.update(LatestValueStore.Channel.GAS, gas("3", 30));
+        assertEquals(0, store.get(LatestValueStore.Channel.GAS, "3").getVersion());
+        assertSame(third, store.get(LatestValueStore.Channel.GAS, null));
+        assertTrue(store.update(LatestValueStore.Channel.GAS, gas("1", 11)).getVersion() > third.getVersion());
+    }
+
+    @Test
+    public void testConcurrentUpdatesPublishHighestVersion() throws Exception {
+        LatestValueStore store = newStore(16);
+        AtomicLong maxVersion = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        // 不同塔吊在不同线程上并发更新，全局最新值不能停在较早的版本上
+        for (int t = 0; t < 4; t++) {
+            String craneId = String.valueOf(t);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 2000; i++) {
+                    LatestSnapshot snapshot = store.update(LatestValueStore.Channel.GAS, gas(craneId, i));
+                    maxVersion.accumulateAndGet(snapshot.getVersion(), Math::max);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(maxVersion.get(), store.get(LatestValueStore.Channel.GAS, null).getVersion());
+        store.shutdown();
+    }
+
+    @Test
+    public void testLongPollWaitersAreWokenOnce() throws Exception {
+        LatestValueStore store = newStore(100);
+        try {
+            LatestSnapshot first = store.update(LatestValueStore.Channel.GAS, gas("1", 10));
+
+            // 客户端版本落后时立即回调
+            List<LatestSnapshot> immediate = new ArrayList<>();
+            store.await(LatestValueStore.Channel.GAS, "1", 0, immediate::add);
+            assertEquals(1, immediate.size());
+            assertSame(first, immediate.get(0));
+            assertEquals(0, store.getWaiterCount(LatestValueStore.Channel.GAS));
+
+            List<LatestSnapshot> crane1 = new CopyOnWriteArrayList<>();
+            List<LatestSnapshot> any = new CopyOnWriteArrayList<>();
+            List<LatestSnapshot> cancelled = new CopyOnWriteArrayList<>();
+            List<Thread> callbackThreads = new CopyOnWriteArrayList<>();
+            Consumer<LatestSnapshot> cancelledWaiter = cancelled::add;
+            store.await(LatestValueStore.Channel.GAS, "1", first.getVersion(), crane1::add);
+            store.await(LatestValueStore.Channel.GAS, null, first.getVersion(), snapshot -> {
+                callbackThreads.add(Thread.currentThread());
+                any.add(snapshot);
+            });
+            store.await(LatestValueStore.Channel.GAS, "1", first.getVersion(), cancelledWaiter);
+            assertEquals(3, store.getWaiterCount(LatestValueStore.Channel.GAS));
+            store.cancel(LatestValueStore.Channel.GAS, "1", cancelledWaiter);
+
+            // 其他塔吊和其他类别的更新不唤醒该塔吊的等待者；回调不在更新线程上执行
+            LatestSnapshot other = store.update(LatestValueStore.Channel.GAS, gas("2", 20));
+            store.update(LatestValueStore.Channel.ANGLE, new AngleDataDTO());
+            awaitSize(any, 1);
+            assertSame(other, any.get(0));
+            assertNotSame(Thread.currentThread(), callbackThreads.get(0));
+            assertTrue(crane1.isEmpty());
+
+            LatestSnapshot updated = store.update(LatestValueStore.Channel.GAS, gas("1", 11));
+            store.update(LatestValueStore.Channel.GAS, gas("1", 12));
+            assertEquals(0, store.getWaiterCount(LatestValueStore.Channel.GAS));
+            awaitSize(crane1, 1);
+            assertSame(updated, crane1.get(0));
+            assertEquals(1, any.size());
+            assertTrue(cancelled.isEmpty());
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, list.size());
+    }
+}
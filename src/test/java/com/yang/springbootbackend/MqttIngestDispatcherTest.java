@@ -0,0 +1,446 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.domain.mqtt.vo.IngestLaneStatsVO;
+import com.yang.springbootbackend.service.mqtt.AbstractTelemetryProcessor;
+import com.yang.springbootbackend.service.mqtt.MqttMessageProcessor;
+import com.yang.springbootbackend.service.mqtt.MqttMessageRouter;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.TelemetryListener;
+import com.yang.springbootbackend.service.mqtt.ingest.IngestJournal;
+import com.yang.springbootbackend.service.mqtt.ingest.MqttIngestDispatcher;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttIngestDispatcherTest {
+
+    /**
+     * 固定耗时的测试处理器
+     */
+    private static class SleepingProcessor implements MqttMessageProcessor {
+        private final String topic;
+        private final int priority;
+        private final long sleepMs;
+        private final AtomicInteger processed = new AtomicInteger();
+        private final CountDownLatch firstProcessed = new CountDownLatch(1);
+
+        SleepingProcessor(String topic, int priority, long sleepMs) {
+            this.topic = topic;
+            this.priority = priority;
+            this.sleepMs = sleepMs;
+        }
+
+        @Override
+        public String getSupportedTopic() {
+            return topic;
+        }
+
+        @Override
+        public void processMessage(MqttRoutingContext context, String payload) {
+            try {
+                Thread.sleep(sleepMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.incrementAndGet();
+            firstProcessed.countDown();
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    /**
+     * 按塔吊记录处理顺序和处理线程的测试处理器，载荷为发送序号
+     */
+    private static class RecordingProcessor implements MqttMessageProcessor {
+        private final String topic;
+        private final Map<String, List<Integer>> order = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+        private final AtomicInteger processed = new AtomicInteger();
+        private volatile String blockedCraneId;
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        RecordingProcessor(String topic) {
+            this.topic = topic;
+        }
+
+        @Override
+        public String getSupportedTopic() {
+            return topic;
+        }
+
+        @Override
+        public void processMessage(MqttRoutingContext context, String payload) {
+            String craneId = context.getCraneId();
+            if (craneId.equals(blockedCraneId)) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            // 同一塔吊只在一个线程中处理，列表无需同步
+            order.computeIfAbsent(craneId, k -> new ArrayList<>()).add(Integer.parseInt(payload));
+            threads.computeIfAbsent(craneId, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+            processed.incrementAndGet();
+        }
+
+        @Override
+        public int getPriority() {
+            return 60;
+        }
+    }
+
+    /**
+     * 安全关键层级的遥测处理器，载荷为读数值
+     */
+    private static class CriticalTelemetryProcessor extends AbstractTelemetryProcessor<SensorDataDTO> {
+        private final AtomicInteger processed = new AtomicInteger();
+
+        @Override
+        public String getSupportedTopic() {
+            return "testtopic/+/gas";
+        }
+
+        @Override
+        protected List<SensorDataDTO> decodeBatch(byte[] payload) {
+            SensorDataDTO data = new SensorDataDTO();
+            data.setGasValue(Double.parseDouble(new String(payload, StandardCharsets.UTF_8)));
+            return Collections.singletonList(data);
+        }
+
+        @Override
+        protected void processBatch(MqttRoutingContext context, List<SensorDataDTO> readings) {
+            processed.incrementAndGet();
+        }
+
+        @Override
+        public int getPriority() {
+            return 10;
+        }
+    }
+
+    private static MqttIngestDispatcher newDispatcher(MqttProperties properties, MqttMessageProcessor... processors) {
+        MqttMessageRouter router = new MqttMessageRouter();
+        ReflectionTestUtils.setField(router, "messageProcessors", Arrays.asList(processors));
+        ReflectionTestUtils.setField(router, "mqttProperties", properties);
+        router.initializeProcessors();
+
+        MqttIngestDispatcher dispatcher = new MqttIngestDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "mqttProperties", properties);
+        ReflectionTestUtils.setField(dispatcher, "messageRouter", router);
+        ReflectionTestUtils.setField(dispatcher, "ingestJournal", new IngestJournal());
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private static byte[] bytes(int value) {
+        return Integer.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void awaitProcessed(AtomicInteger processed, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (processed.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, processed.get());
+    }
+
+    @Test
+    public void testSameCraneAlwaysUsesSameLane() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        properties.getIngest().setLaneCount(4);
+        properties.getIngest().setQueueCapacity(100_000);
+        RecordingProcessor gas = new RecordingProcessor("testtopic/+/gas");
+        RecordingProcessor wind = new RecordingProcessor("testtopic/+/wind");
+        MqttIngestDispatcher dispatcher = newDispatcher(properties, gas, wind);
+        try {
+            // 4个线程交错发送64台塔吊的两类消息
+            int cranes = 64;
+            int rounds = 20;
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                Thread producer = new Thread(() -> {
+                    for (int r = 0; r < rounds; r++) {
+                        for (int c = 0; c < cranes; c++) {
+                            assertTrue(dispatcher.dispatch("testtopic/" + c + "/gas", bytes(r)));
+                            assertTrue(dispatcher.dispatch("testtopic/" + c + "/wind", bytes(r)));
+                        }
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            awaitProcessed(gas.processed, 4 * rounds * cranes);
+            awaitProcessed(wind.processed, 4 * rounds * cranes);
+        } finally {
+            dispatcher.shutdown();
+        }
+
+        Set<String> used = new HashSet<>();
+        for (int c = 0; c < 64; c++) {
+            String craneId = String.valueOf(c);
+            // 同一塔吊的两类普通消息始终在同一个工作通道
+            assertEquals(1, gas.threads.get(craneId).size(), "塔吊 " + craneId + " 跨越了多个工作通道");
+            assertEquals(gas.threads.get(craneId), wind.threads.get(craneId));
+            used.addAll(gas.threads.get(craneId));
+        }
+        // 64台塔吊分散到全部4个通道
+        assertEquals(4, used.size());
+    }
+
+    @Test
+    public void testPerCraneOrderPreservedUnderConcurrency() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        properties.getIngest().setLaneCount(4);
+        properties.getIngest().setQueueCapacity(100_000);
+        RecordingProcessor gas = new RecordingProcessor("testtopic/+/gas");
+        MqttIngestDispatcher dispatcher = newDispatcher(properties, gas);
+        int producers = 8;
+        int cranesPerProducer = 8;
+        int messages = 500;
+        try {
+            // 每台塔吊的消息由一个线程按序发送（与MQTT连接的投递顺序一致），多个线程并发发送
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int base = p * cranesPerProducer;
+                Thread producer = new Thread(() -> {
+                    for (int i = 0; i < messages; i++) {
+                        for (int c = 0; c < cranesPerProducer; c++) {
+                            assertTrue(dispatcher.dispatch("testtopic/" + (base + c) + "/gas", bytes(i)));
+                        }
+                    }
+                });
+                producer.start();
+                threads.add(producer);
+            }
+            for (Thread producer : threads) {
+                producer.join();
+            }
+            awaitProcessed(gas.processed, producers * cranesPerProducer * messages);
+        } finally {
+            dispatcher.shutdown();
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            expected.add(i);
+        }
+        assertEquals(producers * cranesPerProducer, gas.order.size());
+        for (Map.Entry<String, List<Integer>> entry : gas.order.entrySet()) {
+            assertEquals(expected, entry.getValue(), "塔吊 " + entry.getKey() + " 的消息乱序");
+        }
+    }
+
+    @Test
+    public void testDifferentCranesProcessInParallel() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        properties.getIngest().setLaneCount(2);
+        RecordingProcessor gas = new RecordingProcessor("testtopic/+/gas");
+        MqttIngestDispatcher dispatcher = newDispatcher(properties, gas);
+        try {
+            // 找到与塔吊0不在同一通道的塔吊
+            int sent = 0;
+            String other = null;
+            for (int c = 0; c < 64 && other == null; c++) {
+                assertTrue(dispatcher.dispatch("testtopic/" + c + "/gas", bytes(0)));
+                awaitProcessed(gas.processed, ++sent);
+                if (!gas.threads.get(String.valueOf(c)).equals(gas.threads.get("0"))) {
+                    other = String.valueOf(c);
+                }
+            }
+            assertNotNull(other);
+
+            // 塔吊0的处理阻塞时，另一通道上的塔吊照常处理
+            gas.blockedCraneId = "0";
+            assertTrue(dispatcher.dispatch("testtopic/0/gas", bytes(1)));
+            assertTrue(dispatcher.dispatch("testtopic/" + other + "/gas", bytes(1)));
+            awaitProcessed(gas.processed, sent + 1);
+            assertEquals(Arrays.asList(0, 1), gas.order.get(other));
+            assertEquals(Collections.singletonList(0), gas.order.get("0"));
+
+            gas.release.countDown();
+            awaitProcessed(gas.processed, sent + 2);
+            assertEquals(Arrays.asList(0, 1), gas.order.get("0"));
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testRedispatchUsesCraneLaneInOrder() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        properties.getIngest().setLaneCount(4);
+        RecordingProcessor processor = new RecordingProcessor("testtopic/+/gas");
+        MqttIngestDispatcher dispatcher = newDispatcher(properties, processor);
+        try {
+            // 重放消息与实时消息交替到达，同一塔吊仍在同一通道按到达顺序处理
+            for (int i = 0; i < 60; i++) {
+                if (i / 10 % 2 == 0) {
+                    assertTrue(dispatcher.dispatch("testtopic/7/gas", bytes(i)));
+                } else {
+                    dispatcher.redispatch("testtopic/7/gas", bytes(i));
+                }
+            }
+            awaitProcessed(processor.processed, 60);
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                expected.add(i);
+            }
+            assertEquals(expected, processor.order.get("7"));
+            assertEquals(1, processor.threads.get("7").size());
+            assertTrue(processor.threads.get("7").iterator().next().startsWith("mqtt-ingest"));
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testRedispatchedBulkMessagesAreNotShed() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        properties.getIngest().setBulkBudgetMs(10);
+        SleepingProcessor lux = new SleepingProcessor("testtopic/+/lux", 200, 5);
+        MqttIngestDispatcher dispatcher = newDispatcher(properties, lux);
+        try {
+            // 重新投递的消息排队远超批量层级的预算，仍全部处理
+            for (int i = 0; i < 50; i++) {
+                dispatcher.redispatch("testtopic/1/lux", bytes(i));
+            }
+            awaitProcessed(lux.processed, 50);
+            assertEquals(0, dispatcher.getLaneStats().stream()
+                    .filter(stats -> "BULK".equals(stats.getTier()))
+                    .mapToLong(IngestLaneStatsVO::getShedCount).sum());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testListenersRunOffLaneOnBulkTier() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        CriticalTelemetryProcessor processor = new CriticalTelemetryProcessor();
+        List<Double> values = Collections.synchronizedList(new ArrayList<>());
+        Set<String> listenerThreads = ConcurrentHashMap.newKeySet();
+        CountDownLatch release = new CountDownLatch(1);
+        TelemetryListener listener = (context, readings) -> {
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            listenerThreads.add(Thread.currentThread().getName());
+            values.add(((SensorDataDTO) readings.get(0)).getGasValue());
+        };
+        ReflectionTestUtils.setField(processor, "telemetryListeners", Collections.singletonList(listener));
+        MqttIngestDispatcher dispatcher = newDispatcher(properties, processor);
+        try {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(dispatcher.dispatch("testtopic/1/gas", bytes(i)));
+            }
+            // 监听器阻塞时安全关键通道照常处理后续消息
+            awaitProcessed(processor.processed, 20);
+            assertTrue(values.isEmpty());
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (values.size() < 20 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            List<Double> expected = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                expected.add((double) i);
+            }
+            assertEquals(expected, values);
+            assertEquals(1, listenerThreads.size());
+            assertTrue(listenerThreads.iterator().next().startsWith("mqtt-ingest-bulk-"));
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testGasFloodDoesNotDelayCriticalAngle() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        properties.getIngest().setLaneCount(1);
+        properties.getIngest().setBulkBudgetMs(50);
+
+        SleepingProcessor gas = new SleepingProcessor("testtopic/+/gas", 60, 5);
+        AtomicInteger gasSeenByAngle = new AtomicInteger(-1);
+        SleepingProcessor angle = new SleepingProcessor("testtopic/+/angle", 10, 0) {
+            @Override
+            public void processMessage(MqttRoutingContext context, String payload) {
+                gasSeenByAngle.compareAndSet(-1, gas.processed.get());
+                super.processMessage(context, payload);
+            }
+        };
+        SleepingProcessor lux = new SleepingProcessor("testtopic/+/lux", 200, 5);
+
+        MqttMessageRouter router = new MqttMessageRouter();
+        ReflectionTestUtils.setField(router, "messageProcessors", Arrays.asList(gas, angle, lux));
+        ReflectionTestUtils.setField(router, "mqttProperties", properties);
+        router.initializeProcessors();
+
+        MqttIngestDispatcher dispatcher = new MqttIngestDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "mqttProperties", properties);
+        ReflectionTestUtils.setField(dispatcher, "messageRouter", router);
+        ReflectionTestUtils.setField(dispatcher, "ingestJournal", new IngestJournal());
+        dispatcher.start();
+        try {
+            byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+            // 普通层级积压约1秒的气体消息，批量层级同时过载
+            for (int i = 0; i < 200; i++) {
+                assertTrue(dispatcher.dispatch("testtopic/1/gas", payload));
+                dispatcher.dispatch("testtopic/1/lux", payload);
+            }
+
+            assertTrue(dispatcher.dispatch("testtopic/1/angle", payload));
+            assertTrue(angle.firstProcessed.await(30, TimeUnit.SECONDS));
+
+            // 角度消息在气体积压处理完之前就已处理，不排在气体消息之后
+            assertTrue(gasSeenByAngle.get() < 200, "角度消息排在气体积压之后: " + gasSeenByAngle.get());
+
+            // 处理器返回后通道才计数
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            long criticalProcessed;
+            while ((criticalProcessed = dispatcher.getLaneStats().stream()
+                    .filter(stats -> "CRITICAL".equals(stats.getTier()))
+                    .mapToLong(IngestLaneStatsVO::getProcessedCount).sum()) == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(1, criticalProcessed);
+        } finally {
+            dispatcher.shutdown();
+        }
+
+        // 批量层级排队超过预算的消息被丢弃，普通层级消息全部处理
+        assertEquals(200, gas.processed.get());
+        long shed = dispatcher.getLaneStats().stream()
+                .filter(stats -> "BULK".equals(stats.getTier()))
+                .mapToLong(IngestLaneStatsVO::getShedCount).sum();
+        assertTrue(shed > 0);
+        assertEquals(200, lux.processed.get() + shed);
+    }
+}
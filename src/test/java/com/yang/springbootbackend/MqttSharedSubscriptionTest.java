@@ -0,0 +1,194 @@
+package com.yang.springbootbackend;
+
+import com.hivemq.embedded.EmbeddedHiveMQ;
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttSharedSubscriptionTest {
+
+    private static final int MESSAGES = 200;
+
+    private static MqttProperties newProperties(boolean shared) {
+        MqttProperties properties = new MqttProperties();
+        properties.setSubClientId("crane-sub");
+        properties.setSubTopic("testtopic/+/gas, testtopic/+/angle");
+        properties.getShared().setEnabled(shared);
+        properties.getShared().setNodeId("node-a");
+        return properties;
+    }
+
+    @Test
+    public void testTopicsAndClientIdsWithoutSharing() {
+        MqttProperties properties = newProperties(false);
+
+        assertArrayEquals(new String[]{"testtopic/+/gas", "testtopic/+/angle"}, properties.getSubscriptionTopics());
+        assertEquals("crane-sub", properties.getEffectiveSubClientId());
+        assertEquals("crane-sub-pub", properties.getEffectivePubClientId());
+    }
+
+    @Test
+    public void testSharedTopicsAndNodeScopedClientIds() {
+        MqttProperties properties = newProperties(true);
+        properties.getShared().setGroup("g1");
+
+        assertArrayEquals(new String[]{"$share/g1/testtopic/+/gas", "$share/g1/testtopic/+/angle"},
+                properties.getSubscriptionTopics());
+        assertEquals("crane-sub-node-a", properties.getEffectiveSubClientId());
+        assertEquals("crane-sub-pub-node-a", properties.getEffectivePubClientId());
+
+        properties.setPubClientId("crane-pub");
+        assertEquals("crane-pub-node-a", properties.getEffectivePubClientId());
+    }
+
+    @Test
+    public void testNodeIdDefaultsToHostAndPid() {
+        MqttProperties properties = newProperties(true);
+        properties.getShared().setNodeId(" ");
+
+        String nodeId = properties.getShared().resolveNodeId();
+        assertFalse(nodeId.trim().isEmpty());
+        assertEquals("crane-sub-" + nodeId, properties.getEffectiveSubClientId());
+        assertNotEquals(properties.getEffectiveSubClientId(), properties.getEffectivePubClientId());
+    }
+
+    /**
+     * 两个节点以同一组共享订阅，每条消息只投递给其中一个节点
+     * 内嵌Moquette不支持共享订阅，这里使用内嵌HiveMQ社区版
+     */
+    @Test
+    public void testEachMessageDeliveredOnceAcrossGroup() throws Exception {
+        Path dir = Files.createTempDirectory("hivemq");
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Files.write(dir.resolve("config.xml"), ("<hivemq><listeners><tcp-listener><port>" + port
+                + "</port><bind-address>127.0.0.1</bind-address></tcp-listener></listeners>"
+                + "<persistence><mode>in-memory</mode></persistence></hivemq>").getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(dir.resolve("data"));
+        Files.createDirectories(dir.resolve("extensions"));
+
+        EmbeddedHiveMQ broker = EmbeddedHiveMQ.builder()
+                .withConfigurationFolder(dir)
+                .withDataFolder(dir.resolve("data"))
+                .withExtensionsFolder(dir.resolve("extensions"))
+                .build();
+        broker.start().join();
+        String url = "tcp://127.0.0.1:" + port;
+
+        MqttProperties nodeA = newProperties(true);
+        MqttProperties nodeB = newProperties(true);
+        nodeB.getShared().setNodeId("node-b");
+
+        Map<String, AtomicInteger> deliveries = new ConcurrentHashMap<>();
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger receivedA = new AtomicInteger();
+        AtomicInteger receivedB = new AtomicInteger();
+        MqttClient consumerA = subscribe(url, nodeA, deliveries, received, receivedA);
+        MqttClient consumerB = subscribe(url, nodeB, deliveries, received, receivedB);
+        MqttClient publisher = new MqttClient(url, nodeA.getEffectivePubClientId(), new MemoryPersistence());
+        try {
+            publisher.connect();
+            for (int i = 0; i < MESSAGES; i++) {
+                MqttMessage message = new MqttMessage(String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+                message.setQos(1);
+                publisher.publish("testtopic/" + (i % 16) + "/gas", message);
+            }
+
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (received.get() < MESSAGES && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            // 再等一会，确认没有重复投递
+            Thread.sleep(500);
+
+            assertEquals(MESSAGES, received.get());
+            assertEquals(MESSAGES, deliveries.size());
+            for (Map.Entry<String, AtomicInteger> entry : deliveries.entrySet()) {
+                assertEquals(1, entry.getValue().get(), "消息" + entry.getKey() + "投递次数");
+            }
+            assertEquals(MESSAGES, receivedA.get() + receivedB.get());
+
+            // 单核负载下可能由一个节点取走全部消息；断开分到消息较多的节点，另一节点应接手后续消息，
+            // 证明两个节点都是同一共享组的成员
+            boolean aBusier = receivedA.get() >= receivedB.get();
+            disconnect(aBusier ? consumerA : consumerB);
+            AtomicInteger remaining = aBusier ? receivedB : receivedA;
+            int before = remaining.get();
+            for (int i = MESSAGES; i < MESSAGES + 20; i++) {
+                MqttMessage message = new MqttMessage(String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+                message.setQos(1);
+                publisher.publish("testtopic/" + (i % 16) + "/gas", message);
+            }
+            deadline = System.currentTimeMillis() + 30_000;
+            while (remaining.get() < before + 20 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(before + 20, remaining.get(), aBusier ? "节点B未接手消息" : "节点A未接手消息");
+            assertEquals(MESSAGES + 20, deliveries.size());
+        } finally {
+            disconnect(publisher);
+            disconnect(consumerA);
+            disconnect(consumerB);
+            broker.stop().join();
+        }
+    }
+
+    /**
+     * 与 MqttPahoMessageDrivenChannelAdapter 一样通过全局回调接收
+     * Paho按订阅过滤器注册的监听器无法匹配带 $share 前缀的过滤器
+     */
+    private static MqttClient subscribe(String url, MqttProperties properties, Map<String, AtomicInteger> deliveries,
+                                        AtomicInteger received, AtomicInteger receivedByNode) throws Exception {
+        MqttClient client = new MqttClient(url, properties.getEffectiveSubClientId(), new MemoryPersistence());
+        client.setCallback(new MqttCallback() {
+            @Override
+            public void connectionLost(Throwable cause) {
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+                String body = new String(message.getPayload(), StandardCharsets.UTF_8);
+                deliveries.computeIfAbsent(body, key -> new AtomicInteger()).incrementAndGet();
+                receivedByNode.incrementAndGet();
+                received.incrementAndGet();
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        });
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        client.connect(options);
+        String[] topics = properties.getSubscriptionTopics();
+        int[] qos = new int[topics.length];
+        Arrays.fill(qos, 1);
+        client.subscribe(topics, qos);
+        return client;
+    }
+
+    private static void disconnect(MqttClient client) throws Exception {
+        if (client.isConnected()) {
+            client.disconnect();
+        }
+        client.close();
+    }
+}
@@ -0,0 +1,96 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.MqttTopicTrie;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttTopicTrieTest {
+
+    @Test
+    public void testExactAndSingleLevelWildcard() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<>();
+        trie.put("testtopic/+/gas", "gas");
+        trie.put("testtopic/+/angle", "angle");
+
+        MqttRoutingContext context = new MqttRoutingContext();
+        context.reset("testtopic/12/gas", 1);
+        assertEquals("gas", trie.match("testtopic/12/gas", context));
+        assertEquals("testtopic/+/gas", context.getFilter());
+        assertEquals(1, context.getWildcardCount());
+        assertEquals("12", context.getWildcard(0));
+        assertEquals("12", context.getCraneId());
+
+        assertEquals("angle", trie.match("testtopic/7/angle", null));
+        assertNull(trie.match("testtopic/7/wind", null));
+        assertNull(trie.match("testtopic/7/gas/extra", null));
+    }
+
+    @Test
+    public void testMultipleWildcardsBindSegments() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<>();
+        trie.put("site/+/crane/+/gas", "gas");
+
+        MqttRoutingContext context = new MqttRoutingContext();
+        context.reset("site/north/crane/C-07/gas", 3);
+        assertEquals("gas", trie.match("site/north/crane/C-07/gas", context));
+        assertEquals("north", context.getWildcard(0));
+        assertEquals("C-07", context.getWildcard(1));
+        assertEquals("C-07", context.getCraneId());
+    }
+
+    @Test
+    public void testLiteralPreferredAndBacktracking() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<>();
+        trie.put("site/1/crane/+/gas", "literal");
+        trie.put("site/+/crane/+/angle", "wildcard");
+        trie.put("site/#", "fallback");
+
+        assertEquals("literal", trie.match("site/1/crane/5/gas", null));
+        // site/1 分支没有angle，需要回溯到 + 分支
+        MqttRoutingContext context = new MqttRoutingContext();
+        context.reset("site/1/crane/5/angle", 3);
+        assertEquals("wildcard", trie.match("site/1/crane/5/angle", context));
+        assertEquals(2, context.getWildcardCount());
+        assertEquals("1", context.getWildcard(0));
+
+        context.reset("site/9/other", 1);
+        assertEquals("fallback", trie.match("site/9/other", context));
+        assertEquals("9/other", context.getWildcard(0));
+        // # 同时匹配父层级
+        assertEquals("fallback", trie.match("site", null));
+    }
+
+    @Test
+    public void testSystemTopicsSkipLeadingWildcards() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<>();
+        trie.put("#", "all");
+        trie.put("$SYS/#", "sys");
+
+        assertEquals("all", trie.match("a/b", null));
+        assertEquals("sys", trie.match("$SYS/broker/load", null));
+        assertNull(trie.match("$share/x", null));
+    }
+
+    @Test
+    public void testManyPatterns() {
+        MqttTopicTrie<Integer> trie = new MqttTopicTrie<>();
+        for (int i = 0; i < 5000; i++) {
+            trie.put("site/" + i + "/crane/+/gas", i);
+        }
+        assertEquals(5000, trie.size());
+        for (int i = 0; i < 5000; i += 97) {
+            assertEquals(i, trie.match("site/" + i + "/crane/x/gas", null));
+        }
+        assertNull(trie.match("site/5000/crane/x/gas", null));
+    }
+
+    @Test
+    public void testInvalidFilters() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<>();
+        assertThrows(IllegalArgumentException.class, () -> trie.put("a/b+/c", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("a/#/c", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("", "x"));
+    }
+}
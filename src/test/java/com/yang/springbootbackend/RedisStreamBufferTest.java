@@ -0,0 +1,270 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.vo.RecentReadingVO;
+import com.yang.springbootbackend.domain.mqtt.vo.RedisStreamStatsVO;
+import com.yang.springbootbackend.service.mqtt.persist.RedisStreamBuffer;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RedisStreamBufferTest {
+
+    @Test
+    public void testAppendsInPipelinedBatches() throws Exception {
+        List<MapRecord<byte[], byte[], byte[]>> added = new CopyOnWriteArrayList<>();
+        List<RedisStreamCommands.XAddOptions> options = new CopyOnWriteArrayList<>();
+        List<String> expired = new CopyOnWriteArrayList<>();
+        AtomicInteger pipelines = new AtomicInteger();
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        RedisConnection connection = connection((name, args) -> {
+            if ("xAdd".equals(name)) {
+                added.add(cast(args[0]));
+                options.add((RedisStreamCommands.XAddOptions) args[1]);
+            } else if ("expire".equals(name)) {
+                expired.add(new String((byte[]) args[0], StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        StringRedisTemplate template = new StringRedisTemplate() {
+            @Override
+            public List<Object> executePipelined(RedisCallback<?> action) {
+                // 第一个批次阻塞，模拟Redis变慢
+                if (pipelines.getAndIncrement() == 0) {
+                    blocked.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                action.doInRedis(connection);
+                return Collections.emptyList();
+            }
+        };
+
+        MqttProperties properties = new MqttProperties();
+        properties.getRedisStream().setEnabled(true);
+        properties.getRedisStream().setBufferCapacity(100);
+        properties.getRedisStream().setBatchSize(50);
+        properties.getRedisStream().setFlushIntervalMs(20);
+        properties.getRedisStream().setMaxLen(500);
+
+        RedisStreamBuffer buffer = new RedisStreamBuffer();
+        ReflectionTestUtils.setField(buffer, "mqttProperties", properties);
+        ReflectionTestUtils.setField(buffer, "stringRedisTemplate", template);
+        buffer.start();
+        try {
+            SensorDataDTO sensor = new SensorDataDTO();
+            sensor.setCraneId("1");
+            sensor.setTs(1000L);
+            sensor.setGasValue(12.5);
+            buffer.onReadings(null, Collections.singletonList(sensor));
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+            // Redis阻塞期间入站线程不等待，缓冲满后丢弃
+            List<TelemetryReading> burst = new ArrayList<>();
+            for (int i = 0; i < 150; i++) {
+                AngleDataDTO angle = new AngleDataDTO();
+                angle.setCraneId(String.valueOf(i % 3));
+                angle.setTs(2000L + i);
+                angle.setAngle((double) i);
+                burst.add(angle);
+            }
+            buffer.onReadings(null, burst);
+            assertEquals(50, buffer.getStats().getDroppedEntries());
+            release.countDown();
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (added.size() < 101 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            release.countDown();
+            buffer.shutdown();
+        }
+
+        assertEquals(101, added.size());
+        assertEquals("crane:stream:1", new String(added.get(0).getStream(), StandardCharsets.UTF_8));
+        assertEquals("12.5", field(added.get(0), "gas"));
+        assertEquals("1000", field(added.get(0), "ts"));
+        assertEquals("0.0", field(added.get(1), "angle"));
+        assertNull(field(added.get(1), "gas"));
+        for (RedisStreamCommands.XAddOptions option : options) {
+            assertEquals(500L, option.getMaxlen());
+            assertTrue(option.isApproximateTrimming());
+        }
+        // 101条读数只用了3次往返：阻塞的1条 + 积压的100条分两批
+        RedisStreamStatsVO stats = buffer.getStats();
+        assertEquals(3, stats.getPipelineCount());
+        assertEquals(101, stats.getWrittenEntries());
+        assertEquals(50, stats.getMaxBatchEntries());
+        // 每批每台塔吊只续期一次
+        assertEquals(1 + 3 + 3, expired.size());
+    }
+
+    @Test
+    public void testReadsRecentEntriesWithXrange() {
+        List<Range<String>> ranges = new ArrayList<>();
+        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+        fields.put(bytes("ts"), bytes("1700000000000"));
+        fields.put(bytes("wind"), bytes("4.5"));
+        fields.put(bytes("gas"), bytes("10.0"));
+        ByteRecord record = StreamRecords.newRecord().in(bytes("crane:stream:7")).withId("1700000000123-0").ofBytes(fields);
+
+        RedisConnection connection = connection((name, args) -> {
+            assertEquals("xRange", name);
+            assertEquals("crane:stream:7", new String((byte[]) args[0], StandardCharsets.UTF_8));
+            ranges.add(cast(args[1]));
+            return Collections.singletonList(record);
+        });
+        StringRedisTemplate template = new StringRedisTemplate() {
+            @Override
+            public <T> T execute(RedisCallback<T> action) {
+                return action.doInRedis(connection);
+            }
+        };
+        MqttProperties properties = new MqttProperties();
+        RedisStreamBuffer buffer = new RedisStreamBuffer();
+        ReflectionTestUtils.setField(buffer, "mqttProperties", properties);
+        ReflectionTestUtils.setField(buffer, "stringRedisTemplate", template);
+
+        long before = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(5);
+        List<RecentReadingVO> recent = buffer.recent("7", 5, 100);
+        assertEquals(1, recent.size());
+        assertEquals("1700000000123-0", recent.get(0).getId());
+        assertEquals(1700000000000L, recent.get(0).getTs());
+        assertEquals(4.5, recent.get(0).getValues().get("wind"));
+        assertEquals(10.0, recent.get(0).getValues().get("gas"));
+
+        String lower = ranges.get(0).getLowerBound().getValue().orElse(null);
+        assertNotNull(lower);
+        long fromMillis = Long.parseLong(lower.substring(0, lower.indexOf('-')));
+        assertTrue(fromMillis >= before && fromMillis <= before + 1000);
+        assertFalse(ranges.get(0).getUpperBound().isBounded());
+    }
+
+    @Test
+    public void testRetriesFailedPipelineInsteadOfDropping() throws Exception {
+        List<MapRecord<byte[], byte[], byte[]>> added = new CopyOnWriteArrayList<>();
+        RedisConnection connection = connection((name, args) -> {
+            if ("xAdd".equals(name)) {
+                added.add(cast(args[0]));
+            }
+            return null;
+        });
+        AtomicInteger pipelines = new AtomicInteger();
+        StringRedisTemplate template = new StringRedisTemplate() {
+            @Override
+            public List<Object> executePipelined(RedisCallback<?> action) {
+                // 前两次往返失败，模拟Redis短暂不可用
+                if (pipelines.incrementAndGet() <= 2) {
+                    throw new IllegalStateException("connection refused");
+                }
+                action.doInRedis(connection);
+                return Collections.emptyList();
+            }
+        };
+
+        MqttProperties properties = new MqttProperties();
+        properties.getRedisStream().setEnabled(true);
+        properties.getRedisStream().setFlushIntervalMs(10);
+        properties.getRedisStream().setRetryBackoffMs(5);
+        RedisStreamBuffer buffer = new RedisStreamBuffer();
+        ReflectionTestUtils.setField(buffer, "mqttProperties", properties);
+        ReflectionTestUtils.setField(buffer, "stringRedisTemplate", template);
+        buffer.start();
+        try {
+            SensorDataDTO sensor = new SensorDataDTO();
+            sensor.setCraneId("1");
+            sensor.setTs(1000L);
+            sensor.setWindValue(4.5);
+            buffer.onReadings(null, Collections.singletonList(sensor));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (added.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            buffer.shutdown();
+        }
+
+        assertEquals(1, added.size());
+        assertEquals("4.5", field(added.get(0), "wind"));
+        RedisStreamStatsVO stats = buffer.getStats();
+        assertEquals(2, stats.getRetryCount());
+        assertEquals(1, stats.getWrittenEntries());
+        assertEquals(0, stats.getFailedEntries());
+    }
+
+    interface Command {
+        Object invoke(String name, Object[] args);
+    }
+
+    /**
+     * 只实现测试用到的流和键命令的连接
+     */
+    private static RedisConnection connection(Command command) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "streamCommands":
+                case "keyCommands":
+                    return proxy;
+                case "xAdd":
+                case "xRange":
+                case "expire":
+                    return command.invoke(method.getName(), args);
+                case "toString":
+                    return "RedisConnection";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        };
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, handler);
+    }
+
+    private static String field(MapRecord<byte[], byte[], byte[]> record, String name) {
+        for (Map.Entry<byte[], byte[]> entry : record.getValue().entrySet()) {
+            if (name.equals(new String(entry.getKey(), StandardCharsets.UTF_8))) {
+                return new String(entry.getValue(), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+}
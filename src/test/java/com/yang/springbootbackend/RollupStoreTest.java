@@ -0,0 +1,127 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.RollupTierStatsVO;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupBucket;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupStore;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupTier;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RollupStoreTest {
+
+    private static final long BASE = 1_700_000_040_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRollupsMatchRawReadingsAcrossRestart() {
+        MqttProperties properties = new MqttProperties();
+        properties.getTsdb().setDirectory(directory.toString());
+        properties.getReorder().setLatenessMs(300);
+
+        // 5分钟、每100ms一条，部分读数在迟到时长内乱序到达
+        Random random = new Random(7);
+        long[] ts = new long[3000];
+        double[] values = new double[ts.length];
+        for (int i = 0; i < ts.length; i++) {
+            ts[i] = BASE + i * 100L - (i % 13 == 0 ? 250 : 0);
+            values[i] = Math.round((5 + random.nextGaussian() * 2) * 1e3) / 1e3;
+        }
+
+        RollupStore store = newStore(properties);
+        for (int i = 0; i < ts.length; i++) {
+            store.append("3", TelemetryMetric.WIND, ts[i], values[i]);
+        }
+        // 超过迟到时长：1秒桶已关闭，1分钟桶仍可修正
+        long lateTs = BASE + (ts.length - 1) * 100L - 1500;
+        store.append("3", TelemetryMetric.WIND, lateTs, 100);
+        long[] allTs = Arrays.copyOf(ts, ts.length + 1);
+        double[] allValues = Arrays.copyOf(values, values.length + 1);
+        allTs[ts.length] = lateTs;
+        allValues[ts.length] = 100;
+
+        assertBuckets(store, RollupTier.SECOND, ts, values);
+        assertBuckets(store, RollupTier.MINUTE, allTs, allValues);
+        assertBuckets(store, RollupTier.HOUR, allTs, allValues);
+        RollupTierStatsVO second = store.getStats().getTiers().get(RollupTier.SECOND.ordinal());
+        assertEquals(1, second.getLateCount());
+        assertEquals(0, store.getStats().getTiers().get(RollupTier.MINUTE.ordinal()).getLateCount());
+        store.shutdown();
+
+        // 重启后从段文件读取，同一分钟继续写入的部分桶在查询时合并
+        RollupStore reopened = newStore(properties);
+        try {
+            assertTrue(reopened.getStats().getTiers().get(RollupTier.SECOND.ordinal()).getPersistedBuckets() > 0);
+            assertBuckets(reopened, RollupTier.MINUTE, allTs, allValues);
+            long nextTs = BASE + ts.length * 100L;
+            reopened.append("3", TelemetryMetric.WIND, nextTs, -1);
+            long[] moreTs = Arrays.copyOf(allTs, allTs.length + 1);
+            double[] moreValues = Arrays.copyOf(allValues, allValues.length + 1);
+            moreTs[allTs.length] = nextTs;
+            moreValues[allTs.length] = -1;
+            assertBuckets(reopened, RollupTier.MINUTE, moreTs, moreValues);
+            assertBuckets(reopened, RollupTier.HOUR, moreTs, moreValues);
+            assertTrue(reopened.query("4", TelemetryMetric.WIND, RollupTier.MINUTE, 0, Long.MAX_VALUE).isEmpty());
+        } finally {
+            reopened.shutdown();
+        }
+    }
+
+    /**
+     * 与按原始读数直接计算的结果比较，分位数允许草图的相对误差
+     */
+    private static void assertBuckets(RollupStore store, RollupTier tier, long[] ts, double[] values) {
+        List<RollupBucket> buckets = store.query("3", TelemetryMetric.WIND, tier, 0, Long.MAX_VALUE);
+        long total = 0;
+        long previousStart = Long.MIN_VALUE;
+        for (RollupBucket bucket : buckets) {
+            assertTrue(bucket.getStart() > previousStart);
+            previousStart = bucket.getStart();
+            List<Double> inBucket = new ArrayList<>();
+            double last = Double.NaN;
+            long lastTs = Long.MIN_VALUE;
+            for (int i = 0; i < ts.length; i++) {
+                if (tier.bucketStart(ts[i]) == bucket.getStart()) {
+                    inBucket.add(values[i]);
+                    if (ts[i] >= lastTs) {
+                        lastTs = ts[i];
+                        last = values[i];
+                    }
+                }
+            }
+            inBucket.sort(null);
+            double sum = 0;
+            for (double value : inBucket) {
+                sum += value;
+            }
+            assertEquals(inBucket.size(), bucket.getCount(), tier + " " + bucket.getStart());
+            assertEquals(inBucket.get(0), bucket.getMin(), 0);
+            assertEquals(inBucket.get(inBucket.size() - 1), bucket.getMax(), 0);
+            assertEquals(sum, bucket.getSum(), 1e-6);
+            assertEquals(last, bucket.getLast(), 0);
+            double median = inBucket.get((int) Math.floor(0.5 * (inBucket.size() - 1)));
+            assertEquals(median, bucket.quantile(0.5), Math.abs(median) * 0.0101);
+            total += bucket.getCount();
+        }
+        assertEquals(ts.length, total);
+    }
+
+    private static RollupStore newStore(MqttProperties properties) {
+        RollupStore store = new RollupStore();
+        ReflectionTestUtils.setField(store, "mqttProperties", properties);
+        store.start();
+        return store;
+    }
+}
@@ -0,0 +1,362 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.vo.SensorLoaderStatsVO;
+import com.yang.springbootbackend.service.mqtt.persist.SensorReadingBulkLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorReadingBulkLoaderTest {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testSpoolsSegmentsAndLoadsIntoDailyPartitions() throws Exception {
+        FakeDatabase database = new FakeDatabase("p19700101");
+        SensorReadingBulkLoader loader = newLoader(database);
+        long now = System.currentTimeMillis();
+        long today = Math.floorDiv(now, DAY_MILLIS);
+        try {
+            List<TelemetryReading> readings = new ArrayList<>();
+            for (int i = 0; i < 250; i++) {
+                readings.add(gas(i == 0 ? "a,b" : String.valueOf(i % 5), now - i, i));
+            }
+            // 早于保留期和晚于未来分区的读数不写入
+            readings.add(gas("1", now - 40 * DAY_MILLIS, 1));
+            readings.add(gas("1", now + 10 * DAY_MILLIS, 1));
+            loader.onReadings(null, readings);
+            awaitLoaded(loader, 250);
+        } finally {
+            loader.shutdown();
+        }
+
+        SensorLoaderStatsVO stats = loader.getStats();
+        assertEquals(250, stats.getSpooledRows());
+        assertEquals(2, stats.getOutOfRangeRows());
+        assertEquals(3, stats.getLoadCount());
+        assertEquals(0, stats.getSpoolBytes());
+        assertEquals(0, stats.getFailedLoads());
+        // 创建今天起的3个分区，建表时的初始分区过期被删除
+        assertEquals(new ArrayList<>(Arrays.asList(partition(today), partition(today + 1), partition(today + 2))),
+                new ArrayList<>(database.partitions));
+        assertEquals(3, stats.getPartitionCount());
+        assertEquals(1, stats.getDroppedPartitions());
+
+        assertEquals(3, database.loaded.size());
+        assertEquals(3, database.segments.size());
+        assertTrue(database.statements.stream().anyMatch(sql -> sql.startsWith("LOAD DATA")
+                && sql.contains("' INTO TABLE `sensor_reading_daily`")));
+        List<String> first = database.loaded.get(0);
+        assertEquals(100, first.size());
+        assertEquals("a\\,b,gas," + now + ",0.0", first.get(0));
+        assertEquals(0, tempDir.listFiles().length);
+    }
+
+    @Test
+    public void testRecoversSpoolAndRetriesFailedLoads() throws Exception {
+        long now = System.currentTimeMillis();
+        long today = Math.floorDiv(now, DAY_MILLIS);
+        Files.write(new File(tempDir, "spool-00000000000000000003-" + now + "-" + now + ".csv").toPath(),
+                ("3,wind," + now + ",1.5\n").getBytes(StandardCharsets.UTF_8));
+        // 写入中崩溃的段：末尾不完整的行被截断
+        Files.write(new File(tempDir, "spool-00000000000000000007.csv.tmp").toPath(),
+                ("7,gas," + (now - 1) + ",2.0\n7,gas," + now + ",3.0\n7,gas,17").getBytes(StandardCharsets.UTF_8));
+
+        FakeDatabase database = new FakeDatabase(partition(today - 1));
+        database.failLoads.set(1);
+        long startMillis = System.currentTimeMillis();
+        SensorReadingBulkLoader loader = newLoader(database);
+        try {
+            awaitLoaded(loader, 3);
+            loader.onReadings(null, Arrays.asList(gas("8", now, 4)));
+            awaitLoaded(loader, 4);
+        } finally {
+            loader.shutdown();
+        }
+
+        assertEquals(1, loader.getStats().getFailedLoads());
+        assertEquals(3, database.loaded.size());
+        assertEquals(Arrays.asList("3,wind," + now + ",1.5"), database.loaded.get(0));
+        assertEquals(Arrays.asList("7,gas," + (now - 1) + ",2.0", "7,gas," + now + ",3.0"), database.loaded.get(1));
+        // 新段文件的序号从启动时刻开始，不会与之前已登记装载的段文件重名
+        assertTrue(Long.parseLong(database.loadedFiles.get(2).substring(6, 26)) >= startMillis * 1000);
+        // 已有分区不删除
+        assertTrue(database.partitions.contains(partition(today - 1)));
+        assertEquals(0, tempDir.listFiles().length);
+    }
+
+    @Test
+    public void testQuarantinesSegmentsThatKeepFailing() throws Exception {
+        long now = System.currentTimeMillis();
+        long today = Math.floorDiv(now, DAY_MILLIS);
+        String poison = "spool-00000000000000000001-" + now + "-" + now + ".csv";
+        Files.write(new File(tempDir, poison).toPath(), ("1,gas," + now + ",bad\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(tempDir, "spool-00000000000000000002-" + now + "-" + now + ".csv").toPath(),
+                ("2,gas," + now + ",1.0\n").getBytes(StandardCharsets.UTF_8));
+
+        FakeDatabase database = new FakeDatabase(partition(today));
+        // 连接错误不计入段文件的失败次数
+        database.failLoads.set(3);
+        database.failConnectionErrors = true;
+        SensorReadingBulkLoader loader = newLoader(database);
+        try {
+            awaitLoaded(loader, 1);
+        } finally {
+            loader.shutdown();
+        }
+
+        SensorLoaderStatsVO stats = loader.getStats();
+        assertEquals(1, stats.getQuarantinedSegments());
+        assertEquals(3 + 2, stats.getFailedLoads());
+        assertEquals(0, stats.getSpoolBytes());
+        assertEquals(Arrays.asList("2,gas," + now + ",1.0"), database.loaded.get(0));
+        assertTrue(new File(new File(tempDir, "quarantine"), poison).isFile());
+        assertFalse(new File(tempDir, poison).exists());
+    }
+
+    @Test
+    public void testSkipsSegmentsAlreadyLoaded() throws Exception {
+        long now = System.currentTimeMillis();
+        long today = Math.floorDiv(now, DAY_MILLIS);
+        // 装载提交后、删除段文件前崩溃：段文件已登记
+        String loaded = "spool-00000000000000000001-" + now + "-" + now + ".csv";
+        Files.write(new File(tempDir, loaded).toPath(), ("1,gas," + now + ",1.0\n").getBytes(StandardCharsets.UTF_8));
+        String pending = "spool-00000000000000000002-" + now + "-" + now + ".csv";
+        Files.write(new File(tempDir, pending).toPath(),
+                ("2,gas," + now + ",2.0\n2,gas," + now + ",2.5\n").getBytes(StandardCharsets.UTF_8));
+
+        FakeDatabase database = new FakeDatabase(partition(today));
+        database.segments.add(loaded);
+        // 登记失败时装载一并回滚，重试后只装载一次
+        database.failMarks.set(1);
+        SensorReadingBulkLoader loader = newLoader(database);
+        try {
+            awaitLoaded(loader, 2);
+        } finally {
+            loader.shutdown();
+        }
+
+        // 同一时间戳的两条读数都保留
+        assertEquals(Arrays.asList(Arrays.asList("2,gas," + now + ",2.0", "2,gas," + now + ",2.5")), database.loaded);
+        assertTrue(database.segments.contains(pending));
+        assertEquals(1, loader.getStats().getLoadCount());
+        assertEquals(1, loader.getStats().getFailedLoads());
+        assertEquals(0, loader.getStats().getSpoolBytes());
+        assertEquals(0, tempDir.listFiles().length);
+    }
+
+    private SensorReadingBulkLoader newLoader(FakeDatabase database) {
+        MqttProperties properties = new MqttProperties();
+        properties.getJdbcLoad().setEnabled(true);
+        properties.getJdbcLoad().setSpoolDirectory(tempDir.getAbsolutePath());
+        properties.getJdbcLoad().setSegmentRows(100);
+        properties.getJdbcLoad().setSegmentMaxAgeMs(50);
+        properties.getJdbcLoad().setMaxLoadAttempts(2);
+        SensorReadingBulkLoader loader = new SensorReadingBulkLoader() {
+            @Override
+            protected Connection openConnection() {
+                return database.connection();
+            }
+        };
+        ReflectionTestUtils.setField(loader, "mqttProperties", properties);
+        loader.start();
+        return loader;
+    }
+
+    private static SensorDataDTO gas(String craneId, long ts, double value) {
+        SensorDataDTO sensor = new SensorDataDTO();
+        sensor.setCraneId(craneId);
+        sensor.setTs(ts);
+        sensor.setGasValue(value);
+        return sensor;
+    }
+
+    private static String partition(long day) {
+        return "p" + LocalDate.ofEpochDay(day).format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    private static void awaitLoaded(SensorReadingBulkLoader loader, long rows) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (loader.getStats().getLoadedRows() < rows && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(rows, loader.getStats().getLoadedRows());
+    }
+
+    /**
+     * 只实现装载用到的语句：查询分区、增删分区、LOAD DATA（读取文件并按行计数）、段文件登记；
+     * 关闭自动提交后 LOAD DATA 和登记在提交时生效，未提交就关闭连接时丢弃
+     */
+    private static final class FakeDatabase {
+
+        private static final Pattern LOAD = Pattern.compile("LOAD DATA LOCAL INFILE '([^']+)'.*");
+        private static final Pattern ADD = Pattern.compile("PARTITION (p\\d{8}) VALUES");
+        private static final Pattern SEGMENT = Pattern.compile(".*_segment.*'(spool-[^']+)'.*");
+
+        private final Set<String> partitions = new ConcurrentSkipListSet<>();
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+        private final List<List<String>> loaded = new CopyOnWriteArrayList<>();
+        private final List<String> loadedFiles = new CopyOnWriteArrayList<>();
+        private final Set<String> segments = new ConcurrentSkipListSet<>();
+        private final AtomicInteger failLoads = new AtomicInteger();
+        private final AtomicInteger failMarks = new AtomicInteger();
+        private volatile boolean failConnectionErrors;
+
+        FakeDatabase(String... partitions) {
+            this.partitions.addAll(Arrays.asList(partitions));
+        }
+
+        Connection connection() {
+            Transaction transaction = new Transaction();
+            return proxy(Connection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "createStatement":
+                        return statement(transaction);
+                    case "setAutoCommit":
+                        transaction.autoCommit = (Boolean) args[0];
+                        transaction.commit();
+                        return null;
+                    case "commit":
+                        transaction.commit();
+                        return null;
+                    case "close":
+                        transaction.staged.clear();
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private Statement statement(Transaction transaction) {
+            return proxy(Statement.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "executeQuery":
+                        Matcher segment = SEGMENT.matcher((String) args[0]);
+                        if (segment.matches()) {
+                            return resultSet(segments.contains(segment.group(1))
+                                    ? Arrays.asList("1").iterator() : new ArrayList<String>().iterator());
+                        }
+                        return resultSet(new ArrayList<>(partitions).iterator());
+                    case "executeUpdate":
+                        return executeUpdate((String) args[0], transaction);
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private int executeUpdate(String sql, Transaction transaction) throws Exception {
+            statements.add(sql);
+            Matcher load = LOAD.matcher(sql);
+            if (load.matches()) {
+                if (failLoads.getAndDecrement() > 0) {
+                    throw new SQLException("Communications link failure", failConnectionErrors ? "08S01" : null);
+                }
+                File file = new File(load.group(1));
+                List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+                if (lines.stream().anyMatch(line -> line.endsWith(",bad"))) {
+                    throw new SQLException("Incorrect double value: 'bad'", "HY000");
+                }
+                transaction.apply(() -> {
+                    loaded.add(lines);
+                    loadedFiles.add(file.getName());
+                });
+                return lines.size();
+            }
+            Matcher segment = SEGMENT.matcher(sql);
+            if (sql.startsWith("INSERT") && segment.matches()) {
+                if (failMarks.getAndDecrement() > 0) {
+                    throw new SQLException("Communications link failure", "08S01");
+                }
+                transaction.apply(() -> segments.add(segment.group(1)));
+                return 1;
+            }
+            if (sql.contains("ADD PARTITION")) {
+                Matcher add = ADD.matcher(sql);
+                while (add.find()) {
+                    partitions.add(add.group(1));
+                }
+            } else if (sql.contains("DROP PARTITION")) {
+                for (String name : sql.substring(sql.indexOf("DROP PARTITION ") + 15).split(", ")) {
+                    partitions.remove(name);
+                }
+            }
+            return 0;
+        }
+
+        private static ResultSet resultSet(Iterator<String> rows) {
+            String[] current = new String[1];
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        current[0] = rows.hasNext() ? rows.next() : null;
+                        return current[0] != null;
+                    case "getString":
+                        return current[0];
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static final class Transaction {
+
+            private final List<Runnable> staged = new ArrayList<>();
+            private boolean autoCommit = true;
+
+            void apply(Runnable change) {
+                if (autoCommit) {
+                    change.run();
+                } else {
+                    staged.add(change);
+                }
+            }
+
+            void commit() {
+                staged.forEach(Runnable::run);
+                staged.clear();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+}
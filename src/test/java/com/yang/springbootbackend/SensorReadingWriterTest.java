@@ -0,0 +1,198 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.TelemetryReading;
+import com.yang.springbootbackend.domain.mqtt.entity.SensorReading;
+import com.yang.springbootbackend.domain.mqtt.vo.SensorWriterStatsVO;
+import com.yang.springbootbackend.mapper.SensorReadingMapper;
+import com.yang.springbootbackend.service.mqtt.deadletter.DeadLetterEntry;
+import com.yang.springbootbackend.service.mqtt.deadletter.DeadLetterJournal;
+import com.yang.springbootbackend.service.mqtt.persist.SensorReadingWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorReadingWriterTest {
+
+    @Test
+    public void testBuffersAndFlushesInMultiRowStatements() throws Exception {
+        List<Integer> statementSizes = new CopyOnWriteArrayList<>();
+        List<SensorReading> rows = new CopyOnWriteArrayList<>();
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        MqttProperties properties = new MqttProperties();
+        properties.getJdbc().setEnabled(true);
+        properties.getJdbc().setBufferCapacity(10);
+        properties.getJdbc().setBatchSize(8);
+        properties.getJdbc().setInsertRows(3);
+        properties.getJdbc().setFlushIntervalMs(20);
+
+        SensorReadingWriter writer = new SensorReadingWriter();
+        ReflectionTestUtils.setField(writer, "mqttProperties", properties);
+        ReflectionTestUtils.setField(writer, "sensorReadingMapper", mapper(inserted -> {
+            // 第一条语句阻塞，模拟数据库变慢
+            blocked.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            statementSizes.add(inserted.size());
+            rows.addAll(inserted);
+        }));
+        writer.start();
+        try {
+            SensorDataDTO sensor = new SensorDataDTO();
+            sensor.setCraneId("1");
+            sensor.setTs(1000L);
+            sensor.setGasValue(12.5);
+            sensor.setWindValue(3.0);
+            AngleDataDTO angle = new AngleDataDTO();
+            angle.setCraneId("1");
+            angle.setTs(1000L);
+            angle.setAngle(30.0);
+            writer.onReadings(null, Arrays.asList(sensor, angle));
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+            // 数据库阻塞期间入站线程不等待，缓冲满后丢弃
+            List<TelemetryReading> burst = new ArrayList<>();
+            for (int i = 0; i < 15; i++) {
+                SensorDataDTO reading = new SensorDataDTO();
+                reading.setCraneId("2");
+                reading.setTs(2000L + i);
+                reading.setTemperature(20.0 + i);
+                burst.add(reading);
+            }
+            writer.onReadings(null, burst);
+            assertEquals(5, writer.getStats().getDroppedRows());
+            release.countDown();
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (rows.size() < 13 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            release.countDown();
+            writer.shutdown();
+        }
+
+        assertEquals(13, rows.size());
+        assertEquals("gas", rows.get(0).getMetric());
+        assertEquals(12.5, rows.get(0).getMetricValue());
+        assertEquals("angle", rows.get(2).getMetric());
+        for (int size : statementSizes) {
+            assertTrue(size <= 3);
+        }
+        SensorWriterStatsVO stats = writer.getStats();
+        assertEquals(13, stats.getWrittenRows());
+        assertEquals(0, stats.getFailedRows());
+        assertTrue(stats.getMaxBatchRows() <= 8);
+    }
+
+    @Test
+    public void testRetriesThenDeadLettersAndReplays(@TempDir File tempDir) throws Exception {
+        MqttProperties properties = new MqttProperties();
+        properties.getJdbc().setEnabled(true);
+        properties.getJdbc().setFlushIntervalMs(10);
+        properties.getJdbc().setMaxAttempts(3);
+        properties.getJdbc().setRetryBackoffMs(5);
+        properties.getDeadLetter().setDirectory(tempDir.getAbsolutePath());
+        DeadLetterJournal journal = new DeadLetterJournal();
+        ReflectionTestUtils.setField(journal, "mqttProperties", properties);
+        journal.start();
+
+        // 第一批失败两次后成功，第二批一直失败直到数据库恢复
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean down = new AtomicBoolean();
+        List<SensorReading> rows = new CopyOnWriteArrayList<>();
+        SensorReadingWriter writer = new SensorReadingWriter();
+        ReflectionTestUtils.setField(writer, "mqttProperties", properties);
+        ReflectionTestUtils.setField(writer, "deadLetterJournal", journal);
+        ReflectionTestUtils.setField(writer, "sensorReadingMapper", mapper(inserted -> {
+            if (calls.incrementAndGet() <= 2 || down.get()) {
+                throw new IllegalStateException("connection reset");
+            }
+            rows.addAll(inserted);
+        }));
+        writer.start();
+        try {
+            writer.onReadings(null, Collections.singletonList(gas("1", 1000L, 1.5)));
+            awaitRows(rows, 1);
+            assertEquals(2, writer.getStats().getRetryCount());
+            assertEquals(0, writer.getStats().getFailedRows());
+
+            down.set(true);
+            writer.onReadings(null, Collections.singletonList(gas("2", 2000L, 2.5)));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (journal.getWrittenCount() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, writer.getStats().getFailedRows());
+            List<DeadLetterEntry> entries = journal.read(0, 10);
+            assertEquals(1, entries.size());
+            assertEquals(SensorReadingWriter.DEAD_LETTER_TOPIC, entries.get(0).getTopic());
+
+            // 数据库恢复后重放死信，行按原样写入
+            down.set(false);
+            writer.replay(entries.get(0).getPayload());
+            awaitRows(rows, 2);
+            SensorReading replayed = rows.get(1);
+            assertEquals("2", replayed.getCraneId());
+            assertEquals("gas", replayed.getMetric());
+            assertEquals(2000L, replayed.getTs());
+            assertEquals(2.5, replayed.getMetricValue());
+        } finally {
+            writer.shutdown();
+            journal.shutdown();
+        }
+    }
+
+    private static SensorDataDTO gas(String craneId, long ts, double value) {
+        SensorDataDTO reading = new SensorDataDTO();
+        reading.setCraneId(craneId);
+        reading.setTs(ts);
+        reading.setGasValue(value);
+        return reading;
+    }
+
+    private static void awaitRows(List<SensorReading> rows, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (rows.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, rows.size());
+    }
+
+    interface Insert {
+        void accept(List<SensorReading> rows) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SensorReadingMapper mapper(Insert insert) {
+        return (SensorReadingMapper) Proxy.newProxyInstance(SensorReadingMapper.class.getClassLoader(),
+                new Class<?>[]{SensorReadingMapper.class}, (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return "toString".equals(method.getName()) ? "SensorReadingMapper" : method.invoke(insert, args);
+                    }
+                    if (!"insertBatch".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<SensorReading> rows = new ArrayList<>((List<SensorReading>) args[0]);
+                    insert.accept(rows);
+                    return rows.size();
+                });
+    }
+}
@@ -0,0 +1,131 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.service.mqtt.ingest.SequenceDeduplicator;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequenceDeduplicatorTest {
+
+    private static final String STREAM = "testtopic/+/angle";
+
+    private SequenceDeduplicator newDeduplicator(int windowSize, int maxDevices) {
+        MqttProperties properties = new MqttProperties();
+        properties.getDedup().setWindowSize(windowSize);
+        properties.getDedup().setMaxDevices(maxDevices);
+        SequenceDeduplicator deduplicator = new SequenceDeduplicator();
+        ReflectionTestUtils.setField(deduplicator, "mqttProperties", properties);
+        deduplicator.start();
+        return deduplicator;
+    }
+
+    private static AngleDataDTO reading(String craneId, Long seq) {
+        AngleDataDTO data = new AngleDataDTO();
+        data.setCraneId(craneId);
+        data.setAngle(1.0);
+        data.setSeq(seq);
+        return data;
+    }
+
+    private static List<Long> seqs(List<AngleDataDTO> readings) {
+        List<Long> result = new ArrayList<>();
+        for (AngleDataDTO reading : readings) {
+            result.add(reading.getSeq());
+        }
+        return result;
+    }
+
+    @Test
+    public void testRedeliveryAndOutOfOrderWithinWindow() {
+        SequenceDeduplicator deduplicator = newDeduplicator(64, 1000);
+        List<AngleDataDTO> first = Arrays.asList(reading("1", 5L), reading("1", 7L), reading("2", 5L));
+        assertSame(first, deduplicator.filter(STREAM, first));
+
+        // 重连后重复投递7，同时迟到的6和无序号读数照常处理
+        List<AngleDataDTO> second = Arrays.asList(reading("1", 7L), reading("1", 6L), reading("1", null),
+                reading("1", 6L));
+        assertEquals(Arrays.asList(6L, null), seqs(deduplicator.filter(STREAM, second)));
+
+        // 不同数据流的序号相互独立
+        assertEquals(1, deduplicator.filter("testtopic/+/gas", Arrays.asList(reading("1", 7L))).size());
+        assertEquals(2, deduplicator.getStats().getDuplicateCount());
+        assertEquals(3, deduplicator.getStats().getTrackedDevices());
+    }
+
+    @Test
+    public void testWindowSlideAndDeviceRestart() {
+        SequenceDeduplicator deduplicator = newDeduplicator(64, 1000);
+        for (long seq = 0; seq < 200; seq++) {
+            assertEquals(1, deduplicator.filter(STREAM, Arrays.asList(reading("1", seq))).size());
+        }
+        // 窗口内的旧序号仍被识别为重复
+        assertTrue(deduplicator.filter(STREAM, Arrays.asList(reading("1", 150L))).isEmpty());
+        // 回退超过窗口视为设备重启，从新序号重新开始
+        assertEquals(1, deduplicator.filter(STREAM, Arrays.asList(reading("1", 0L))).size());
+        assertTrue(deduplicator.filter(STREAM, Arrays.asList(reading("1", 0L))).isEmpty());
+        assertEquals(1, deduplicator.getStats().getResetCount());
+    }
+
+    @Test
+    public void testReleaseAndDeviceLimit() {
+        SequenceDeduplicator deduplicator = newDeduplicator(64, 16);
+        List<AngleDataDTO> batch = Arrays.asList(reading("1", 1L));
+        deduplicator.filter(STREAM, batch);
+        deduplicator.release(STREAM, batch);
+        assertEquals(1, deduplicator.filter(STREAM, batch).size());
+
+        // 每个分段最多跟踪1台设备，新设备淘汰旧设备后参与去重
+        for (int i = 0; i < 1000; i++) {
+            List<AngleDataDTO> readings = Arrays.asList(reading("c" + i, 1L));
+            assertEquals(1, deduplicator.filter(STREAM, readings).size());
+            assertTrue(deduplicator.filter(STREAM, readings).isEmpty());
+        }
+        assertTrue(deduplicator.getStats().getTrackedDevices() <= 16);
+        assertTrue(deduplicator.getStats().getEvictedCount() > 0);
+    }
+
+    @Test
+    public void testRecentlySeenDevicesSurviveEviction() {
+        SequenceDeduplicator deduplicator = newDeduplicator(64, 16 * 8);
+        List<AngleDataDTO> hot = Arrays.asList(reading("hot", 1L));
+        deduplicator.filter(STREAM, hot);
+
+        // 持续上报的设备在大量一次性设备涌入时保留窗口
+        for (int i = 0; i < 5000; i++) {
+            deduplicator.filter(STREAM, Arrays.asList(reading("cold" + i, 1L)));
+            if (i % 4 == 0) {
+                assertTrue(deduplicator.filter(STREAM, hot).isEmpty(), "第" + i + "台设备插入后热设备被淘汰");
+            }
+        }
+        assertTrue(deduplicator.getStats().getTrackedDevices() <= 16 * 8);
+    }
+
+    @Test
+    public void testIdleDevicesEvicted() throws InterruptedException {
+        MqttProperties properties = new MqttProperties();
+        properties.getDedup().setWindowSize(64);
+        properties.getDedup().setIdleTtlSeconds(1);
+        SequenceDeduplicator deduplicator = new SequenceDeduplicator();
+        ReflectionTestUtils.setField(deduplicator, "mqttProperties", properties);
+        deduplicator.start();
+
+        for (int i = 0; i < 200; i++) {
+            deduplicator.filter(STREAM, Arrays.asList(reading("old" + i, 1L)));
+        }
+        Thread.sleep(1100);
+        // 新设备插入时时钟指针顺带淘汰空闲超时的设备，新设备未超时不会被淘汰
+        int inserted = 0;
+        while (deduplicator.getStats().getEvictedCount() < 200 && inserted < 20000) {
+            deduplicator.filter(STREAM, Arrays.asList(reading("new" + inserted++, 1L)));
+        }
+        assertEquals(200, deduplicator.getStats().getEvictedCount());
+        assertEquals(inserted, deduplicator.getStats().getTrackedDevices());
+    }
+}
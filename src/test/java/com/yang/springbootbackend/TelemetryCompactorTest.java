@@ -0,0 +1,134 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.CompactionStatsVO;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupStore;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryCompactor;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import com.yang.springbootbackend.service.mqtt.tsdb.TimeSeriesStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryCompactorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRetentionAndCompactionSurviveRestart() {
+        MqttProperties properties = new MqttProperties();
+        properties.getTsdb().setDirectory(directory.toString());
+        properties.getTsdb().setBlockBytes(256);
+        properties.getTsdb().setSegmentBytes(4096);
+        properties.getRollup().setEnabled(false);
+        properties.getCompaction().setEnabled(false);
+        properties.getCompaction().setRawRetentionHours(24);
+        properties.getCompaction().setMinGarbageRatio(0.4);
+        properties.getCompaction().setGraceSeconds(3600);
+        properties.getCompaction().setIoBytesPerSecond(0);
+
+        long now = System.currentTimeMillis();
+        long old = now - 48 * 3_600_000L;
+        long recent = now - 3_600_000L;
+        Stores stores = new Stores(properties);
+        // 先写入整段过期的数据，再交替写入过期和未过期的数据
+        for (int i = 0; i < 2000; i++) {
+            stores.tsdb.append("c", TelemetryMetric.WIND, old + i * 1000L, i % 17);
+        }
+        for (int i = 0; i < 3000; i++) {
+            stores.tsdb.append("a", TelemetryMetric.WIND, old + i * 1000L, i % 13);
+            stores.tsdb.append("b", TelemetryMetric.WIND, recent + i * 1000L, i % 11);
+        }
+        awaitWritten(stores.tsdb);
+        assertTrue(stores.compactor.runOnce());
+
+        CompactionStatsVO stats = stores.compactor.getStats();
+        assertTrue(stats.getSegmentsDropped() > 0);
+        assertTrue(stats.getSegmentsCompacted() > 0);
+        assertTrue(stats.getBytesWritten() > 0);
+        assertTrue(stats.getRetiredSegments() > 0);
+        assertEquals(0, stats.getBytesReclaimed());
+        assertEquals(100, stats.getProgressPercent(), 0);
+        assertRecent(stores.tsdb, recent);
+        long remainingA = count(stores.tsdb, "a");
+        long remainingC = count(stores.tsdb, "c");
+        assertTrue(remainingA < 3000);
+        assertTrue(remainingC < 2000);
+        stores.shutdown();
+
+        // 重启：已生效的压缩通过标记完成，被替换的段不会造成重复数据
+        properties.getCompaction().setGraceSeconds(0);
+        Stores reopened = new Stores(properties);
+        try {
+            assertRecent(reopened.tsdb, recent);
+            // 整段过期的段在删除前重启会重新加载，下一轮再次删除
+            assertTrue(reopened.compactor.runOnce());
+            assertRecent(reopened.tsdb, recent);
+            // 重启后原来的写入段也已封存，可以清理的过期数据只多不少
+            assertTrue(count(reopened.tsdb, "a") <= remainingA);
+            assertTrue(count(reopened.tsdb, "c") <= remainingC);
+            assertTrue(reopened.compactor.getStats().getBytesReclaimed() > 0);
+            assertEquals(0, reopened.compactor.getStats().getRetiredSegments());
+        } finally {
+            reopened.shutdown();
+        }
+    }
+
+    /**
+     * 等待封存的块由落盘线程写入段文件
+     */
+    private static void awaitWritten(TimeSeriesStore store) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.getStats().getPendingBlocks() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        assertEquals(0, store.getStats().getPendingBlocks());
+    }
+
+    private static void assertRecent(TimeSeriesStore store, long recent) {
+        Set<Long> seen = new HashSet<>();
+        store.scan("b", TelemetryMetric.WIND, 0, Long.MAX_VALUE, (ts, value) -> {
+            assertTrue(seen.add(ts), "重复的点: " + ts);
+            assertEquals((ts - recent) / 1000 % 11, value, 0);
+            return true;
+        });
+        assertEquals(3000, seen.size());
+    }
+
+    private static long count(TimeSeriesStore store, String craneId) {
+        long[] count = new long[1];
+        store.scan(craneId, TelemetryMetric.WIND, 0, Long.MAX_VALUE, (ts, value) -> ++count[0] > 0);
+        return count[0];
+    }
+
+    private static final class Stores {
+
+        final TimeSeriesStore tsdb = new TimeSeriesStore();
+        final RollupStore rollup = new RollupStore();
+        final TelemetryCompactor compactor = new TelemetryCompactor();
+
+        Stores(MqttProperties properties) {
+            ReflectionTestUtils.setField(tsdb, "mqttProperties", properties);
+            ReflectionTestUtils.setField(rollup, "mqttProperties", properties);
+            ReflectionTestUtils.setField(compactor, "mqttProperties", properties);
+            ReflectionTestUtils.setField(compactor, "timeSeriesStore", tsdb);
+            ReflectionTestUtils.setField(compactor, "rollupStore", rollup);
+            tsdb.start();
+            rollup.start();
+            compactor.start();
+        }
+
+        void shutdown() {
+            compactor.shutdown();
+            rollup.shutdown();
+            tsdb.shutdown();
+        }
+    }
+}
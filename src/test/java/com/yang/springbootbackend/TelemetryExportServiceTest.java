@@ -0,0 +1,154 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryExportService;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import com.yang.springbootbackend.service.mqtt.tsdb.TimeSeriesStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryExportServiceTest {
+
+    private static final long BASE = 1_699_999_200_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testStreamsCsvAndStopsOnDisconnectOrCancel() throws Exception {
+        MqttProperties properties = new MqttProperties();
+        properties.getTsdb().setDirectory(directory.toString());
+        properties.getExport().setChunkBytes(1024);
+        TimeSeriesStore timeSeriesStore = new TimeSeriesStore();
+        ReflectionTestUtils.setField(timeSeriesStore, "mqttProperties", properties);
+        timeSeriesStore.start();
+        TelemetryExportService service = new TelemetryExportService();
+        ReflectionTestUtils.setField(service, "mqttProperties", properties);
+        ReflectionTestUtils.setField(service, "timeSeriesStore", timeSeriesStore);
+        try {
+            for (int i = 0; i < 5000; i++) {
+                timeSeriesStore.append("1", TelemetryMetric.WIND, BASE + i * 1000L, i % 60);
+                timeSeriesStore.append("2", TelemetryMetric.ANGLE, BASE + i * 1000L, i * 0.5);
+            }
+            long to = BASE + 5_000_000L;
+
+            // 全部塔吊、全部指标
+            TelemetryExportService.Task task = service.open(null, Arrays.asList(TelemetryMetric.values()), BASE, to, 0);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            service.write(task, out);
+            String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(10001, lines.length);
+            assertEquals("crane_id,metric,ts,value", lines[0]);
+            assertEquals("1,wind," + BASE + ",0.0", lines[1]);
+            assertEquals("1,wind," + (BASE + 61_000) + ",1.0", lines[62]);
+            assertEquals("2,angle," + (BASE + 4_999_000) + ",2499.5", lines[10000]);
+            assertEquals(10000, task.getRows());
+            assertEquals(out.size(), task.getBytes());
+            assertTrue(service.listTasks().isEmpty());
+
+            // 时间范围过滤
+            task = service.open(Collections.singletonList("2"), Collections.singletonList(TelemetryMetric.ANGLE),
+                    BASE + 10_000, BASE + 20_000, 0);
+            out.reset();
+            service.write(task, out);
+            assertEquals(11, new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n").length);
+
+            // 并发上限
+            TelemetryExportService.Task first = service.open(null, Arrays.asList(TelemetryMetric.values()), BASE, to, 0);
+            TelemetryExportService.Task second = service.open(null, Arrays.asList(TelemetryMetric.values()), BASE, to, 0);
+            assertNull(service.open(null, Arrays.asList(TelemetryMetric.values()), BASE, to, 0));
+            assertEquals(2, service.listTasks().size());
+
+            // 客户端断开：写出失败后不再继续扫描
+            CountingStream broken = new CountingStream(2, null, 0);
+            assertThrows(IOException.class, () -> service.write(first, broken));
+            assertEquals(2, broken.writes);
+            assertTrue(first.getRows() < 10000);
+
+            // 取消：下一块写出前停止
+            CountingStream cancelling = new CountingStream(Integer.MAX_VALUE, service, second.getId());
+            service.write(second, cancelling);
+            assertTrue(second.isCancelled());
+            assertTrue(second.getRows() < 10000);
+            assertTrue(service.listTasks().isEmpty());
+            assertFalse(service.cancel(second.getId()));
+        } finally {
+            timeSeriesStore.shutdown();
+        }
+    }
+
+    @Test
+    public void testQuotesCraneIdAndThrottles() throws Exception {
+        MqttProperties properties = new MqttProperties();
+        properties.getTsdb().setDirectory(directory.toString());
+        properties.getExport().setChunkBytes(4096);
+        TimeSeriesStore timeSeriesStore = new TimeSeriesStore();
+        ReflectionTestUtils.setField(timeSeriesStore, "mqttProperties", properties);
+        timeSeriesStore.start();
+        TelemetryExportService service = new TelemetryExportService();
+        ReflectionTestUtils.setField(service, "mqttProperties", properties);
+        ReflectionTestUtils.setField(service, "timeSeriesStore", timeSeriesStore);
+        try {
+            for (int i = 0; i < 3000; i++) {
+                timeSeriesStore.append("a,\"b\"", TelemetryMetric.GAS, BASE + i, 1.25);
+            }
+            // 约100KB输出，限速50KB/s：首秒令牌用完后等待
+            TelemetryExportService.Task task = service.open(null, Collections.singletonList(TelemetryMetric.GAS),
+                    BASE, BASE + 3000, 50 * 1024);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            service.write(task, out);
+            String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(3001, lines.length);
+            assertEquals("\"a,\"\"b\"\"\",gas," + BASE + ",1.25", lines[1]);
+            assertTrue(out.size() > 80 * 1024);
+            assertTrue(task.getThrottledMs() > 0);
+            assertTrue(service.listTasks().isEmpty());
+        } finally {
+            timeSeriesStore.shutdown();
+        }
+    }
+
+    /**
+     * 第failAfter次之后的写出抛出异常，模拟客户端断开；或在第一次写出时取消任务
+     */
+    private static final class CountingStream extends OutputStream {
+
+        private final int failAfter;
+        private final TelemetryExportService service;
+        private final long cancelId;
+        private int writes;
+
+        CountingStream(int failAfter, TelemetryExportService service, long cancelId) {
+            this.failAfter = failAfter;
+            this.service = service;
+            this.cancelId = cancelId;
+        }
+
+        @Override
+        public void write(int b) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (writes >= failAfter) {
+                throw new IOException("Broken pipe");
+            }
+            writes++;
+            if (service != null) {
+                service.cancel(cancelId);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryFrameCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryFrameCodecTest {
+
+    @Test
+    public void testSensorDataRoundTrip() {
+        SensorDataDTO data = new SensorDataDTO();
+        data.setGasValue(14.0);
+        data.setGasrate(0);
+        data.setRainValue(100.0);
+        data.setRainrate(1);
+        data.setHeight(20.0);
+        data.setLuxValue(42.5);
+        data.setWindValue(0.135);
+        data.setTemperature(-26.6);
+        data.setTs(1760000000123L);
+        data.setSeq(4294967295L);
+
+        byte[] frame = TelemetryFrameCodec.encodeSensorData(data);
+        assertTrue(TelemetryFrameCodec.isFrame(frame));
+        // 头部6 + 时间戳8 + 序号4 + 6个定点数 + 2个标志
+        assertEquals(6 + 8 + 4 + 6 * 4 + 2, frame.length);
+        assertEquals(data, TelemetryFrameCodec.decodeSensorData(frame));
+    }
+
+    @Test
+    public void testPartialFieldsWithoutHeaderExtras() {
+        SensorDataDTO data = new SensorDataDTO();
+        data.setWindValue(12.345);
+        data.setRainrate(0);
+
+        byte[] frame = TelemetryFrameCodec.encodeSensorData(data);
+        assertEquals(6 + 4 + 1, frame.length);
+        SensorDataDTO decoded = TelemetryFrameCodec.decodeSensorData(frame);
+        assertEquals(data, decoded);
+        assertNull(decoded.getTs());
+        assertNull(decoded.getSeq());
+        assertNull(decoded.getGasValue());
+    }
+
+    @Test
+    public void testAngleDataRoundTrip() {
+        AngleDataDTO data = new AngleDataDTO();
+        data.setAngle(-1.6851);
+        data.setSeq(7L);
+
+        byte[] frame = TelemetryFrameCodec.encodeAngleData(data);
+        assertEquals(6 + 4 + 4, frame.length);
+        assertEquals(data, TelemetryFrameCodec.decodeAngleData(frame));
+    }
+
+    @Test
+    public void testJsonIsNotDetectedAsFrame() {
+        assertFalse(TelemetryFrameCodec.isFrame("{\"angle\":1}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(TelemetryFrameCodec.isFrame(new byte[0]));
+    }
+
+    @Test
+    public void testSequenceOutsideUint32Rejected() {
+        AngleDataDTO data = new AngleDataDTO();
+        data.setAngle(3.0);
+        data.setSeq(4294967296L);
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameCodec.encodeAngleData(data));
+
+        data.setSeq(-1L);
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameCodec.encodeAngleData(data));
+
+        SensorDataDTO sensor = new SensorDataDTO();
+        sensor.setGasValue(1.0);
+        sensor.setSeq(1L << 40);
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameCodec.encodeSensorData(sensor));
+    }
+
+    @Test
+    public void testMalformedFramesRejected() {
+        AngleDataDTO data = new AngleDataDTO();
+        data.setAngle(3.0);
+        byte[] frame = TelemetryFrameCodec.encodeAngleData(data);
+
+        // 类型不匹配
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameCodec.decodeSensorData(frame));
+
+        // 截断
+        byte[] truncated = new byte[frame.length - 1];
+        System.arraycopy(frame, 0, truncated, 0, truncated.length);
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameCodec.decodeAngleData(truncated));
+
+        // 未知版本
+        byte[] future = frame.clone();
+        future[1] = 9;
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameCodec.decodeAngleData(future));
+    }
+
+    @Test
+    public void testBatchRoundTrip() {
+        List<AngleDataDTO> readings = new ArrayList<>();
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            AngleDataDTO data = new AngleDataDTO();
+            data.setAngle(i * 1.25);
+            data.setTs(1760000000000L + i * 100);
+            data.setSeq((long) i);
+            readings.add(data);
+            frames.add(TelemetryFrameCodec.encodeAngleData(data));
+        }
+
+        byte[] batch = TelemetryFrameCodec.encodeBatch(frames);
+        assertTrue(TelemetryFrameCodec.isFrame(batch));
+        assertEquals(readings, TelemetryFrameCodec.decodeAngleDataList(batch));
+        // 单条帧也可以按列表解码
+        assertEquals(readings.subList(0, 1), TelemetryFrameCodec.decodeAngleDataList(frames.get(0)));
+        // 批量帧中的读数类型必须一致
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameCodec.decodeSensorDataList(batch));
+
+        byte[] truncated = Arrays.copyOf(batch, batch.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> TelemetryFrameCodec.decodeAngleDataList(truncated));
+    }
+}
@@ -0,0 +1,91 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupStore;
+import com.yang.springbootbackend.service.mqtt.tsdb.RollupTier;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryHistoryService;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import com.yang.springbootbackend.service.mqtt.tsdb.TimeSeriesStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryHistoryServiceTest {
+
+    private static final long BASE = 1_699_999_200_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testResolutionSelectionAndStreaming() throws Exception {
+        MqttProperties properties = new MqttProperties();
+        properties.getTsdb().setDirectory(directory.toString());
+        TimeSeriesStore timeSeriesStore = new TimeSeriesStore();
+        ReflectionTestUtils.setField(timeSeriesStore, "mqttProperties", properties);
+        timeSeriesStore.start();
+        RollupStore rollupStore = new RollupStore();
+        ReflectionTestUtils.setField(rollupStore, "mqttProperties", properties);
+        rollupStore.start();
+        TelemetryHistoryService service = new TelemetryHistoryService();
+        ReflectionTestUtils.setField(service, "timeSeriesStore", timeSeriesStore);
+        ReflectionTestUtils.setField(service, "rollupStore", rollupStore);
+        try {
+            // 一小时、每秒一个点
+            for (int i = 0; i < 3600; i++) {
+                timeSeriesStore.append("5", TelemetryMetric.WIND, BASE + i * 1000L, i % 60);
+                rollupStore.append("5", TelemetryMetric.WIND, BASE + i * 1000L, i % 60);
+            }
+            long to = BASE + 3_600_000L;
+
+            assertNull(service.chooseTier("5", TelemetryMetric.WIND, BASE, to, 5000));
+            assertEquals(RollupTier.MINUTE, service.chooseTier("5", TelemetryMetric.WIND, BASE, to, 100));
+            assertEquals(RollupTier.HOUR, service.chooseTier("5", TelemetryMetric.WIND, BASE, to, 10));
+            assertEquals(RollupTier.SECOND, service.chooseTier("5", TelemetryMetric.WIND, BASE, BASE + 50_000, 59));
+
+            String[] raw = ndjson(service, to, 5000, null);
+            assertEquals(3601, raw.length);
+            assertTrue(raw[0].contains("\"resolution\":\"raw\""));
+            assertEquals("{\"ts\":" + (BASE + 61_000) + ",\"value\":1.0}", raw[62]);
+            // 未启用汇总时原始数据达到上限，以截断标记结尾
+            String[] truncated = ndjson(service, to, 100, null);
+            assertEquals(102, truncated.length);
+            assertEquals("{\"truncated\":true,\"next\":" + (BASE + 100_000) + "}", truncated[101]);
+
+            String[] minutes = ndjson(service, to, 100, RollupTier.MINUTE);
+            assertEquals(61, minutes.length);
+            assertTrue(minutes[0].contains("\"resolution\":\"1m\""));
+            assertTrue(minutes[1].startsWith("{\"ts\":" + BASE + ",\"count\":60,\"min\":0.0,\"max\":59.0,\"mean\":29.5,\"last\":59.0"));
+
+            // 秒级桶数超过上限时合并相邻的桶，覆盖完整范围
+            assertEquals(72_000, service.bucketMs(RollupTier.SECOND, BASE, to, 50));
+            String[] merged = ndjson(service, to, 50, RollupTier.SECOND);
+            assertEquals(51, merged.length);
+            assertTrue(merged[0].contains("\"bucketMs\":72000"));
+            assertTrue(merged[1].startsWith("{\"ts\":" + BASE + ",\"count\":72,\"min\":0.0,\"max\":59.0"));
+            assertTrue(merged[50].startsWith("{\"ts\":" + (BASE + 49 * 72_000) + ",\"count\":72,"));
+
+            ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            service.write("5", TelemetryMetric.WIND, BASE, to, 100, RollupTier.MINUTE,
+                    TelemetryHistoryService.Format.BINARY, binary);
+            assertEquals(1 + 60 * 48, binary.size());
+            assertEquals(RollupTier.MINUTE.ordinal() + 1, binary.toByteArray()[0]);
+        } finally {
+            rollupStore.shutdown();
+            timeSeriesStore.shutdown();
+        }
+    }
+
+    private static String[] ndjson(TelemetryHistoryService service, long to, int maxPoints, RollupTier tier)
+            throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.write("5", TelemetryMetric.WIND, BASE, to, maxPoints, tier, TelemetryHistoryService.Format.NDJSON, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    }
+}
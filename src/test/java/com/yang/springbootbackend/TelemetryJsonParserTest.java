@@ -0,0 +1,78 @@
+package com.yang.springbootbackend;
+
+import com.alibaba.fastjson.JSON;
+import com.yang.springbootbackend.domain.mqtt.dto.AngleDataDTO;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryJsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryJsonParserTest {
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testParseSensorDataMatchesFastjson() {
+        String json = "{\"gas_value\":14,\"gasrate\":0,\"rain_value\":100,\"rainrate\":1,"
+                + "\"height\":20,\"lux_value\":42.5,\"wind_value\":0.135,\"temperature\":-26.6}";
+        SensorDataDTO parsed = TelemetryJsonParser.parseSensorData(utf8(json));
+        assertNotNull(parsed);
+        assertEquals(JSON.parseObject(json, SensorDataDTO.class), parsed);
+    }
+
+    @Test
+    public void testParseAngleData() {
+        AngleDataDTO parsed = TelemetryJsonParser.parseAngleData(utf8(" { \"angle\" : 1.68511 , \"extra\": 3 }\n"));
+        assertNotNull(parsed);
+        assertEquals(1.68511, parsed.getAngle());
+    }
+
+    @Test
+    public void testNumberFormats() {
+        String[] numbers = {"0", "-0.5", "0.001", "1e3", "2.5E-4", "123456789012345678", "1.7976931348623157e308"};
+        for (String number : numbers) {
+            AngleDataDTO parsed = TelemetryJsonParser.parseAngleData(utf8("{\"angle\":" + number + "}"));
+            assertNotNull(parsed, number);
+            assertEquals(Double.parseDouble(number), parsed.getAngle(), number);
+        }
+    }
+
+    @Test
+    public void testNullFieldSkipped() {
+        SensorDataDTO parsed = TelemetryJsonParser.parseSensorData(utf8("{\"gas_value\":null,\"height\":3}"));
+        assertNotNull(parsed);
+        assertNull(parsed.getGasValue());
+        assertEquals(3.0, parsed.getHeight());
+    }
+
+    @Test
+    public void testUnsupportedStructuresFallBack() {
+        assertNull(TelemetryJsonParser.parseAngleData(utf8("[{\"angle\":1}]")));
+        assertNull(TelemetryJsonParser.parseAngleData(utf8("{\"angle\":{\"v\":1}}")));
+        assertNull(TelemetryJsonParser.parseAngleData(utf8("{\"an\\u0067le\":1}")));
+        assertNull(TelemetryJsonParser.parseAngleData(utf8("{\"angle\":1")));
+        assertNull(TelemetryJsonParser.parseAngleData(utf8("{\"angle\":-}")));
+    }
+
+    @Test
+    public void testParseBatchWithCraneIds() {
+        String json = "[{\"craneId\":\"c1\",\"angle\":1.5,\"ts\":1000,\"seq\":1},"
+                + " {\"craneId\":\"c2\",\"angle\":-2,\"ts\":1001}, {\"angle\":3}]";
+        List<AngleDataDTO> readings = TelemetryJsonParser.parseAngleDataList(utf8(json));
+        assertNotNull(readings);
+        assertEquals(JSON.parseArray(json, AngleDataDTO.class), readings);
+        assertEquals("c2", readings.get(1).getCraneId());
+        assertNull(readings.get(2).getCraneId());
+
+        assertEquals(1, TelemetryJsonParser.parseSensorDataList(utf8("{\"height\":3}")).size());
+        assertTrue(TelemetryJsonParser.parseSensorDataList(utf8(" [ ] ")).isEmpty());
+        assertNull(TelemetryJsonParser.parseAngleDataList(utf8("[{\"angle\":1},]")));
+        assertNull(TelemetryJsonParser.parseAngleDataList(utf8("[{\"angle\":\"1\"}]")));
+    }
+}
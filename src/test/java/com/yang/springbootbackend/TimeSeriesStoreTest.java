@@ -0,0 +1,159 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.TimeSeriesStatsVO;
+import com.yang.springbootbackend.service.mqtt.tsdb.TelemetryMetric;
+import com.yang.springbootbackend.service.mqtt.tsdb.TimeSeriesStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeSeriesStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRoundTripAcrossBlocksSegmentsAndRestart() {
+        MqttProperties properties = new MqttProperties();
+        properties.getTsdb().setDirectory(directory.toString());
+        // 小块、小段，迫使数据跨越多个块和段文件
+        properties.getTsdb().setBlockBytes(256);
+        properties.getTsdb().setSegmentBytes(4096);
+
+        long[] ts = new long[5000];
+        double[] values = new double[ts.length];
+        Random random = new Random(42);
+        long t = 1_700_000_000_000L;
+        double v = 10;
+        for (int i = 0; i < ts.length; i++) {
+            // 大部分按100ms间隔带抖动，偶尔乱序、长时间中断或数值不变
+            t += i % 500 == 499 ? 3_600_000 : 100 + random.nextInt(7) - 3;
+            ts[i] = i % 97 == 0 ? t - 250 : t;
+            v = i % 5 == 0 ? v : Math.round((v + random.nextGaussian()) * 1e3) / 1e3;
+            values[i] = i == 1234 ? Double.NaN : v;
+        }
+
+        TimeSeriesStore store = newStore(properties);
+        for (int i = 0; i < ts.length; i++) {
+            store.append("7", TelemetryMetric.WIND, ts[i], values[i]);
+            store.append("8", TelemetryMetric.WIND, ts[i], -values[i]);
+        }
+        assertPoints(store, ts, values);
+
+        // 范围查询只返回区间内的点，消费方可提前停止
+        List<Long> window = new ArrayList<>();
+        store.scan("7", TelemetryMetric.WIND, ts[100], ts[200], (pointTs, value) -> window.add(pointTs));
+        for (long pointTs : window) {
+            assertTrue(pointTs >= ts[100] && pointTs < ts[200]);
+        }
+        assertFalse(window.isEmpty());
+        int[] seen = new int[1];
+        assertFalse(store.scan("7", TelemetryMetric.WIND, 0, Long.MAX_VALUE, (pointTs, value) -> ++seen[0] < 10));
+        assertEquals(10, seen[0]);
+        assertTrue(store.scan("9", TelemetryMetric.WIND, 0, Long.MAX_VALUE, (pointTs, value) -> false));
+
+        TimeSeriesStatsVO stats = store.getStats();
+        assertEquals(2, stats.getSeriesCount());
+        assertTrue(stats.getSegmentCount() > 1);
+        assertEquals(2L * ts.length, stats.getSealedPoints() + stats.getHeadPoints());
+        store.shutdown();
+
+        // 重启后从段文件恢复，关闭时写入中的块已落盘
+        TimeSeriesStore reopened = newStore(properties);
+        try {
+            assertPoints(reopened, ts, values);
+            assertEquals(2L * ts.length, reopened.getStats().getSealedPoints());
+        } finally {
+            reopened.shutdown();
+        }
+    }
+
+    @Test
+    public void testAppendDoesNotWaitForSegmentWrites() throws Exception {
+        MqttProperties properties = new MqttProperties();
+        properties.getTsdb().setDirectory(directory.toString());
+        properties.getTsdb().setBlockBytes(256);
+        properties.getTsdb().setSegmentBytes(4096);
+        TimeSeriesStore store = newStore(properties);
+        Object segmentLog = ReflectionTestUtils.getField(store, "segmentLog");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            // 模拟落盘线程长时间占用段文件（切换、刷盘）
+            synchronized (segmentLog) {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        holder.start();
+        try {
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+            int points = 5000;
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < points; i++) {
+                    store.append("7", TelemetryMetric.GAS, 1_700_000_000_000L + i * 100L, i % 10);
+                }
+            });
+            TimeSeriesStatsVO stats = store.getStats();
+            assertTrue(stats.getPendingBlocks() > 1);
+            assertEquals(0, stats.getSealedBlocks());
+            int[] seen = new int[1];
+            store.scan("7", TelemetryMetric.GAS, 0, Long.MAX_VALUE, (pointTs, value) -> ++seen[0] > 0);
+            assertEquals(points, seen[0]);
+
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (store.getStats().getPendingBlocks() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            stats = store.getStats();
+            assertEquals(0, stats.getPendingBlocks());
+            assertEquals(points, stats.getSealedPoints() + stats.getHeadPoints());
+            assertEquals(0, stats.getDroppedCount());
+        } finally {
+            release.countDown();
+            holder.join();
+            store.shutdown();
+        }
+    }
+
+    private static TimeSeriesStore newStore(MqttProperties properties) {
+        TimeSeriesStore store = new TimeSeriesStore();
+        ReflectionTestUtils.setField(store, "mqttProperties", properties);
+        store.start();
+        return store;
+    }
+
+    private static void assertPoints(TimeSeriesStore store, long[] ts, double[] values) {
+        List<long[]> points = new ArrayList<>();
+        List<Double> positive = new ArrayList<>();
+        store.scan("7", TelemetryMetric.WIND, 0, Long.MAX_VALUE, (pointTs, value) -> {
+            points.add(new long[]{pointTs});
+            return positive.add(value);
+        });
+        List<Double> negative = new ArrayList<>();
+        store.scan("8", TelemetryMetric.WIND, 0, Long.MAX_VALUE, (pointTs, value) -> negative.add(value));
+        assertEquals(ts.length, points.size());
+        assertEquals(ts.length, negative.size());
+        for (int i = 0; i < ts.length; i++) {
+            assertEquals(ts[i], points.get(i)[0]);
+            assertEquals(values[i], positive.get(i));
+            assertEquals(-values[i], negative.get(i));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.yang.springbootbackend;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.vo.TopicTapVO;
+import com.yang.springbootbackend.service.mqtt.tap.TopicTapService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopicTapServiceTest {
+
+    private static final byte[] PAYLOAD = "{\"angle\":1.5}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testCapturesOnlyMatchingTopicsWhileOpen() {
+        MqttProperties properties = new MqttProperties();
+        properties.getTap().setMaxTaps(1);
+        properties.getTap().setQueueCapacity(2);
+        TopicTapService service = new TopicTapService();
+        ReflectionTestUtils.setField(service, "mqttProperties", properties);
+        try {
+            // 没有监听会话时直接返回
+            service.capture("testtopic/1/angle", PAYLOAD);
+            assertTrue(service.listTaps().isEmpty());
+
+            service.open("testtopic/+/angle", 1, 60);
+            assertThrows(IllegalStateException.class, () -> service.open("#", 1, 60));
+
+            service.capture("testtopic/1/angle", PAYLOAD);
+            service.capture("testtopic/1/gas", PAYLOAD);
+            service.capture("testtopic/2/angle", PAYLOAD);
+            service.capture("testtopic/3/angle", PAYLOAD);
+
+            List<TopicTapVO> taps = service.listTaps();
+            assertEquals(1, taps.size());
+            assertEquals(3, taps.get(0).getMatchedCount());
+            // 缓冲容量为2，第三条被丢弃
+            assertEquals(1, taps.get(0).getDroppedCount());
+
+            assertTrue(service.close(taps.get(0).getId()));
+            assertTrue(service.listTaps().isEmpty());
+            assertFalse(service.close(taps.get(0).getId()));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidPattern() {
+        TopicTapService service = new TopicTapService();
+        ReflectionTestUtils.setField(service, "mqttProperties", new MqttProperties());
+        assertThrows(IllegalArgumentException.class, () -> service.open("testtopic/#/angle", 1, 60));
+        assertTrue(service.listTaps().isEmpty());
+    }
+}
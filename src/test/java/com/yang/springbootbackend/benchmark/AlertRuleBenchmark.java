@@ -0,0 +1,166 @@
+package com.yang.springbootbackend.benchmark;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.service.mqtt.rule.AlertRuleSet;
+import com.yang.springbootbackend.service.mqtt.rule.CompiledRule;
+import com.yang.springbootbackend.service.mqtt.rule.RuleChannel;
+import com.yang.springbootbackend.service.mqtt.rule.RuleCompiler;
+import com.yang.springbootbackend.service.mqtt.rule.RuleField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 告警规则求值基准测试，结果为单条气体传感器读数的求值耗时
+ * 规则中60%为全局简单阈值、20%为复合条件、10%按塔吊类别生效、10%按单台塔吊生效；
+ * 约1%的读数超出正常范围并触发若干规则，其余读数不触发。
+ * compiled 与处理器相同（规则集 + 阈值索引），linear 逐条执行该塔吊生效规则的编译后条件，
+ * interpreted 每条读数重新解析全部规则表达式，对应不预先编译的做法。
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Dbenchmark=AlertRuleBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertRuleBenchmark {
+
+    private static final String[] FIELDS = {"gas", "rain", "height", "lux", "wind", "temperature"};
+
+    private static final double[] LIMITS = {50, 80, 100, 2000, 10, 40};
+
+    private static final int CRANES = 200;
+
+    private static final int CLASSES = 4;
+
+    private static final int READING_SAMPLES = 1024;
+
+    private static final int ANOMALY_PERCENT = 1;
+
+    @Param({"100", "500"})
+    private int rules;
+
+    private AlertRuleSet ruleSet;
+
+    private SensorDataDTO[] readings;
+
+    private final double[] values = new double[RuleField.COUNT];
+
+    private final List<CompiledRule> fired = new ArrayList<>();
+
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Map<String, List<String>> classes = new LinkedHashMap<>();
+        for (int c = 0; c < CRANES / 2; c++) {
+            classes.computeIfAbsent("class" + (c % CLASSES), k -> new ArrayList<>()).add(String.valueOf(c));
+        }
+        List<MqttProperties.RuleDefinition> definitions = new ArrayList<>();
+        for (int i = 0; i < rules; i++) {
+            int f = i % FIELDS.length;
+            // 阈值分布在正常上限的1~2.8倍
+            double factor = 1 + (i % 37) / 20.0;
+            double limit = LIMITS[f] * factor;
+            MqttProperties.RuleDefinition definition;
+            switch (i % 10) {
+                case 6:
+                    definition = new MqttProperties.RuleDefinition("r" + i,
+                            "gas > " + LIMITS[0] * factor + " && wind > " + (5 + i % 7), "复合条件");
+                    break;
+                case 7:
+                    definition = new MqttProperties.RuleDefinition("r" + i,
+                            "abs(temperature - 20) > " + (20 + i % 11) + " || height * 2 > " + LIMITS[2] * factor * 2, "复合条件");
+                    break;
+                case 8:
+                    definition = new MqttProperties.RuleDefinition("r" + i, FIELDS[f] + " >= " + limit, "类别阈值");
+                    definition.setCraneClass("class" + (i % CLASSES));
+                    break;
+                case 9:
+                    definition = new MqttProperties.RuleDefinition("r" + i, FIELDS[f] + " > " + limit, "单台阈值");
+                    definition.getCranes().add(String.valueOf(i % CRANES));
+                    break;
+                default:
+                    definition = new MqttProperties.RuleDefinition("r" + i,
+                            (i % 3 == 0 ? FIELDS[f] + " < " + (-limit) : FIELDS[f] + " > " + limit), "全局阈值");
+                    break;
+            }
+            definitions.add(definition);
+        }
+        ruleSet = AlertRuleSet.compile(definitions, classes, 1, "benchmark");
+
+        Random random = new Random(42);
+        readings = new SensorDataDTO[READING_SAMPLES];
+        for (int i = 0; i < READING_SAMPLES; i++) {
+            // 异常读数各项按正常上限的1~2倍取值
+            double scale = random.nextInt(100) < ANOMALY_PERCENT ? 1 + random.nextDouble() : random.nextDouble() * 0.9;
+            SensorDataDTO data = new SensorDataDTO();
+            data.setCraneId(String.valueOf(random.nextInt(CRANES)));
+            data.setGasValue(LIMITS[0] * scale);
+            data.setGasrate(0);
+            data.setRainValue(LIMITS[1] * scale);
+            data.setRainrate(random.nextInt(10) == 0 ? 1 : 0);
+            data.setHeight(LIMITS[2] * scale);
+            data.setLuxValue(LIMITS[3] * scale);
+            data.setWindValue(LIMITS[4] * scale);
+            data.setTemperature(20 + (LIMITS[5] - 20) * scale);
+            readings[i] = data;
+        }
+    }
+
+    @Benchmark
+    public int compiled() {
+        SensorDataDTO data = readings[next()];
+        RuleField.load(data, values);
+        fired.clear();
+        return ruleSet.evaluate(RuleChannel.SENSOR, data.getCraneId(), values, fired);
+    }
+
+    @Benchmark
+    public int linear() {
+        SensorDataDTO data = readings[next()];
+        RuleField.load(data, values);
+        int count = 0;
+        for (CompiledRule rule : ruleSet.getRules(RuleChannel.SENSOR, data.getCraneId())) {
+            if (rule.test(values)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int interpreted() {
+        SensorDataDTO data = readings[next()];
+        RuleField.load(data, values);
+        int count = 0;
+        for (CompiledRule rule : ruleSet.getRules(RuleChannel.SENSOR, data.getCraneId())) {
+            if (RuleCompiler.compile(rule.getExpression().getSource()).getPredicate().test(values)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (READING_SAMPLES - 1);
+        return cursor;
+    }
+}
@@ -0,0 +1,149 @@
+package com.yang.springbootbackend.benchmark;
+
+import com.yang.springbootbackend.config.properties.MqttProperties;
+import com.yang.springbootbackend.service.mqtt.MqttMessageProcessor;
+import com.yang.springbootbackend.service.mqtt.MqttMessageRouter;
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.ingest.IngestJournal;
+import com.yang.springbootbackend.service.mqtt.ingest.MqttIngestDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 入站工作通道吞吐基准测试，结果为每秒处理的消息数
+ * 256台塔吊的消息经调度器分到 lanes 个普通层级通道，处理器对载荷做固定次数的CRC计算模拟解析和告警检查（约数微秒），
+ * 每次调用投递一批消息并等待全部处理完成。通道数不超过CPU核数时吞吐应随通道数近似线性增长。
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Dbenchmark=IngestLaneBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestLaneBenchmark {
+
+    private static final int CRANES = 256;
+
+    private static final int MESSAGES = 4096;
+
+    private static final int WORK_ROUNDS = 32;
+
+    @Param({"1", "2", "4"})
+    private int lanes;
+
+    private MqttIngestDispatcher dispatcher;
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private String[] topics;
+
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 路由器逐条输出的DEBUG日志会掩盖通道本身的开销
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.yang.springbootbackend"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        MqttProperties properties = new MqttProperties();
+        properties.getIngest().setLaneCount(lanes);
+        properties.getIngest().setQueueCapacity(MESSAGES);
+
+        MqttMessageRouter router = new MqttMessageRouter();
+        ReflectionTestUtils.setField(router, "messageProcessors",
+                Collections.singletonList(new CpuBoundProcessor(processed)));
+        ReflectionTestUtils.setField(router, "mqttProperties", properties);
+        router.initializeProcessors();
+
+        dispatcher = new MqttIngestDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "mqttProperties", properties);
+        ReflectionTestUtils.setField(dispatcher, "messageRouter", router);
+        ReflectionTestUtils.setField(dispatcher, "ingestJournal", new IngestJournal());
+        dispatcher.start();
+
+        topics = new String[CRANES];
+        for (int i = 0; i < CRANES; i++) {
+            topics[i] = "testtopic/" + i + "/gas";
+        }
+        payload = "{\"gas\":12.5,\"wind\":3.2,\"temperature\":21.0,\"height\":40.0,\"ts\":1700000000000}"
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void dispatch(Blackhole blackhole) {
+        long target = processed.get() + MESSAGES;
+        for (int i = 0; i < MESSAGES; i++) {
+            blackhole.consume(dispatcher.dispatch(topics[i & (CRANES - 1)], payload));
+        }
+        while (processed.get() < target) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 固定计算量的处理器
+     */
+    private static final class CpuBoundProcessor implements MqttMessageProcessor {
+
+        private final AtomicLong processed;
+
+        private volatile long checksum;
+
+        CpuBoundProcessor(AtomicLong processed) {
+            this.processed = processed;
+        }
+
+        @Override
+        public String getSupportedTopic() {
+            return "testtopic/+/gas";
+        }
+
+        @Override
+        public void processMessage(MqttRoutingContext context, String payload) {
+            processMessage(context, payload.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void processMessage(MqttRoutingContext context, byte[] payload) {
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < WORK_ROUNDS; i++) {
+                crc.update(payload);
+            }
+            checksum = crc.getValue();
+            processed.incrementAndGet();
+        }
+
+        @Override
+        public int getPriority() {
+            return 60;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.yang.springbootbackend.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.yang.springbootbackend.domain.mqtt.dto.SensorDataDTO;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryFrameCodec;
+import com.yang.springbootbackend.service.mqtt.codec.TelemetryJsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息载荷解析基准测试
+ * stringPath 模拟原有流程：转换器把字节解码为String，处理器再解析String；
+ * fastjsonBytesPath 把字节交给fastjson（其内部仍会解码出String）；
+ * bytesPath 为字节直通流程：TelemetryJsonParser直接在UTF-8字节上解析；
+ * binaryFrame 解码同一读数的二进制帧。
+ * 配合 -prof gc 查看每条消息的分配量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadParseBenchmark {
+
+    private byte[] payload;
+
+    private byte[] frame;
+
+    @Setup
+    public void setUp() {
+        payload = ("{\"gas_value\":14,\"gasrate\":0,\"rain_value\":100,\"rainrate\":0,"
+                + "\"height\":20,\"lux_value\":42.5,\"wind_value\":0.135,\"temperature\":26.6}")
+                .getBytes(StandardCharsets.UTF_8);
+        frame = TelemetryFrameCodec.encodeSensorData(JSON.parseObject(payload, SensorDataDTO.class));
+    }
+
+    @Benchmark
+    public SensorDataDTO stringPath() {
+        String text = new String(payload, StandardCharsets.UTF_8);
+        return JSON.parseObject(text, SensorDataDTO.class);
+    }
+
+    @Benchmark
+    public SensorDataDTO fastjsonBytesPath() {
+        return JSON.parseObject(payload, SensorDataDTO.class);
+    }
+
+    @Benchmark
+    public SensorDataDTO bytesPath() {
+        return TelemetryJsonParser.parseSensorData(payload);
+    }
+
+    @Benchmark
+    public SensorDataDTO binaryFrame() {
+        return TelemetryFrameCodec.decodeSensorData(frame);
+    }
+}
@@ -0,0 +1,169 @@
+package com.yang.springbootbackend.benchmark;
+
+import com.yang.springbootbackend.service.mqtt.persist.SensorReadingBulkLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读数写库基准测试：同样的行数分别用多行INSERT（与 SensorReadingWriter 的 insertBatch 相同）
+ * 和 CSV段文件 + LOAD DATA LOCAL INFILE（与 SensorReadingBulkLoader 相同，计入写文件耗时）写入，
+ * 表结构分别与 sensor_reading 和 sensor_reading_daily 一致，每次测量前清空表。
+ * 需要可写的MySQL库并开启 local_infile，通过环境变量指定（JMH的子进程继承环境变量）：
+ * BENCH_JDBC_URL、BENCH_JDBC_USER、BENCH_JDBC_PASSWORD。结果为写入 rows 行的耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SensorReadingLoadBenchmark {
+
+    private static final String[] METRICS = {"gas", "rain", "height", "lux", "wind", "temperature", "angle"};
+
+    private static final long BASE_TS = 1_700_000_000_000L;
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"200000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int insertRows;
+
+    private Connection connection;
+
+    private File directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String url = System.getenv("BENCH_JDBC_URL");
+        if (url == null) {
+            throw new IllegalStateException("需要设置环境变量 BENCH_JDBC_URL（以及 BENCH_JDBC_USER、BENCH_JDBC_PASSWORD）");
+        }
+        directory = Files.createTempDirectory("jdbc-load-bench").toFile();
+        Properties properties = new Properties();
+        properties.setProperty("user", System.getenv().getOrDefault("BENCH_JDBC_USER", "root"));
+        properties.setProperty("password", System.getenv().getOrDefault("BENCH_JDBC_PASSWORD", ""));
+        properties.setProperty("allowLoadLocalInfileInPath", directory.getAbsolutePath());
+        connection = DriverManager.getConnection(url, properties);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DROP TABLE IF EXISTS bench_reading_insert");
+            statement.executeUpdate("DROP TABLE IF EXISTS bench_reading_load");
+            statement.executeUpdate("CREATE TABLE bench_reading_insert (id bigint auto_increment primary key,"
+                    + " craneId varchar(64) not null, metric varchar(32) not null, ts bigint not null,"
+                    + " metricValue double not null, index idx_crane_metric_ts (craneId, metric, ts))"
+                    + " collate = utf8mb4_unicode_ci");
+            long days = (long) rows * 1000 / DAY_MILLIS + 2;
+            StringBuilder partitions = new StringBuilder();
+            for (long day = 0; day < days; day++) {
+                partitions.append(day > 0 ? ", " : "").append("PARTITION p").append(day)
+                        .append(" VALUES LESS THAN (").append(BASE_TS + (day + 1) * DAY_MILLIS).append(')');
+            }
+            statement.executeUpdate("CREATE TABLE bench_reading_load (craneId varchar(64) not null,"
+                    + " metric varchar(32) not null, ts bigint not null, metricValue double not null,"
+                    + " index idx_crane_metric_ts (craneId, metric, ts)) collate = utf8mb4_unicode_ci"
+                    + " PARTITION BY RANGE (ts) (" + partitions + ")");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("TRUNCATE TABLE bench_reading_insert");
+            statement.executeUpdate("TRUNCATE TABLE bench_reading_load");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (connection != null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DROP TABLE IF EXISTS bench_reading_insert");
+                statement.executeUpdate("DROP TABLE IF EXISTS bench_reading_load");
+            }
+            connection.close();
+        }
+        if (directory != null) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    @Benchmark
+    public int multiRowInsert() throws SQLException {
+        int written = 0;
+        for (int from = 0; from < rows; from += insertRows) {
+            int count = Math.min(insertRows, rows - from);
+            StringBuilder sql = new StringBuilder("INSERT INTO bench_reading_insert (craneId, metric, ts, metricValue) VALUES ");
+            for (int i = 0; i < count; i++) {
+                sql.append(i > 0 ? ",(?,?,?,?)" : "(?,?,?,?)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                int index = 1;
+                for (int i = from; i < from + count; i++) {
+                    statement.setString(index++, craneId(i));
+                    statement.setString(index++, METRICS[i % METRICS.length]);
+                    statement.setLong(index++, BASE_TS + i * 1000L);
+                    statement.setDouble(index++, value(i));
+                }
+                written += statement.executeUpdate();
+            }
+        }
+        return written;
+    }
+
+    @Benchmark
+    public long loadDataLocalInfile() throws Exception {
+        File file = new File(directory, "bench.csv");
+        StringBuilder scratch = new StringBuilder(128);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024)) {
+            for (int i = 0; i < rows; i++) {
+                SensorReadingBulkLoader.writeRow(out, scratch, craneId(i), METRICS[i % METRICS.length],
+                        BASE_TS + i * 1000L, value(i));
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            return statement.executeUpdate(SensorReadingBulkLoader.loadSql(file, "bench_reading_load"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static String craneId(int i) {
+        return String.valueOf(i % 200);
+    }
+
+    private static double value(int i) {
+        return (i % 1000) * 0.125;
+    }
+}
@@ -0,0 +1,95 @@
+package com.yang.springbootbackend.benchmark;
+
+import com.yang.springbootbackend.service.mqtt.MqttRoutingContext;
+import com.yang.springbootbackend.service.mqtt.MqttTopicTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主题路由基准测试
+ * 对比原有精确匹配 ConcurrentHashMap 与通配符前缀树的单次查找开销。
+ * Map需要为每台塔吊的每个主题注册一条记录，前缀树每个站点只需两条通配符过滤器。
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Dbenchmark=TopicRouterBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicRouterBenchmark {
+
+    private static final int CRANES_PER_SITE = 10;
+
+    private static final int TOPIC_SAMPLES = 1024;
+
+    @Param({"100", "2000"})
+    private int sites;
+
+    private Map<String, Object> exactMap;
+
+    private MqttTopicTrie<Object> trie;
+
+    private MqttRoutingContext context;
+
+    private String[] topics;
+
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Object gas = new Object();
+        Object angle = new Object();
+        exactMap = new ConcurrentHashMap<>();
+        trie = new MqttTopicTrie<>();
+        for (int s = 0; s < sites; s++) {
+            trie.put("site/" + s + "/crane/+/gas", gas);
+            trie.put("site/" + s + "/crane/+/angle", angle);
+            for (int c = 0; c < CRANES_PER_SITE; c++) {
+                exactMap.put("site/" + s + "/crane/" + c + "/gas", gas);
+                exactMap.put("site/" + s + "/crane/" + c + "/angle", angle);
+            }
+        }
+
+        // 主题字符串来自网络解码，每条都是新对象，不能复用已缓存的hashCode
+        topics = new String[TOPIC_SAMPLES];
+        for (int i = 0; i < TOPIC_SAMPLES; i++) {
+            int site = (i * 7919) % sites;
+            int crane = i % CRANES_PER_SITE;
+            String kind = (i & 1) == 0 ? "gas" : "angle";
+            topics[i] = new String(("site/" + site + "/crane/" + crane + "/" + kind).toCharArray());
+        }
+        context = new MqttRoutingContext();
+    }
+
+    @Benchmark
+    public Object exactMapLookup() {
+        String topic = new String(topics[next()]);
+        return exactMap.get(topic);
+    }
+
+    @Benchmark
+    public Object trieMatch() {
+        String topic = new String(topics[next()]);
+        context.reset(topic, 3);
+        return trie.match(topic, context);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (TOPIC_SAMPLES - 1);
+        return cursor;
+    }
+}